@@ -109,6 +109,9 @@ public class ClassManager {
 			throw new LibraryNotFoundException(libId.toString());
 		}
 
+		// load the service's classes in parallel into the library cache, instead of one by one on demand
+		lib.prefetch();
+
 		// register
 		ServiceClassLoader cl = new ServiceClassLoader(lib, platformLoader, policy);
 		registeredLoaders.put(serviceIdentifier, cl);
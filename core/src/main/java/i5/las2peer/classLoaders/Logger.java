@@ -1,5 +1,7 @@
 package i5.las2peer.classLoaders;
 
+import java.util.logging.Level;
+
 import i5.las2peer.logging.L2pLogger;
 
 public class Logger {
@@ -22,21 +24,33 @@ public class Logger {
 	}
 
 	static void logFinding(Object who, String classname, Boolean success) {
+		if (!logger.isLoggable(Level.FINER)) {
+			return;
+		}
 		String whoString = getWhoString(who);
 		logger.finer("f\t" + success + "\t" + whoString + "\t" + classname);
 	}
 
 	static void logMessage(Object who, String classname, String message) {
+		if (!logger.isLoggable(Level.FINER)) {
+			return;
+		}
 		String whoString = getWhoString(who);
 		logger.finer("f\t" + "\t" + whoString + "\t" + classname + "\t" + message);
 	}
 
 	static void logLoading(Object who, String classname, Boolean success) {
+		if (!logger.isLoggable(Level.FINER)) {
+			return;
+		}
 		String whoString = getWhoString(who);
 		logger.finer("l\t" + success + "\t" + whoString + "\t" + classname);
 	}
 
 	static void logSubLibrary(Object who, ServiceClassLoader libraryLoader) {
+		if (!logger.isLoggable(Level.FINER)) {
+			return;
+		}
 		String whoString = getWhoString(who);
 		logger.finer("library load\t" + whoString + "\t" + libraryLoader.getLibrary().getIdentifier());
 	}
@@ -52,6 +66,9 @@ public class Logger {
 	}
 
 	static void logGetResource(Object who, String resourceName, Boolean success, Boolean lookUp) {
+		if (!logger.isLoggable(Level.FINER)) {
+			return;
+		}
 		String whoString = getWhoString(who);
 		logger.finer("l\t" + success + "\t" + whoString + "\t" + resourceName + "\t" + lookUp);
 	}
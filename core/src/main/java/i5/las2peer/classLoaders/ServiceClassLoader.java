@@ -2,6 +2,8 @@ package i5.las2peer.classLoaders;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
 
 import i5.las2peer.classLoaders.libraries.LoadedLibrary;
 import i5.las2peer.classLoaders.libraries.ResourceNotFoundException;
@@ -13,6 +15,11 @@ import i5.las2peer.classLoaders.policies.ClassLoaderPolicy;
  */
 public class ServiceClassLoader extends ClassLoader {
 
+	static {
+		// lock per class name instead of the whole loader, so service threads load classes concurrently
+		registerAsParallelCapable();
+	}
+
 	/**
 	 * the library this class loader is responsible for
 	 */
@@ -28,6 +35,11 @@ public class ServiceClassLoader extends ClassLoader {
 	 */
 	private ClassLoaderPolicy policy;
 
+	/**
+	 * names of all classes in the library, {@code null} if the library cannot list them
+	 */
+	private final Set<String> classNames;
+
 	/**
 	 * create a new class loader for a given library.
 	 *
@@ -39,6 +51,18 @@ public class ServiceClassLoader extends ClassLoader {
 		this.library = lib;
 		this.parent = parent;
 		this.policy = policy;
+		Set<String> resourceNames = lib.getResourceNames();
+		if (resourceNames != null) {
+			classNames = new HashSet<>();
+			for (String resourceName : resourceNames) {
+				if (resourceName.endsWith(".class") && !resourceName.startsWith("META-INF/")
+						&& !resourceName.endsWith("module-info.class")) {
+					classNames.add(LoadedLibrary.resourceToClassName(resourceName));
+				}
+			}
+		} else {
+			classNames = null;
+		}
 	}
 
 	/**
@@ -58,6 +82,12 @@ public class ServiceClassLoader extends ClassLoader {
 		byte[] binaryDefinition;
 		Logger.logFinding(this, className, null);
 
+		if (classNames != null && !classNames.contains(className)) {
+			Logger.logFinding(this, className, false);
+			throw new ClassNotFoundException(
+					"The class " + className + " is not contained in library " + library.getIdentifier());
+		}
+
 		try {
 			binaryDefinition = getResourceContent(LoadedLibrary.classToResourceName(className));
 
@@ -67,8 +97,12 @@ public class ServiceClassLoader extends ClassLoader {
 			// Don't know why this is neccessary, Java's docs are not sufficient.
 			// Implementing custom class loaders is a mess...
 			String packageName = className.substring(0, className.lastIndexOf('.'));
-			if (getPackage(packageName) == null) {
-				definePackage(packageName, null, null, null, null, null, null, null);
+			if (getDefinedPackage(packageName) == null) {
+				try {
+					definePackage(packageName, null, null, null, null, null, null, null);
+				} catch (IllegalArgumentException e) {
+					// defined concurrently by another thread
+				}
 			}
 
 			return defineClass(className, binaryDefinition, 0, binaryDefinition.length);
@@ -89,7 +123,13 @@ public class ServiceClassLoader extends ClassLoader {
 	 * @throws ClassNotFoundException If the class was not found
 	 */
 	@Override
-	protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		synchronized (getClassLoadingLock(name)) {
+			return loadClassLocked(name, resolve);
+		}
+	}
+
+	private Class<?> loadClassLocked(String name, boolean resolve) throws ClassNotFoundException {
 		Logger.logLoading(this, name, null);
 
 		// First, check if the class has already been loaded
@@ -128,6 +168,28 @@ public class ServiceClassLoader extends ClassLoader {
 		return c;
 	}
 
+	/**
+	 * loads all classes of the library, so the first calls of a service do not wait for class loading
+	 *
+	 * @return the number of classes loaded, 0 if the library cannot list its classes
+	 */
+	public int preloadClasses() {
+		if (classNames == null) {
+			return 0;
+		}
+		int loaded = 0;
+		for (String className : classNames) {
+			try {
+				loadClass(className, false);
+				loaded++;
+			} catch (ClassNotFoundException | LinkageError e) {
+				// e.g. depends on an optional library, reported when the class is actually used
+				Logger.logMessage(this, className, "preloading failed: " + e);
+			}
+		}
+		return loaded;
+	}
+
 	/**
 	 * get the library this loader is responsible for
 	 * 
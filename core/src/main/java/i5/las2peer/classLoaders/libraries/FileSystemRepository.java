@@ -1,15 +1,31 @@
 package i5.las2peer.classLoaders.libraries;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import i5.las2peer.classLoaders.LibraryNotFoundException;
 import i5.las2peer.logging.L2pLogger;
@@ -18,16 +34,39 @@ import i5.las2peer.tools.SimpleTools;
 /**
  * implements a repository which loads all libraries from a given directory or from severeal ones. The search for
  * library files (jars) may be recursive.
+ * 
+ * The found jars are kept in an index together with their library identifiers. A watch service reports changes in the
+ * directories, so they are only listed again after a change and only new or modified jars are read.
  *
  */
 public class FileSystemRepository implements Repository {
 
 	private static final L2pLogger logger = L2pLogger.getInstance(FileSystemRepository.class);
 
+	private static final Pattern VERSION_PATTERN = Pattern
+			.compile("-[0-9]+(?:.[0-9]+(?:.[0-9]+)?)?(?:-[0-9]+)?$");
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * minimum time between listing the directories because of missing libraries, covers the delay of the watch service
+	 */
+	private static final long MISS_RESCAN_INTERVAL_MS = 2000;
+
 	private Iterable<String> directories;
 	private boolean recursive = false;
-	private Hashtable<String, Hashtable<LibraryVersion, String>> htFoundJars;
-	private long lastModified = 0;
+	private volatile Hashtable<String, Hashtable<LibraryVersion, String>> htFoundJars;
+	/**
+	 * all found jars by path, rebuilt incrementally
+	 */
+	private volatile Map<String, IndexEntry> index = new HashMap<>();
+	/**
+	 * reports changes in the directories, {@code null} if not available, then the directories are listed on each
+	 * lookup
+	 */
+	private WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+	private long lastMissRescan = 0;
 
 	/**
 	 * create a repository for the given directory, non-recursive
@@ -77,6 +116,12 @@ public class FileSystemRepository implements Repository {
 		this.directories = directories;
 		this.recursive = recursive;
 
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			CLEANER.register(this, new WatchServiceCloser(watchService));
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.log(Level.FINE, "No watch service available, listing directories on each lookup", e);
+		}
 		updateRepository(true);
 	}
 
@@ -90,6 +135,9 @@ public class FileSystemRepository implements Repository {
 	@Override
 	public LoadedLibrary findLibrary(String name) throws LibraryNotFoundException {
 		updateRepository(false);
+		if (!htFoundJars.containsKey(name)) {
+			rescanAfterMiss();
+		}
 
 		Hashtable<LibraryVersion, String> htVersions = htFoundJars.get(name);
 		if (htVersions == null) {
@@ -109,7 +157,7 @@ public class FileSystemRepository implements Repository {
 		}
 
 		try {
-			return LoadedJarLibrary.createFromJar(htVersions.get(version));
+			return openJar(htVersions.get(version));
 		} catch (Exception e) {
 			throw new LibraryNotFoundException("Error opening library jar " + htVersions.get(version), e);
 		}
@@ -125,6 +173,9 @@ public class FileSystemRepository implements Repository {
 	@Override
 	public LoadedLibrary findLibrary(LibraryIdentifier lib) throws LibraryNotFoundException {
 		updateRepository(false);
+		if (!contains(lib)) {
+			rescanAfterMiss();
+		}
 
 		Hashtable<LibraryVersion, String> htVersions = htFoundJars.get(lib.getName());
 		if (htVersions == null) {
@@ -140,13 +191,18 @@ public class FileSystemRepository implements Repository {
 		}
 
 		try {
-			return LoadedJarLibrary.createFromJar(jar);
+			return openJar(jar);
 		} catch (Exception e) {
 			throw new LibraryNotFoundException(
 					"library '" + lib.toString() + "' package could not be found in the repositories!", e);
 		}
 	}
 
+	private boolean contains(LibraryIdentifier lib) {
+		Hashtable<LibraryVersion, String> htVersions = htFoundJars.get(lib.getName());
+		return htVersions != null && htVersions.containsKey(lib.getVersion());
+	}
+
 	/**
 	 * get an array with all versions found for the given library name
 	 * 
@@ -233,42 +289,95 @@ public class FileSystemRepository implements Repository {
 	}
 
 	/**
-	 * checks if there were changes made in the folder and re-reads repositories if so
+	 * brings the index up to date with the file system
+	 * 
+	 * Without changes reported by the watch service, the index is used as it is. Otherwise the directories are listed
+	 * again, but only new or modified jars are read.
 	 * 
-	 * @param force if true, the repository will be updated independent from last modification
+	 * @param force if true, the directories are listed even if no changes were reported
 	 */
-	private void updateRepository(boolean force) {
-		long currentLastModified = 0;
-		for (String directory : directories) {
-			long ll = getLastModified(new File(directory), recursive);
-			if (currentLastModified < ll) {
-				currentLastModified = ll;
+	private synchronized void updateRepository(boolean force) {
+		boolean changed = force || watchService == null;
+		if (!changed) {
+			WatchKey key;
+			while ((key = watchService.poll()) != null) {
+				key.pollEvents();
+				if (!key.reset()) {
+					// directory deleted
+					watchedDirectories.remove(key);
+				}
+				changed = true;
+			}
+			for (String directory : directories) {
+				if (!watchedDirectories.containsValue(Paths.get(directory)) && new File(directory).isDirectory()) {
+					// created after the last scan
+					changed = true;
+				}
 			}
 		}
-
-		if (lastModified < currentLastModified || force) {
-			lastModified = currentLastModified;
+		if (changed) {
 			initJarList();
 		}
 	}
 
 	/**
-	 * initialize the list if jars
+	 * lists the directories after a lookup missed
+	 * 
+	 * The watch service reports changes with a short delay, so a jar added just now may be missing from the index. To
+	 * not list the directories on each lookup of a library that does not exist, this is done at most once per
+	 * {@link #MISS_RESCAN_INTERVAL_MS}.
 	 */
-	private void initJarList() {
-		htFoundJars = new Hashtable<>();
+	private synchronized void rescanAfterMiss() {
+		long now = System.currentTimeMillis();
+		if (watchService == null || now - lastMissRescan < MISS_RESCAN_INTERVAL_MS) {
+			// without watch service the directories have just been listed
+			return;
+		}
+		lastMissRescan = now;
+		initJarList();
+	}
 
+	/**
+	 * list all jars in the repository directories and update the index
+	 */
+	private void initJarList() {
+		Map<String, File> jars = new HashMap<>();
 		for (String directory : directories) {
-			searchJars(directory);
+			searchJars(directory, jars);
+		}
+
+		// keep unchanged entries, read the manifests of new and modified jars concurrently
+		Map<String, IndexEntry> updated = new HashMap<>();
+		List<File> modified = new ArrayList<>();
+		for (File jar : jars.values()) {
+			IndexEntry entry = index.get(jar.getPath());
+			if (entry != null && entry.isUpToDate(jar)) {
+				updated.put(jar.getPath(), entry);
+			} else {
+				modified.add(jar);
+			}
+		}
+		List<IndexEntry> read = modified.parallelStream().map(FileSystemRepository::indexJar).filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		for (IndexEntry entry : read) {
+			updated.put(entry.file, entry);
+		}
+		index = updated;
+
+		Hashtable<String, Hashtable<LibraryVersion, String>> found = new Hashtable<>();
+		for (IndexEntry entry : updated.values()) {
+			found.computeIfAbsent(entry.name, name -> new Hashtable<>()).put(entry.version, entry.file);
 		}
+		htFoundJars = found;
 	}
 
 	/**
 	 * look for jars in the given directory, search recursive, if flag is set
 	 * 
 	 * @param directory
+	 * @param jars collects the found jars by path
 	 */
-	private void searchJars(String directory) {
+	private void searchJars(String directory, Map<String, File> jars) {
 		File f = new File(directory);
 
 		if (f.exists()) {
@@ -282,50 +391,169 @@ public class FileSystemRepository implements Repository {
 			return;
 		}
 
+		watchDirectory(f);
 		File[] entries = f.listFiles();
-
-		Pattern versionPattern = Pattern.compile("-[0-9]+(?:.[0-9]+(?:.[0-9]+)?)?(?:-[0-9]+)?$");
+		if (entries == null) {
+			return;
+		}
 
 		for (File entry : entries) {
 			if (entry.isDirectory()) {
 				if (recursive) {
-					searchJars(entry.toString());
+					searchJars(entry.toString(), jars);
 				}
 			} else if (entry.getPath().endsWith(".jar")) {
-				String file = entry.getName().substring(0, entry.getName().length() - 4);
-				Matcher m = versionPattern.matcher(file);
-
-				if (m.find()) {
-					try {
-						String name = file.substring(0, m.start());
-						LibraryVersion version = new LibraryVersion(m.group().substring(1));
-						registerJar(entry.getPath(), name, version);
-					} catch (IllegalArgumentException e) {
-						System.out.println(
-								"Notice: library " + entry + " has no version info in it's name! - Won't be used!");
-					}
-				} else {
-					System.out.println(
-							"Notice: library " + entry + " has no version info in it's name! - Won't be used!");
+				jars.put(entry.getPath(), entry);
+			}
+		}
+	}
+
+	/**
+	 * registers a directory at the watch service, so changes are noticed without listing it again
+	 * 
+	 * @param directory
+	 */
+	private void watchDirectory(File directory) {
+		if (watchService == null) {
+			return;
+		}
+		Path path = directory.toPath();
+		try {
+			WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			watchedDirectories.put(key, path);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not watch " + directory + ", listing directories on each lookup", e);
+			closeWatchService();
+		}
+	}
+
+	private void closeWatchService() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			// ignore, not used anymore
+		}
+		watchService = null;
+		watchedDirectories.clear();
+	}
+
+	/**
+	 * creates the index entry of a jar file
+	 * 
+	 * @param jar
+	 * @return the index entry or {@code null}, if the file name contains no version
+	 */
+	private static IndexEntry indexJar(File jar) {
+		String file = jar.getName().substring(0, jar.getName().length() - 4);
+		Matcher m = VERSION_PATTERN.matcher(file);
+
+		if (m.find()) {
+			try {
+				String name = file.substring(0, m.start());
+				LibraryVersion version = new LibraryVersion(m.group().substring(1));
+				return new IndexEntry(jar, name, version, readIdentifier(jar));
+			} catch (IllegalArgumentException e) {
+				System.out.println("Notice: library " + jar + " has no version info in it's name! - Won't be used!");
+			}
+		} else {
+			System.out.println("Notice: library " + jar + " has no version info in it's name! - Won't be used!");
+		}
+		return null;
+	}
+
+	/**
+	 * reads the library identifier like {@link LoadedJarLibrary#createFromJar(String)} does
+	 * 
+	 * @param jar
+	 * @return the identifier or {@code null}, if the jar could not be read
+	 */
+	private static LibraryIdentifier readIdentifier(File jar) {
+		try (JarFile jarFile = new JarFile(jar)) {
+			Manifest manifest = jarFile.getManifest();
+			if (manifest == null) {
+				return null;
+			}
+			String name = manifest.getMainAttributes().getValue(LibraryIdentifier.MANIFEST_LIBRARY_NAME_ATTRIBUTE);
+			String version = manifest.getMainAttributes()
+					.getValue(LibraryIdentifier.MANIFEST_LIBRARY_VERSION_ATTRIBUTE);
+			if (name == null || version == null) {
+				LibraryIdentifier tmpId = LibraryIdentifier.fromFilename(jar.getPath());
+				if (name == null) {
+					name = tmpId.getName();
+				}
+				if (version == null) {
+					version = tmpId.getVersion().toString();
 				}
 			}
+			return new LibraryIdentifier(name, version);
+		} catch (IOException | IllegalArgumentException e) {
+			logger.log(Level.FINE, "Could not read manifest of " + jar, e);
+			return null;
 		}
 	}
 
 	/**
-	 * register a found jar file to the hashtable of available jars in this repository
+	 * opens an indexed jar, the identifier read during indexing is used, if the jar was not modified since
 	 * 
 	 * @param file
-	 * @param name
-	 * @param version
+	 * @return the library
+	 * @throws IOException If the jar could not be opened
 	 */
-	private void registerJar(String file, String name, LibraryVersion version) {
-		Hashtable<LibraryVersion, String> htNameEntries = htFoundJars.get(name);
-		if (htNameEntries == null) {
-			htNameEntries = new Hashtable<>();
-			htFoundJars.put(name, htNameEntries);
+	private LoadedJarLibrary openJar(String file) throws IOException {
+		IndexEntry entry = index.get(file);
+		if (entry != null && entry.identifier != null && entry.isUpToDate(new File(file))) {
+			return new LoadedJarLibrary(file, entry.identifier);
+		}
+		return LoadedJarLibrary.createFromJar(file);
+	}
+
+	/**
+	 * a jar file known to this repository
+	 */
+	private static class IndexEntry {
+		private final String file;
+		private final String name;
+		private final LibraryVersion version;
+		private final long lastModified;
+		private final long length;
+		/**
+		 * identifier from the manifest, {@code null} if it could not be read
+		 */
+		private final LibraryIdentifier identifier;
+
+		private IndexEntry(File jar, String name, LibraryVersion version, LibraryIdentifier identifier) {
+			this.file = jar.getPath();
+			this.name = name;
+			this.version = version;
+			this.lastModified = jar.lastModified();
+			this.length = jar.length();
+			this.identifier = identifier;
+		}
+
+		private boolean isUpToDate(File jar) {
+			return jar.lastModified() == lastModified && jar.length() == length;
+		}
+	}
+
+	/**
+	 * closes the watch service of a repository, that is no longer used
+	 */
+	private static class WatchServiceCloser implements Runnable {
+		private final WatchService watchService;
+
+		private WatchServiceCloser(WatchService watchService) {
+			this.watchService = watchService;
+		}
+
+		@Override
+		public void run() {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// ignore, not used anymore
+			}
 		}
-		htNameEntries.put(version, file);
 	}
 
 	/**
@@ -0,0 +1,215 @@
+package i5.las2peer.classLoaders.libraries;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.CryptoTools;
+
+/**
+ * Local disk cache for the resources of network libraries.
+ *
+ * Resources are stored content addressed, named by their secure hash, so the same file is shared by all libraries and
+ * versions containing it. The cache survives node restarts and evicts the least recently used files once its size
+ * limit is exceeded. The content of a file is checked against its hash whenever it is read.
+ */
+public class LibraryResourceCache {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(LibraryResourceCache.class);
+
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final Path directory;
+	private final long maxBytes;
+	/**
+	 * file names and sizes of the cached resources in access order
+	 */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+
+	/**
+	 * opens the cache in the given directory and takes over the files already stored in it
+	 *
+	 * @param directory The directory to store the resources in, created if it does not exist
+	 * @param maxBytes The maximum total size of all cached resources in bytes
+	 * @throws IOException If the directory could not be created or read
+	 */
+	public LibraryResourceCache(Path directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		Files.createDirectories(directory);
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream) {
+				if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+					// left over from an interrupted write
+					Files.deleteIfExists(file);
+				} else if (Files.isRegularFile(file)) {
+					files.add(file);
+				}
+			}
+		}
+		// the modification time is updated on each read, so the oldest file is the least recently used one
+		Map<Path, FileTime> modified = new LinkedHashMap<>();
+		for (Path file : files) {
+			modified.put(file, Files.getLastModifiedTime(file));
+		}
+		files.sort(Comparator.comparing(modified::get));
+		synchronized (this) {
+			for (Path file : files) {
+				long size = Files.size(file);
+				entries.put(file.getFileName().toString(), size);
+				totalBytes += size;
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * gets a cached resource
+	 *
+	 * @param hash The secure hash of the resource
+	 * @return the content of the resource or {@code null}, if it is not cached
+	 */
+	public byte[] get(byte[] hash) {
+		String name = getFileName(hash);
+		synchronized (this) {
+			if (entries.get(name) == null) {
+				return null;
+			}
+		}
+		Path file = directory.resolve(name);
+		try {
+			byte[] content = Files.readAllBytes(file);
+			if (!MessageDigest.isEqual(hash, CryptoTools.getSecureHash(content))) {
+				logger.warning("Cached library resource " + name + " is corrupted, removing it");
+				remove(name);
+				return null;
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return content;
+		} catch (IOException | CryptoException e) {
+			// e.g. evicted concurrently
+			remove(name);
+			return null;
+		}
+	}
+
+	/**
+	 * gets the size of a cached resource without reading it
+	 *
+	 * @param hash The secure hash of the resource
+	 * @return the size of the resource in bytes or -1, if it is not cached
+	 */
+	public synchronized long getSize(byte[] hash) {
+		Long size = entries.get(getFileName(hash));
+		return size == null ? -1 : size;
+	}
+
+	/**
+	 * stores a resource in the cache, evicting the least recently used resources if necessary
+	 *
+	 * @param hash The secure hash of the content
+	 * @param content The content of the resource
+	 */
+	public void put(byte[] hash, byte[] content) {
+		if (content.length > maxBytes) {
+			return;
+		}
+		String name = getFileName(hash);
+		synchronized (this) {
+			if (entries.containsKey(name)) {
+				return;
+			}
+		}
+		Path file = directory.resolve(name);
+		Path temp = null;
+		try {
+			// write to a temporary file first, so a crash never leaves a partial resource behind
+			temp = Files.createTempFile(directory, "resource", TEMP_SUFFIX);
+			Files.write(temp, content);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			logger.warning("Could not cache library resource " + name + ": " + e.getMessage());
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e2) {
+					// ignore, removed on next start
+				}
+			}
+			return;
+		}
+		synchronized (this) {
+			if (entries.putIfAbsent(name, (long) content.length) == null) {
+				totalBytes += content.length;
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * @return the total size of all cached resources in bytes
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return the number of cached resources
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private synchronized void remove(String name) {
+		Long size = entries.remove(name);
+		if (size != null) {
+			totalBytes -= size;
+			delete(name);
+		}
+	}
+
+	private synchronized void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			totalBytes -= eldest.getValue();
+			delete(eldest.getKey());
+		}
+	}
+
+	private void delete(String name) {
+		try {
+			Files.deleteIfExists(directory.resolve(name));
+		} catch (IOException e) {
+			logger.warning("Could not delete cached library resource " + name + ": " + e.getMessage());
+		}
+	}
+
+	private static String getFileName(byte[] hash) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+	}
+
+}
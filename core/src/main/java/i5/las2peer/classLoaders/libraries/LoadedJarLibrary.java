@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -23,6 +26,9 @@ public class LoadedJarLibrary extends LoadedLibrary {
 	// internal jar file handler
 	private JarFile jfFile;
 
+	// names of all files in the jar
+	private final Set<String> resourceNames;
+
 	/**
 	 * create a new LodadJarLibrary
 	 * 
@@ -35,6 +41,7 @@ public class LoadedJarLibrary extends LoadedLibrary {
 
 		sJarFileName = filename;
 		jfFile = new JarFile(filename);
+		resourceNames = Collections.unmodifiableSet(new HashSet<>(getContainedFiles()));
 	}
 
 	@Override
@@ -142,6 +149,11 @@ public class LoadedJarLibrary extends LoadedLibrary {
 		return result;
 	}
 
+	@Override
+	public Set<String> getResourceNames() {
+		return resourceNames;
+	}
+
 	/**
 	 * Returns the name of the corresponding jar file.
 	 *
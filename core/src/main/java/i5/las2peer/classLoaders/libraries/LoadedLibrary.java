@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Set;
 
 /**
  * a loaded library represents a library in the l2p classloader context
@@ -59,6 +60,23 @@ public abstract class LoadedLibrary {
 	 */
 	abstract long getSizeOfResource(String resourceName) throws ResourceNotFoundException;
 
+	/**
+	 * get the names of all resources contained in this library
+	 *
+	 * @return the resource names or {@code null}, if this library cannot list its resources
+	 */
+	public Set<String> getResourceNames() {
+		return null;
+	}
+
+	/**
+	 * starts loading all resources of this library in the background, before they are requested one by one
+	 *
+	 * Does nothing by default, as most libraries have their resources available locally.
+	 */
+	public void prefetch() {
+	}
+
 	/**
 	 * get the contents of a resource as a String
 	 * 
@@ -2,20 +2,36 @@ package i5.las2peer.classLoaders.libraries;
 
 import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.api.persistency.EnvelopeNotFoundException;
+import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.p2p.PastryNodeImpl;
+import i5.las2peer.persistency.AbstractArtifact;
+import i5.las2peer.persistency.StorageArtifactHandler;
+import i5.las2peer.persistency.VerificationFailedException;
 import i5.las2peer.serialization.MalformedXMLException;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.serialization.XmlAble;
 import i5.las2peer.serialization.XmlTools;
+import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.CryptoTools;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.security.MessageDigest;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -26,6 +42,18 @@ import org.w3c.dom.NodeList;
  */
 public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 
+	private static final L2pLogger logger = L2pLogger.getInstance(LoadedNetworkLibrary.class);
+
+	/**
+	 * maximum number of dependencies fetched at the same time by {@link #prefetch()}
+	 */
+	private static final int MAX_PARALLEL_FETCHES = 16;
+
+	/**
+	 * time in milliseconds to wait for a prefetched dependency, before it is fetched again
+	 */
+	private static final long PREFETCH_TIMEOUT = 60000;
+
 	private final PastryNodeImpl node;
 
 	/**
@@ -33,10 +61,33 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 	 */
 	private final Map<String, byte[]> dependencies;
 
+	/**
+	 * maps the dependency filenames to their sizes in bytes, if known from the library metadata
+	 */
+	private final Map<String, Long> dependencySizes;
+
+	/**
+	 * dependencies currently fetched by {@link #prefetch()}, removed once they are stored in the library cache
+	 */
+	private final ConcurrentHashMap<String, CompletableFuture<byte[]>> prefetched = new ConcurrentHashMap<>();
+
 	public LoadedNetworkLibrary(PastryNodeImpl node, LibraryIdentifier lib, Map<String, byte[]> dependencies) {
+		this(node, lib, dependencies, null);
+	}
+
+	/**
+	 * @param node The node used to fetch the dependencies
+	 * @param lib The library identifier
+	 * @param dependencies The dependency filenames and the secure hashes of their contents
+	 * @param dependencySizes The dependency filenames and the sizes of their contents, may be incomplete or
+	 *            {@code null}
+	 */
+	public LoadedNetworkLibrary(PastryNodeImpl node, LibraryIdentifier lib, Map<String, byte[]> dependencies,
+			Map<String, Long> dependencySizes) {
 		super(lib);
 		this.node = node;
 		this.dependencies = dependencies;
+		this.dependencySizes = dependencySizes != null ? dependencySizes : Collections.emptyMap();
 	}
 
 	@Override
@@ -59,6 +110,19 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 
 	@Override
 	long getSizeOfResource(String resourceName) throws ResourceNotFoundException {
+		Long size = dependencySizes.get(resourceName);
+		if (size != null) {
+			return size;
+		}
+		byte[] resourceHash = getResourceHash(resourceName);
+		LibraryResourceCache cache = node.getLibraryCache();
+		if (cache != null) {
+			long cachedSize = cache.getSize(resourceHash);
+			if (cachedSize >= 0) {
+				return cachedSize;
+			}
+		}
+		// library metadata from before sizes were stored
 		try {
 			return getResourceAsBinary(resourceName).length;
 		} catch (IOException e) {
@@ -68,17 +132,115 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 
 	@Override
 	public byte[] getResourceAsBinary(String resourceName) throws IOException, ResourceNotFoundException {
-		byte[] resourceHash = dependencies.get(resourceName);
-		if (resourceHash == null) {
-			throw new ResourceNotFoundException(resourceName, this.getLibraryIdentifier().toString());
+		byte[] resourceHash = getResourceHash(resourceName);
+		LibraryResourceCache cache = node.getLibraryCache();
+		if (cache != null) {
+			byte[] cached = cache.get(resourceHash);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		CompletableFuture<byte[]> pending = prefetched.remove(resourceName);
+		if (pending != null) {
+			try {
+				return pending.get(PREFETCH_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for prefetched resource " + resourceName, e);
+			} catch (ExecutionException | TimeoutException e) {
+				logger.fine("Prefetching " + resourceName + " failed, fetching it again: " + e);
+			}
 		}
+		byte[] content;
 		try {
-			return node.fetchHashedContent(resourceHash);
+			content = node.fetchHashedContent(resourceHash);
 		} catch (EnvelopeNotFoundException e) {
 			throw new ResourceNotFoundException(resourceName, getIdentifier().toString(), e);
 		} catch (EnvelopeException e) {
 			throw new IOException("Could not read class from hashed content", e);
 		}
+		if (cache != null) {
+			cache.put(resourceHash, content);
+		}
+		return content;
+	}
+
+	@Override
+	public Set<String> getResourceNames() {
+		if (dependencies == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(dependencies.keySet());
+	}
+
+	private byte[] getResourceHash(String resourceName) throws ResourceNotFoundException {
+		byte[] resourceHash = dependencies != null ? dependencies.get(resourceName) : null;
+		if (resourceHash == null) {
+			throw new ResourceNotFoundException(resourceName, this.getLibraryIdentifier().toString());
+		}
+		return resourceHash;
+	}
+
+	/**
+	 * starts fetching all dependencies, which are not in the library cache, in parallel from the network
+	 *
+	 * Does nothing without a library cache, since the fetched contents would have to be kept in memory until they are
+	 * requested. Then the dependencies are fetched on demand.
+	 */
+	@Override
+	public void prefetch() {
+		if (dependencies == null || node == null) {
+			return;
+		}
+		LibraryResourceCache cache = node.getLibraryCache();
+		if (cache == null) {
+			return;
+		}
+		Queue<String> queue = new ConcurrentLinkedQueue<>();
+		for (Entry<String, byte[]> dep : dependencies.entrySet()) {
+			if (cache.getSize(dep.getValue()) < 0 && !prefetched.containsKey(dep.getKey())) {
+				queue.add(dep.getKey());
+			}
+		}
+		for (int i = 0; i < MAX_PARALLEL_FETCHES; i++) {
+			prefetchNext(queue, cache);
+		}
+	}
+
+	private void prefetchNext(Queue<String> queue, LibraryResourceCache cache) {
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		String resourceName;
+		do {
+			resourceName = queue.poll();
+			if (resourceName == null) {
+				return;
+			}
+		} while (prefetched.putIfAbsent(resourceName, future) != null);
+		String name = resourceName;
+		byte[] hash = dependencies.get(name);
+		// continue asynchronously, so neither the network thread writes to disk nor failures recurse
+		future.whenCompleteAsync((content, e) -> {
+			if (content != null) {
+				cache.put(hash, content);
+			}
+			// failed fetches are repeated on demand
+			prefetched.remove(name, future);
+			prefetchNext(queue, cache);
+		});
+		node.fetchHashedContentAsync(hash, new StorageArtifactHandler() {
+			@Override
+			public void onReceive(AbstractArtifact artifact) {
+				try {
+					byte[] content = artifact.getContent();
+					if (!MessageDigest.isEqual(hash, CryptoTools.getSecureHash(content))) {
+						throw new VerificationFailedException("Content of " + name + " does not match its hash");
+					}
+					future.complete(content);
+				} catch (VerificationFailedException | CryptoException e) {
+					future.completeExceptionally(e);
+				}
+			}
+		}, future::completeExceptionally);
 	}
 
 	@Override
@@ -95,8 +257,12 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 		if (dependencies != null && dependencies.size() > 0) {
 			result.append("<dependencies>\n");
 			for (Entry<String, byte[]> dep : dependencies.entrySet()) {
-				result.append("\t<dependency name=\"" + XmlTools.escapeAttributeValue(dep.getKey())
-						+ "\" encoding=\"Base64\">" + Base64.getEncoder().encodeToString(dep.getValue())
+				result.append("\t<dependency name=\"" + XmlTools.escapeAttributeValue(dep.getKey()) + "\"");
+				Long size = dependencySizes.get(dep.getKey());
+				if (size != null) {
+					result.append(" size=\"" + size + "\"");
+				}
+				result.append(" encoding=\"Base64\">" + Base64.getEncoder().encodeToString(dep.getValue())
 						+ "</dependency>\n");
 			}
 			result.append("</dependencies>\n");
@@ -120,6 +286,7 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 			libId = new LibraryIdentifier(name, version);
 		}
 		HashMap<String, byte[]> libDeps = null;
+		HashMap<String, Long> libDepSizes = new HashMap<>();
 		Element elDependencies = XmlTools.getOptionalElement(root, "dependencies");
 		if (elDependencies != null) {
 			libDeps = new HashMap<>();
@@ -140,6 +307,14 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 				if (!encoding.equalsIgnoreCase("base64")) {
 					throw new MalformedXMLException("Base64 encoding expected, got '" + encoding + "'");
 				}
+				String size = currentElement.getAttribute("size");
+				if (!size.isEmpty()) {
+					try {
+						libDepSizes.put(name, Long.parseLong(size));
+					} catch (NumberFormatException e) {
+						throw new MalformedXMLException("Invalid dependency size '" + size + "'", e);
+					}
+				}
 				String base64Hash = currentElement.getTextContent();
 				if (base64Hash == null) {
 					throw new MalformedXMLException("Dependency hash is null");
@@ -152,7 +327,7 @@ public class LoadedNetworkLibrary extends LoadedLibrary implements XmlAble {
 				}
 			}
 		}
-		return new LoadedNetworkLibrary(node, libId, libDeps);
+		return new LoadedNetworkLibrary(node, libId, libDeps, libDepSizes);
 	}
 
 }
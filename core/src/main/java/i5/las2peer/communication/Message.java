@@ -1,13 +1,12 @@
 package i5.las2peer.communication;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.security.Signature;
-import java.security.SignatureException;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Random;
@@ -25,7 +24,9 @@ import i5.las2peer.api.security.AgentException;
 import i5.las2peer.api.security.AgentLockedException;
 import i5.las2peer.api.security.AgentNotFoundException;
 import i5.las2peer.api.security.AnonymousAgent;
+import i5.las2peer.p2p.Node;
 import i5.las2peer.persistency.EncodingFailedException;
+import i5.las2peer.persistency.VerificationFailedException;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.security.AgentStorage;
 import i5.las2peer.security.AnonymousAgentImpl;
@@ -52,11 +53,30 @@ import rice.p2p.commonapi.NodeHandle;
  * When specifying a topic, the message will be sent to all agents listening to the topic. Since these agents are not
  * known, the message will not be encrypted.
  * 
+ * Optionally, a message can use a session key shared by sender and recipient, see {@link MessageSessionKeys}. Then
+ * the content is authenticated by its AES-GCM encryption instead of a signature. Responses to such messages use
+ * session keys, too.
+ * 
  */
 public class Message implements XmlAble, Cloneable {
 
 	public static final long DEFAULT_TIMEOUT = 30 * 1000; // 30 seconds
 
+	/**
+	 * first bytes of a message in binary wire format ("L2PM")
+	 */
+	public static final int BINARY_MAGIC = 0x4c32504d;
+	/**
+	 * current version of the binary wire format
+	 */
+	public static final byte BINARY_VERSION = 1;
+
+	private static final int FLAG_RESPONSE = 1;
+	private static final int FLAG_TOPIC = 1 << 1;
+	private static final int FLAG_SENDING_NODE = 1 << 2;
+	private static final int FLAG_SESSION_KEY = 1 << 3;
+	private static final int FLAG_NESTED = 1 << 4;
+
 	/**
 	 * sender of the message
 	 */
@@ -107,6 +127,21 @@ public class Message implements XmlAble, Cloneable {
 	 */
 	private byte[] baContentKey;
 
+	/**
+	 * signature of the sender for the session key, only set if a session key is used
+	 */
+	private byte[] baKeySignature;
+
+	/**
+	 * session keys of the node creating or opening this message, if session keys are used
+	 */
+	private MessageSessionKeys sessionKeys = null;
+
+	/**
+	 * session key of this message while it is open
+	 */
+	private MessageSessionKeys.SessionKey sessionKey = null;
+
 	/**
 	 * timestamp of the message generation
 	 */
@@ -129,6 +164,11 @@ public class Message implements XmlAble, Cloneable {
 
 	private Serializable sendingNodeId = null;
 
+	/**
+	 * true, if this request has been sent from within a service call, which waits for the answer
+	 */
+	private boolean nested = false;
+
 	/**
 	 * constructor for the {@link XmlAble} facilities
 	 */
@@ -165,6 +205,23 @@ public class Message implements XmlAble, Cloneable {
 	 */
 	public Message(AgentImpl from, AgentImpl to, Serializable data, long timeOutMs)
 			throws EncodingFailedException, InternalSecurityException, SerializationException {
+		this(from, to, data, timeOutMs, null);
+	}
+
+	/**
+	 * create a new message, optionally encrypted with a session key
+	 * 
+	 * @param from A sending agent
+	 * @param to A receiving agent
+	 * @param data Arbitrary data to wrap in the message
+	 * @param timeOutMs timeout for the validity of the new message
+	 * @param sessionKeys session keys to use or null to encrypt and sign this message on its own
+	 * @throws EncodingFailedException If the content serialization fails
+	 * @throws InternalSecurityException the private key of the sender is not accessible for signing
+	 * @throws SerializationException If the content serialization fails
+	 */
+	public Message(AgentImpl from, AgentImpl to, Serializable data, long timeOutMs, MessageSessionKeys sessionKeys)
+			throws EncodingFailedException, InternalSecurityException, SerializationException {
 		if (from == null || to == null) {
 			throw new IllegalArgumentException("null not allowed as sender or recipient!");
 		}
@@ -173,15 +230,15 @@ public class Message implements XmlAble, Cloneable {
 		recipient = to;
 		recipientId = to.getIdentifier();
 		content = data;
+		this.sessionKeys = sessionKeys;
 
 		timestampMs = new Date().getTime();
 		validMs = timeOutMs;
 
 		id = new Random().nextLong();
 
-		encryptContent();
-
 		try {
+			encryptContent();
 			signContent();
 		} catch (AgentLockedException e) {
 			throw new InternalSecurityException("Agent locked", e);
@@ -285,14 +342,14 @@ public class Message implements XmlAble, Cloneable {
 		timestampMs = new Date().getTime();
 		id = new Random().nextLong();
 
-		if (!isTopic() && !(recipient instanceof AnonymousAgent)) {
-			encryptContent();
-		} else {
-			baDecryptedContent = getContentString().getBytes(StandardCharsets.UTF_8);
-			baEncryptedContent = baDecryptedContent;
-		}
-
 		try {
+			if (!isTopic() && !(recipient instanceof AnonymousAgent)) {
+				encryptContent();
+			} else {
+				baDecryptedContent = getContentString().getBytes(StandardCharsets.UTF_8);
+				baEncryptedContent = baDecryptedContent;
+			}
+
 			signContent();
 		} catch (AgentLockedException e) {
 			throw new InternalSecurityException("Agent locked", e);
@@ -327,6 +384,7 @@ public class Message implements XmlAble, Cloneable {
 		recipientId = responseTo.getSenderId();
 		validMs = timeoutMs;
 		content = data;
+		sessionKeys = responseTo.sessionKeys;
 
 		responseToId = responseTo.getId();
 
@@ -374,6 +432,7 @@ public class Message implements XmlAble, Cloneable {
 
 		validMs = timeoutMs;
 		content = data;
+		sessionKeys = responseTo.sessionKeys;
 
 		responseToId = responseTo.getId();
 
@@ -431,16 +490,28 @@ public class Message implements XmlAble, Cloneable {
 	}
 
 	/**
-	 * encrypt the content of this message (as base64 encoded string) with asymmetric encryption
+	 * encrypt the content of this message (as base64 encoded string) with asymmetric encryption or the session key
 	 * 
 	 * @throws EncodingFailedException If the content serialization fails
+	 * @throws AgentLockedException If a new session key has to be signed by a locked sender
 	 */
-	private void encryptContent() throws EncodingFailedException {
+	private void encryptContent() throws EncodingFailedException, AgentLockedException {
 		if (recipient == null || recipient instanceof AnonymousAgent) {
 			return;
 		}
 
 		try {
+			if (sessionKeys != null && !(sender instanceof AnonymousAgent)) {
+				sessionKey = sessionKeys.getSendingKey(sender, recipient);
+				baContentKey = sessionKey.getEncryptedKey();
+				baKeySignature = sessionKey.getKeySignature();
+
+				baDecryptedContent = getContentString().getBytes(StandardCharsets.UTF_8);
+				baEncryptedContent = CryptoTools.encryptSymmetricAuthenticated(baDecryptedContent,
+						sessionKey.getKey());
+				return;
+			}
+
 			SecretKey contentKey = CryptoTools.generateSymmetricKey();
 			baContentKey = CryptoTools.encryptAsymmetric(contentKey, recipient.getPublicKey());
 
@@ -466,16 +537,14 @@ public class Message implements XmlAble, Cloneable {
 			return;
 		}
 
+		if (sessionKey != null) {
+			// the authentication tag of the encrypted content replaces the signature
+			return;
+		}
+
 		try {
-			Signature sig = sender.createSignature();
-			sig.update(baDecryptedContent);
-
-			baSignature = sig.sign();
-		} catch (InvalidKeyException e) {
-			throw new EncodingFailedException("Key problems", e);
-		} catch (NoSuchAlgorithmException e) {
-			throw new EncodingFailedException("Algorithm problems", e);
-		} catch (SignatureException e) {
+			baSignature = sender.signContent(baDecryptedContent);
+		} catch (CryptoException e) {
 			throw new EncodingFailedException("Signature problems", e);
 		}
 	}
@@ -566,6 +635,26 @@ public class Message implements XmlAble, Cloneable {
 		return responseToId != null;
 	}
 
+	/**
+	 * A request sent from within a service call blocks that call until it is answered, so the receiving node
+	 * dispatches it separately from other requests.
+	 * 
+	 * This is only a scheduling hint and not covered by the signature of the message.
+	 * 
+	 * @return true, if this message has been sent from within a service call
+	 */
+	public boolean isNested() {
+		return nested;
+	}
+
+	/**
+	 * @param nested true, if this message is sent from within a service call
+	 * @see #isNested()
+	 */
+	public void setNested(boolean nested) {
+		this.nested = nested;
+	}
+
 	/**
 	 * get the content of this message may be Serializable or XmlAble
 	 * 
@@ -643,7 +732,18 @@ public class Message implements XmlAble, Cloneable {
 		}
 
 		try {
-			if (!isTopic() && !(recipient instanceof AnonymousAgent)) {
+			if (!isTopic() && !(recipient instanceof AnonymousAgent) && baKeySignature != null) {
+				if (storage instanceof Node) {
+					sessionKeys = ((Node) storage).getMessageSessionKeys();
+				}
+				if (sessionKeys != null) {
+					sessionKey = sessionKeys.getReceivingKey(sender, recipient, baContentKey, baKeySignature);
+				} else {
+					sessionKey = MessageSessionKeys.openSessionKey(sender, recipient, baContentKey, baKeySignature);
+				}
+				baDecryptedContent = CryptoTools.decryptSymmetricAuthenticated(baEncryptedContent,
+						sessionKey.getKey());
+			} else if (!isTopic() && !(recipient instanceof AnonymousAgent)) {
 				SecretKey contentKey = recipient.decryptSymmetricKey(baContentKey);
 				baDecryptedContent = CryptoTools.decryptSymmetric(baEncryptedContent, contentKey);
 			} else { // topics are not encrypted
@@ -726,21 +826,20 @@ public class Message implements XmlAble, Cloneable {
 			return;
 		}
 
-		Signature sig;
-		try {
-			sig = Signature.getInstance(CryptoTools.getSignatureMethod());
-			sig.initVerify(sender.getPublicKey());
-			sig.update(baDecryptedContent);
+		if (baKeySignature != null) {
+			// the content has been authenticated while decrypting it with the session key
+			if (sessionKey == null) {
+				throw new InternalSecurityException("message has to be opened to verify its content!");
+			}
+			return;
+		}
 
-			if (!sig.verify(baSignature)) {
+		try {
+			if (!CryptoTools.verifySignature(baSignature, baDecryptedContent, sender.getPublicKey())) {
 				throw new InternalSecurityException("Signature invalid!");
 			}
-		} catch (InvalidKeyException e) {
-			throw new InternalSecurityException("unable to verify signature: key problems", e);
-		} catch (NoSuchAlgorithmException e) {
-			throw new InternalSecurityException("unable to verify signature: algorithm problems", e);
-		} catch (SignatureException e) {
-			throw new InternalSecurityException("unable to verify signature: signature problems", e);
+		} catch (VerificationFailedException e) {
+			throw new InternalSecurityException("unable to verify signature", e);
 		}
 	}
 
@@ -752,6 +851,14 @@ public class Message implements XmlAble, Cloneable {
 		sender = null;
 		recipient = null;
 		baDecryptedContent = null;
+		sessionKey = null;
+	}
+
+	/**
+	 * @return true, if this message is encrypted with a session key
+	 */
+	public boolean isSessionKeyEncrypted() {
+		return baKeySignature != null;
 	}
 
 	/**
@@ -815,6 +922,11 @@ public class Message implements XmlAble, Cloneable {
 			response = " responseTo=\"" + responseToId + "\"";
 		}
 
+		if (nested) {
+			// only written if set, so older nodes keep reading these messages
+			response += " nested=\"true\"";
+		}
+
 		String sending = "";
 		if (sendingNodeId != null) {
 			if (sendingNodeId instanceof Long || sendingNodeId instanceof NodeHandle) {
@@ -834,7 +946,14 @@ public class Message implements XmlAble, Cloneable {
 		String receiver;
 		String contentKey = "";
 		String encryption = "";
-		if (!isTopic()) {
+		if (!isTopic() && baKeySignature != null) {
+			receiver = "to=\"" + recipientId + "\"";
+			encryption = " encryption=\"" + CryptoTools.getAuthenticatedSymmetricAlgorithm() + "\"";
+			contentKey = "\t<contentKey encryption=\"" + CryptoTools.getAsymmetricAlgorithm()
+					+ "\" encoding=\"base64\" session=\"true\">" + base64ContentKey + "</contentKey>\n"
+					+ "\t<keySignature encoding=\"base64\" method=\"" + CryptoTools.getSignatureMethod() + "\">"
+					+ Base64.getEncoder().encodeToString(baKeySignature) + "</keySignature>\n";
+		} else if (!isTopic()) {
 			receiver = "to=\"" + recipientId + "\"";
 			encryption = " encryption=\"" + CryptoTools.getSymmetricAlgorithm() + "\"";
 			contentKey = "\t<contentKey encryption=\"" + CryptoTools.getAsymmetricAlgorithm()
@@ -843,17 +962,20 @@ public class Message implements XmlAble, Cloneable {
 			receiver = "topic=\"" + topicId + "\"";
 		}
 
-		String base64Signature = "";
-		if (baSignature != null) {
-			base64Signature = Base64.getEncoder().encodeToString(baSignature);
+		String signature = "";
+		if (baKeySignature == null) {
+			String base64Signature = "";
+			if (baSignature != null) {
+				base64Signature = Base64.getEncoder().encodeToString(baSignature);
+			}
+			signature = "\t<signature encoding=\"base64\" method=\"" + CryptoTools.getSignatureMethod() + "\">"
+					+ base64Signature + "</signature>\n";
 		}
 
 		return "<las2peer:message" + " id=\"" + id + "\"" + response + " from=\"" + senderId + "\" " + receiver
 				+ " generated=\"" + timestampMs + "\" timeout=\"" + validMs + "\">\n" + sending + "\t<content"
 				+ encryption + " encoding=\"base64\">" + Base64.getEncoder().encodeToString(baEncryptedContent)
-				+ "</content>\n" + contentKey + "\t<signature encoding=\"base64\" method=\""
-				+ CryptoTools.getSignatureMethod() + "\">" + base64Signature + "</signature>\n"
-				+ "</las2peer:message>\n";
+				+ "</content>\n" + contentKey + signature + "</las2peer:message>\n";
 	}
 
 	/**
@@ -876,7 +998,9 @@ public class Message implements XmlAble, Cloneable {
 
 			Element content = XmlTools.getSingularElement(root, "content");
 			Element contentKey = XmlTools.getOptionalElement(root, "contentKey");
-			Element signature = XmlTools.getSingularElement(root, "signature");
+			Element keySignature = XmlTools.getOptionalElement(root, "keySignature");
+			// messages encrypted with a session key carry no signature
+			Element signature = keySignature == null ? XmlTools.getSingularElement(root, "signature") : null;
 
 			if (!root.hasAttribute("from")) {
 				throw new MalformedXMLException("needed from attribute missing!");
@@ -903,7 +1027,10 @@ public class Message implements XmlAble, Cloneable {
 			if (contentKey != null && !contentKey.getAttribute("encoding").equals("base64")) {
 				throw new MalformedXMLException("base64 encoding expected");
 			}
-			if (!signature.getAttribute("encoding").equals("base64")) {
+			if (signature != null && !signature.getAttribute("encoding").equals("base64")) {
+				throw new MalformedXMLException("base64 encoding expected");
+			}
+			if (keySignature != null && !keySignature.getAttribute("encoding").equals("base64")) {
 				throw new MalformedXMLException("base64 encoding expected");
 			}
 
@@ -918,10 +1045,15 @@ public class Message implements XmlAble, Cloneable {
 			// recipient = AgentStorage.getAgent( Long.parseLong(root.getAttribute ( "to")));
 
 			baEncryptedContent = Base64.getDecoder().decode(content.getTextContent());
-			baSignature = Base64.getDecoder().decode(signature.getTextContent());
+			if (signature != null) {
+				baSignature = Base64.getDecoder().decode(signature.getTextContent());
+			}
 			if (contentKey != null) {
 				baContentKey = Base64.getDecoder().decode(contentKey.getTextContent());
 			}
+			if (keySignature != null) {
+				baKeySignature = Base64.getDecoder().decode(keySignature.getTextContent());
+			}
 
 			timestampMs = Long.parseLong(root.getAttribute("generated"));
 			validMs = Long.parseLong(root.getAttribute("timeout"));
@@ -930,6 +1062,7 @@ public class Message implements XmlAble, Cloneable {
 			if (root.hasAttribute("responseTo")) {
 				responseToId = Long.parseLong(root.getAttribute("responseTo"));
 			}
+			nested = Boolean.parseBoolean(root.getAttribute("nested"));
 		} catch (NumberFormatException e) {
 			throw new MalformedXMLException("to or from attribute is not a long!", e);
 		} catch (SerializationException e) {
@@ -937,6 +1070,157 @@ public class Message implements XmlAble, Cloneable {
 		}
 	}
 
+	/**
+	 * Gets a compact binary representation of this message. In contrast to {@link #toXmlString()} the (encrypted)
+	 * content, key and signature are written as length prefixed raw bytes without any Base64 encoding.
+	 * 
+	 * The format starts with {@link #BINARY_MAGIC} and {@link #BINARY_VERSION} followed by a flag byte and the header
+	 * fields.
+	 * 
+	 * @return the binary representation of this message
+	 * @throws SerializationException If the sending node id can not be serialized
+	 */
+	public byte[] toBinary() throws SerializationException {
+		int flags = 0;
+		if (responseToId != null) {
+			flags |= FLAG_RESPONSE;
+		}
+		if (isTopic()) {
+			flags |= FLAG_TOPIC;
+		} else if (baKeySignature != null) {
+			flags |= FLAG_SESSION_KEY;
+		}
+		if (nested) {
+			flags |= FLAG_NESTED;
+		}
+		byte[] sendingNode = null;
+		if (sendingNodeId instanceof Long || sendingNodeId instanceof NodeHandle) {
+			sendingNode = SerializeTools.serialize(sendingNodeId);
+			flags |= FLAG_SENDING_NODE;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + lengthOf(baEncryptedContent)
+				+ lengthOf(baContentKey) + lengthOf(baKeySignature) + lengthOf(baSignature) + lengthOf(sendingNode));
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(BINARY_MAGIC);
+			out.writeByte(BINARY_VERSION);
+			out.writeByte(flags);
+			out.writeLong(id);
+			out.writeLong(timestampMs);
+			out.writeLong(validMs);
+			out.writeUTF(senderId);
+			if (isTopic()) {
+				out.writeLong(topicId);
+			} else {
+				out.writeUTF(recipientId);
+			}
+			if (responseToId != null) {
+				out.writeLong(responseToId);
+			}
+			if (sendingNode != null) {
+				writeBytes(out, sendingNode);
+			}
+			writeBytes(out, baEncryptedContent);
+			if (!isTopic()) {
+				writeBytes(out, baContentKey);
+			}
+			if ((flags & FLAG_SESSION_KEY) != 0) {
+				writeBytes(out, baKeySignature);
+			} else {
+				writeBytes(out, baSignature);
+			}
+		} catch (IOException e) {
+			// can not happen with an in memory stream
+			throw new SerializationException("unable to write binary message", e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static int lengthOf(byte[] bytes) {
+		if (bytes == null) {
+			return 0;
+		}
+		return bytes.length;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			out.writeInt(0);
+		} else {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in, int remaining) throws IOException, SerializationException {
+		int length = in.readInt();
+		if (length < 0 || length > remaining) {
+			throw new SerializationException("invalid field length " + length);
+		}
+		byte[] result = new byte[length];
+		in.readFully(result);
+		return result;
+	}
+
+	/**
+	 * set the state of this object from the binary representation created by {@link #toBinary()}
+	 * 
+	 * @param data A binary message
+	 * @throws SerializationException If the data is not a valid binary message
+	 */
+	public void setStateFromBinary(byte[] data) throws SerializationException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (in.readInt() != BINARY_MAGIC) {
+				throw new SerializationException("not a binary las2peer message");
+			}
+			byte version = in.readByte();
+			if (version != BINARY_VERSION) {
+				throw new SerializationException("unsupported binary message version " + version);
+			}
+			int flags = in.readByte();
+			id = in.readLong();
+			timestampMs = in.readLong();
+			validMs = in.readLong();
+			senderId = in.readUTF();
+			if ((flags & FLAG_TOPIC) != 0) {
+				topicId = in.readLong();
+			} else {
+				recipientId = in.readUTF();
+			}
+			if ((flags & FLAG_RESPONSE) != 0) {
+				responseToId = in.readLong();
+			}
+			nested = (flags & FLAG_NESTED) != 0;
+			if ((flags & FLAG_SENDING_NODE) != 0) {
+				sendingNodeId = SerializeTools.deserialize(readBytes(in, data.length));
+			}
+			baEncryptedContent = readBytes(in, data.length);
+			if ((flags & FLAG_TOPIC) == 0) {
+				baContentKey = readBytes(in, data.length);
+			}
+			if ((flags & FLAG_SESSION_KEY) != 0) {
+				baKeySignature = readBytes(in, data.length);
+			} else {
+				baSignature = readBytes(in, data.length);
+			}
+		} catch (IOException e) {
+			throw new SerializationException("truncated binary message", e);
+		}
+	}
+
+	/**
+	 * factory: create a message from its binary representation
+	 * 
+	 * @param data A binary message created by {@link #toBinary()}
+	 * @return a message generated from the given data
+	 * @throws SerializationException If the data is not a valid binary message
+	 */
+	public static Message createFromBinary(byte[] data) throws SerializationException {
+		Message result = new Message();
+		result.setStateFromBinary(data);
+		return result;
+	}
+
 	/**
 	 * set the if of the node sending this message The NodeHandle-variant is for Pastry based networks.
 	 * 
@@ -0,0 +1,213 @@
+package i5.las2peer.communication;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+
+import i5.las2peer.api.security.AgentLockedException;
+import i5.las2peer.persistency.VerificationFailedException;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.security.InternalSecurityException;
+import i5.las2peer.serialization.SerializationException;
+import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.CryptoTools;
+import i5.las2peer.tools.ExpiringCache;
+
+/**
+ * Symmetric session keys for {@link Message}s between pairs of agents.
+ *
+ * A session key is generated by the sending node, encrypted for the recipient and signed by the sender. This handshake
+ * is attached to each message of the session, so every message can still be opened on its own. The content is
+ * encrypted and authenticated with AES-GCM using the session key. The expensive asymmetric operations are only done
+ * once per session on each side. Sessions are rotated after a lifetime or a maximum number of messages.
+ *
+ * Session keys are only used for nodes known to accept them, see {@link i5.las2peer.p2p.Node#isMessageSessionKeys()}.
+ *
+ */
+public class MessageSessionKeys {
+
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+	public static final int DEFAULT_LIFETIME = 300;
+	public static final int DEFAULT_MAX_USES = 10000;
+
+	private final long lifetimeMs;
+	private final long maxUses;
+
+	/**
+	 * sessions used for sending, by sender and recipient id
+	 */
+	private final ExpiringCache<String, SessionKey> sendingKeys;
+	/**
+	 * verified sessions of received messages, by sender, recipient and encrypted key
+	 */
+	private final ExpiringCache<String, SessionKey> receivingKeys;
+
+	private final AtomicLong handshakeCount = new AtomicLong();
+
+	/**
+	 * a session key shared by a sender and a recipient
+	 */
+	public static class SessionKey {
+		private final SecretKey key;
+		private final byte[] encryptedKey;
+		private final byte[] keySignature;
+		private final AtomicLong uses = new AtomicLong();
+
+		private SessionKey(SecretKey key, byte[] encryptedKey, byte[] keySignature) {
+			this.key = key;
+			this.encryptedKey = encryptedKey;
+			this.keySignature = keySignature;
+		}
+
+		SecretKey getKey() {
+			return key;
+		}
+
+		byte[] getEncryptedKey() {
+			return encryptedKey;
+		}
+
+		byte[] getKeySignature() {
+			return keySignature;
+		}
+	}
+
+	public MessageSessionKeys() {
+		this(DEFAULT_CACHE_SIZE, DEFAULT_LIFETIME, DEFAULT_MAX_USES);
+	}
+
+	/**
+	 * @param cacheSize maximum number of sessions kept for sending and for receiving
+	 * @param lifetime time in seconds a session key is used
+	 * @param maxUses maximum number of messages sent with a session key
+	 */
+	public MessageSessionKeys(int cacheSize, int lifetime, int maxUses) {
+		this.lifetimeMs = lifetime * 1000L;
+		this.maxUses = maxUses;
+		this.sendingKeys = new ExpiringCache<>(cacheSize);
+		this.receivingKeys = new ExpiringCache<>(cacheSize);
+	}
+
+	/**
+	 * gets the current session key to send messages from the given sender to the given recipient, a new session is
+	 * created if there is none or the current one is used up
+	 *
+	 * @param sender An unlocked sending agent
+	 * @param recipient A receiving agent
+	 * @return a session key
+	 * @throws AgentLockedException If the sender is locked
+	 * @throws CryptoException If the session key could not be encrypted or signed
+	 * @throws SerializationException If the session key could not be serialized
+	 */
+	SessionKey getSendingKey(AgentImpl sender, AgentImpl recipient)
+			throws AgentLockedException, CryptoException, SerializationException {
+		String pair = sender.getIdentifier() + " " + recipient.getIdentifier();
+		SessionKey session = sendingKeys.get(pair);
+		if (session != null && session.uses.incrementAndGet() <= maxUses) {
+			return session;
+		}
+		SecretKey key = CryptoTools.generateSymmetricKey();
+		byte[] encryptedKey = CryptoTools.encryptAsymmetric(key, recipient.getPublicKey());
+		byte[] keySignature = sender.signContent(
+				getHandshakeContent(sender.getIdentifier(), recipient.getIdentifier(), encryptedKey));
+		session = new SessionKey(key, encryptedKey, keySignature);
+		session.uses.incrementAndGet();
+		sendingKeys.put(pair, session, lifetimeMs);
+		handshakeCount.incrementAndGet();
+		return session;
+	}
+
+	/**
+	 * gets the session key of a received message, the handshake is only verified, if the session is not known yet
+	 *
+	 * @param sender The sending agent
+	 * @param recipient The unlocked receiving agent
+	 * @param encryptedKey The session key encrypted for the recipient
+	 * @param keySignature The signature of the sender for the encrypted session key
+	 * @return the session key
+	 * @throws InternalSecurityException If the handshake is not signed by the sender
+	 * @throws AgentLockedException If the recipient is locked
+	 * @throws CryptoException If the session key could not be decrypted
+	 * @throws SerializationException If the session key could not be deserialized
+	 */
+	SessionKey getReceivingKey(AgentImpl sender, AgentImpl recipient, byte[] encryptedKey, byte[] keySignature)
+			throws InternalSecurityException, AgentLockedException, CryptoException, SerializationException {
+		String id = sender.getIdentifier() + " " + recipient.getIdentifier() + " "
+				+ Base64.getEncoder().encodeToString(CryptoTools.getSecureHash(encryptedKey));
+		SessionKey session = receivingKeys.get(id);
+		if (session != null) {
+			return session;
+		}
+		session = openSessionKey(sender, recipient, encryptedKey, keySignature);
+		receivingKeys.put(id, session, lifetimeMs);
+		return session;
+	}
+
+	/**
+	 * verifies the handshake of a received message and decrypts its session key without caching it
+	 *
+	 * @param sender The sending agent
+	 * @param recipient The unlocked receiving agent
+	 * @param encryptedKey The session key encrypted for the recipient
+	 * @param keySignature The signature of the sender for the encrypted session key
+	 * @return the session key
+	 * @throws InternalSecurityException If the handshake is not signed by the sender
+	 * @throws AgentLockedException If the recipient is locked
+	 * @throws CryptoException If the session key could not be decrypted
+	 * @throws SerializationException If the session key could not be deserialized
+	 */
+	static SessionKey openSessionKey(AgentImpl sender, AgentImpl recipient, byte[] encryptedKey,
+			byte[] keySignature)
+			throws InternalSecurityException, AgentLockedException, CryptoException, SerializationException {
+		try {
+			if (!CryptoTools.verifySignature(keySignature,
+					getHandshakeContent(sender.getIdentifier(), recipient.getIdentifier(), encryptedKey),
+					sender.getPublicKey())) {
+				throw new InternalSecurityException("session key is not signed by the sender!");
+			}
+		} catch (VerificationFailedException e) {
+			throw new InternalSecurityException("unable to verify session key signature", e);
+		}
+		return new SessionKey(recipient.decryptSymmetricKey(encryptedKey), encryptedKey, keySignature);
+	}
+
+	private static byte[] getHandshakeContent(String senderId, String recipientId, byte[] encryptedKey) {
+		byte[] ids = (senderId + "\n" + recipientId + "\n").getBytes(StandardCharsets.UTF_8);
+		byte[] result = new byte[ids.length + encryptedKey.length];
+		System.arraycopy(ids, 0, result, 0, ids.length);
+		System.arraycopy(encryptedKey, 0, result, ids.length, encryptedKey.length);
+		return result;
+	}
+
+	/**
+	 * removes all sessions, new messages will start new sessions
+	 */
+	public void clear() {
+		sendingKeys.clear();
+		receivingKeys.clear();
+	}
+
+	/**
+	 * @return number of sessions started for sending
+	 */
+	public long getHandshakeCount() {
+		return handshakeCount.get();
+	}
+
+	/**
+	 * @return number of received messages opened with a known session
+	 */
+	public long getReceivingHitCount() {
+		return receivingKeys.getHitCount();
+	}
+
+	/**
+	 * @return number of received messages that required a handshake verification
+	 */
+	public long getReceivingMissCount() {
+		return receivingKeys.getMissCount();
+	}
+
+}
@@ -62,16 +62,13 @@ public class ExecutionContext implements Context {
 
 	final private AgentContext callerContext;
 	final private ServiceAgentImpl serviceAgent;
-	final private ServiceThreadFactory threadFactory;
-	final private ExecutorService executor;
 	final private Node node;
+	private ExecutorService executor;
 
 	public ExecutionContext(ServiceAgentImpl agent, AgentContext context, Node node) {
 		this.serviceAgent = agent;
 		this.callerContext = context;
 		this.node = node;
-		this.threadFactory = new ServiceThreadFactory(this);
-		this.executor = Executors.newSingleThreadExecutor(this.threadFactory);
 	}
 
 	public static ExecutionContext getCurrent() {
@@ -91,11 +88,27 @@ public class ExecutionContext implements Context {
 		return serviceAgent.getServiceInstance().getClass().getClassLoader();
 	}
 
+	/**
+	 * The executor is only created on demand, since most service calls are executed by the
+	 * {@link ServiceExecutor} of the service and never need one.
+	 */
 	@Override
-	public ExecutorService getExecutor() {
+	public synchronized ExecutorService getExecutor() {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadExecutor(new ServiceThreadFactory(this));
+		}
 		return this.executor;
 	}
 
+	/**
+	 * Stops all async tasks of this call, if an executor was requested at all.
+	 */
+	public synchronized void shutdownExecutor() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
 	@Override
 	public Service getService() {
 		return this.serviceAgent.getServiceInstance();
@@ -0,0 +1,169 @@
+package i5.las2peer.execution;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution engine of one service running at a node.
+ *
+ * Service calls are executed by a bounded pool of reusable {@link ServiceThread}s. Each thread is bound to the
+ * {@link ExecutionContext} of the call it currently executes, so {@link ExecutionContext#getCurrent()} works as with
+ * one dedicated thread per call. If the pool and its queue are exhausted, further calls are rejected instead of
+ * piling up threads.
+ *
+ * Calls issued from within a running service call (e.g. a service invoking another local service) are executed
+ * directly on the calling thread, since waiting for a free pool thread could deadlock a saturated pool.
+ */
+public class ServiceExecutor {
+
+	public static final int DEFAULT_MAX_THREADS = 32;
+	public static final int DEFAULT_QUEUE_SIZE = 256;
+	public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+
+	private final ThreadPoolExecutor pool;
+	private final AtomicLong executedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * create an execution engine using the default limits
+	 *
+	 * @param name A name used for the pool threads, usually the service name
+	 */
+	public ServiceExecutor(String name) {
+		this(name, DEFAULT_MAX_THREADS, DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * create an execution engine
+	 *
+	 * @param name A name used for the pool threads, usually the service name
+	 * @param maxThreads Maximum number of concurrently executed service calls
+	 * @param queueSize Maximum number of calls waiting for a free thread
+	 */
+	public ServiceExecutor(String name, int maxThreads, int queueSize) {
+		if (maxThreads < 1) {
+			throw new IllegalArgumentException("At least one thread is required");
+		}
+		if (queueSize < 1) {
+			throw new IllegalArgumentException("Queue size has to be positive");
+		}
+		final AtomicInteger threadNumber = new AtomicInteger();
+		pool = new ThreadPoolExecutor(maxThreads, maxThreads, DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), r -> {
+					ServiceThread t = new ServiceThread(null, r);
+					t.setName(name + "-" + threadNumber.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Executes the given task in the given context and waits for its result.
+	 *
+	 * @param context The context of the service call
+	 * @param task The actual service call
+	 * @param <T> Type of the result
+	 * @return Returns the result of the task
+	 * @throws ExecutionException If the task threw an exception, which is available as cause
+	 * @throws InterruptedException If interrupted while waiting for the result
+	 * @throws RejectedExecutionException If the service is overloaded or stopped
+	 */
+	public <T> T execute(ExecutionContext context, Callable<T> task)
+			throws ExecutionException, InterruptedException, RejectedExecutionException {
+		Thread current = Thread.currentThread();
+		if (current instanceof ServiceThread && ((ServiceThread) current).getContext() != null) {
+			// nested call, run in place
+			executedCount.incrementAndGet();
+			try {
+				return callInContext((ServiceThread) current, context, task);
+			} catch (Exception e) {
+				throw new ExecutionException(e);
+			}
+		}
+		Future<T> future;
+		try {
+			future = pool.submit(() -> {
+				executedCount.incrementAndGet();
+				return callInContext((ServiceThread) Thread.currentThread(), context, task);
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCount.incrementAndGet();
+			throw e;
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			throw e;
+		}
+	}
+
+	private static <T> T callInContext(ServiceThread thread, ExecutionContext context, Callable<T> task)
+			throws Exception {
+		ExecutionContext previous = thread.getContext();
+		thread.setContext(context);
+		try {
+			return task.call();
+		} finally {
+			thread.setContext(previous);
+		}
+	}
+
+	/**
+	 * Stops accepting new calls and interrupts running ones.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * @return true, if this engine has been shut down
+	 */
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+
+	/**
+	 * @return number of service calls currently executed by pool threads
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * @return number of service calls waiting for a free thread
+	 */
+	public int getQueueSize() {
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * @return number of pool threads currently alive
+	 */
+	public int getPoolSize() {
+		return pool.getPoolSize();
+	}
+
+	/**
+	 * @return total number of executed service calls
+	 */
+	public long getExecutedCount() {
+		return executedCount.get();
+	}
+
+	/**
+	 * @return total number of service calls rejected because of overload
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 
 import i5.las2peer.api.Service;
 import i5.las2peer.api.execution.ServiceMethodNotFoundException;
@@ -135,8 +136,16 @@ public abstract class ServiceHelper {
 	public static Object execute(Service service, String method, Object... parameters)
 			throws ServiceMethodNotFoundException, IllegalArgumentException, IllegalAccessException,
 			InvocationTargetException {
-		Method m = searchMethod(service.getClass(), method, parameters);
-		return m.invoke(service, parameters);
+		return ServiceMethodTable.get(service.getClass()).invoke(service, method, parameters);
+	}
+
+	/**
+	 * Prepares the method dispatch of a service class, so the first invocations do not have to.
+	 * 
+	 * @param serviceClass A service class
+	 */
+	public static void prepareMethods(Class<? extends Service> serviceClass) {
+		ServiceMethodTable.get(serviceClass);
 	}
 
 	/**
@@ -150,6 +159,21 @@ public abstract class ServiceHelper {
 	 */
 	public static Method searchMethod(Class<? extends Service> serviceClass, String methodName, Object[] params)
 			throws ServiceMethodNotFoundException {
+		return ServiceMethodTable.get(serviceClass).lookup(methodName, params);
+	}
+
+	/**
+	 * Searches the service method fitting to the given parameter classes.
+	 * 
+	 * @param serviceClass A service class to search in
+	 * @param candidates The public methods of the service class with the given name
+	 * @param methodName the service method
+	 * @param params A bunch of parameters
+	 * @return a Method
+	 * @throws ServiceMethodNotFoundException If the method was not found in the given class
+	 */
+	static Method findMethod(Class<? extends Service> serviceClass, Method[] candidates, String methodName,
+			Object[] params) throws ServiceMethodNotFoundException {
 		Class<?>[] acActualParamTypes = new Class[params.length];
 
 		for (int i = 0; i < params.length; i++) {
@@ -162,11 +186,16 @@ public abstract class ServiceHelper {
 
 		Method found = null;
 
-		try {
-			found = serviceClass.getMethod(methodName, acActualParamTypes);
-		} catch (java.lang.NoSuchMethodException nsme) {
+		for (Method toCheck : candidates) {
+			if (Arrays.equals(toCheck.getParameterTypes(), acActualParamTypes)
+					&& (found == null || found.isBridge())) {
+				found = toCheck;
+			}
+		}
+
+		if (found == null) {
 			// ok, simple test did not work - check for existing methods
-			for (Method toCheck : serviceClass.getMethods()) {
+			for (Method toCheck : candidates) {
 
 				if (toCheck.getName().equals(methodName)) {
 					Class<?>[] acCheckParamTypes = toCheck.getParameterTypes();
@@ -0,0 +1,189 @@
+package i5.las2peer.execution;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import i5.las2peer.api.Service;
+import i5.las2peer.api.execution.ServiceMethodNotFoundException;
+
+/**
+ * Dispatch table for the methods of a service class.
+ *
+ * The public methods of a service class are collected once and a method handle is prepared for each of them. The
+ * method found for a method name and the classes of the actual parameters is remembered, so the search in
+ * {@link ServiceHelper#findMethod(Class, Method[], String, Object[])} is only done on the first call of a signature.
+ */
+final class ServiceMethodTable {
+
+	/**
+	 * maximum number of remembered signatures per service class
+	 */
+	private static final int MAX_SIGNATURES = 1000;
+
+	private static final ClassValue<ServiceMethodTable> TABLES = new ClassValue<ServiceMethodTable>() {
+		@SuppressWarnings("unchecked")
+		@Override
+		protected ServiceMethodTable computeValue(Class<?> type) {
+			return new ServiceMethodTable((Class<? extends Service>) type);
+		}
+	};
+
+	private final Class<? extends Service> serviceClass;
+	private final Map<String, Method[]> methodsByName = new HashMap<>();
+	private final Map<Method, MethodHandle> handles = new HashMap<>();
+	private final ConcurrentHashMap<Signature, Target> targets = new ConcurrentHashMap<>();
+
+	private ServiceMethodTable(Class<? extends Service> serviceClass) {
+		this.serviceClass = serviceClass;
+		Map<String, List<Method>> grouped = new HashMap<>();
+		for (Method method : serviceClass.getMethods()) {
+			grouped.computeIfAbsent(method.getName(), name -> new ArrayList<>()).add(method);
+			if (!Modifier.isStatic(method.getModifiers())) {
+				try {
+					MethodHandle handle = MethodHandles.publicLookup().unreflect(method)
+							.asSpreader(Object[].class, method.getParameterCount())
+							.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+					handles.put(method, handle);
+				} catch (IllegalAccessException e) {
+					// e.g. declared in a non public class, invoked by reflection instead
+				}
+			}
+		}
+		for (Map.Entry<String, List<Method>> entry : grouped.entrySet()) {
+			methodsByName.put(entry.getKey(), entry.getValue().toArray(new Method[0]));
+		}
+	}
+
+	/**
+	 * gets the dispatch table of a service class, it is created on the first access
+	 *
+	 * @param serviceClass A service class
+	 * @return the dispatch table of the class
+	 */
+	static ServiceMethodTable get(Class<? extends Service> serviceClass) {
+		return TABLES.get(serviceClass);
+	}
+
+	/**
+	 * searches the method fitting to the given parameters
+	 *
+	 * @param methodName the service method
+	 * @param params A bunch of parameters
+	 * @return the method to invoke
+	 * @throws ServiceMethodNotFoundException If the method was not found in the service class
+	 */
+	Method lookup(String methodName, Object[] params) throws ServiceMethodNotFoundException {
+		return getTarget(methodName, params).method;
+	}
+
+	/**
+	 * invokes the method fitting to the given parameters
+	 *
+	 * @param service A service instance of this table's class
+	 * @param methodName the service method
+	 * @param params A bunch of parameters
+	 * @return result of the method invocation
+	 * @throws ServiceMethodNotFoundException If the method was not found in the service class
+	 * @throws IllegalAccessException If the method is inaccessible
+	 * @throws InvocationTargetException If the method throws an exception
+	 */
+	Object invoke(Service service, String methodName, Object[] params)
+			throws ServiceMethodNotFoundException, IllegalAccessException, InvocationTargetException {
+		Target target = getTarget(methodName, params);
+		if (target.handle == null) {
+			return target.method.invoke(service, params);
+		}
+		try {
+			return target.handle.invokeExact((Object) service, params);
+		} catch (Throwable e) {
+			// the parameters were checked, so it is thrown by the method itself
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	private Target getTarget(String methodName, Object[] params) throws ServiceMethodNotFoundException {
+		Signature signature = new Signature(methodName, params);
+		Target target = targets.get(signature);
+		if (target == null) {
+			Method[] candidates = methodsByName.getOrDefault(methodName, new Method[0]);
+			Method method = ServiceHelper.findMethod(serviceClass, candidates, methodName, params);
+			target = new Target(method, fitsExactly(method, signature.types) ? handles.get(method) : null);
+			if (targets.size() < MAX_SIGNATURES) {
+				targets.putIfAbsent(signature, target);
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * checks if the method handle can be called with parameters of the given classes without conversions, otherwise
+	 * reflection is used to keep its conversions and exceptions
+	 */
+	private static boolean fitsExactly(Method method, Class<?>[] types) {
+		Class<?>[] formal = method.getParameterTypes();
+		for (int i = 0; i < formal.length; i++) {
+			if (formal[i].isPrimitive()) {
+				if (types[i] != MethodType.methodType(formal[i]).wrap().returnType()) {
+					return false;
+				}
+			} else if (types[i] != Serializable.class && !formal[i].isAssignableFrom(types[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class Target {
+		private final Method method;
+		private final MethodHandle handle;
+
+		private Target(Method method, MethodHandle handle) {
+			this.method = method;
+			this.handle = handle;
+		}
+	}
+
+	/**
+	 * method name and classes of the actual parameters, {@link Serializable} stands for {@code null}
+	 */
+	private static class Signature {
+		private final String name;
+		private final Class<?>[] types;
+		private final int hash;
+
+		private Signature(String name, Object[] params) {
+			this.name = name;
+			this.types = new Class<?>[params.length];
+			for (int i = 0; i < params.length; i++) {
+				types[i] = params[i] == null ? Serializable.class : params[i].getClass();
+			}
+			this.hash = 31 * name.hashCode() + Arrays.hashCode(types);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) obj;
+			return name.equals(other.name) && Arrays.equals(types, other.types);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+}
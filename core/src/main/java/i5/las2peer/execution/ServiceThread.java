@@ -2,7 +2,7 @@ package i5.las2peer.execution;
 
 public class ServiceThread extends Thread {
 
-	private final ExecutionContext context;
+	private ExecutionContext context;
 
 	public ServiceThread(ExecutionContext context, Runnable r) {
 		super(r);
@@ -13,10 +13,27 @@ public class ServiceThread extends Thread {
 		return this.context;
 	}
 
+	/**
+	 * Binds this (pooled) thread to the context of the service call it currently executes.
+	 * 
+	 * @param context The context of the current call or null, if the thread returns to its pool.
+	 */
+	void setContext(ExecutionContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * @return true, if the current thread executes a service call
+	 */
+	public static boolean isInServiceCall() {
+		Thread t = Thread.currentThread();
+		return t instanceof ServiceThread && ((ServiceThread) t).getContext() != null;
+	}
+
 	public static ExecutionContext getCurrentContext() {
 		Thread t = Thread.currentThread();
 
-		if (!(t instanceof ServiceThread)) {
+		if (!(t instanceof ServiceThread) || ((ServiceThread) t).getContext() == null) {
 			throw new IllegalStateException("Not executed in a ServiceThread environment!");
 		}
 
@@ -0,0 +1,330 @@
+package i5.las2peer.logging;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+import i5.las2peer.api.logging.MonitoringEvent;
+
+/**
+ * Delivers node events to {@link NodeObserver}s asynchronously.
+ *
+ * Events are written into a pre-allocated ring buffer by any number of threads. Each observer has its own thread that
+ * reads the events in batches and calls the observer, so a slow observer never delays the thread that caused an
+ * event. Node representations are only derived when an event is delivered. If the slowest observer falls behind by a
+ * whole buffer, new events are dropped and counted instead of blocking.
+ */
+public class ObserverEventBus {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(ObserverEventBus.class);
+
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/**
+	 * maximum number of events delivered before the slots are released to producers
+	 */
+	private static final int MAX_BATCH_SIZE = 256;
+
+	/**
+	 * maximum time an idle observer thread sleeps without being woken up
+	 */
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private static final EventDelivery[] NO_DELIVERIES = new EventDelivery[0];
+
+	private final Function<Object, String> nodeRepresentation;
+	private final Event[] ring;
+	private final int mask;
+	/**
+	 * sequence of the event currently stored in each slot, written after the event is complete
+	 */
+	private final AtomicLongArray published;
+	/**
+	 * next sequence to claim by a producer
+	 */
+	private final AtomicLong cursor = new AtomicLong();
+	private volatile EventDelivery[] deliveries = NO_DELIVERIES;
+
+	private final LongAdder publishedEvents = new LongAdder();
+	private final LongAdder droppedEvents = new LongAdder();
+	private final LongAdder failedDeliveries = new LongAdder();
+
+	/**
+	 * a slot of the ring buffer, reused for all events stored in it
+	 */
+	private static class Event {
+		private long timestamp;
+		private MonitoringEvent event;
+		private Object sourceNode;
+		private String sourceAgentId;
+		private Object destinationNode;
+		private String destinationAgentId;
+		private String remarks;
+	}
+
+	public ObserverEventBus(Function<Object, String> nodeRepresentation) {
+		this(DEFAULT_CAPACITY, nodeRepresentation);
+	}
+
+	/**
+	 * @param capacity The number of buffered events, rounded up to a power of two
+	 * @param nodeRepresentation Derives the string representation of a node object for the observers
+	 */
+	public ObserverEventBus(int capacity, Function<Object, String> nodeRepresentation) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.nodeRepresentation = nodeRepresentation;
+		this.ring = new Event[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Event();
+		}
+		this.mask = size - 1;
+		long[] initial = new long[size];
+		Arrays.fill(initial, -1);
+		this.published = new AtomicLongArray(initial);
+	}
+
+	/**
+	 * adds an observer and starts its delivery thread
+	 *
+	 * @param observer The observer to notify
+	 * @param filter Selects the events delivered to the observer, {@code null} for all events
+	 */
+	public synchronized void addObserver(NodeObserver observer, Predicate<MonitoringEvent> filter) {
+		for (EventDelivery delivery : deliveries) {
+			if (delivery.observer == observer) {
+				return;
+			}
+		}
+		// start behind all claimed events, so no producer overwrites a slot this observer has not read
+		EventDelivery delivery = new EventDelivery(observer, filter, cursor.get());
+		EventDelivery[] updated = Arrays.copyOf(deliveries, deliveries.length + 1);
+		updated[updated.length - 1] = delivery;
+		deliveries = updated;
+		delivery.thread.start();
+	}
+
+	/**
+	 * removes an observer and stops its delivery thread, undelivered events are discarded
+	 *
+	 * @param observer The observer to remove
+	 */
+	public synchronized void removeObserver(NodeObserver observer) {
+		EventDelivery[] current = deliveries;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].observer == observer) {
+				EventDelivery[] updated = new EventDelivery[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				deliveries = updated;
+				current[i].stop();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * removes all observers and stops their delivery threads, undelivered events are discarded
+	 *
+	 * @param timeoutMs The maximum time to wait for each delivery thread to finish in milliseconds
+	 */
+	public void close(long timeoutMs) {
+		EventDelivery[] current;
+		synchronized (this) {
+			current = deliveries;
+			deliveries = NO_DELIVERIES;
+		}
+		for (EventDelivery delivery : current) {
+			delivery.stop();
+		}
+		for (EventDelivery delivery : current) {
+			if (delivery.thread == Thread.currentThread()) {
+				continue;
+			}
+			try {
+				delivery.thread.join(timeoutMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (delivery.thread.isAlive()) {
+				logger.warning("Observer " + delivery.observer + " did not stop in time");
+			}
+		}
+	}
+
+	/**
+	 * publishes an event to all observers, never blocks
+	 *
+	 * @param timestamp The time of the event
+	 * @param event The event
+	 * @param sourceNode A source node object or {@code null}
+	 * @param sourceAgentId A source agent id or {@code null}
+	 * @param destinationNode A destination node object or {@code null}
+	 * @param destinationAgentId A destination agent id or {@code null}
+	 * @param remarks Some free text note or description about this event
+	 * @return false, if the event was dropped because the buffer is full
+	 */
+	public boolean publish(long timestamp, MonitoringEvent event, Object sourceNode, String sourceAgentId,
+			Object destinationNode, String destinationAgentId, String remarks) {
+		EventDelivery[] current = deliveries;
+		if (current.length == 0) {
+			return true;
+		}
+		long sequence;
+		do {
+			sequence = cursor.get();
+			if (sequence - getMinimumSequence(current) >= ring.length) {
+				droppedEvents.increment();
+				return false;
+			}
+		} while (!cursor.compareAndSet(sequence, sequence + 1));
+		int index = (int) sequence & mask;
+		Event slot = ring[index];
+		slot.timestamp = timestamp;
+		slot.event = event;
+		slot.sourceNode = sourceNode;
+		slot.sourceAgentId = sourceAgentId;
+		slot.destinationNode = destinationNode;
+		slot.destinationAgentId = destinationAgentId;
+		slot.remarks = remarks;
+		published.set(index, sequence);
+		publishedEvents.increment();
+		for (EventDelivery delivery : current) {
+			delivery.wakeUp();
+		}
+		return true;
+	}
+
+	/**
+	 * waits until all events published so far are delivered to all observers
+	 *
+	 * @param timeoutMs The maximum time to wait in milliseconds
+	 * @return true, if all events were delivered in time
+	 */
+	public boolean flush(long timeoutMs) {
+		long target = cursor.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+		while (getMinimumSequence(deliveries) < target) {
+			if (System.nanoTime() - deadline >= 0) {
+				return false;
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return true;
+	}
+
+	private static long getMinimumSequence(EventDelivery[] current) {
+		long minimum = Long.MAX_VALUE;
+		for (EventDelivery delivery : current) {
+			minimum = Math.min(minimum, delivery.next);
+		}
+		return minimum;
+	}
+
+	/**
+	 * @return number of events published to the observers
+	 */
+	public long getPublishedEvents() {
+		return publishedEvents.sum();
+	}
+
+	/**
+	 * @return number of events dropped, because an observer fell behind by a whole buffer
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.sum();
+	}
+
+	/**
+	 * @return number of events an observer failed to handle with an exception
+	 */
+	public long getFailedDeliveries() {
+		return failedDeliveries.sum();
+	}
+
+	/**
+	 * Reads the events for one observer.
+	 */
+	private class EventDelivery implements Runnable {
+		private final NodeObserver observer;
+		private final Predicate<MonitoringEvent> filter;
+		private final Thread thread;
+		/**
+		 * next sequence to deliver, all slots before it may be reused
+		 */
+		private volatile long next;
+		private volatile boolean waiting;
+		private volatile boolean running = true;
+
+		private EventDelivery(NodeObserver observer, Predicate<MonitoringEvent> filter, long next) {
+			this.observer = observer;
+			this.filter = filter;
+			this.next = next;
+			this.thread = new Thread(this, "las2peer-observer-" + observer.getClass().getSimpleName());
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				long first = next;
+				long end = first;
+				while (end - first < MAX_BATCH_SIZE && published.get((int) end & mask) == end) {
+					end++;
+				}
+				if (end == first) {
+					idle(first);
+					continue;
+				}
+				for (long sequence = first; sequence < end; sequence++) {
+					deliver(ring[(int) sequence & mask]);
+				}
+				next = end;
+			}
+		}
+
+		private void deliver(Event slot) {
+			if (filter != null && !filter.test(slot.event)) {
+				return;
+			}
+			try {
+				observer.log(slot.timestamp, slot.event, getRepresentation(slot.sourceNode), slot.sourceAgentId,
+						getRepresentation(slot.destinationNode), slot.destinationAgentId, slot.remarks);
+			} catch (RuntimeException e) {
+				failedDeliveries.increment();
+				logger.log(Level.WARNING, "Observer " + observer + " failed to handle " + slot.event, e);
+			}
+		}
+
+		private String getRepresentation(Object node) {
+			return node == null ? null : nodeRepresentation.apply(node);
+		}
+
+		private void idle(long sequence) {
+			waiting = true;
+			// check again, a producer may have published before it saw the waiting flag
+			if (running && published.get((int) sequence & mask) != sequence) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+			waiting = false;
+		}
+
+		private void wakeUp() {
+			if (waiting) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		private void stop() {
+			running = false;
+			LockSupport.unpark(thread);
+		}
+	}
+
+}
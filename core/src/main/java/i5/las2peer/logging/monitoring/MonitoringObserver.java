@@ -1,12 +1,17 @@
 package i5.las2peer.logging.monitoring;
 
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import i5.las2peer.api.execution.ServiceInvocationException;
 import i5.las2peer.api.logging.MonitoringEvent;
@@ -35,9 +40,22 @@ public class MonitoringObserver implements NodeObserver {
 
 	public static final String DATA_PROCESSING_SERVICE = "i5.las2peer.services.mobsos.dataProcessing.MobSOSDataProcessingService";
 	private static final int RMI_TIMEOUT = 5;
-	private boolean readyForInitializing = true; // Is set to false as long as the node is not ready to initialize the
-													// monitoring agents.
-	private boolean initializedDone = false; // Used to determine, if the initialization process has finished.
+	private static final ScheduledExecutorService flushTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "las2peer-monitoring-flush");
+		thread.setDaemon(true);
+		return thread;
+	});
+	// flushing may have to initialize the agents with a blocking service call, so it must not run on the shared timer
+	private static final ExecutorService flushExecutor = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "las2peer-monitoring-send");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ScheduledFuture<?> flushTask;
+	private final AtomicBoolean flushQueued = new AtomicBoolean();
+	private volatile boolean readyForInitializing = true; // Is set to false as long as the node is not ready to
+															// initialize the monitoring agents.
+	private volatile boolean initializedDone = false; // Used to determine, if the initialization process has finished.
 	private MonitoringMessage[] monitoringMessages; // The size is determined by the constructor. Will be send at once.
 	private int messagesCount; // Counter to determine how many messages are currently stored at the messages array.
 	private MonitoringAgent sendingAgent; // The agent responsible for this observer.
@@ -46,6 +64,7 @@ public class MonitoringObserver implements NodeObserver {
 															// (currently unused though).
 	private Node registeredAt; // If we want to send messages, we need a sending node.
 	private long waitUntilSend;
+	private final AtomicLong droppedEvents = new AtomicLong(); // Messages that could not be sent.
 
 	/**
 	 * 
@@ -61,39 +80,6 @@ public class MonitoringObserver implements NodeObserver {
 	public MonitoringObserver(int messageCache, Node registeredAt) {
 		this.registeredAt = registeredAt;
 		waitUntilSend = 1000 * 10; // 10 s
-		Thread sendingThread = new Thread() {
-			@Override
-			public void run() {
-				try {
-					while (true) {
-						Thread.sleep(waitUntilSend);
-						if (messagesCount > 0) {
-							checkInit();
-							// Send messages after waitUntilSend ms
-							if (initializedDone) {
-								// Do not send old messages...
-								int counter = messagesCount;
-								while (counter < monitoringMessages.length) {
-									monitoringMessages[counter] = null;
-									counter++;
-								}
-								// reset messageCount before sending messages
-								// otherwise StackOverflow...
-								messagesCount = 0;
-								sendMessages();
-							} else {
-								messagesCount = 0;
-								System.out.println("Monitoring: Problems with initializing Agents..");
-							}
-						}
-					}
-				} catch (InterruptedException v) {
-					System.out.println(v);
-				}
-			}
-		};
-
-		sendingThread.start();
 		if (messageCache < 50) {
 			messageCache = 50; // Minimum cache to give the observer enough time to initialize before first sending
 		}
@@ -104,6 +90,67 @@ public class MonitoringObserver implements NodeObserver {
 		} catch (CryptoException | AgentOperationFailedException e) {
 			e.printStackTrace();
 		}
+		// Send messages after waitUntilSend ms, even if the cache is not full
+		flushTask = flushTimer.scheduleWithFixedDelay(this::queueFlush, waitUntilSend, waitUntilSend,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops sending the cached messages periodically. Called when the node shuts down.
+	 */
+	public void close() {
+		flushTask.cancel(false);
+	}
+
+	private void queueFlush() {
+		// at most one flush per observer is queued, so a hanging initialization does not pile up tasks
+		if (flushQueued.compareAndSet(false, true)) {
+			flushExecutor.execute(() -> {
+				try {
+					flushPending();
+				} finally {
+					flushQueued.set(false);
+				}
+			});
+		}
+	}
+
+	private synchronized void flushPending() {
+		if (messagesCount > 0) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends all cached messages, if the agents can be initialized. Otherwise the messages are dropped and counted.
+	 */
+	private void flush() {
+		checkInit();
+		if (initializedDone) {
+			sendCached();
+		} else {
+			dropCached();
+		}
+	}
+
+	private void sendCached() {
+		MonitoringMessage[] messages = Arrays.copyOf(monitoringMessages, messagesCount);
+		messagesCount = 0;
+		sendMessages(messages);
+	}
+
+	private void dropCached() {
+		long dropped = droppedEvents.addAndGet(messagesCount);
+		System.out.println("Monitoring: Problems with initializing Agents, dropped " + messagesCount + " messages ("
+				+ dropped + " in total)");
+		messagesCount = 0;
+	}
+
+	/**
+	 * @return the number of monitoring messages dropped, because the processing service was not available
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
 	}
 
 	private void checkInit() {
@@ -187,7 +234,7 @@ public class MonitoringObserver implements NodeObserver {
 	 *
 	 */
 	@Override
-	public void log(Long timestamp, MonitoringEvent event, String sourceNode, String sourceAgentId,
+	public synchronized void log(Long timestamp, MonitoringEvent event, String sourceNode, String sourceAgentId,
 			String destinationNode, String destinationAgentId, String remarks) {
 		if (sourceNode == null) {
 			return; // We do not log events without a source node into a database with different sources;-)
@@ -209,30 +256,17 @@ public class MonitoringObserver implements NodeObserver {
 				destinationNode, destinationAgentId, remarks);
 
 		if (readyToSend()) {
-			checkInit();
-			if (initializedDone) {
-				messagesCount = 0;
-				sendMessages();
-			} else {
-				messagesCount = 0;
-				System.out.println("Monitoring: Problems with initializing Agents..");
-			}
+			flush();
 		}
 
 		// We can only send our last message if the node is closing, so we will have to assume that all services are
 		// shutdown
 		// when a node is closed (seems to be a fair bet)
-		if (event == MonitoringEvent.NODE_SHUTDOWN) {
+		if (event == MonitoringEvent.NODE_SHUTDOWN && messagesCount > 0) {
 			if (initializedDone) {
-				// To remove "old" messages since they are not overwritten
-				int counter = messagesCount;
-				while (counter < monitoringMessages.length) {
-					monitoringMessages[counter] = null;
-					counter++;
-				}
-				sendMessages();
+				sendCached();
 			} else {
-				System.out.println("Monitoring: Problems with initializing Agents..");
+				dropCached();
 			}
 		}
 	}
@@ -269,10 +303,11 @@ public class MonitoringObserver implements NodeObserver {
 	 * 
 	 * Helper method that actually sends the {@link MonitoringMessage}s to the Processing Service's agent.
 	 *
+	 * @param messages The messages to send
 	 */
-	private void sendMessages() {
+	private void sendMessages(MonitoringMessage[] messages) {
 		try {
-			Message las2peerMessage = new Message(sendingAgent, receivingAgent, monitoringMessages);
+			Message las2peerMessage = new Message(sendingAgent, receivingAgent, messages);
 			// if something goes wrong after sending a message the receiving agent is marked for reinitialization
 			messageResultListener = new MessageResultListener(2000) {
 				@Override
@@ -0,0 +1,258 @@
+package i5.las2peer.p2p;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import i5.las2peer.logging.L2pLogger;
+
+/**
+ * Registry for all {@link MessageResultListener}s waiting for answers at a node.
+ *
+ * Instead of one polling thread per listener, the timeouts are tracked in a hashed timer wheel that is advanced by a
+ * single scheduler thread. Registering and cancelling a listener is O(1), expired listeners are collected in batches
+ * once per tick.
+ *
+ * The scheduler thread is started lazily with the first registration and stopped with {@link #shutdown()}.
+ */
+public class AnswerListenerRegistry {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(AnswerListenerRegistry.class);
+
+	public static final int DEFAULT_TICK_MS = 100;
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private final long tickMs;
+	private final int mask;
+	private final ConcurrentLinkedQueue<Entry>[] wheel;
+
+	private final ConcurrentHashMap<Long, Entry> listeners = new ConcurrentHashMap<>();
+
+	private final AtomicLong registeredCount = new AtomicLong();
+	private final AtomicLong answeredCount = new AtomicLong();
+	private final AtomicLong expiredCount = new AtomicLong();
+
+	private ScheduledExecutorService scheduler;
+	private volatile long lastTick;
+
+	/**
+	 * a listener registered for a message id together with its next deadline
+	 */
+	private static class Entry {
+		private final long messageId;
+		private final MessageResultListener listener;
+		private volatile long deadline;
+
+		private Entry(long messageId, MessageResultListener listener, long deadline) {
+			this.messageId = messageId;
+			this.listener = listener;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * create a registry using the default tick and wheel size
+	 */
+	public AnswerListenerRegistry() {
+		this(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * create a registry
+	 *
+	 * @param tickMs resolution of the timer wheel in milliseconds
+	 * @param wheelSize number of slots in the timer wheel, rounded up to the next power of two
+	 */
+	@SuppressWarnings("unchecked")
+	public AnswerListenerRegistry(long tickMs, int wheelSize) {
+		if (tickMs < 1) {
+			throw new IllegalArgumentException("tick has to be at least 1 ms");
+		}
+		if (wheelSize < 1) {
+			throw new IllegalArgumentException("wheel size has to be positive");
+		}
+		int size = Integer.highestOneBit(wheelSize);
+		if (size < wheelSize) {
+			size <<= 1;
+		}
+		this.tickMs = tickMs;
+		this.mask = size - 1;
+		this.wheel = new ConcurrentLinkedQueue[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	/**
+	 * Registers a listener for answers to the given message id. A listener that was registered before for the same id
+	 * is replaced.
+	 *
+	 * @param messageId A message id to register for
+	 * @param listener An answer listener
+	 */
+	public void register(long messageId, MessageResultListener listener) {
+		ensureStarted();
+		Entry entry = new Entry(messageId, listener, System.currentTimeMillis() + listener.getTimeoutTime());
+		listeners.put(messageId, entry);
+		registeredCount.incrementAndGet();
+		schedule(entry);
+	}
+
+	/**
+	 * Gets the listener registered for the given message id.
+	 *
+	 * @param messageId A message id
+	 * @return the registered listener or null, if none is registered (anymore)
+	 */
+	public MessageResultListener get(long messageId) {
+		Entry entry = listeners.get(messageId);
+		if (entry == null) {
+			return null;
+		}
+		return entry.listener;
+	}
+
+	/**
+	 * Removes the listener for the given message id, e.g. because all expected answers have arrived.
+	 *
+	 * @param messageId A message id
+	 * @return the removed listener or null, if none was registered
+	 */
+	public MessageResultListener remove(long messageId) {
+		Entry entry = listeners.remove(messageId);
+		if (entry == null) {
+			return null;
+		}
+		answeredCount.incrementAndGet();
+		return entry.listener;
+	}
+
+	/**
+	 * @return number of listeners currently waiting for answers
+	 */
+	public int getPendingCount() {
+		return listeners.size();
+	}
+
+	/**
+	 * @return total number of listeners registered since creation
+	 */
+	public long getRegisteredCount() {
+		return registeredCount.get();
+	}
+
+	/**
+	 * @return total number of listeners removed after receiving their answers
+	 */
+	public long getAnsweredCount() {
+		return answeredCount.get();
+	}
+
+	/**
+	 * @return total number of listeners removed because of a timeout
+	 */
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/**
+	 * Stops the timer thread and drops all pending listeners.
+	 */
+	public synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+		listeners.clear();
+		for (ConcurrentLinkedQueue<Entry> slot : wheel) {
+			slot.clear();
+		}
+	}
+
+	private synchronized void ensureStarted() {
+		if (scheduler != null) {
+			return;
+		}
+		lastTick = System.currentTimeMillis() / tickMs;
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "las2peer-answer-listener-timer");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(this::advance, tickMs, tickMs, TimeUnit.MILLISECONDS);
+	}
+
+	private void schedule(Entry entry) {
+		ConcurrentLinkedQueue<Entry> slot;
+		do {
+			// deadlines in the past go into the next slot to be processed
+			long tick = Math.max(entry.deadline / tickMs, lastTick + 1);
+			slot = wheel[(int) (tick & mask)];
+			slot.add(entry);
+			if (lastTick < tick) {
+				// the timer thread has not claimed this tick yet, so it will find the entry
+				return;
+			}
+			// the timer thread claimed the tick meanwhile and may have drained the slot already, if the entry is
+			// still there, schedule it again, otherwise the timer thread took it
+		} while (slot.remove(entry));
+	}
+
+	/**
+	 * executed by the timer thread once per tick, collects all due slots since the last tick
+	 */
+	void advance() {
+		long now = System.currentTimeMillis();
+		long currentTick = now / tickMs;
+		// do not walk the wheel more than once, even if the timer thread was stalled
+		long fromTick = Math.max(lastTick + 1, currentTick - mask);
+		// claim the ticks before draining their slots, so entries scheduled meanwhile go into later slots
+		lastTick = currentTick;
+		List<Entry> notDue = new ArrayList<>();
+		for (long tick = fromTick; tick <= currentTick; tick++) {
+			ConcurrentLinkedQueue<Entry> slot = wheel[(int) (tick & mask)];
+			Entry entry;
+			while ((entry = slot.poll()) != null) {
+				if (listeners.get(entry.messageId) != entry) {
+					// already answered or replaced
+					continue;
+				}
+				if (entry.deadline > now) {
+					// belongs to a later round of the wheel
+					notDue.add(entry);
+				} else {
+					try {
+						expire(entry, now);
+					} catch (Exception e) {
+						// never let a listener hook kill the timer thread
+						logger.log(Level.WARNING, "Answer listener failed on timeout", e);
+						listeners.remove(entry.messageId, entry);
+					}
+				}
+			}
+		}
+		for (Entry entry : notDue) {
+			schedule(entry);
+		}
+	}
+
+	private void expire(Entry entry, long now) {
+		MessageResultListener listener = entry.listener;
+		if (listener.checkTimeOut() || listener.isFinished()) {
+			if (listeners.remove(entry.messageId, entry)) {
+				expiredCount.incrementAndGet();
+			}
+		} else {
+			// someone is still blocked in a wait method of the listener, check again later
+			entry.deadline = now + Math.max(listener.getTimeoutTime(), tickMs);
+			schedule(entry);
+		}
+	}
+
+}
@@ -1,5 +1,6 @@
 package i5.las2peer.p2p;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.Collection;
@@ -262,6 +263,11 @@ public class LocalNode extends Node {
 			}
 
 			localNodeManager.getKnownAgents().put(agent.getIdentifier(), agentXml);
+			// all local nodes share the same storage
+			getGroupMembershipIndex().invalidate(agent.getIdentifier());
+			for (Object node : localNodeManager.getAllNodes()) {
+				((Node) node).getGroupMembershipIndex().invalidate(agent.getIdentifier());
+			}
 
 			if (agent instanceof UserAgentImpl) {
 				getUserManager().registerUserAgent((UserAgentImpl) agent);
@@ -376,6 +382,18 @@ public class LocalNode extends Node {
 		localNodeManager.getStorage().removeEnvelope(identifier);
 	}
 
+	@Override
+	public EnvelopeVersion storeStream(String identifier, InputStream content, AgentImpl author, Collection<?> readers,
+			long timeoutMs) throws EnvelopeException {
+		return localNodeManager.getStorage().storeStream(identifier, content, author, readers, timeoutMs);
+	}
+
+	@Override
+	public InputStream fetchStream(String identifier, AgentContext reader, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException {
+		return localNodeManager.getStorage().fetchStream(identifier, reader, timeoutMs);
+	}
+
 	@Override
 	public EnvelopeVersion fetchArtifact(String identifier) throws EnvelopeNotFoundException, EnvelopeException {
 		// XXX make configurable
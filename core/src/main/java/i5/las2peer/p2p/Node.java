@@ -36,18 +36,24 @@ import i5.las2peer.api.security.AgentLockedException;
 import i5.las2peer.api.security.AgentNotFoundException;
 import i5.las2peer.api.security.AgentOperationFailedException;
 import i5.las2peer.classLoaders.ClassManager;
+import i5.las2peer.classLoaders.libraries.LibraryResourceCache;
 import i5.las2peer.classLoaders.libraries.Repository;
 import i5.las2peer.classLoaders.policies.DefaultPolicy;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.MessageException;
+import i5.las2peer.communication.MessageSessionKeys;
 import i5.las2peer.communication.RMIExceptionContent;
 import i5.las2peer.communication.RMIResultContent;
 import i5.las2peer.execution.RMITask;
+import i5.las2peer.execution.ServiceExecutor;
+import i5.las2peer.execution.ServiceThread;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.logging.NodeObserver;
+import i5.las2peer.logging.ObserverEventBus;
 import i5.las2peer.logging.monitoring.MonitoringObserver;
 import i5.las2peer.p2p.NodeServiceCache.ServiceInstance;
 import i5.las2peer.persistency.EncodingFailedException;
+import i5.las2peer.persistency.EnvelopeContentCache;
 import i5.las2peer.persistency.EnvelopeVersion;
 import i5.las2peer.persistency.NodeStorageInterface;
 import i5.las2peer.security.AgentContext;
@@ -55,6 +61,7 @@ import i5.las2peer.security.AgentImpl;
 import i5.las2peer.security.AgentStorage;
 import i5.las2peer.security.BotAgent;
 import i5.las2peer.security.GroupAgentImpl;
+import i5.las2peer.security.GroupMembershipIndex;
 import i5.las2peer.security.InternalSecurityException;
 import i5.las2peer.security.Mediator;
 import i5.las2peer.security.MessageReceiver;
@@ -127,6 +134,42 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	private int nodeServiceCacheResultCount = DEFAULT_NODE_SERVICE_CACHE_RESULT_COUNT;
 
+	public static final int DEFAULT_ALIAS_CACHE_LIFETIME = ServiceAliasManager.DEFAULT_CACHE_LIFETIME;
+	/**
+	 * time in seconds resolved service alias paths are cached
+	 */
+	private int aliasCacheLifetime = DEFAULT_ALIAS_CACHE_LIFETIME;
+
+	public static final int DEFAULT_ALIAS_NEGATIVE_CACHE_LIFETIME = ServiceAliasManager.DEFAULT_NEGATIVE_CACHE_LIFETIME;
+	/**
+	 * time in seconds unknown service alias paths are cached
+	 */
+	private int aliasNegativeCacheLifetime = DEFAULT_ALIAS_NEGATIVE_CACHE_LIFETIME;
+
+	public static final boolean DEFAULT_ALIAS_CACHE_REFRESH_AHEAD = true;
+	/**
+	 * refresh cached service alias paths in the background before they expire
+	 */
+	private boolean aliasCacheRefreshAhead = DEFAULT_ALIAS_CACHE_REFRESH_AHEAD;
+
+	public static final int DEFAULT_USER_CACHE_SIZE = UserAgentManager.DEFAULT_CACHE_SIZE;
+	/**
+	 * maximum number of cached login name, email and OIDC sub mappings
+	 */
+	private int userCacheSize = DEFAULT_USER_CACHE_SIZE;
+
+	public static final int DEFAULT_USER_CACHE_LIFETIME = UserAgentManager.DEFAULT_CACHE_LIFETIME;
+	/**
+	 * time in seconds login name, email and OIDC sub mappings are cached
+	 */
+	private int userCacheLifetime = DEFAULT_USER_CACHE_LIFETIME;
+
+	public static final int DEFAULT_USER_NEGATIVE_CACHE_LIFETIME = UserAgentManager.DEFAULT_NEGATIVE_CACHE_LIFETIME;
+	/**
+	 * time in seconds unknown login names, emails and OIDC subs are cached
+	 */
+	private int userNegativeCacheLifetime = DEFAULT_USER_NEGATIVE_CACHE_LIFETIME;
+
 	public static final int DEFAULT_TIDY_UP_TIMER_INTERVAL = 60;
 	/**
 	 * frequency of the tidy up timer
@@ -139,17 +182,130 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	private int agentContextLifetime = DEFAULT_AGENT_CONTEXT_LIFETIME;
 
+	public static final int DEFAULT_ANSWER_LISTENER_TICK = 100;
+	/**
+	 * resolution in milliseconds of the timer expiring answer listeners
+	 */
+	private int answerListenerTick = DEFAULT_ANSWER_LISTENER_TICK;
+
+	public static final int DEFAULT_SERVICE_EXECUTOR_MAX_THREADS = ServiceExecutor.DEFAULT_MAX_THREADS;
+	/**
+	 * maximum number of concurrently executed calls per local service
+	 */
+	private int serviceExecutorMaxThreads = DEFAULT_SERVICE_EXECUTOR_MAX_THREADS;
+
+	public static final int DEFAULT_SERVICE_EXECUTOR_QUEUE_SIZE = ServiceExecutor.DEFAULT_QUEUE_SIZE;
+	/**
+	 * maximum number of calls per local service waiting for execution, further calls are rejected
+	 */
+	private int serviceExecutorQueueSize = DEFAULT_SERVICE_EXECUTOR_QUEUE_SIZE;
+
 	public static final int DEFAULT_INVOCATION_RETRY_COUNT = 3;
 	/**
 	 * number of retries if an RMI fails
 	 */
 	private int invocationRetryCount = DEFAULT_INVOCATION_RETRY_COUNT;
 
+	public static final boolean DEFAULT_BINARY_MESSAGE_FORMAT = true;
+	/**
+	 * send messages to other nodes in the binary wire format, if they support it
+	 */
+	private boolean binaryMessageFormat = DEFAULT_BINARY_MESSAGE_FORMAT;
+
+	public static final int DEFAULT_AGENT_CACHE_SIZE = 1000;
+	/**
+	 * maximum number of agents cached after being fetched from the network
+	 */
+	private int agentCacheSize = DEFAULT_AGENT_CACHE_SIZE;
+
+	public static final int DEFAULT_AGENT_CACHE_LIFETIME = 600;
+	/**
+	 * time in seconds fetched agents are cached
+	 */
+	private int agentCacheLifetime = DEFAULT_AGENT_CACHE_LIFETIME;
+
+	public static final int DEFAULT_AGENT_CACHE_REVALIDATION_INTERVAL = 5;
+	/**
+	 * time in seconds a cached agent is used without checking the network for a newer version
+	 */
+	private int agentCacheRevalidationInterval = DEFAULT_AGENT_CACHE_REVALIDATION_INTERVAL;
+
+	public static final int DEFAULT_GROUP_MEMBERSHIP_INDEX_SIZE = GroupMembershipIndex.DEFAULT_CACHE_SIZE;
+	/**
+	 * maximum number of groups in the transitive group membership index
+	 */
+	private int groupMembershipIndexSize = DEFAULT_GROUP_MEMBERSHIP_INDEX_SIZE;
+
+	public static final int DEFAULT_GROUP_MEMBERSHIP_INDEX_LIFETIME = GroupMembershipIndex.DEFAULT_LIFETIME;
+	/**
+	 * time in seconds groups are kept in the transitive group membership index
+	 */
+	private int groupMembershipIndexLifetime = DEFAULT_GROUP_MEMBERSHIP_INDEX_LIFETIME;
+
+	public static final boolean DEFAULT_MESSAGE_SESSION_KEYS = false;
+	/**
+	 * encrypt RMI messages with session keys shared by sender and recipient instead of a new key per message
+	 */
+	private boolean messageSessionKeys = DEFAULT_MESSAGE_SESSION_KEYS;
+
+	public static final int DEFAULT_MESSAGE_SESSION_KEY_LIFETIME = MessageSessionKeys.DEFAULT_LIFETIME;
+	/**
+	 * time in seconds a message session key is used
+	 */
+	private int messageSessionKeyLifetime = DEFAULT_MESSAGE_SESSION_KEY_LIFETIME;
+
+	public static final int DEFAULT_MESSAGE_SESSION_KEY_MAX_USES = MessageSessionKeys.DEFAULT_MAX_USES;
+	/**
+	 * maximum number of messages sent with the same session key
+	 */
+	private int messageSessionKeyMaxUses = DEFAULT_MESSAGE_SESSION_KEY_MAX_USES;
+
+	public static final long DEFAULT_ENVELOPE_CONTENT_CACHE_SIZE = EnvelopeContentCache.DEFAULT_MAX_BYTES;
+	/**
+	 * maximum size in bytes of decrypted envelope contents cached for their readers
+	 */
+	private long envelopeContentCacheSize = DEFAULT_ENVELOPE_CONTENT_CACHE_SIZE;
+
+	public static final int DEFAULT_ENVELOPE_CONTENT_CACHE_LIFETIME = EnvelopeContentCache.DEFAULT_LIFETIME;
+	/**
+	 * time in seconds a decrypted envelope content is cached
+	 */
+	private int envelopeContentCacheLifetime = DEFAULT_ENVELOPE_CONTENT_CACHE_LIFETIME;
+
+	public static final long DEFAULT_LIBRARY_CACHE_SIZE = LibraryResourceCache.DEFAULT_MAX_BYTES;
+	/**
+	 * maximum size in bytes of network library resources cached on disk, only used with persistent storage
+	 */
+	private long libraryCacheSize = DEFAULT_LIBRARY_CACHE_SIZE;
+
+	public static final boolean DEFAULT_SERVICE_CLASS_PRELOADING = false;
+	/**
+	 * load all classes of a service when it is started instead of on their first use
+	 */
+	private boolean serviceClassPreloading = DEFAULT_SERVICE_CLASS_PRELOADING;
+
+	public static final boolean DEFAULT_CONTENT_DEFINED_CHUNKING = false;
+	/**
+	 * store envelopes in content defined chunks shared between versions instead of parts, all nodes of a network must
+	 * support this
+	 */
+	private boolean contentDefinedChunking = DEFAULT_CONTENT_DEFINED_CHUNKING;
+
 	/**
 	 * observers to be notified of all occurring events
 	 */
 	private HashSet<NodeObserver> observers = new HashSet<>();
 
+	/**
+	 * time in milliseconds to wait for the observers to handle pending events on shutdown
+	 */
+	private static final long OBSERVER_FLUSH_TIMEOUT = 5000;
+
+	/**
+	 * delivers events to the observers asynchronously
+	 */
+	private final ObserverEventBus observerEvents = new ObserverEventBus(this::getNodeRepresentation);
+
 	/**
 	 * contexts for local method invocation
 	 */
@@ -186,7 +342,10 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 
 	private ClassManager classManager = null;
 
-	private Hashtable<Long, MessageResultListener> htAnswerListeners = new Hashtable<>();
+	/**
+	 * listeners waiting for answers to sent messages, including their timeouts
+	 */
+	private final AnswerListenerRegistry answerListeners;
 
 	private static final String DEFAULT_INFORMATION_FILE = "etc/nodeInfo.xml";
 	private String sInformationFileName = DEFAULT_INFORMATION_FILE;
@@ -207,6 +366,21 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	private ServiceAliasManager aliasManager;
 
+	/**
+	 * transitive members of group agents
+	 */
+	private GroupMembershipIndex membershipIndex;
+
+	/**
+	 * session keys of messages sent and received by this node
+	 */
+	private MessageSessionKeys sessionKeys;
+
+	/**
+	 * decrypted envelope contents read by agents of this node
+	 */
+	private EnvelopeContentCache envelopeContentCache;
+
 	private Date startTime;
 
 	/**
@@ -269,9 +443,15 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		}
 
 		nodeServiceCache = new NodeServiceCache(this, nodeServiceCacheLifetime, nodeServiceCacheResultCount);
+		answerListeners = new AnswerListenerRegistry(answerListenerTick, AnswerListenerRegistry.DEFAULT_WHEEL_SIZE);
 
-		userManager = new UserAgentManager(this);
-		aliasManager = new ServiceAliasManager(this);
+		userManager = new UserAgentManager(this, userCacheSize, userCacheLifetime, userNegativeCacheLifetime);
+		aliasManager = new ServiceAliasManager(this, aliasCacheLifetime, aliasNegativeCacheLifetime,
+				aliasCacheRefreshAhead);
+		membershipIndex = new GroupMembershipIndex(this, groupMembershipIndexSize, groupMembershipIndexLifetime);
+		sessionKeys = new MessageSessionKeys(MessageSessionKeys.DEFAULT_CACHE_SIZE, messageSessionKeyLifetime,
+				messageSessionKeyMaxUses);
+		envelopeContentCache = new EnvelopeContentCache(envelopeContentCacheSize, envelopeContentCacheLifetime);
 
 		this.runtime = Runtime.getRuntime();
 	}
@@ -305,6 +485,13 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	public void addObserver(NodeObserver observer) {
 		observers.add(observer);
+		if (observer == serviceLogger) {
+			// custom logger shall only log service messages
+			observerEvents.addObserver(observer,
+					event -> Math.abs(event.getCode()) >= 7500 && Math.abs(event.getCode()) < 7600);
+		} else {
+			observerEvents.addObserver(observer, null);
+		}
 	}
 
 	/**
@@ -314,6 +501,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	public void removeObserver(NodeObserver observer) {
 		observers.remove(observer);
+		observerEvents.removeObserver(observer);
 	}
 
 	/**
@@ -400,7 +588,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	}
 
 	/**
-	 * Logs an event to all observers.
+	 * Logs an event to all observers. The observers are notified asynchronously, node representations are derived
+	 * when the event is delivered.
 	 * 
 	 * @param event The event for this notification.
 	 * @param sourceNode A source node for this event
@@ -411,17 +600,17 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	public void observerNotice(MonitoringEvent event, Object sourceNode, String sourceAgentId, Object destinationNode,
 			String destinationAgentId, String remarks) {
-		long timestamp = new Date().getTime();
-		String sourceNodeRepresentation = getNodeRepresentation(sourceNode);
-		String destinationNodeRepresentation = getNodeRepresentation(destinationNode);
-		for (NodeObserver ob : observers) {
-			if (ob == serviceLogger && (Math.abs(event.getCode()) < 7500 || Math.abs(event.getCode()) >= 7600)) {
-				// custom logger shall only log service messages
-				continue;
-			}
-			ob.log(timestamp, event, sourceNodeRepresentation, sourceAgentId, destinationNodeRepresentation,
-					destinationAgentId, remarks);
-		}
+		observerEvents.publish(System.currentTimeMillis(), event, sourceNode, sourceAgentId, destinationNode,
+				destinationAgentId, remarks);
+	}
+
+	/**
+	 * Gets the event bus notifying the observers of this node.
+	 * 
+	 * @return the observer event bus
+	 */
+	public ObserverEventBus getObserverEventBus() {
+		return observerEvents;
 	}
 
 	/**
@@ -576,6 +765,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	public synchronized void shutDown() {
 		stopTidyUpTimer();
+		answerListeners.shutdown();
 
 		startTime = null;
 
@@ -585,15 +775,24 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 			htRegisteredReceivers.get(id).notifyUnregister();
 		}
 		observerNotice(MonitoringEvent.NODE_SHUTDOWN, this.getNodeId(), null);
+		if (!observerEvents.flush(OBSERVER_FLUSH_TIMEOUT)) {
+			logger.warning("Observers did not handle all events before shutdown");
+		}
+		// stop the delivery threads, they would otherwise keep this node reachable
+		observerEvents.close(OBSERVER_FLUSH_TIMEOUT);
+		boolean monitored = false;
 		for (NodeObserver observer : observers) {
 			if (observer instanceof MonitoringObserver) {
-				try {
-					System.out.println("Wait a little to give the observer time to send its last message...");
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				break;
+				((MonitoringObserver) observer).close();
+				monitored = true;
+			}
+		}
+		if (monitored) {
+			try {
+				System.out.println("Wait a little to give the observer time to send its last message...");
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
 			}
 		}
 		htRegisteredReceivers = new Hashtable<>();
@@ -1208,6 +1407,45 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		return aliasManager;
 	}
 
+	/**
+	 * Gets the index of transitive group members shared by all agent contexts of this node.
+	 * 
+	 * @return the group membership index
+	 */
+	public GroupMembershipIndex getGroupMembershipIndex() {
+		return membershipIndex;
+	}
+
+	/**
+	 * Gets the session keys of messages sent and received by this node. Received messages with session keys are
+	 * always accepted, sending RMI messages with session keys has to be enabled.
+	 * 
+	 * @return the message session keys
+	 */
+	public MessageSessionKeys getMessageSessionKeys() {
+		return sessionKeys;
+	}
+
+	/**
+	 * Checks, whether the given node is known to accept messages encrypted with session keys. Nodes of older versions
+	 * can not open them, so they are only sent to nodes that advertised support for them.
+	 * 
+	 * @param nodeId A node id
+	 * @return true, if messages to this node may be encrypted with session keys
+	 */
+	protected boolean isSessionKeysAccepted(Object nodeId) {
+		return nodeId != null;
+	}
+
+	/**
+	 * Gets the cache of decrypted envelope contents shared by all agent contexts of this node.
+	 * 
+	 * @return the envelope content cache
+	 */
+	public EnvelopeContentCache getEnvelopeContentCache() {
+		return envelopeContentCache;
+	}
+
 	/**
 	 * Gets an currently running agent executing the given service.
 	 * 
@@ -1416,7 +1654,11 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 			} else {
 				msg = new RMITask(serviceAgent.getServiceNameVersion(), method, parameters);
 			}
-			Message rmiMessage = new Message(executing, serviceAgent, msg);
+			boolean useSessionKeys = messageSessionKeys && isSessionKeysAccepted(nodeId);
+			Message rmiMessage = new Message(executing, serviceAgent, msg, Message.DEFAULT_TIMEOUT,
+					useSessionKeys ? sessionKeys : null);
+			// the calling service waits for the answer, so the recipient must not queue it behind other calls
+			rmiMessage.setNested(ServiceThread.isInServiceCall());
 
 			if (this instanceof LocalNode) {
 				rmiMessage.setSendingNodeId((Long) getNodeId());
@@ -1519,30 +1761,16 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		if (listener == null) {
 			return;
 		}
-		htAnswerListeners.put(messageId, listener);
-		// Thread to check whether a listener reaches timeout and needs to be removed from the table
-		new Thread() {
-		      public void run(){
-		    	  	long listenerId =  messageId;
-		    	  	long sleepTime = listener.getTimeoutTime();
-			        while(!htAnswerListeners.get(listenerId).checkTimeOut()) {			        	
-				        try {
-							Thread.sleep(sleepTime);		
-						} catch (InterruptedException e) {
-							// TODO Auto-generated catch block
-							System.out.println("Thread interupted because of "+e );
-							e.printStackTrace();
-						}
-				        if(htAnswerListeners.get(listenerId) == null) {
-							this.interrupt();
-							break;
-						}
-			        }
-			        if(!this.isInterrupted()) {
-			        	htAnswerListeners.remove(listenerId);
-			        }
-		        }
-		   }.start();
+		answerListeners.register(messageId, listener);
+	}
+
+	/**
+	 * Gets the registry of all listeners waiting for answers at this node, e.g. for monitoring purposes.
+	 * 
+	 * @return the answer listener registry of this node
+	 */
+	public AnswerListenerRegistry getAnswerListenerRegistry() {
+		return answerListeners;
 	}
 
 	/**
@@ -1559,7 +1787,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		observerNotice(MonitoringEvent.MESSAGE_RECEIVED_ANSWER, answer.getSendingNodeId(), answer.getSenderId(),
 				this.getNodeId(), answer.getRecipientId(), "" + answer.getResponseToId());
 
-		MessageResultListener listener = htAnswerListeners.get(answer.getResponseToId());
+		MessageResultListener listener = answerListeners.get(answer.getResponseToId());
 		if (listener == null) {
 			System.out.println("Did not find corresponding observer!");
 			return false;
@@ -1567,8 +1795,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		
 		listener.collectAnswer(answer);
 		// Remove listener from list if no more messages are expected
-		if(listener.getNumberOfExpectedResults() == listener.getNumberOfResults()) {
-			htAnswerListeners.remove(answer.getResponseToId());
+		if (listener.getNumberOfExpectedResults() == listener.getNumberOfResults()) {
+			answerListeners.remove(answer.getResponseToId());
 		}
 		return true;
 	}
@@ -1749,6 +1977,97 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		this.cpuLoadThreshold = cpuLoadThreshold;
 	}
 
+	/**
+	 * @return maximum number of concurrently executed calls per local service
+	 */
+	public int getServiceExecutorMaxThreads() {
+		return serviceExecutorMaxThreads;
+	}
+
+	/**
+	 * @return maximum number of calls per local service waiting for execution
+	 */
+	public int getServiceExecutorQueueSize() {
+		return serviceExecutorQueueSize;
+	}
+
+	/**
+	 * @return true, if messages may be sent to other nodes in the binary wire format
+	 */
+	public boolean isBinaryMessageFormat() {
+		return binaryMessageFormat;
+	}
+
+	/**
+	 * @return maximum number of agents cached after being fetched from the network
+	 */
+	public int getAgentCacheSize() {
+		return agentCacheSize;
+	}
+
+	/**
+	 * @return time in seconds fetched agents are cached
+	 */
+	public int getAgentCacheLifetime() {
+		return agentCacheLifetime;
+	}
+
+	/**
+	 * @return time in seconds a cached agent is used without checking the network for a newer version
+	 */
+	public int getAgentCacheRevalidationInterval() {
+		return agentCacheRevalidationInterval;
+	}
+
+	/**
+	 * @return true, if RMI messages to nodes accepting them are encrypted with session keys
+	 */
+	public boolean isMessageSessionKeys() {
+		return messageSessionKeys;
+	}
+
+	/**
+	 * @param messageSessionKeys true, to encrypt RMI messages with session keys
+	 */
+	public void setMessageSessionKeys(boolean messageSessionKeys) {
+		this.messageSessionKeys = messageSessionKeys;
+	}
+
+	/**
+	 * @return maximum size in bytes of network library resources cached on disk, 0 disables the cache
+	 */
+	public long getLibraryCacheSize() {
+		return libraryCacheSize;
+	}
+
+	/**
+	 * @return true, if all classes of a service are loaded when it is started
+	 */
+	public boolean isServiceClassPreloading() {
+		return serviceClassPreloading;
+	}
+
+	/**
+	 * @param serviceClassPreloading true, to load all classes of a service when it is started
+	 */
+	public void setServiceClassPreloading(boolean serviceClassPreloading) {
+		this.serviceClassPreloading = serviceClassPreloading;
+	}
+
+	/**
+	 * @return true, if envelopes are stored in content defined chunks shared between versions
+	 */
+	public boolean isContentDefinedChunking() {
+		return contentDefinedChunking;
+	}
+
+	/**
+	 * @param contentDefinedChunking true, to store envelopes in content defined chunks shared between versions
+	 */
+	public void setContentDefinedChunking(boolean contentDefinedChunking) {
+		this.contentDefinedChunking = contentDefinedChunking;
+	}
+
 	/**
 	 * Gets the approximate RAM load of the JVM the Node is running on.
 	 * 
@@ -4,10 +4,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.PublicKey;
 import java.util.Arrays;
 import java.util.Collection;
@@ -17,6 +20,7 @@ import java.util.Properties;
 import java.util.Vector;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import i5.las2peer.api.logging.MonitoringEvent;
@@ -28,6 +32,7 @@ import i5.las2peer.api.security.AgentLockedException;
 import i5.las2peer.api.security.AgentNotFoundException;
 import i5.las2peer.api.security.AnonymousAgent;
 import i5.las2peer.classLoaders.ClassManager;
+import i5.las2peer.classLoaders.libraries.LibraryResourceCache;
 import i5.las2peer.classLoaders.libraries.SharedStorageRepository;
 import i5.las2peer.communication.Message;
 import i5.las2peer.logging.L2pLogger;
@@ -50,6 +55,7 @@ import i5.las2peer.security.UserAgentImpl;
 import i5.las2peer.serialization.MalformedXMLException;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.ExpiringCache;
 import i5.las2peer.tools.SimpleTools;
 import rice.environment.Environment;
 import rice.p2p.commonapi.NodeHandle;
@@ -95,7 +101,25 @@ public class PastryNodeImpl extends Node {
 	private NodeApplication application;
 	private SharedStorage pastStorage;
 	private String storageDir; // null = default chosen by SharedStorage
+	private LibraryResourceCache libraryCache; // null = no disk cache
 	private String nodeIdSeed;
+	private final ExpiringCache<String, CachedAgent> agentCache;
+	private final AtomicLong agentCacheGeneration = new AtomicLong();
+
+	/**
+	 * a locked agent fetched from the network together with the envelope version it was read from
+	 */
+	private static class CachedAgent {
+		private final AgentImpl agent;
+		private final long version;
+		private volatile long validatedAt;
+
+		private CachedAgent(AgentImpl agent, long version) {
+			this.agent = agent;
+			this.version = version;
+			this.validatedAt = System.currentTimeMillis();
+		}
+	}
 
 	/**
 	 * This constructor is mainly used by the {@link i5.las2peer.testing.TestSuite}, uses a random system defined port
@@ -146,6 +170,7 @@ public class PastryNodeImpl extends Node {
 		this.storageMode = storageMode;
 		this.storageDir = storageDir;
 		this.nodeIdSeed = nodeIdSeed != null ? Long.toString(nodeIdSeed) : null;
+		this.agentCache = new ExpiringCache<>(getAgentCacheSize());
 		this.setStatus(NodeStatus.CONFIGURED);
 	}
 
@@ -208,9 +233,24 @@ public class PastryNodeImpl extends Node {
 		threadpool = Executors.newCachedThreadPool();
 		application = new NodeApplication(this);
 		pastStorage = new SharedStorage(pastryNode, storageMode, threadpool, storageDir);
+		pastStorage.setContentDefinedChunking(isContentDefinedChunking());
+		setupLibraryCache();
 		setupRepository();
 	}
 
+	/** Open the disk cache for network library resources, which is kept together with the persistent storage */
+	private void setupLibraryCache() {
+		if (storageMode != STORAGE_MODE.FILESYSTEM || getLibraryCacheSize() <= 0) {
+			return;
+		}
+		Path directory = Paths.get(pastStorage.getStorageRootDir() + "libraries_" + pastryNode.getId().toStringFull());
+		try {
+			libraryCache = new LibraryResourceCache(directory, getLibraryCacheSize());
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not open library cache in " + directory, e);
+		}
+	}
+
 	/** Add past storage as network repository */
 	protected void setupRepository() {
 		getBaseClassLoader().addRepository(new SharedStorageRepository(this));
@@ -367,6 +407,9 @@ public class PastryNodeImpl extends Node {
 			// destroy pending jobs first, because they miss the node the most
 			threadpool.shutdownNow();
 		}
+		if (application != null) {
+			application.getMessageDispatcher().shutdown();
+		}
 		if (pastryNode != null) {
 			pastryNode.destroy();
 			pastryNode = null;
@@ -440,7 +483,13 @@ public class PastryNodeImpl extends Node {
 		registerAnswerListener(message.getId(), listener);
 
 		try {
-			application.sendMessage(new MessageEnvelope(pastryNode.getLocalHandle(), message), (NodeHandle) atNodeId);
+			boolean binary = isBinaryMessageFormat() && application.isBinaryAccepted((NodeHandle) atNodeId);
+			application.sendMessage(new MessageEnvelope(pastryNode.getLocalHandle(), message, binary),
+					(NodeHandle) atNodeId);
+		} catch (SerializationException e) {
+			logger.log(Level.SEVERE, "Can't create binary message", e);
+			observerNotice(MonitoringEvent.MESSAGE_FAILED, pastryNode, message.getSenderId(), atNodeId,
+					message.getRecipientId(), "Serialization exception!");
 		} catch (MalformedXMLException e) {
 			logger.log(Level.SEVERE, "Can't read message XML", e);
 			observerNotice(MonitoringEvent.MESSAGE_FAILED, pastryNode, message.getSenderId(), atNodeId,
@@ -448,6 +497,11 @@ public class PastryNodeImpl extends Node {
 		}
 	}
 
+	@Override
+	protected boolean isSessionKeysAccepted(Object nodeId) {
+		return nodeId instanceof NodeHandle && application.isSessionKeysAccepted((NodeHandle) nodeId);
+	}
+
 	/**
 	 * @deprecated Use {@link #fetchEnvelope(String)} instead
 	 */
@@ -501,28 +555,94 @@ public class PastryNodeImpl extends Node {
 
 	@Override
 	public AgentImpl getAgent(String id) throws AgentNotFoundException, AgentException {
-		// no caching here, because agents may have changed in the network
 		observerNotice(MonitoringEvent.AGENT_GET_STARTED, pastryNode, id, null, (String) null, "");
 		try {
 			AgentImpl agentFromNet = null;
 			if (id.equalsIgnoreCase(AnonymousAgent.IDENTIFIER)) {
 				agentFromNet = AnonymousAgentImpl.getInstance();
 			} else {
-				EnvelopeVersion agentEnvelope = pastStorage.fetchEnvelope(EnvelopeVersion.getAgentIdentifier(id),
-						AGENT_GET_TIMEOUT);
-				agentFromNet = AgentImpl.createFromXml((String) agentEnvelope.getContent());
+				agentFromNet = fetchAgent(id);
 			}
 			observerNotice(MonitoringEvent.AGENT_GET_SUCCESS, pastryNode, id, null, (String) null, "");
 			return agentFromNet;
 		} catch (EnvelopeNotFoundException e) {
+			agentCache.remove(id);
 			observerNotice(MonitoringEvent.AGENT_GET_FAILED, pastryNode, id, null, (String) null, "");
 			throw new AgentNotFoundException("Agent " + id + " not found in storage", e);
-		} catch (EnvelopeException | MalformedXMLException | SerializationException | CryptoException e) {
+		} catch (EnvelopeException | MalformedXMLException | SerializationException | CryptoException
+				| CloneNotSupportedException e) {
 			observerNotice(MonitoringEvent.AGENT_GET_FAILED, pastryNode, id, null, (String) null, "");
 			throw new AgentException("Unable to retrieve Agent " + id + " from past storage", e);
 		}
 	}
 
+	/**
+	 * Fetches an agent from the network. Parsed agents are cached per envelope version. Since agents may have changed
+	 * in the network, a cached agent is only used without asking the network during the revalidation interval. After
+	 * that only the latest envelope version is looked up, which is much cheaper than fetching and parsing the agent
+	 * again.
+	 * 
+	 * @param id An agent id
+	 * @return a locked copy of the agent, that may be changed by the caller
+	 * @throws EnvelopeNotFoundException If the agent is not in the network
+	 * @throws EnvelopeException If fetching the agent envelope failed
+	 * @throws MalformedXMLException If the agent could not be parsed
+	 * @throws SerializationException If the agent could not be parsed
+	 * @throws CryptoException If the agent could not be parsed
+	 * @throws CloneNotSupportedException If the agent could not be copied
+	 */
+	private AgentImpl fetchAgent(String id) throws EnvelopeNotFoundException, EnvelopeException, MalformedXMLException,
+			SerializationException, CryptoException, CloneNotSupportedException {
+		String identifier = EnvelopeVersion.getAgentIdentifier(id);
+		long generation = agentCacheGeneration.get();
+		long version = EnvelopeVersion.LATEST_VERSION;
+		CachedAgent cached = agentCache.get(id);
+		if (cached != null) {
+			long now = System.currentTimeMillis();
+			if (now - cached.validatedAt < getAgentCacheRevalidationInterval() * 1000L) {
+				return cached.agent.cloneLocked();
+			}
+			version = pastStorage.fetchLatestVersion(identifier, AGENT_GET_TIMEOUT);
+			if (version == cached.version) {
+				cached.validatedAt = now;
+				return cached.agent.cloneLocked();
+			}
+			getGroupMembershipIndex().invalidate(id);
+		}
+		EnvelopeVersion agentEnvelope = pastStorage.fetchEnvelope(identifier, version, AGENT_GET_TIMEOUT);
+		AgentImpl agent = AgentImpl.createFromXml((String) agentEnvelope.getContent());
+		synchronized (agentCache) {
+			// skip caching, if an agent was stored meanwhile, because this one might be outdated already
+			if (generation == agentCacheGeneration.get()) {
+				agentCache.put(id, new CachedAgent(agent.cloneLocked(), agentEnvelope.getVersion()),
+						getAgentCacheLifetime() * 1000L);
+			}
+		}
+		return agent;
+	}
+
+	/**
+	 * drops an agent from the cache of agents fetched from the network and from the group membership index
+	 * 
+	 * @param id An agent id
+	 */
+	private void invalidateCachedAgent(String id) {
+		synchronized (agentCache) {
+			agentCacheGeneration.incrementAndGet();
+			agentCache.remove(id);
+		}
+		getGroupMembershipIndex().invalidate(id);
+	}
+
+	/**
+	 * provides access to the cache of agents fetched from the network, mostly for monitoring purposes
+	 * 
+	 * @return the agent cache of this node
+	 */
+	public ExpiringCache<String, ?> getAgentCache() {
+		return agentCache;
+	}
+
 	@Override
 	public void storeAgent(AgentImpl agent) throws AgentException {
 		if (agent.isLocked()) {
@@ -545,6 +665,7 @@ public class PastryNodeImpl extends Node {
 						agent.toXmlString());
 			}
 			pastStorage.storeEnvelope(agentEnvelope, agent, AGENT_STORE_TIMEOUT);
+			invalidateCachedAgent(agent.getIdentifier());
 			if (agent instanceof UserAgentImpl) {
 				try {
 					getUserManager().registerUserAgent((UserAgentImpl) agent);
@@ -623,6 +744,24 @@ public class PastryNodeImpl extends Node {
 		return pastStorage.getLocalMaxSize();
 	}
 
+	/**
+	 * @return number of content defined chunks this node inserted into the network
+	 */
+	public long getInsertedChunkCount() {
+		if (pastStorage == null) {
+			throw new IllegalStateException("Storage not yet initialized");
+		}
+		return pastStorage.getInsertedChunkCount();
+	}
+
+	@Override
+	public void setContentDefinedChunking(boolean contentDefinedChunking) {
+		super.setContentDefinedChunking(contentDefinedChunking);
+		if (pastStorage != null) {
+			pastStorage.setContentDefinedChunking(contentDefinedChunking);
+		}
+	}
+
 	@Override
 	public void storeEnvelope(EnvelopeVersion envelope, AgentImpl author) throws EnvelopeException {
 		storeEnvelope(envelope, author, ARTIFACT_STORE_TIMEOUT);
@@ -762,6 +901,39 @@ public class PastryNodeImpl extends Node {
 		pastStorage.removeEnvelope(identifier);
 	}
 
+	@Override
+	public EnvelopeVersion storeStream(String identifier, InputStream content, AgentImpl author, Collection<?> readers,
+			long timeoutMs) throws EnvelopeException {
+		EnvelopeVersion envelope;
+		try {
+			envelope = pastStorage.storeStream(identifier, content, author, readers, timeoutMs);
+		} catch (EnvelopeException e) {
+			observerNotice(MonitoringEvent.ARTIFACT_UPLOAD_FAILED, pastryNode,
+					"Storage error for Artifact " + identifier);
+			throw e; // transparent exception forwarding
+		}
+		observerNotice(MonitoringEvent.ARTIFACT_ADDED, pastryNode, identifier);
+		return envelope;
+	}
+
+	@Override
+	public InputStream fetchStream(String identifier, AgentContext reader, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException {
+		if (pastStorage == null) {
+			throw new IllegalStateException(
+					"Past storage not initialized! You can fetch artifacts only from running nodes!");
+		}
+		observerNotice(MonitoringEvent.ARTIFACT_FETCH_STARTED, pastryNode, identifier);
+		try {
+			InputStream stream = pastStorage.fetchStream(identifier, reader, timeoutMs);
+			observerNotice(MonitoringEvent.ARTIFACT_RECEIVED, pastryNode, identifier);
+			return stream;
+		} catch (EnvelopeException e) {
+			observerNotice(MonitoringEvent.ARTIFACT_FETCH_FAILED, pastryNode, identifier);
+			throw e; // transparent exception forwarding
+		}
+	}
+
 	public void storeHashedContentAsync(byte[] content, StorageStoreResultHandler resultHandler,
 			StorageExceptionHandler exceptionHandler) {
 		pastStorage.storeHashedContentAsync(content, resultHandler, exceptionHandler);
@@ -780,6 +952,13 @@ public class PastryNodeImpl extends Node {
 		pastStorage.fetchHashedContentAsync(hash, artifactHandler, exceptionHandler);
 	}
 
+	/**
+	 * @return the disk cache for network library resources or {@code null}, if there is none
+	 */
+	public LibraryResourceCache getLibraryCache() {
+		return libraryCache;
+	}
+
 	public byte[] fetchHashedContent(byte[] hash) throws EnvelopeException {
 		return fetchHashedContent(hash, HASHED_FETCH_TIMEOUT);
 	}
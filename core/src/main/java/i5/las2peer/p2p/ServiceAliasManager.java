@@ -3,6 +3,12 @@ package i5.las2peer.p2p;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.api.persistency.EnvelopeNotFoundException;
@@ -16,6 +22,12 @@ import i5.las2peer.tools.CryptoException;
 /**
  * Responsible for mapping service aliases to service names and resolving paths to service names.
  *
+ * Resolved path levels are cached in a prefix trie, so resolving the path of a request usually does not need any
+ * network lookup. Found entries are kept for the cache lifetime, missing entries only for the (shorter) negative cache
+ * lifetime. Missing entries are kept apart from the trie and bounded on their own, so lookups of random paths cannot
+ * push out the found ones. With refresh-ahead enabled, entries close to their expiration are refreshed in the
+ * background while the cached value is still served.
+ *
  */
 public class ServiceAliasManager {
 
@@ -24,6 +36,23 @@ public class ServiceAliasManager {
 	private static final String SEPERATOR = "/";
 	private static final String BLANK = "BLANK";
 
+	public static final int DEFAULT_CACHE_LIFETIME = 60;
+	public static final int DEFAULT_NEGATIVE_CACHE_LIFETIME = 5;
+	private static final double REFRESH_AHEAD_RATIO = 0.75;
+	private static final int MAX_CACHE_SIZE = 10000;
+	private static final int MAX_NEGATIVE_CACHE_SIZE = 10000;
+	private static final int REFRESH_THREADS = 2;
+
+	/**
+	 * refreshes cached entries in the background, the fetches block on the network, so they must not use a pool
+	 * meant for computations
+	 */
+	private static final ExecutorService refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREADS, r -> {
+		Thread thread = new Thread(r, "las2peer-alias-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	public class AliasResolveResponse {
 		String serviceName;
 		int numMatchedParts;
@@ -42,10 +71,56 @@ public class ServiceAliasManager {
 		}
 	}
 
+	/**
+	 * one path level in the resolution cache
+	 */
+	private static class CacheNode {
+		private final ConcurrentHashMap<String, CacheNode> children = new ConcurrentHashMap<>();
+		private volatile CacheEntry entry;
+	}
+
+	/**
+	 * a cached alias entry
+	 */
+	private static class CacheEntry {
+		private final String value;
+		private final long timestamp = System.currentTimeMillis();
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private CacheEntry(String value) {
+			this.value = value;
+		}
+	}
+
 	private Node node;
 
+	private final long cacheLifetimeMs;
+	private final long negativeCacheLifetimeMs;
+	private final boolean refreshAhead;
+
+	private volatile CacheNode cacheRoot = new CacheNode();
+	private final AtomicInteger cacheSize = new AtomicInteger();
+	/** keys of missing entries with the time they were found missing */
+	private final ConcurrentHashMap<String, Long> negativeCache = new ConcurrentHashMap<>();
+	private final AtomicLong cacheGeneration = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+
 	public ServiceAliasManager(Node node) {
+		this(node, DEFAULT_CACHE_LIFETIME, DEFAULT_NEGATIVE_CACHE_LIFETIME, true);
+	}
+
+	/**
+	 * @param node the node to store and fetch aliases with
+	 * @param cacheLifetime time in seconds resolved path levels are cached
+	 * @param negativeCacheLifetime time in seconds missing path levels are cached
+	 * @param refreshAhead true, if cached entries should be refreshed in the background before they expire
+	 */
+	public ServiceAliasManager(Node node, int cacheLifetime, int negativeCacheLifetime, boolean refreshAhead) {
 		this.node = node;
+		this.cacheLifetimeMs = cacheLifetime * 1000L;
+		this.negativeCacheLifetimeMs = negativeCacheLifetime * 1000L;
+		this.refreshAhead = refreshAhead;
 	}
 
 	/**
@@ -89,43 +164,50 @@ public class ServiceAliasManager {
 			// alias can be registered
 		}
 
-		// register prefixes as BLANK
-		int level = 0;
-		String currentKey = null;
-		while (level < split.size() - 1) {
-			// construct key
-			if (currentKey == null) {
-				currentKey = split.get(level);
-			} else {
-				currentKey += SEPERATOR + split.get(level);
-			}
-
-			String currentEntry = null;
-			try {
-				currentEntry = getEntry(currentKey);
-			} catch (EnvelopeException | CryptoException | AgentAccessDeniedException | SerializationException e) {
-			}
+		// prefixes written before a failure are visible to other lookups as well, so the cache is invalidated
+		// however the registration ends
+		try {
+			// register prefixes as BLANK
+			int level = 0;
+			String currentKey = null;
+			while (level < split.size() - 1) {
+				// construct key
+				if (currentKey == null) {
+					currentKey = split.get(level);
+				} else {
+					currentKey += SEPERATOR + split.get(level);
+				}
 
-			if (currentEntry != null && !currentEntry.equals(BLANK)) {
-				throw new AliasConflictException("A prefix of the given alias is already registered.");
-			} else if (currentEntry == null) {
+				String currentEntry = null;
 				try {
-					createEntry(agent, currentKey, BLANK);
-				} catch (IllegalArgumentException | EnvelopeException | SerializationException | CryptoException e) {
-					throw new AliasConflictException("Storage error.", e);
+					currentEntry = getEntry(currentKey);
+				} catch (EnvelopeException | CryptoException | AgentAccessDeniedException | SerializationException e) {
 				}
-			}
-			// else: there is already a BLANK, nothing to do
 
-			// in the case of BLANK go one level deeper
-			level++;
-		}
+				if (currentEntry != null && !currentEntry.equals(BLANK)) {
+					throw new AliasConflictException("A prefix of the given alias is already registered.");
+				} else if (currentEntry == null) {
+					try {
+						createEntry(agent, currentKey, BLANK);
+					} catch (IllegalArgumentException | EnvelopeException | SerializationException
+							| CryptoException e) {
+						throw new AliasConflictException("Storage error.", e);
+					}
+				}
+				// else: there is already a BLANK, nothing to do
 
-		// register alias
-		try {
-			createEntry(agent, alias, serviceName);
-		} catch (IllegalArgumentException | EnvelopeException | SerializationException | CryptoException e) {
-			throw new AliasConflictException("Storage error.", e);
+				// in the case of BLANK go one level deeper
+				level++;
+			}
+
+			// register alias
+			try {
+				createEntry(agent, alias, serviceName);
+			} catch (IllegalArgumentException | EnvelopeException | SerializationException | CryptoException e) {
+				throw new AliasConflictException("Storage error.", e);
+			}
+		} finally {
+			invalidateCache(split);
 		}
 	}
 
@@ -141,6 +223,7 @@ public class ServiceAliasManager {
 
 		int level = 0;
 		String currentKey = null;
+		CacheNode cacheNode = cacheRoot;
 		while (level < split.size() && level < MAX_PATH_LEVEL) {
 			// construct key
 			if (currentKey == null) {
@@ -149,18 +232,15 @@ public class ServiceAliasManager {
 				currentKey += SEPERATOR + split.get(level);
 			}
 
-			String currentEntry = null;
-			try {
-				currentEntry = getEntry(currentKey);
-			} catch (EnvelopeException | CryptoException | AgentAccessDeniedException | SerializationException e) {
-				throw new AliasNotFoundException("Path does not exist.", e);
-			}
+			String part = split.get(level);
+			String currentEntry = getCachedEntry(cacheNode, part, currentKey);
 
 			if (!currentEntry.equals(BLANK)) {
 				return new AliasResolveResponse(currentEntry, level + 1);
 			}
 
-			// in the case of BLANK go one level deeper
+			// in the case of BLANK go one level deeper, it is not cached if the cache is full
+			cacheNode = cacheNode != null ? cacheNode.children.get(part) : null;
 			level++;
 		}
 
@@ -171,6 +251,169 @@ public class ServiceAliasManager {
 		throw new AliasNotFoundException("Given path does not fit any alias.");
 	}
 
+	/**
+	 * @return number of path levels resolved from the cache
+	 */
+	public long getCacheHitCount() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * @return number of path levels fetched from the network
+	 */
+	public long getCacheMissCount() {
+		return cacheMisses.get();
+	}
+
+	/**
+	 * @return number of path levels currently cached, found and missing ones
+	 */
+	public int getCacheSize() {
+		return cacheSize.get() + negativeCache.size();
+	}
+
+	/**
+	 * clears the resolution cache
+	 */
+	public void clearCache() {
+		cacheGeneration.incrementAndGet();
+		cacheRoot = new CacheNode();
+		cacheSize.set(0);
+		negativeCache.clear();
+	}
+
+	/**
+	 * @param parent the cached parent level or null, if it is not cached
+	 * @param part the name of this level
+	 * @param key the whole path up to this level
+	 */
+	private String getCachedEntry(CacheNode parent, String part, String key) throws AliasNotFoundException {
+		CacheNode cacheNode = parent != null ? parent.children.get(part) : null;
+		CacheEntry cached = cacheNode != null ? cacheNode.entry : null;
+		if (cached != null) {
+			long age = System.currentTimeMillis() - cached.timestamp;
+			if (age < cacheLifetimeMs) {
+				cacheHits.incrementAndGet();
+				if (refreshAhead && age > cacheLifetimeMs * REFRESH_AHEAD_RATIO
+						&& cached.refreshing.compareAndSet(false, true)) {
+					refreshExecutor.execute(() -> {
+						try {
+							fetchEntry(parent, part, key);
+						} catch (AliasNotFoundException e) {
+							// cached as missing or kept until expiration
+						} finally {
+							// a failed or discarded refresh is tried again on the next hit
+							cached.refreshing.set(false);
+						}
+					});
+				}
+				return cached.value;
+			}
+		}
+		Long missingSince = negativeCache.get(key);
+		if (missingSince != null) {
+			if (System.currentTimeMillis() - missingSince < negativeCacheLifetimeMs) {
+				cacheHits.incrementAndGet();
+				throw new AliasNotFoundException("Path does not exist.");
+			}
+			negativeCache.remove(key, missingSince);
+		}
+		cacheMisses.incrementAndGet();
+		return fetchEntry(parent, part, key);
+	}
+
+	private String fetchEntry(CacheNode parent, String part, String key) throws AliasNotFoundException {
+		long generation = cacheGeneration.get();
+		try {
+			String value = getEntry(key);
+			cacheEntry(parent, part, value, generation);
+			return value;
+		} catch (EnvelopeNotFoundException e) {
+			cacheMissing(parent, part, key, generation);
+			throw new AliasNotFoundException("Path does not exist.", e);
+		} catch (EnvelopeException | CryptoException | AgentAccessDeniedException | SerializationException e) {
+			throw new AliasNotFoundException("Path does not exist.", e);
+		}
+	}
+
+	private void cacheEntry(CacheNode parent, String part, String value, long generation) {
+		// do not store results fetched before an invalidation
+		if (parent == null || cacheGeneration.get() != generation) {
+			return;
+		}
+		CacheNode cacheNode = parent.children.get(part);
+		if (cacheNode == null) {
+			if (cacheSize.get() >= MAX_CACHE_SIZE) {
+				// only registered aliases are cached here, keep the cached ones instead of starting over
+				return;
+			}
+			cacheNode = parent.children.computeIfAbsent(part, k -> {
+				cacheSize.incrementAndGet();
+				return new CacheNode();
+			});
+		}
+		cacheNode.entry = new CacheEntry(value);
+	}
+
+	private void cacheMissing(CacheNode parent, String part, String key, long generation) {
+		// do not store results fetched before an invalidation
+		if (cacheGeneration.get() != generation) {
+			return;
+		}
+		CacheNode cacheNode = parent != null ? parent.children.get(part) : null;
+		if (cacheNode != null) {
+			cacheNode.entry = null;
+		}
+		if (negativeCache.size() >= MAX_NEGATIVE_CACHE_SIZE) {
+			// most likely flooded with random paths, drop the expired missing entries or all of them
+			long now = System.currentTimeMillis();
+			negativeCache.values().removeIf(missingSince -> now - missingSince >= negativeCacheLifetimeMs);
+			if (negativeCache.size() >= MAX_NEGATIVE_CACHE_SIZE) {
+				negativeCache.clear();
+			}
+		}
+		negativeCache.put(key, System.currentTimeMillis());
+	}
+
+	/**
+	 * drops all cached entries along and below the given path
+	 * 
+	 * @param split the path
+	 */
+	private void invalidateCache(List<String> split) {
+		cacheGeneration.incrementAndGet();
+		String key = null;
+		for (String part : split) {
+			key = key == null ? part : key + SEPERATOR + part;
+			negativeCache.remove(key);
+		}
+		CacheNode cacheNode = cacheRoot;
+		for (String part : split) {
+			cacheNode = cacheNode.children.get(part);
+			if (cacheNode == null) {
+				return;
+			}
+			cacheNode.entry = null;
+		}
+		for (String part : cacheNode.children.keySet()) {
+			CacheNode child = cacheNode.children.remove(part);
+			if (child != null) {
+				cacheSize.addAndGet(-countNodes(child));
+			}
+		}
+	}
+
+	/**
+	 * @return number of path levels in the given subtree
+	 */
+	private static int countNodes(CacheNode cacheNode) {
+		int count = 1;
+		for (CacheNode child : cacheNode.children.values()) {
+			count += countNodes(child);
+		}
+		return count;
+	}
+
 	private List<String> splitPath(String path) {
 		path = path.toLowerCase().trim();
 
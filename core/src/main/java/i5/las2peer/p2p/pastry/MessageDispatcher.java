@@ -0,0 +1,489 @@
+package i5.las2peer.p2p.pastry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import i5.las2peer.api.Configurable;
+import i5.las2peer.api.execution.ServiceNotAvailableException;
+import i5.las2peer.api.logging.MonitoringEvent;
+import i5.las2peer.api.security.AgentException;
+import i5.las2peer.communication.Message;
+import i5.las2peer.communication.MessageException;
+import i5.las2peer.communication.RMIExceptionContent;
+import i5.las2peer.execution.RMITask;
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.p2p.AgentNotRegisteredException;
+import i5.las2peer.p2p.PastryNodeImpl;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.security.UnlockAgentCall;
+
+/**
+ * Dispatches incoming las2peer messages from the Pastry thread to the node.
+ *
+ * Messages are parsed on the Pastry thread and then handed to one of four worker lanes: responses, requests to agents
+ * (mostly RMI), nested requests and topic messages. Thus answers are never stuck behind long running service calls and
+ * a burst of traffic can not create an unbounded number of threads.
+ *
+ * Nested requests are sent from within a service call, which blocks its worker until they are answered. A nested
+ * request may itself send nested requests to any depth, so any bound on their lane could deadlock on a chain of
+ * blocked workers. Hence the nested request lane does not queue, but starts additional threads as needed. Since any
+ * sender can flag its requests as nested, the number of these threads is still capped by a large maximum. Requests
+ * beyond it are handled like those of any other saturated lane, so a chain this deep fails instead of deadlocking.
+ *
+ * Expired messages are dropped before delivery. If a lane is saturated, the configured {@link OverloadPolicy} is
+ * applied. Requests rejected or purged from a saturated lane and requests expired while queued are answered with a
+ * {@link ServiceNotAvailableException}, so the caller does not have to wait for its timeout.
+ */
+public class MessageDispatcher extends Configurable {
+
+	/**
+	 * what to do with a message, if its lane is full
+	 */
+	public enum OverloadPolicy {
+		/**
+		 * reject the message, requests are answered with a {@link ServiceNotAvailableException}
+		 */
+		REJECT,
+		/**
+		 * purge expired messages from the lane first and reject the message only if this does not free any space,
+		 * purged requests are answered with a {@link ServiceNotAvailableException}
+		 */
+		DROP_EXPIRED,
+	}
+
+	/**
+	 * the separate lanes messages are dispatched to
+	 */
+	public enum LaneType {
+		RESPONSE,
+		REQUEST,
+		NESTED_REQUEST,
+		TOPIC,
+	}
+
+	private static final L2pLogger logger = L2pLogger.getInstance(MessageDispatcher.class);
+
+	public static final int DEFAULT_RESPONSE_THREADS = 4;
+	private int responseThreads = DEFAULT_RESPONSE_THREADS;
+
+	public static final int DEFAULT_REQUEST_THREADS = 32;
+	private int requestThreads = DEFAULT_REQUEST_THREADS;
+
+	public static final int DEFAULT_NESTED_REQUEST_THREADS = 8;
+	private int nestedRequestThreads = DEFAULT_NESTED_REQUEST_THREADS;
+
+	public static final int DEFAULT_MAX_NESTED_REQUEST_THREADS = 256;
+	private int maxNestedRequestThreads = DEFAULT_MAX_NESTED_REQUEST_THREADS;
+
+	public static final int DEFAULT_TOPIC_THREADS = 4;
+	private int topicThreads = DEFAULT_TOPIC_THREADS;
+
+	public static final int DEFAULT_LANE_QUEUE_SIZE = 1000;
+	private int laneQueueSize = DEFAULT_LANE_QUEUE_SIZE;
+
+	public static final String DEFAULT_OVERLOAD_POLICY = OverloadPolicy.REJECT.name();
+	private String overloadPolicy = DEFAULT_OVERLOAD_POLICY;
+
+	private final Receiver receiver;
+	private final OverloadPolicy policy;
+	private final Lane[] lanes;
+	private final ExecutorService rejectSender;
+
+	/**
+	 * the node side of the dispatcher, separate to test the lanes without a network
+	 */
+	interface Receiver {
+
+		/**
+		 * @param message A message to hand over to the node
+		 * @throws AgentNotRegisteredException If the recipient is not registered at the node
+		 * @throws AgentException If the recipient failed to handle the message
+		 * @throws MessageException If the message could not be handled
+		 */
+		void receiveMessage(Message message) throws AgentNotRegisteredException, AgentException, MessageException;
+
+		/**
+		 * @param message A message rejected by a full lane
+		 * @param reason why the message was rejected
+		 */
+		void messageRejected(Message message, String reason);
+
+		/**
+		 * @param request A request rejected, purged from a full lane or expired while queued, to answer without
+		 *            waiting for its timeout
+		 * @param reason why the request is not handled
+		 */
+		void answerRejected(Message request, String reason);
+
+	}
+
+	/**
+	 * the {@link Receiver} for a Pastry node
+	 */
+	private static class NodeReceiver implements Receiver {
+
+		private final PastryNodeImpl l2pNode;
+
+		private NodeReceiver(PastryNodeImpl l2pNode) {
+			this.l2pNode = l2pNode;
+		}
+
+		@Override
+		public void receiveMessage(Message message)
+				throws AgentNotRegisteredException, AgentException, MessageException {
+			l2pNode.receiveMessage(message);
+		}
+
+		@Override
+		public void messageRejected(Message message, String reason) {
+			l2pNode.observerNotice(MonitoringEvent.MESSAGE_FAILED, l2pNode.getNodeId(), message.getSenderId(), null,
+					message.getRecipientId(), reason);
+		}
+
+		/**
+		 * answer a rejected or dropped RMI request, so the caller does not have to wait for its timeout
+		 */
+		@Override
+		public void answerRejected(Message message, String reason) {
+			if (message.getSendingNodeId() == null) {
+				return;
+			}
+			try {
+				AgentImpl recipient = l2pNode.getLocalAgent(message.getRecipientId());
+				message.open(recipient, l2pNode);
+				Object content = message.getContent();
+				if (!(content instanceof RMITask) && !(content instanceof UnlockAgentCall)) {
+					return;
+				}
+				Message response = new Message(message,
+						new RMIExceptionContent(new ServiceNotAvailableException(reason)));
+				response.setSendingNodeId(l2pNode.getNodeId());
+				l2pNode.sendResponse(response, message.getSendingNodeId());
+			} catch (Exception e) {
+				logger.log(Level.FINE, "Could not answer rejected message " + message.getId(), e);
+			}
+		}
+
+	}
+
+	/**
+	 * one worker pool with its metrics
+	 */
+	public class Lane {
+
+		private final LaneType type;
+		private final ThreadPoolExecutor pool;
+		private final AtomicLong dispatched = new AtomicLong();
+		private final AtomicLong delivered = new AtomicLong();
+		private final AtomicLong expired = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong totalWaitMs = new AtomicLong();
+		private final AtomicLong maxWaitMs = new AtomicLong();
+
+		/**
+		 * @param type A lane type
+		 * @param threads number of workers, a growing lane keeps this many idle workers
+		 * @param queueSize number of messages waiting for a worker, ignored for a growing lane
+		 * @param maxThreads If greater than threads, never queue a message, but start an additional worker up to this
+		 *            number if all are busy
+		 */
+		private Lane(LaneType type, int threads, int queueSize, int maxThreads) {
+			this.type = type;
+			ThreadFactory threadFactory = daemonThreads("las2peer-" + type.name().toLowerCase());
+			if (maxThreads > threads) {
+				this.pool = new ThreadPoolExecutor(threads, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+						threadFactory);
+			} else {
+				this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+						new ArrayBlockingQueue<>(queueSize), threadFactory);
+				this.pool.allowCoreThreadTimeOut(true);
+			}
+		}
+
+		private boolean offer(DeliveryTask task) {
+			try {
+				pool.execute(task);
+				dispatched.incrementAndGet();
+				return true;
+			} catch (RejectedExecutionException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * @return the expired messages removed from the queue
+		 */
+		private List<Message> purgeExpired() {
+			List<Message> purged = new ArrayList<>();
+			pool.getQueue().removeIf(r -> {
+				Message message = ((DeliveryTask) r).message;
+				if (message.isExpired()) {
+					purged.add(message);
+					return true;
+				}
+				return false;
+			});
+			expired.addAndGet(purged.size());
+			return purged;
+		}
+
+		private boolean isRequestLane() {
+			return type == LaneType.REQUEST || type == LaneType.NESTED_REQUEST;
+		}
+
+		private void recordWait(long waitMs) {
+			totalWaitMs.addAndGet(waitMs);
+			maxWaitMs.accumulateAndGet(waitMs, Math::max);
+		}
+
+		public LaneType getType() {
+			return type;
+		}
+
+		/**
+		 * @return number of messages waiting for a worker
+		 */
+		public int getQueueDepth() {
+			return pool.getQueue().size();
+		}
+
+		/**
+		 * @return number of messages currently handled by a worker
+		 */
+		public int getActiveCount() {
+			return pool.getActiveCount();
+		}
+
+		/**
+		 * @return total number of messages accepted by this lane
+		 */
+		public long getDispatchedCount() {
+			return dispatched.get();
+		}
+
+		/**
+		 * @return total number of messages handed over to the node
+		 */
+		public long getDeliveredCount() {
+			return delivered.get();
+		}
+
+		/**
+		 * @return total number of messages dropped, because they expired before delivery
+		 */
+		public long getExpiredCount() {
+			return expired.get();
+		}
+
+		/**
+		 * @return total number of messages rejected, because the lane was full
+		 */
+		public long getRejectedCount() {
+			return rejected.get();
+		}
+
+		/**
+		 * @return average time in milliseconds messages waited in this lane before delivery
+		 */
+		public double getAverageWaitMs() {
+			long count = delivered.get();
+			if (count == 0) {
+				return 0;
+			}
+			return (double) totalWaitMs.get() / count;
+		}
+
+		/**
+		 * @return maximum time in milliseconds a message waited in this lane before delivery
+		 */
+		public long getMaxWaitMs() {
+			return maxWaitMs.get();
+		}
+
+	}
+
+	/**
+	 * a parsed message waiting for delivery
+	 */
+	private class DeliveryTask implements Runnable {
+
+		private final Lane lane;
+		private final Message message;
+		private final long enqueuedAt = System.currentTimeMillis();
+
+		private DeliveryTask(Lane lane, Message message) {
+			this.lane = lane;
+			this.message = message;
+		}
+
+		@Override
+		public void run() {
+			if (message.isExpired()) {
+				lane.expired.incrementAndGet();
+				logger.fine("dropped expired message " + message.getId());
+				if (lane.isRequestLane()) {
+					// the caller may wait longer than the request is valid, answer it like a purged one
+					rejectSender.execute(
+							() -> receiver.answerRejected(message, "Request expired before it could be handled"));
+				}
+				return;
+			}
+			lane.recordWait(System.currentTimeMillis() - enqueuedAt);
+			lane.delivered.incrementAndGet();
+			try {
+				receiver.receiveMessage(message);
+			} catch (MessageException e) {
+				logger.log(Level.SEVERE, "MessageException while handling received message!", e);
+			} catch (AgentNotRegisteredException e) {
+				logger.severe("AgentNotKnown!?! - I shouldn't have gotten this message!");
+			} catch (AgentException e) {
+				logger.log(Level.SEVERE, "Got a message for an agent, but he failed!", e);
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Exception while delivering message to the node", e);
+			}
+		}
+
+	}
+
+	/**
+	 * create a dispatcher for the given node
+	 *
+	 * @param node A node to deliver the messages to
+	 */
+	public MessageDispatcher(PastryNodeImpl node) {
+		setFieldValues();
+		this.receiver = new NodeReceiver(node);
+		this.policy = OverloadPolicy.valueOf(overloadPolicy.trim().toUpperCase());
+		this.lanes = createLanes();
+		this.rejectSender = createRejectSender();
+	}
+
+	/**
+	 * create a dispatcher with the same size for all lanes, used for testing
+	 *
+	 * @param receiver A receiver to deliver the messages to
+	 * @param threads number of workers per lane
+	 * @param queueSize number of messages waiting for a worker per lane
+	 * @param maxNestedThreads maximum number of workers for nested requests
+	 * @param policy what to do with a message, if its lane is full
+	 */
+	MessageDispatcher(Receiver receiver, int threads, int queueSize, int maxNestedThreads, OverloadPolicy policy) {
+		this.responseThreads = threads;
+		this.requestThreads = threads;
+		this.nestedRequestThreads = threads;
+		this.maxNestedRequestThreads = maxNestedThreads;
+		this.topicThreads = threads;
+		this.laneQueueSize = queueSize;
+		this.receiver = receiver;
+		this.policy = policy;
+		this.lanes = createLanes();
+		this.rejectSender = createRejectSender();
+	}
+
+	private Lane[] createLanes() {
+		Lane[] result = new Lane[LaneType.values().length];
+		result[LaneType.RESPONSE.ordinal()] = new Lane(LaneType.RESPONSE, responseThreads, laneQueueSize, 0);
+		result[LaneType.REQUEST.ordinal()] = new Lane(LaneType.REQUEST, requestThreads, laneQueueSize, 0);
+		result[LaneType.NESTED_REQUEST.ordinal()] = new Lane(LaneType.NESTED_REQUEST, nestedRequestThreads,
+				laneQueueSize, Math.max(nestedRequestThreads + 1, maxNestedRequestThreads));
+		result[LaneType.TOPIC.ordinal()] = new Lane(LaneType.TOPIC, topicThreads, laneQueueSize, 0);
+		return result;
+	}
+
+	private ExecutorService createRejectSender() {
+		return new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(laneQueueSize),
+				daemonThreads("las2peer-reject"), new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		final AtomicInteger number = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + "-" + number.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Hands the given (already parsed) message over to its lane. Never blocks.
+	 *
+	 * @param message A message received via the network
+	 */
+	public void dispatch(Message message) {
+		Lane lane = getLane(message);
+		if (message.isExpired()) {
+			lane.expired.incrementAndGet();
+			logger.fine("dropped expired message " + message.getId());
+			return;
+		}
+		DeliveryTask task = new DeliveryTask(lane, message);
+		if (lane.offer(task)) {
+			return;
+		}
+		if (policy == OverloadPolicy.DROP_EXPIRED) {
+			List<Message> purged = lane.purgeExpired();
+			if (lane.isRequestLane()) {
+				for (Message expired : purged) {
+					rejectSender.execute(
+							() -> receiver.answerRejected(expired, "Request expired before it could be handled"));
+				}
+			}
+			if (!purged.isEmpty() && lane.offer(task)) {
+				return;
+			}
+		}
+		lane.rejected.incrementAndGet();
+		receiver.messageRejected(message, "Rejected message " + message.getId() + ", " + lane.type + " lane is full");
+		if (lane.isRequestLane()) {
+			rejectSender.execute(() -> receiver.answerRejected(message, "Node is overloaded"));
+		}
+	}
+
+	private Lane getLane(Message message) {
+		if (message.isResponse()) {
+			return lanes[LaneType.RESPONSE.ordinal()];
+		} else if (message.isTopic()) {
+			return lanes[LaneType.TOPIC.ordinal()];
+		} else if (message.isNested()) {
+			return lanes[LaneType.NESTED_REQUEST.ordinal()];
+		} else {
+			return lanes[LaneType.REQUEST.ordinal()];
+		}
+	}
+
+	/**
+	 * @param type A lane type
+	 * @return the lane for the given type, e.g. to read its metrics
+	 */
+	public Lane getLane(LaneType type) {
+		return lanes[type.ordinal()];
+	}
+
+	/**
+	 * @return the overload policy in use
+	 */
+	public OverloadPolicy getOverloadPolicy() {
+		return policy;
+	}
+
+	/**
+	 * stops all lanes, pending messages are discarded
+	 */
+	public void shutdown() {
+		for (Lane lane : lanes) {
+			lane.pool.shutdownNow();
+		}
+		rejectSender.shutdownNow();
+	}
+
+}
@@ -1,12 +1,19 @@
 package i5.las2peer.p2p.pastry;
 
 import i5.las2peer.serialization.MalformedXMLException;
+import i5.las2peer.serialization.SerializationException;
 import rice.p2p.commonapi.Message;
 import rice.p2p.commonapi.NodeHandle;
 
 /**
  * a simple envelope for sending las2peer messages through the pastry network
- * 
+ *
+ * The contained message is either transported as XML string or, if the receiving node supports it, in the compact
+ * binary format of {@link i5.las2peer.communication.Message#toBinary()}. Every envelope states whether its sending node
+ * accepts binary messages. Envelopes of older nodes lack this flag and are therefore always answered using XML.
+ * Likewise, every envelope states whether its sending node accepts messages encrypted with session keys, see
+ * {@link i5.las2peer.communication.MessageSessionKeys}.
+ *
  */
 public class MessageEnvelope implements Message {
 
@@ -14,32 +21,66 @@ public class MessageEnvelope implements Message {
 
 	private final NodeHandle sendingNode;
 	private final String content;
+	private final byte[] binaryContent;
+	private final boolean binaryAccepted;
+	private final boolean sessionKeysAccepted;
+	private transient i5.las2peer.communication.Message message;
 
 	/**
 	 * create a message envelope with simple string content
-	 * 
+	 *
 	 * @param sendingNode A sending node handle
 	 * @param content Arbitrary message content string
 	 */
 	public MessageEnvelope(NodeHandle sendingNode, String content) {
 		this.sendingNode = sendingNode;
 		this.content = content;
+		this.binaryContent = null;
+		this.binaryAccepted = true;
+		this.sessionKeysAccepted = true;
 	}
 
 	/**
 	 * generate an Pastry message envelope from a las2peer message
-	 * 
+	 *
 	 * @param sendingNode A sending node handle
 	 * @param content Another message to wrap
 	 */
 	public MessageEnvelope(NodeHandle sendingNode, i5.las2peer.communication.Message content) {
 		this.sendingNode = sendingNode;
 		this.content = content.toXmlString();
+		this.binaryContent = null;
+		this.binaryAccepted = true;
+		this.sessionKeysAccepted = true;
+		this.message = content;
+	}
+
+	/**
+	 * generate an Pastry message envelope from a las2peer message using the binary wire format
+	 *
+	 * @param sendingNode A sending node handle
+	 * @param content Another message to wrap
+	 * @param binary true, if the message should be transported in binary format
+	 * @throws SerializationException If the binary representation can not be created
+	 */
+	public MessageEnvelope(NodeHandle sendingNode, i5.las2peer.communication.Message content, boolean binary)
+			throws SerializationException {
+		this.sendingNode = sendingNode;
+		if (binary) {
+			this.content = null;
+			this.binaryContent = content.toBinary();
+		} else {
+			this.content = content.toXmlString();
+			this.binaryContent = null;
+		}
+		this.binaryAccepted = true;
+		this.sessionKeysAccepted = true;
+		this.message = content;
 	}
 
 	/**
 	 * get a handle to the sending node
-	 * 
+	 *
 	 * @return handle to the sending (pastry) node
 	 */
 	public NodeHandle getSendingNode() {
@@ -48,21 +89,53 @@ public class MessageEnvelope implements Message {
 
 	/**
 	 * get the content string of this message
-	 * 
-	 * @return the contained data as String
+	 *
+	 * @return the contained data as String or null, if the message is transported in binary format
 	 */
 	public String getContent() {
 		return content;
 	}
 
+	/**
+	 * @return true, if the contained message is transported in binary format
+	 */
+	public boolean isBinary() {
+		return binaryContent != null;
+	}
+
+	/**
+	 * @return true, if the sending node accepts messages in binary format
+	 */
+	public boolean isBinaryAccepted() {
+		return binaryAccepted;
+	}
+
+	/**
+	 * @return true, if the sending node accepts messages encrypted with session keys
+	 */
+	public boolean isSessionKeysAccepted() {
+		return sessionKeysAccepted;
+	}
+
 	/**
 	 * get the contained las2peer message
-	 * 
+	 *
 	 * @return the contained las2peer message
-	 * @throws MalformedXMLException If the XML data string is malformed
+	 * @throws MalformedXMLException If the XML data string or the binary data is malformed
 	 */
 	public i5.las2peer.communication.Message getContainedMessage() throws MalformedXMLException {
-		return i5.las2peer.communication.Message.createFromXml(content);
+		if (message == null) {
+			if (binaryContent != null) {
+				try {
+					message = i5.las2peer.communication.Message.createFromBinary(binaryContent);
+				} catch (SerializationException e) {
+					throw new MalformedXMLException("malformed binary message", e);
+				}
+			} else {
+				message = i5.las2peer.communication.Message.createFromXml(content);
+			}
+		}
+		return message;
 	}
 
 	@Override
@@ -1,14 +1,17 @@
 package i5.las2peer.p2p.pastry;
 
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import i5.las2peer.api.logging.MonitoringEvent;
-import i5.las2peer.api.security.AgentException;
-import i5.las2peer.communication.MessageException;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.p2p.AgentNotRegisteredException;
 import i5.las2peer.p2p.NodeException;
@@ -47,8 +50,9 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	public static final String FREEPASTRY_APPLICATION_CODE = "i5.las2peer-node-application";
 	public static final String SCRIBE_APPLICATION_CODE = "i5.las2peer-agent-notification";
 
-	public static final int SEARCH_SLEEP_TIME = 2500; // 2,5s
 	public static final long SEARCH_TIMEOUT = 10000; // 10 seconds
+	public static final long SEARCH_CACHE_LIFETIME = 5000; // 5 seconds
+	private static final int SEARCH_CACHE_MAX_SIZE = 1000;
 	private static final int RESPONSE_WAIT_TIMEOUT = 10000; // 10 seconds
 
 	private static final L2pLogger logger = L2pLogger.getInstance(NodeApplication.class.getName());
@@ -63,10 +67,75 @@ public class NodeApplication implements Application, ScribeMultiClient {
 
 	private Hashtable<Long, Topic> htTopics = new Hashtable<>();
 
-	private Hashtable<Long, HashSet<NodeHandle>> htPendingAgentSearches = new Hashtable<>();
+	private final ConcurrentHashMap<Long, AgentSearch> pendingAgentSearches = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, CachedAgentSearch> agentSearchCache = new ConcurrentHashMap<>();
 
 	private Hashtable<Long, WaiterThread<Message>> appMessageWaiters = new Hashtable<>();
 
+	private final MessageDispatcher dispatcher;
+
+	/**
+	 * ids of nodes known to accept messages in binary wire format
+	 */
+	private final Set<Id> binaryAcceptingNodes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * ids of nodes known to accept messages encrypted with session keys
+	 */
+	private final Set<Id> sessionKeyAcceptingNodes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * a running search for an agent, completed as soon as enough nodes answered or the search timed out
+	 */
+	private class AgentSearch {
+
+		private final String agentId;
+		private final Topic topic;
+		private final int expectedAnswers;
+		private final Set<NodeHandle> results = ConcurrentHashMap.newKeySet();
+		private final CompletableFuture<Collection<NodeHandle>> future = new CompletableFuture<>();
+		private volatile boolean outdated = false;
+
+		private AgentSearch(String agentId, Topic topic, int expectedAnswers) {
+			this.agentId = agentId;
+			this.topic = topic;
+			this.expectedAnswers = expectedAnswers;
+		}
+
+		private void addResult(NodeHandle handle) {
+			results.add(handle);
+			if (results.size() >= expectedAnswers) {
+				finish();
+			}
+		}
+
+		private void finish() {
+			future.complete(new HashSet<>(results));
+		}
+
+	}
+
+	/**
+	 * the recent result of an agent search
+	 */
+	private static class CachedAgentSearch {
+
+		private final Topic topic;
+		private final Collection<NodeHandle> handles;
+		private final long timestamp = System.currentTimeMillis();
+
+		private CachedAgentSearch(Topic topic, Collection<NodeHandle> handles) {
+			this.topic = topic;
+			this.handles = handles;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() - timestamp > SEARCH_CACHE_LIFETIME;
+		}
+
+	}
+
 	/**
 	 * create a pastry application for the given node
 	 * 
@@ -74,6 +143,7 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 */
 	public NodeApplication(PastryNodeImpl node) {
 		l2pNode = node;
+		dispatcher = new MessageDispatcher(node);
 		endpoint = l2pNode.getPastryNode().buildEndpoint(this, FREEPASTRY_APPLICATION_CODE);
 
 		scribeClient = new ScribeImpl(l2pNode.getPastryNode(), SCRIBE_APPLICATION_CODE);
@@ -81,6 +151,35 @@ public class NodeApplication implements Application, ScribeMultiClient {
 		endpoint.register();
 	}
 
+	/**
+	 * get the dispatcher delivering incoming messages to the node
+	 * 
+	 * @return the message dispatcher of this application
+	 */
+	public MessageDispatcher getMessageDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * check, whether the given node is known to accept las2peer messages in binary wire format
+	 * 
+	 * @param node A node handle
+	 * @return true, if an envelope received from this node stated that binary messages are accepted
+	 */
+	public boolean isBinaryAccepted(NodeHandle node) {
+		return node != null && binaryAcceptingNodes.contains(node.getId());
+	}
+
+	/**
+	 * check, whether the given node is known to accept las2peer messages encrypted with session keys
+	 * 
+	 * @param node A node handle
+	 * @return true, if an envelope received from this node stated that session keys are accepted
+	 */
+	public boolean isSessionKeysAccepted(NodeHandle node) {
+		return node != null && sessionKeyAcceptingNodes.contains(node.getId());
+	}
+
 	/**
 	 * register this node to the topic related to the given message receiver
 	 * 
@@ -95,6 +194,7 @@ public class NodeApplication implements Application, ScribeMultiClient {
 			Topic agentTopic = getAgentTopic(receiver);
 
 			htAgentTopics.put(receiver.getResponsibleForAgentSafeId(), agentTopic);
+			invalidateAgentSearch(receiver.getResponsibleForAgentSafeId());
 
 			logger.info("\t--> registering agent topic for " + receiver.getResponsibleForAgentSafeId() + " ("
 					+ agentTopic.getId() + ")");
@@ -131,6 +231,7 @@ public class NodeApplication implements Application, ScribeMultiClient {
 
 			scribeClient.unsubscribe(agentTopic, this);
 			htAgentTopics.remove(id);
+			invalidateAgentSearch(id);
 
 		}
 
@@ -209,28 +310,29 @@ public class NodeApplication implements Application, ScribeMultiClient {
 
 		if (pastMessage instanceof MessageEnvelope) {
 			try {
-				final i5.las2peer.communication.Message m = ((MessageEnvelope) pastMessage).getContainedMessage();
+				MessageEnvelope envelope = (MessageEnvelope) pastMessage;
+				// the sender may have been restarted with other settings, always use its latest statement
+				if (envelope.getSendingNode() != null) {
+					if (envelope.isBinaryAccepted()) {
+						binaryAcceptingNodes.add(envelope.getSendingNode().getId());
+					} else {
+						binaryAcceptingNodes.remove(envelope.getSendingNode().getId());
+					}
+					if (envelope.isSessionKeysAccepted()) {
+						sessionKeyAcceptingNodes.add(envelope.getSendingNode().getId());
+					} else {
+						sessionKeyAcceptingNodes.remove(envelope.getSendingNode().getId());
+					}
+				}
+				final i5.las2peer.communication.Message m = envelope.getContainedMessage();
 
 				// Is already done in Node-Classes
 //				l2pNode.observerNotice( Event.MESSAGE_RECEIVED, ((MessageEnvelope) pastMessage).getSendingNode(),
 //						m.getSender(), l2pNode.getPastryNode(), m.getRecipient(), "Got an envelope for a las2peer message!" );
 
-				// hmmmm, is the problem here??
-				new Thread(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							l2pNode.receiveMessage(m);
-						} catch (Exception e) {
-							System.out.println("Exception while delivering message to the node: " + e);
-							e.printStackTrace();
-						}
-					}
-				}).start();
-
+				dispatcher.dispatch(m);
 			} catch (Exception e) {
-				System.out.println("Exception while opening message!: " + e);
-				e.printStackTrace();
+				logger.log(Level.SEVERE, "Exception while opening message!", e);
 			}
 		} else if (pastMessage instanceof SearchAnswerMessage) {
 			// k, got an answer for my own search
@@ -239,11 +341,10 @@ public class NodeApplication implements Application, ScribeMultiClient {
 					(String) null, "");
 
 			// just store the sending node handle
-			HashSet<NodeHandle> pendingCollection = htPendingAgentSearches
-					.get(((SearchAnswerMessage) pastMessage).getRequestMessageId());
+			AgentSearch search = pendingAgentSearches.get(((SearchAnswerMessage) pastMessage).getRequestMessageId());
 
-			if (pendingCollection != null) {
-				pendingCollection.add(((SearchAnswerMessage) pastMessage).getSendingNode());
+			if (search != null) {
+				search.addResult(((SearchAnswerMessage) pastMessage).getSendingNode());
 			} else {
 				logger.warning("got a timed out response or response to a message not sent by me!");
 			}
@@ -287,9 +388,14 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	}
 
 	@Override
-	public void update(NodeHandle nh, boolean arg1) {
+	public void update(NodeHandle nh, boolean joined) {
 		// called when a new neighbor joined the net
 		l2pNode.observerNotice(MonitoringEvent.NEW_NODE_NOTICE, l2pNode.getNodeId(), "" + nh);
+		if (!joined) {
+			// the neighbor left the leaf set, forget what it accepted
+			binaryAcceptingNodes.remove(nh.getId());
+			sessionKeyAcceptingNodes.remove(nh.getId());
+		}
 	}
 
 	/**
@@ -348,7 +454,7 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	public void sendMessage(i5.las2peer.communication.Message l2pMessage) {
 		BroadcastMessageContent content = new BroadcastMessageContent(getLocalHandle(), l2pMessage);
 
-		System.out.println(" --> sending Message " + l2pMessage.getId());
+		logger.info("\t --> sending message " + l2pMessage.getId());
 
 		if (!l2pMessage.isTopic()) {
 			scribeClient.publish(getAgentTopic(l2pMessage.getRecipientId()), content);
@@ -370,14 +476,17 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	public void childRemoved(Topic topic, NodeHandle nh) {
 		l2pNode.observerNotice(MonitoringEvent.PASTRY_REMOVED_TOPIC_CHILD, nh, topic.toString());
 
+		// the node may have been hosting a searched agent
+		agentSearchCache.values().removeIf(cached -> cached.topic.equals(topic) && cached.handles.contains(nh));
+
 		// System.out.println(ColoredOutput.colorize("child removed to topic at this node", ForegroundColor.Yellow));
 	}
 
 	/**
 	 * look for an agent in the p2p net
 	 * 
-	 * This method broadcasts a search message for the given agent and collects all answers. It tries to wait for
-	 * <i>expectedAnswers</i> nodes to respond to the search.
+	 * This method broadcasts a search message for the given agent and waits until <i>expectedAnswers</i> nodes
+	 * responded to the search.
 	 * 
 	 * However the search will be aborted after <i>SEARCH_TIMEOUT</i> milliseconds.
 	 * 
@@ -386,47 +495,93 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @return a collections of node handles where the requested agent is registered to
 	 */
 	public Collection<NodeHandle> searchAgent(String agentId, int expectedAnswers) {
+		CompletableFuture<Collection<NodeHandle>> search = searchAgentAsync(agentId, expectedAnswers);
+		try {
+			return search.get();
+		} catch (InterruptedException e) {
+			search.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | CancellationException e) {
+			logger.log(Level.WARNING, "Agent search for " + agentId + " failed", e);
+		}
+		return new HashSet<>();
+	}
 
-		Topic agentTopic = getAgentTopic(agentId);
-
-		System.out.println("Topic info:");
-		System.out.println("root: " + scribeClient.isRoot(agentTopic));
-		System.out.println("parent: " + scribeClient.getParent(agentTopic));
-		// System.out.println( "children: " + scribeClient.getChildren(agentTopic).length );
-
-		for (NodeHandle nh : scribeClient.getChildrenOfTopic(getAgentTopic(agentId))) {
-			System.out.println("Child in search: " + nh);
+	/**
+	 * look for an agent in the p2p net without blocking
+	 * 
+	 * This method broadcasts a search message for the given agent. The returned future completes as soon as
+	 * <i>expectedAnswers</i> nodes responded to the search, but at the latest after <i>SEARCH_TIMEOUT</i> milliseconds
+	 * with the answers received so far. Cancelling the future aborts the search.
+	 * 
+	 * Results are cached for <i>SEARCH_CACHE_LIFETIME</i> milliseconds or until the agent joins or leaves a node.
+	 * 
+	 * @param agentId An agent id to search for
+	 * @param expectedAnswers Amount of expected answers
+	 * @return a future for the collection of node handles where the requested agent is registered to
+	 */
+	public CompletableFuture<Collection<NodeHandle>> searchAgentAsync(String agentId, int expectedAnswers) {
+		CachedAgentSearch cached = agentSearchCache.get(agentId);
+		if (cached != null) {
+			if (cached.isExpired()) {
+				agentSearchCache.remove(agentId, cached);
+			} else if (cached.handles.size() >= expectedAnswers) {
+				l2pNode.observerNotice(MonitoringEvent.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null,
+						(String) null, cached.handles.size() + " (cached)");
+				return CompletableFuture.completedFuture(new HashSet<>(cached.handles));
+			}
 		}
 
-		l2pNode.observerNotice(MonitoringEvent.AGENT_SEARCH_STARTED, this.l2pNode.getNodeId(), agentId, null,
-				(String) null, "(" + expectedAnswers + ") - topic: " + getAgentTopic(agentId));
+		Topic agentTopic = getAgentTopic(agentId);
 
-		SearchAgentContent search = new SearchAgentContent(getLocalHandle(), agentId);
-		HashSet<NodeHandle> resultSet = new HashSet<>();
-		htPendingAgentSearches.put(search.getRandomId(), resultSet);
+		l2pNode.observerNotice(MonitoringEvent.AGENT_SEARCH_STARTED, this.l2pNode.getNodeId(), agentId, null,
+				(String) null, "(" + expectedAnswers + ") - topic: " + agentTopic);
+
+		SearchAgentContent content = new SearchAgentContent(getLocalHandle(), agentId);
+		AgentSearch search = new AgentSearch(agentId, agentTopic, expectedAnswers);
+		pendingAgentSearches.put(content.getRandomId(), search);
+		search.future.whenComplete((result, e) -> {
+			pendingAgentSearches.remove(content.getRandomId());
+			if (result == null) {
+				// cancelled
+				return;
+			}
+			if (!result.isEmpty() && !search.outdated) {
+				cacheAgentSearch(search, result);
+			}
+			l2pNode.observerNotice(MonitoringEvent.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null,
+					(String) null, "" + result.size());
+		});
+		CompletableFuture.delayedExecutor(SEARCH_TIMEOUT, TimeUnit.MILLISECONDS).execute(search::finish);
 
 		// publish a message to search the agent registers
-		scribeClient.publish(agentTopic, search);
+		scribeClient.publish(agentTopic, content);
 		// scribeClient.anycast( agentTopic,search );
 
-		long timeout = new Date().getTime() + SEARCH_TIMEOUT;
+		return search.future;
+	}
 
-		// todo: use a waiterThread here
-		while (new Date().getTime() <= timeout && resultSet.size() < expectedAnswers) {
-			try {
-				System.out.println("\t\t waiting for agent-search (" + agentId + ") - "
-						+ (-new Date().getTime() + timeout) / 1000 + "s left");
-				Thread.sleep(SEARCH_SLEEP_TIME);
-			} catch (InterruptedException e) {
-			}
+	private void cacheAgentSearch(AgentSearch search, Collection<NodeHandle> result) {
+		if (agentSearchCache.size() >= SEARCH_CACHE_MAX_SIZE) {
+			agentSearchCache.values().removeIf(CachedAgentSearch::isExpired);
 		}
+		if (agentSearchCache.size() < SEARCH_CACHE_MAX_SIZE) {
+			agentSearchCache.put(search.agentId, new CachedAgentSearch(search.topic, result));
+		}
+	}
 
-		htPendingAgentSearches.remove(search.getRandomId());
-
-		l2pNode.observerNotice(MonitoringEvent.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null,
-				(String) null, "" + resultSet.size());
-
-		return resultSet;
+	/**
+	 * forget cached search results for the given agent, e.g. because it joined or left a node
+	 * 
+	 * @param agentId An agent id
+	 */
+	private void invalidateAgentSearch(String agentId) {
+		agentSearchCache.remove(agentId);
+		for (AgentSearch search : pendingAgentSearches.values()) {
+			if (search.agentId.equals(agentId)) {
+				search.outdated = true;
+			}
+		}
 	}
 
 	/**
@@ -474,27 +629,13 @@ public class NodeApplication implements Application, ScribeMultiClient {
 		} else if (content instanceof AgentJoinedContent) {
 			logger.info(
 					"\t\t<--- got notification about agent joining: " + ((AgentJoinedContent) content).getAgentId());
+			invalidateAgentSearch(((AgentJoinedContent) content).getAgentId());
 		} else if (content instanceof BroadcastMessageContent) {
-			final BroadcastMessageContent c = (BroadcastMessageContent) content;
-
-			// or is the storage problem here?
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						l2pNode.receiveMessage(c.getMessage());
-					} catch (MalformedXMLException e) {
-						logger.severe("unable to open BroadcastMessageContent!");
-					} catch (MessageException e) {
-						logger.log(Level.SEVERE, "MessageException while handling received message!", e);
-					} catch (AgentNotRegisteredException e) {
-						logger.severe("AgentNotKnown!?! - I shouldn't have gotten this message!");
-					} catch (AgentException e) {
-						logger.log(Level.SEVERE, "Got a message for an agent, but he failed!", e);
-					}
-				}
-
-			}).start();
+			try {
+				dispatcher.dispatch(((BroadcastMessageContent) content).getMessage());
+			} catch (MalformedXMLException e) {
+				logger.severe("unable to open BroadcastMessageContent!");
+			}
 		} else {
 			l2pNode.observerNotice(MonitoringEvent.MESSAGE_RECEIVED_UNKNOWN, this.l2pNode.getNodeId(),
 					"got an unknown message of type " + content.getClass().getName());
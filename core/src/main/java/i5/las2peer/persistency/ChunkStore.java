@@ -0,0 +1,32 @@
+package i5.las2peer.persistency;
+
+import java.util.concurrent.CompletableFuture;
+
+import i5.las2peer.security.AgentImpl;
+
+/**
+ * Stores the encrypted chunks of streams.
+ */
+interface ChunkStore {
+
+	/**
+	 * stores a chunk
+	 *
+	 * @param streamIdentifier The identifier of the stream
+	 * @param index The index of the chunk in the stream
+	 * @param chunk The encrypted chunk
+	 * @param author The author signing the chunk
+	 * @return a future that completes when the chunk is stored
+	 */
+	CompletableFuture<Void> storeChunk(String streamIdentifier, int index, byte[] chunk, AgentImpl author);
+
+	/**
+	 * fetches a chunk
+	 *
+	 * @param streamIdentifier The identifier of the stream
+	 * @param index The index of the chunk in the stream
+	 * @return a future that completes with the encrypted chunk
+	 */
+	CompletableFuture<byte[]> fetchChunk(String streamIdentifier, int index);
+
+}
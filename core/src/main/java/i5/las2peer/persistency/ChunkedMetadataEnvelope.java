@@ -0,0 +1,35 @@
+package i5.las2peer.persistency;
+
+import java.util.ArrayList;
+
+/**
+ * The metadata of an envelope stored in content defined chunks. It is a separate type, so nodes without chunk
+ * support fail to read it instead of fetching the parts of an older version.
+ */
+public class ChunkedMetadataEnvelope extends MetadataEnvelope {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ArrayList<byte[]> chunkHashes;
+
+	/**
+	 * creates the metadata for an envelope stored in content defined chunks
+	 *
+	 * @param envelopeIdentifier The identifier of the envelope
+	 * @param envelopeVersion The version of the envelope
+	 * @param chunkHashes The hashes of the chunks stored as {@link HashedArtifact}s in order
+	 */
+	public ChunkedMetadataEnvelope(String envelopeIdentifier, long envelopeVersion, ArrayList<byte[]> chunkHashes) {
+		super(envelopeIdentifier, envelopeVersion, chunkHashes.size());
+		this.chunkHashes = chunkHashes;
+	}
+
+	/**
+	 * @param index The index of a chunk
+	 * @return the hash of the chunk
+	 */
+	public byte[] getChunkHash(int index) {
+		return chunkHashes.get(index);
+	}
+
+}
@@ -0,0 +1,254 @@
+package i5.las2peer.persistency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.SecretKey;
+
+import i5.las2peer.api.persistency.EnvelopeException;
+import i5.las2peer.api.persistency.EnvelopeNotFoundException;
+import i5.las2peer.security.AgentContext;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.serialization.SerializationException;
+import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.CryptoTools;
+
+/**
+ * Stores and fetches streams chunk by chunk.
+ *
+ * Each chunk is encrypted on its own with a stream key and stored with a {@link ChunkStore}. Only a limited number of
+ * chunks is stored or fetched concurrently, so the memory used does not depend on the size of the stream. After all
+ * chunks are stored, a {@link StreamManifest} with the stream key and the hashes of all chunks is stored as a new
+ * version of an ordinary envelope.
+ */
+final class ChunkedStreams {
+
+	/**
+	 * chunk size leaving room for the authenticated encryption in an artifact
+	 */
+	static final int DEFAULT_CHUNK_SIZE = AbstractArtifact.MAX_SIZE - 1024;
+
+	private ChunkedStreams() {
+		// static helper
+	}
+
+	static EnvelopeVersion storeStream(L2pStorageInterface storage, ChunkStore chunks, String identifier,
+			InputStream content, AgentImpl author, Collection<?> readers, int parallelism, long timeoutMs)
+			throws EnvelopeException {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		String streamIdentifier = "stream-" + identifier + "#" + UUID.randomUUID().toString();
+		Semaphore inFlight = new Semaphore(parallelism);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		ArrayList<byte[]> chunkHashes = new ArrayList<>();
+		long size = 0;
+		SecretKey streamKey = CryptoTools.generateSymmetricKey();
+		try {
+			byte[] chunk;
+			while ((chunk = readChunk(content, DEFAULT_CHUNK_SIZE)) != null) {
+				if (!inFlight.tryAcquire(getRemaining(deadline), TimeUnit.MILLISECONDS)) {
+					throw new EnvelopeException("Stream store operation time out");
+				}
+				checkFailure(failure);
+				size += chunk.length;
+				byte[] encrypted = CryptoTools.encryptSymmetricAuthenticated(chunk, streamKey);
+				chunkHashes.add(CryptoTools.getSecureHash(encrypted));
+				chunks.storeChunk(streamIdentifier, chunkHashes.size() - 1, encrypted, author)
+						.whenComplete((result, throwable) -> {
+							if (throwable != null) {
+								failure.compareAndSet(null, throwable);
+							}
+							inFlight.release();
+						});
+			}
+			// wait for the last chunks
+			if (!inFlight.tryAcquire(parallelism, getRemaining(deadline), TimeUnit.MILLISECONDS)) {
+				throw new EnvelopeException("Stream store operation time out");
+			}
+			checkFailure(failure);
+		} catch (IOException e) {
+			throw new EnvelopeException("Could not read stream", e);
+		} catch (CryptoException e) {
+			throw new EnvelopeException("Could not encrypt stream", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EnvelopeException(e);
+		}
+		StreamManifest manifest = new StreamManifest(streamIdentifier, streamKey, size, chunkHashes);
+		EnvelopeVersion envelope;
+		try {
+			try {
+				EnvelopeVersion previous = storage.fetchEnvelope(identifier, getRemaining(deadline));
+				envelope = storage.createEnvelope(previous, manifest, readers);
+			} catch (EnvelopeNotFoundException e) {
+				envelope = storage.createEnvelope(identifier, author.getPublicKey(), manifest, readers);
+			}
+		} catch (SerializationException | CryptoException e) {
+			throw new EnvelopeException("Could not create stream envelope", e);
+		}
+		storage.storeEnvelope(envelope, author, getRemaining(deadline));
+		return envelope;
+	}
+
+	static InputStream fetchStream(L2pStorageInterface storage, ChunkStore chunks, String identifier,
+			AgentContext reader, int parallelism, long timeoutMs) throws EnvelopeNotFoundException, EnvelopeException {
+		EnvelopeVersion envelope = storage.fetchEnvelope(identifier, timeoutMs);
+		Serializable content;
+		try {
+			content = envelope.getContent(reader);
+		} catch (CryptoException | SerializationException e) {
+			throw new EnvelopeException("Could not open stream manifest", e);
+		}
+		if (!(content instanceof StreamManifest)) {
+			throw new EnvelopeException("Envelope '" + identifier + "' does not contain a stream");
+		}
+		return new ChunkedInputStream(chunks, (StreamManifest) content, parallelism, timeoutMs);
+	}
+
+	private static byte[] readChunk(InputStream content, int chunkSize) throws IOException {
+		byte[] buffer = new byte[chunkSize];
+		int length = 0;
+		while (length < chunkSize) {
+			int read = content.read(buffer, length, chunkSize - length);
+			if (read < 0) {
+				break;
+			}
+			length += read;
+		}
+		if (length == 0) {
+			return null;
+		} else if (length < chunkSize) {
+			byte[] last = new byte[length];
+			System.arraycopy(buffer, 0, last, 0, length);
+			return last;
+		}
+		return buffer;
+	}
+
+	private static void checkFailure(AtomicReference<Throwable> failure) throws EnvelopeException {
+		Throwable throwable = failure.get();
+		if (throwable instanceof EnvelopeException) {
+			throw (EnvelopeException) throwable;
+		} else if (throwable != null) {
+			throw new EnvelopeException("Stream chunk insert failed!", throwable);
+		}
+	}
+
+	private static long getRemaining(long deadline) {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * Reads a stream lazily. The next chunks are fetched in advance, while the current one is read.
+	 */
+	private static class ChunkedInputStream extends InputStream {
+
+		private final ChunkStore chunks;
+		private final StreamManifest manifest;
+		private final int parallelism;
+		private final long timeoutMs;
+		private final ArrayDeque<CompletableFuture<byte[]>> prefetched = new ArrayDeque<>();
+		private int nextFetch;
+		private int nextChunk;
+		private byte[] current;
+		private int position;
+
+		private ChunkedInputStream(ChunkStore chunks, StreamManifest manifest, int parallelism, long timeoutMs) {
+			this.chunks = chunks;
+			this.manifest = manifest;
+			this.parallelism = Math.max(1, parallelism);
+			this.timeoutMs = timeoutMs;
+			prefetch();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensureData()) {
+				return -1;
+			}
+			return current[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			} else if (!ensureData()) {
+				return -1;
+			}
+			int read = Math.min(len, current.length - position);
+			System.arraycopy(current, position, b, off, read);
+			position += read;
+			return read;
+		}
+
+		@Override
+		public int available() {
+			return current == null ? 0 : current.length - position;
+		}
+
+		@Override
+		public void close() {
+			for (CompletableFuture<byte[]> future : prefetched) {
+				future.cancel(false);
+			}
+			prefetched.clear();
+			nextChunk = manifest.getNumOfChunks();
+			current = null;
+		}
+
+		private boolean ensureData() throws IOException {
+			while (current == null || position >= current.length) {
+				if (nextChunk >= manifest.getNumOfChunks()) {
+					return false;
+				}
+				current = openNextChunk();
+				position = 0;
+			}
+			return true;
+		}
+
+		private byte[] openNextChunk() throws IOException {
+			CompletableFuture<byte[]> future = prefetched.poll();
+			byte[] encrypted;
+			try {
+				encrypted = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException | TimeoutException e) {
+				throw new IOException("Could not fetch chunk " + nextChunk + " of " + manifest, e);
+			}
+			try {
+				if (!MessageDigest.isEqual(manifest.getChunkHash(nextChunk), CryptoTools.getSecureHash(encrypted))) {
+					throw new IOException("Chunk " + nextChunk + " of " + manifest + " was modified");
+				}
+				byte[] decrypted = CryptoTools.decryptSymmetricAuthenticated(encrypted, manifest.getStreamKey());
+				nextChunk++;
+				prefetch();
+				return decrypted;
+			} catch (CryptoException e) {
+				throw new IOException("Could not decrypt chunk " + nextChunk + " of " + manifest, e);
+			}
+		}
+
+		private void prefetch() {
+			while (prefetched.size() < parallelism && nextFetch < manifest.getNumOfChunks()) {
+				prefetched.add(chunks.fetchChunk(manifest.getStreamIdentifier(), nextFetch++));
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package i5.las2peer.persistency;
+
+import java.io.Serializable;
+
+import i5.las2peer.serialization.SerializationException;
+import i5.las2peer.serialization.SerializeTools;
+import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.ExpiringCache;
+
+/**
+ * Caches the decrypted content of envelope versions per reader.
+ *
+ * Envelope versions are immutable, so entries never have to be invalidated on updates. They expire after a lifetime
+ * anyway, because read permissions granted by group memberships may change. The decrypted bytes are deserialized
+ * again on each read, so callers always get their own copy. Only immutable values are cached deserialized.
+ *
+ */
+public class EnvelopeContentCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+	public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024; // 16 MB
+	public static final int DEFAULT_LIFETIME = 60;
+
+	/**
+	 * estimated memory used by an entry besides its content
+	 */
+	private static final long ENTRY_OVERHEAD = 256;
+
+	private final ExpiringCache<String, CachedContent> cache;
+	private final long lifetimeMs;
+
+	private static class CachedContent {
+		private final byte[] decrypted;
+		private final Serializable immutableContent;
+		private final long weight;
+
+		private CachedContent(byte[] decrypted, Serializable immutableContent, int size) {
+			this.decrypted = decrypted;
+			this.immutableContent = immutableContent;
+			this.weight = ENTRY_OVERHEAD + size;
+		}
+
+		private long getWeight() {
+			return weight;
+		}
+	}
+
+	public EnvelopeContentCache() {
+		this(DEFAULT_MAX_BYTES, DEFAULT_LIFETIME);
+	}
+
+	/**
+	 * @param maxBytes maximum size of all cached contents in bytes
+	 * @param lifetime time in seconds a decrypted content is cached
+	 */
+	public EnvelopeContentCache(long maxBytes, int lifetime) {
+		this.lifetimeMs = lifetime * 1000L;
+		this.cache = new ExpiringCache<>(DEFAULT_MAX_ENTRIES, maxBytes, CachedContent::getWeight);
+	}
+
+	/**
+	 * gets the cached content of an envelope version for the given reader
+	 *
+	 * @param envelope An envelope version
+	 * @param readerId The identifier of the reading agent
+	 * @param clsLoader The class loader to deserialize the content with
+	 * @return a copy of the content or null, if it is not cached
+	 * @throws SerializationException If the cached content can not be deserialized
+	 * @throws CryptoException If the envelope content can not be hashed
+	 */
+	Serializable get(EnvelopeVersion envelope, String readerId, ClassLoader clsLoader)
+			throws SerializationException, CryptoException {
+		CachedContent cached = cache.get(getKey(envelope, readerId));
+		if (cached == null) {
+			return null;
+		} else if (cached.immutableContent != null) {
+			return cached.immutableContent;
+		}
+		return SerializeTools.deserialize(cached.decrypted, clsLoader);
+	}
+
+	/**
+	 * caches the content of an envelope version for the given reader
+	 *
+	 * @param envelope An envelope version
+	 * @param readerId The identifier of the reading agent
+	 * @param decrypted The decrypted serialized content
+	 * @param content The deserialized content
+	 * @throws CryptoException If the envelope content can not be hashed
+	 */
+	void put(EnvelopeVersion envelope, String readerId, byte[] decrypted, Serializable content)
+			throws CryptoException {
+		CachedContent cached;
+		if (isImmutable(content)) {
+			cached = new CachedContent(null, content, decrypted.length);
+		} else {
+			cached = new CachedContent(decrypted, null, decrypted.length);
+		}
+		cache.put(getKey(envelope, readerId), cached, lifetimeMs);
+	}
+
+	private static String getKey(EnvelopeVersion envelope, String readerId) throws CryptoException {
+		// the content hash tells apart different envelopes created with the same identifier and version
+		return envelope.getIdentifier() + "#" + envelope.getVersion() + "#" + envelope.getContentHash() + "#"
+				+ readerId;
+	}
+
+	private static boolean isImmutable(Serializable content) {
+		return content instanceof String || content instanceof Boolean || content instanceof Character
+				|| content instanceof Byte || content instanceof Short || content instanceof Integer
+				|| content instanceof Long || content instanceof Float || content instanceof Double;
+	}
+
+	/**
+	 * removes all cached contents
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of reads answered from the cache
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * @return number of reads that had to decrypt the content
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+}
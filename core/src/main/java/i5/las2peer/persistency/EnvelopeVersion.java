@@ -69,6 +69,7 @@ public class EnvelopeVersion implements Serializable, XmlAble {
 	private final HashMap<PublicKey, byte[]> readerKeys;
 	private final HashSet<String> readerGroupIds;
 	private final byte[] rawContent;
+	private transient String contentHash;
 
 	// just for the XML factory method
 	private EnvelopeVersion(String identifier, long version, PublicKey authorPubKey,
@@ -224,6 +225,19 @@ public class EnvelopeVersion implements Serializable, XmlAble {
 		return version;
 	}
 
+	/**
+	 * Gets a hash of the raw (encrypted) content of this envelope.
+	 *
+	 * @return Returns the Base64 encoded hash.
+	 * @throws CryptoException If hashing fails
+	 */
+	String getContentHash() throws CryptoException {
+		if (contentHash == null) {
+			contentHash = Base64.getEncoder().encodeToString(CryptoTools.getSecureHash(rawContent));
+		}
+		return contentHash;
+	}
+
 	/**
 	 * Gets the authors public key of this envelope.
 	 * 
@@ -255,13 +269,7 @@ public class EnvelopeVersion implements Serializable, XmlAble {
 		if (isEncrypted()) {
 			return getContent(AgentContext.getCurrent());
 		} else {
-			ClassLoader clsLoader = null;
-			try {
-				clsLoader = Context.get().getServiceClassLoader();
-			} catch (IllegalStateException e) {
-				logger.log(Level.FINER, "Could not get service class loader using default. " + e.toString());
-			}
-			return SerializeTools.deserialize(rawContent, clsLoader);
+			return SerializeTools.deserialize(rawContent, getServiceClassLoader());
 		}
 	}
 
@@ -272,6 +280,15 @@ public class EnvelopeVersion implements Serializable, XmlAble {
 			if (context.getMainAgent() instanceof AnonymousAgent) {
 				throw new EnvelopeAccessDeniedException("The AnonymousAgent can only access unencrypted envelopes!");
 			}
+			EnvelopeContentCache contentCache = null;
+			if (context.getLocalNode() != null) {
+				contentCache = context.getLocalNode().getEnvelopeContentCache();
+				Serializable cached = contentCache.get(this, context.getMainAgent().getIdentifier(),
+						getServiceClassLoader());
+				if (cached != null) {
+					return cached;
+				}
+			}
 
 			SecretKey decryptedReaderKey = null;
 			// fetch all groups
@@ -303,16 +320,24 @@ public class EnvelopeVersion implements Serializable, XmlAble {
 			}
 			// decrypt content
 			decrypted = CryptoTools.decryptSymmetric(rawContent, decryptedReaderKey);
+			Serializable content = SerializeTools.deserialize(decrypted, getServiceClassLoader());
+			if (contentCache != null) {
+				contentCache.put(this, context.getMainAgent().getIdentifier(), decrypted, content);
+			}
+			return content;
 		} else {
 			decrypted = rawContent;
 		}
-		ClassLoader clsLoader = null;
+		return SerializeTools.deserialize(decrypted, getServiceClassLoader());
+	}
+
+	private static ClassLoader getServiceClassLoader() {
 		try {
-			clsLoader = Context.get().getServiceClassLoader();
+			return Context.get().getServiceClassLoader();
 		} catch (IllegalStateException e) {
 			logger.log(Level.FINER, "Could not get service class loader using default. " + e.toString());
+			return null;
 		}
-		return SerializeTools.deserialize(decrypted, clsLoader);
 	}
 
 	/**
@@ -0,0 +1,73 @@
+package i5.las2peer.persistency;
+
+import java.io.Serializable;
+
+import i5.las2peer.api.security.AgentLockedException;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.serialization.SerializationException;
+import i5.las2peer.serialization.SerializeTools;
+import i5.las2peer.tools.CryptoException;
+import rice.p2p.commonapi.Id;
+import rice.p2p.past.PastContent;
+import rice.p2p.past.PastException;
+import rice.pastry.commonapi.PastryIdFactory;
+
+/**
+ * A signed pointer to the metadata of the latest version of an envelope. It is stored at a fixed id per identifier and
+ * only replaced by a head of the same author with an equal or higher version.
+ */
+public class HeadArtifact extends NetworkArtifact {
+
+	private static final long serialVersionUID = 1L;
+
+	public HeadArtifact(PastryIdFactory idFactory, MetadataEnvelope metadata, AgentImpl author)
+			throws CryptoException, VerificationFailedException, AgentLockedException, SerializationException {
+		super(buildId(idFactory, metadata.getEnvelopeIdentifier()), 0, SerializeTools.serialize(metadata), author);
+	}
+
+	/**
+	 * gets the metadata of the envelope version this head points to
+	 *
+	 * @return the metadata of the latest envelope version
+	 * @throws VerificationFailedException If the signature of this head is invalid
+	 * @throws SerializationException If the content is not a {@link MetadataEnvelope}
+	 */
+	public MetadataEnvelope getMetadata() throws VerificationFailedException, SerializationException {
+		Serializable received = SerializeTools.deserialize(getContent());
+		if (!(received instanceof MetadataEnvelope)) {
+			throw new SerializationException("expected " + MetadataEnvelope.class.getCanonicalName() + " but got "
+					+ received.getClass().getCanonicalName() + " instead");
+		}
+		return (MetadataEnvelope) received;
+	}
+
+	@Override
+	public PastContent checkInsert(Id id, PastContent existingContent) throws PastException {
+		if (existingContent instanceof HeadArtifact) {
+			HeadArtifact existingHead = (HeadArtifact) existingContent;
+			if (!hasSameAuthor(existingHead)) {
+				throw new PastException("Write access blocked! Different authors");
+			}
+			try {
+				if (existingHead.getMetadata().getEnvelopeVersion() > getMetadata().getEnvelopeVersion()) {
+					// never move the head back to an older version
+					return existingHead;
+				}
+			} catch (VerificationFailedException | SerializationException e) {
+				// broken head is replaced
+			}
+		}
+		// don't tell the super class about existing copy -> mutable content
+		return super.checkInsert(id, null);
+	}
+
+	@Override
+	public boolean isMutable() {
+		return true;
+	}
+
+	public static Id buildId(PastryIdFactory idFactory, String identifier) {
+		return idFactory.buildId("head-" + identifier);
+	}
+
+}
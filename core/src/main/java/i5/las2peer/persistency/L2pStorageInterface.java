@@ -1,5 +1,6 @@
 package i5.las2peer.persistency;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.Collection;
@@ -7,6 +8,7 @@ import java.util.Collection;
 import i5.las2peer.api.persistency.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.api.persistency.EnvelopeNotFoundException;
+import i5.las2peer.security.AgentContext;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.tools.CryptoException;
@@ -180,4 +182,35 @@ public interface L2pStorageInterface {
 	 */
 	public void removeEnvelope(String identifier) throws EnvelopeNotFoundException, EnvelopeException;
 
+	/**
+	 * Stores the content of the given stream as new version of the Envelope with the given identifier. The stream is
+	 * read, encrypted and stored chunk by chunk, so large contents don't have to fit in memory. The Envelope itself
+	 * only contains the key and the hashes of the chunks.
+	 * 
+	 * @param identifier An unique identifier for the Envelope.
+	 * @param content The stream to store, it is read till its end but not closed.
+	 * @param author The author that is used to sign the content.
+	 * @param readers A collection of agents that are allowed to read the stream. If empty, the stream is public.
+	 * @param timeoutMs A timeout after that an {@link EnvelopeException} is thrown.
+	 * @return Returns the stored Envelope version.
+	 * @throws EnvelopeException If reading the stream fails or an issue with the storage occurs.
+	 */
+	public EnvelopeVersion storeStream(String identifier, InputStream content, AgentImpl author, Collection<?> readers,
+			long timeoutMs) throws EnvelopeException;
+
+	/**
+	 * Fetches the latest version of a stream stored with {@link #storeStream}. The chunks are fetched lazily while the
+	 * returned stream is read.
+	 * 
+	 * @param identifier An unique identifier for the Envelope.
+	 * @param reader The context of the agent reading the stream.
+	 * @param timeoutMs A timeout for the Envelope and each chunk after that an exception is thrown.
+	 * @return Returns a stream of the content.
+	 * @throws EnvelopeNotFoundException If the Envelope was not found.
+	 * @throws EnvelopeException If the Envelope is not a stream, can not be read by the reader or an issue with the
+	 *             storage occurs.
+	 */
+	public InputStream fetchStream(String identifier, AgentContext reader, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException;
+
 }
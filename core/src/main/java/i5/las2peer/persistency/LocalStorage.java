@@ -1,16 +1,19 @@
 package i5.las2peer.persistency;
 
+import java.io.InputStream;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import i5.las2peer.api.persistency.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.api.persistency.EnvelopeNotFoundException;
+import i5.las2peer.security.AgentContext;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.tools.CryptoException;
@@ -18,6 +21,26 @@ import i5.las2peer.tools.CryptoException;
 public class LocalStorage implements L2pStorageInterface {
 
 	private final ConcurrentHashMap<String, EnvelopeVersion> storedEnvelopes = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, byte[]> storedChunks = new ConcurrentHashMap<>();
+
+	private final ChunkStore chunkStore = new ChunkStore() {
+		@Override
+		public CompletableFuture<Void> storeChunk(String streamIdentifier, int index, byte[] chunk, AgentImpl author) {
+			storedChunks.put(streamIdentifier + "#" + index, chunk);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public CompletableFuture<byte[]> fetchChunk(String streamIdentifier, int index) {
+			byte[] chunk = storedChunks.get(streamIdentifier + "#" + index);
+			if (chunk == null) {
+				CompletableFuture<byte[]> result = new CompletableFuture<>();
+				result.completeExceptionally(new EnvelopeNotFoundException(streamIdentifier + "#" + index));
+				return result;
+			}
+			return CompletableFuture.completedFuture(chunk);
+		}
+	};
 
 	@Override
 	public EnvelopeVersion createEnvelope(String identifier, PublicKey authorPubKey, Serializable content,
@@ -146,4 +169,16 @@ public class LocalStorage implements L2pStorageInterface {
 		}
 	}
 
+	@Override
+	public EnvelopeVersion storeStream(String identifier, InputStream content, AgentImpl author, Collection<?> readers,
+			long timeoutMs) throws EnvelopeException {
+		return ChunkedStreams.storeStream(this, chunkStore, identifier, content, author, readers, 1, timeoutMs);
+	}
+
+	@Override
+	public InputStream fetchStream(String identifier, AgentContext reader, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException {
+		return ChunkedStreams.fetchStream(this, chunkStore, identifier, reader, 1, timeoutMs);
+	}
+
 }
@@ -1,10 +1,6 @@
 package i5.las2peer.persistency;
 
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 
 import i5.las2peer.api.security.AgentLockedException;
@@ -42,11 +38,10 @@ public abstract class NetworkArtifact extends AbstractArtifact {
 
 	public PublicKey getAuthorPublicKey() throws VerificationFailedException {
 		try {
-			PublicKey decoded = KeyFactory.getInstance(CryptoTools.getAsymmetricAlgorithm())
-					.generatePublic(new X509EncodedKeySpec(encodedAuthorKey));
+			PublicKey decoded = CryptoTools.decodePublicKey(encodedAuthorKey);
 			CryptoTools.verifySignature(keySignature, encodedAuthorKey, decoded);
 			return decoded;
-		} catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
+		} catch (CryptoException e) {
 			throw new VerificationFailedException("Decoding authors public key failed!", e);
 		}
 	}
@@ -4,18 +4,30 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Random;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 import i5.las2peer.api.Configurable;
 import i5.las2peer.api.persistency.EnvelopeAlreadyExistsException;
@@ -23,20 +35,25 @@ import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.api.persistency.EnvelopeNotFoundException;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.persistency.helper.ArtifactPartComparator;
+import i5.las2peer.persistency.helper.ContentDefinedChunker;
 import i5.las2peer.persistency.helper.FetchEnvelopeHelper;
 import i5.las2peer.persistency.helper.FetchHashedHelper;
+import i5.las2peer.persistency.helper.HedgedArtifactFetcher;
 import i5.las2peer.persistency.helper.LatestArtifactVersionFinder;
 import i5.las2peer.persistency.helper.MergeCounter;
 import i5.las2peer.persistency.helper.MultiArtifactHandler;
 import i5.las2peer.persistency.helper.MultiStoreResult;
+import i5.las2peer.persistency.helper.ReplicaLatencyTracker;
 import i5.las2peer.persistency.helper.StoreProcessHelper;
-import i5.las2peer.persistency.pastry.PastFetchContinuation;
 import i5.las2peer.persistency.pastry.PastInsertContinuation;
 import i5.las2peer.persistency.pastry.PastLookupContinuation;
+import i5.las2peer.security.AgentContext;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.serialization.SerializeTools;
 import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.CryptoTools;
+import i5.las2peer.tools.ExpiringCache;
 import rice.p2p.commonapi.Id;
 import rice.p2p.commonapi.IdFactory;
 import rice.p2p.commonapi.Node;
@@ -75,13 +92,114 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 	public static final long DEFAULT_MAXIMUM_STORAGE_SIZE = 1000 * 1024 * 1024; // 1 GB
 	private long maximumStorageSize = DEFAULT_MAXIMUM_STORAGE_SIZE;
 
-	public static final long DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT = 5 * 60 * 1000 * 1000; // ms => 5 min
+	public static final long DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT = 5 * 60 * 1000; // ms => 5 min
 	private long asyncInsertOperationTimeout = DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT;
 
+	public static final int DEFAULT_MAX_PARTS_IN_FLIGHT = 8;
+	/**
+	 * maximum number of parts of an envelope inserted concurrently
+	 */
+	private int maxPartsInFlight = DEFAULT_MAX_PARTS_IN_FLIGHT;
+
+	public static final int DEFAULT_HEDGE_PERCENTILE = 95;
+	/**
+	 * fetch latency percentile after which another replica is asked in addition
+	 */
+	private int hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+	public static final long DEFAULT_MIN_HEDGE_DELAY = 20; // ms
+	private long minHedgeDelay = DEFAULT_MIN_HEDGE_DELAY;
+
+	public static final long DEFAULT_INITIAL_HEDGE_DELAY = 500; // ms
+	/**
+	 * hedge delay used until enough fetch latencies are known
+	 */
+	private long initialHedgeDelay = DEFAULT_INITIAL_HEDGE_DELAY;
+
+	public static final int DEFAULT_MAX_HEDGED_REQUESTS = 1;
+	/**
+	 * maximum number of additional requests per artifact fetch, zero disables hedging
+	 */
+	private int maxHedgedRequests = DEFAULT_MAX_HEDGED_REQUESTS;
+
+	/**
+	 * store envelopes in content defined chunks shared between versions instead of parts, set by the node
+	 */
+	private volatile boolean contentDefinedChunking = false;
+
+	/**
+	 * time in milliseconds a chunk known to be stored is not looked up again
+	 */
+	private static final long KNOWN_CHUNK_LIFETIME = 10 * 60 * 1000;
+
+	/**
+	 * time in milliseconds the head of an identifier is not looked up again, after it was found not to match its
+	 * version
+	 */
+	private static final long UNTRUSTED_HEAD_LIFETIME = 10 * 60 * 1000;
+
 	private final PastImpl pastStorage;
 	private final PastryIdFactory artifactIdFactory;
 	private final ExecutorService threadpool;
 	private final ConcurrentHashMap<String, Long> versionCache;
+	private final ReplicaLatencyTracker replicaLatencies;
+	private final ContentDefinedChunker chunker = new ContentDefinedChunker();
+	/**
+	 * number of replicas of chunks stored or found recently, by chunk hash
+	 */
+	private final ExpiringCache<String, Integer> knownChunks = new ExpiringCache<>(10000);
+	private final AtomicLong insertedChunks = new AtomicLong();
+	/**
+	 * identifiers with a head not written by the author of the version it points to
+	 */
+	private final ExpiringCache<String, Boolean> untrustedHeads = new ExpiringCache<>(10000);
+
+	private final ChunkStore chunkStore = new ChunkStore() {
+		@Override
+		public CompletableFuture<Void> storeChunk(String streamIdentifier, int index, byte[] chunk, AgentImpl author) {
+			CompletableFuture<Void> result = new CompletableFuture<>();
+			try {
+				NetworkArtifact toStore = new EnvelopeArtifact(artifactIdFactory, streamIdentifier, index, chunk,
+						author);
+				StorageStoreResultHandler resultHandler = (serializable, successfulOperations) -> {
+					if (successfulOperations < 1) {
+						result.completeExceptionally(new EnvelopeException("Stream chunk insert failed!"));
+					} else {
+						result.complete(null);
+					}
+				};
+				pastStorage.insert(toStore,
+						new PastInsertContinuation(threadpool, resultHandler, result::completeExceptionally, toStore));
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+
+		@Override
+		public CompletableFuture<byte[]> fetchChunk(String streamIdentifier, int index) {
+			CompletableFuture<byte[]> result = new CompletableFuture<>();
+			Id checkId = EnvelopeArtifact.buildId(artifactIdFactory, streamIdentifier, index);
+			lookupHandles(checkId, handles -> {
+				if (handles.isEmpty()) {
+					result.completeExceptionally(new EnvelopeNotFoundException("Chunk (" + index + ") of '"
+							+ streamIdentifier + "' with id (" + checkId.toStringFull() + ") not found!"));
+					return;
+				}
+				fetchFromHandles(handles, new StorageArtifactHandler() {
+					@Override
+					public void onReceive(AbstractArtifact artifact) {
+						try {
+							result.complete(artifact.getContent());
+						} catch (VerificationFailedException e) {
+							result.completeExceptionally(e);
+						}
+					}
+				}, result::completeExceptionally);
+			}, result::completeExceptionally);
+			return result;
+		}
+	};
 
 	public SharedStorage(Node node, STORAGE_MODE storageMode, ExecutorService threadpool, String storageDir)
 			throws EnvelopeException {
@@ -116,6 +234,36 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		artifactIdFactory = new PastryIdFactory(node.getEnvironment());
 		this.threadpool = threadpool;
 		versionCache = new ConcurrentHashMap<>();
+		replicaLatencies = new ReplicaLatencyTracker(hedgePercentile, minHedgeDelay, initialHedgeDelay);
+	}
+
+	/**
+	 * @return the directory persistent storage is located in, ending with a file separator
+	 */
+	public String getStorageRootDir() {
+		return storageRootDir;
+	}
+
+	/**
+	 * @return true, if envelopes are stored in content defined chunks
+	 */
+	public boolean isContentDefinedChunking() {
+		return contentDefinedChunking;
+	}
+
+	/**
+	 * @param contentDefinedChunking true, to store envelopes in content defined chunks shared between versions instead
+	 *            of parts, chunked envelopes are read regardless of this setting
+	 */
+	public void setContentDefinedChunking(boolean contentDefinedChunking) {
+		this.contentDefinedChunking = contentDefinedChunking;
+	}
+
+	/**
+	 * @return number of content defined chunks inserted into the network, chunks already stored are not counted
+	 */
+	public long getInsertedChunkCount() {
+		return insertedChunks.get();
 	}
 
 	public long getLocalSize() {
@@ -141,18 +289,14 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 	}
 
 	private void waitForStoreResult(StoreProcessHelper resultHelper, long timeoutMs) throws EnvelopeException {
-		long startWait = System.currentTimeMillis();
-		while (System.currentTimeMillis() - startWait < timeoutMs) {
-			try {
-				if (resultHelper.getResult() >= 0) {
-					return;
-				}
-				Thread.sleep(1);
-			} catch (EnvelopeException e) {
-				throw e;
-			} catch (Exception e) {
-				throw new EnvelopeException(e);
+		try {
+			if (resultHelper.waitForResult(timeoutMs) >= 0) {
+				return;
 			}
+		} catch (EnvelopeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new EnvelopeException(e);
 		}
 		throw new EnvelopeException("store operation timed out");
 	}
@@ -306,6 +450,10 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			return;
 		}
 		byte[] serialized = baos.toByteArray();
+		if (contentDefinedChunking) {
+			insertChunks(envelope, serialized, author, resultHandler, exceptionHandler);
+			return;
+		}
 		int size = serialized.length;
 		int parts = size / NetworkArtifact.MAX_SIZE;
 		if (parts * NetworkArtifact.MAX_SIZE < size) {
@@ -314,54 +462,148 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		int partsize = size / parts + 1;
 		logger.fine("Given object is serialized " + size + " bytes heavy, split into " + parts + " parts each "
 				+ partsize + " bytes in size");
-		MultiStoreResult multiResult = new MultiStoreResult(parts);
-		final String identifier = envelope.getIdentifier();
+		byte[][] rawParts = new byte[parts][];
+		int offset = 0;
+		for (int part = 0; part < parts; part++) {
+			rawParts[part] = Arrays.copyOfRange(serialized, offset, offset + partsize);
+			offset += partsize;
+		}
+		final int numOfParts = parts;
+		MultiStoreResult multiResult = new MultiStoreResult(numOfParts);
+		// all parts done? insert MetadataEnvelope to complete insert operation
+		multiResult.getFuture().orTimeout(asyncInsertOperationTimeout, TimeUnit.MILLISECONDS)
+				.whenCompleteAsync((minSuccessfulOperations, throwable) -> {
+					if (throwable != null) {
+						if (exceptionHandler != null) {
+							exceptionHandler.onException(unwrapInsertException(throwable));
+						}
+						return;
+					}
+					insertMetadata(new MetadataEnvelope(envelope.getIdentifier(), envelope.getVersion(), numOfParts),
+							author, multiResult, resultHandler, exceptionHandler);
+				}, threadpool);
+		// each finished part starts the next one, so only a limited number of parts is inserted concurrently
+		AtomicInteger nextPart = new AtomicInteger();
+		for (int i = 0; i < Math.min(parts, maxPartsInFlight); i++) {
+			insertNextPart(envelope, rawParts, nextPart, author, multiResult);
+		}
+	}
+
+	private void insertNextPart(EnvelopeVersion envelope, byte[][] rawParts, AtomicInteger nextPart, AgentImpl author,
+			MultiStoreResult multiResult) {
+		if (multiResult.isDone()) {
+			return;
+		}
+		int part = nextPart.getAndIncrement();
+		if (part >= rawParts.length) {
+			return;
+		}
 		try {
-			int offset = 0;
-			for (int part = 0; part < parts; part++) {
-				byte[] rawPart = Arrays.copyOfRange(serialized, offset, offset + partsize);
-				NetworkArtifact toStore = new EnvelopeArtifact(artifactIdFactory, identifier, part, rawPart, author);
-				logger.fine("Storing part " + part + " for envelope " + envelope + " with id "
-						+ toStore.getId().toStringFull());
-				pastStorage.insert(toStore, new PastInsertContinuation(threadpool, multiResult, multiResult, toStore));
-				offset += partsize;
-			}
+			NetworkArtifact toStore = new EnvelopeArtifact(artifactIdFactory, envelope.getIdentifier(), part,
+					rawParts[part], author);
+			logger.fine("Storing part " + part + " for envelope " + envelope + " with id "
+					+ toStore.getId().toStringFull());
+			pastStorage.insert(toStore, new PastInsertContinuation(threadpool, new StorageStoreResultHandler() {
+				@Override
+				public void onResult(Serializable serializable, int successfulOperations) {
+					multiResult.onResult(serializable, successfulOperations);
+					insertNextPart(envelope, rawParts, nextPart, author, multiResult);
+				}
+			}, multiResult, toStore));
 		} catch (Exception e) {
+			multiResult.onException(e);
+		}
+	}
+
+	private void insertChunks(EnvelopeVersion envelope, byte[] serialized, AgentImpl author,
+			StorageStoreResultHandler resultHandler, StorageExceptionHandler exceptionHandler) {
+		List<byte[]> chunks = chunker.split(serialized);
+		ArrayList<byte[]> chunkHashes = new ArrayList<>(chunks.size());
+		try {
+			for (byte[] chunk : chunks) {
+				chunkHashes.add(CryptoTools.getSecureHash(chunk));
+			}
+		} catch (CryptoException e) {
 			if (exceptionHandler != null) {
 				exceptionHandler.onException(e);
 			}
 			return;
 		}
-		// wait for all part inserts
-		long insertStart = System.currentTimeMillis();
+		logger.fine("Given object is serialized " + serialized.length + " bytes heavy, split into " + chunks.size()
+				+ " content defined chunks");
+		ChunkedMetadataEnvelope metadata = new ChunkedMetadataEnvelope(envelope.getIdentifier(), envelope.getVersion(),
+				chunkHashes);
+		// the chunks are shared and not owned by anyone, so the first part is stored as marker of the owner
+		MultiStoreResult multiResult = new MultiStoreResult(chunks.size() + 1);
+		// all chunks done? insert MetadataEnvelope to complete insert operation
+		multiResult.getFuture().orTimeout(asyncInsertOperationTimeout, TimeUnit.MILLISECONDS)
+				.whenCompleteAsync((minSuccessfulOperations, throwable) -> {
+					if (throwable != null) {
+						if (exceptionHandler != null) {
+							exceptionHandler.onException(unwrapInsertException(throwable));
+						}
+						return;
+					}
+					insertMetadata(metadata, author, multiResult, resultHandler, exceptionHandler);
+				}, threadpool);
+		try {
+			NetworkArtifact ownerMarker = new EnvelopeArtifact(artifactIdFactory, envelope.getIdentifier(), 0,
+					SerializeTools.serialize(metadata), author);
+			pastStorage.insert(ownerMarker,
+					new PastInsertContinuation(threadpool, multiResult, multiResult, ownerMarker));
+		} catch (Exception e) {
+			multiResult.onException(e);
+			return;
+		}
+		AtomicInteger nextChunk = new AtomicInteger();
+		for (int i = 0; i < Math.min(chunks.size(), maxPartsInFlight); i++) {
+			insertNextChunk(chunks, chunkHashes, nextChunk, multiResult);
+		}
+	}
+
+	private void insertNextChunk(List<byte[]> chunks, List<byte[]> chunkHashes, AtomicInteger nextChunk,
+			MultiStoreResult multiResult) {
+		// known chunks complete right away, so they are skipped in a loop to keep the stack flat for long runs of them
 		while (!multiResult.isDone()) {
-			if (System.currentTimeMillis() - insertStart >= asyncInsertOperationTimeout) {
-				// this point means the network layer did not receive positive or negative feedback
-				if (exceptionHandler != null) {
-					exceptionHandler.onException(new EnvelopeException("Network communication timeout"));
-				}
+			int index = nextChunk.getAndIncrement();
+			if (index >= chunks.size()) {
 				return;
 			}
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				if (exceptionHandler != null) {
-					exceptionHandler.onException(e);
-				}
-				return;
+			String hash = Base64.getEncoder().encodeToString(chunkHashes.get(index));
+			Integer knownReplicas = knownChunks.get(hash);
+			if (knownReplicas != null) {
+				multiResult.onResult(null, knownReplicas);
+				continue;
 			}
-		}
-		Exception exception = multiResult.getException();
-		if (exception != null) {
-			if (exceptionHandler != null) {
-				exceptionHandler.onException(exception);
+			StorageStoreResultHandler chunkResultHandler = (serializable, successfulOperations) -> {
+				if (successfulOperations > 0) {
+					knownChunks.put(hash, successfulOperations, KNOWN_CHUNK_LIFETIME);
+				}
+				multiResult.onResult(serializable, successfulOperations);
+				insertNextChunk(chunks, chunkHashes, nextChunk, multiResult);
+			};
+			try {
+				// only chunks not yet in the network are inserted and replicated
+				lookupHandles(HashedArtifact.buildIdFromHash(artifactIdFactory, chunkHashes.get(index)), handles -> {
+					if (!handles.isEmpty()) {
+						chunkResultHandler.onResult(null, handles.size());
+					} else {
+						insertedChunks.incrementAndGet();
+						storeHashedContentAsync(chunks.get(index), chunkResultHandler, multiResult);
+					}
+				}, multiResult);
+			} catch (CryptoException e) {
+				multiResult.onException(e);
 			}
 			return;
 		}
-		// all parts done? insert MetadataEnvelope to complete insert operation
+	}
+
+	private void insertMetadata(MetadataEnvelope metadataEnvelope, AgentImpl author, MultiStoreResult multiResult,
+			StorageStoreResultHandler resultHandler, StorageExceptionHandler exceptionHandler) {
 		try {
-			MetadataEnvelope metadataEnvelope = new MetadataEnvelope(identifier, version, parts);
-			NetworkArtifact metadataArtifact = new MetadataArtifact(artifactIdFactory, identifier, version,
+			NetworkArtifact metadataArtifact = new MetadataArtifact(artifactIdFactory,
+					metadataEnvelope.getEnvelopeIdentifier(), metadataEnvelope.getEnvelopeVersion(),
 					SerializeTools.serialize(metadataEnvelope), author);
 			logger.fine("Storing metadata for envelope " + metadataEnvelope.toString() + " with id "
 					+ metadataArtifact.getId().toStringFull());
@@ -369,13 +611,12 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 					new PastInsertContinuation(threadpool, new StorageStoreResultHandler() {
 						@Override
 						public void onResult(Serializable envelope, int successfulOperations) {
+							if (successfulOperations > 0) {
+								// only point the head to versions, which can be found
+								insertHead(metadataEnvelope, author);
+							}
 							// all done - call actual user defined result handlers
-							Exception e = multiResult.getException();
-							if (e != null) {
-								if (exceptionHandler != null) {
-									exceptionHandler.onException(e);
-								}
-							} else if (resultHandler != null) {
+							if (resultHandler != null) {
 								resultHandler.onResult(envelope, multiResult.getMinSuccessfulOperations());
 							}
 						}
@@ -384,10 +625,57 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			if (exceptionHandler != null) {
 				exceptionHandler.onException(e);
 			}
-			return;
 		}
 	}
 
+	/**
+	 * Points the head of an envelope to the given version.
+	 *
+	 * The head is only a hint for readers, which check its author against the author of the version and look for
+	 * newer versions. Since the first author of a head owns it, only the author of the first version of an identifier
+	 * writes a head. Versions of other writers are found by the version search.
+	 *
+	 * @param metadataEnvelope The metadata of a stored version
+	 * @param author The author of the version
+	 */
+	private void insertHead(MetadataEnvelope metadataEnvelope, AgentImpl author) {
+		isMetadataSignedBy(metadataEnvelope.getEnvelopeIdentifier(), EnvelopeVersion.START_VERSION,
+				author.getPublicKey()).whenComplete((isOwner, lookupFailure) -> {
+					if (lookupFailure != null || !isOwner) {
+						logger.fine("Not storing head for envelope " + metadataEnvelope.toString()
+								+ ", the first version has a different author");
+						return;
+					}
+					try {
+						HeadArtifact headArtifact = new HeadArtifact(artifactIdFactory, metadataEnvelope, author);
+						pastStorage.insert(headArtifact,
+								new PastInsertContinuation(threadpool, null, new StorageExceptionHandler() {
+									@Override
+									public void onException(Exception e) {
+										// readers fall back to the version search
+										logger.log(Level.FINE,
+												"Could not store head for envelope " + metadataEnvelope.toString(), e);
+									}
+								}, headArtifact));
+					} catch (Exception e) {
+						logger.log(Level.FINE, "Could not create head for envelope " + metadataEnvelope.toString(), e);
+					}
+				});
+	}
+
+	private static Exception unwrapInsertException(Throwable throwable) {
+		if (throwable instanceof CompletionException && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		if (throwable instanceof TimeoutException) {
+			// this point means the network layer did not receive positive or negative feedback
+			return new EnvelopeException("Network communication timeout");
+		} else if (throwable instanceof Exception) {
+			return (Exception) throwable;
+		}
+		return new EnvelopeException(throwable);
+	}
+
 	@Override
 	public EnvelopeVersion fetchEnvelope(String identifier, long timeoutMs)
 			throws EnvelopeNotFoundException, EnvelopeException {
@@ -418,6 +706,190 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		throw new EnvelopeException("Fetch operation time out");
 	}
 
+	/**
+	 * Looks up the latest version of an envelope. Only the head and metadata handles are queried from the network, the
+	 * envelope itself is not fetched.
+	 *
+	 * @param identifier An identifier for the envelope
+	 * @param timeoutMs A timeout in milliseconds
+	 * @return the latest version of the envelope
+	 * @throws EnvelopeNotFoundException If no version of the envelope exists
+	 * @throws EnvelopeException If the lookup failed or timed out
+	 */
+	public long fetchLatestVersion(String identifier, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException {
+		if (timeoutMs < 0) {
+			throw new IllegalArgumentException("Timeout must be greater or equal to zero");
+		}
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		long startVersion = getCachedVersion(identifier);
+		try {
+			SignedMetadata head = untrustedHeads.get(identifier) != null ? null
+					: fetchHead(identifier).get(timeoutMs, TimeUnit.MILLISECONDS);
+			if (head != null && head.metadata.getEnvelopeVersion() >= startVersion) {
+				long headVersion = head.metadata.getEnvelopeVersion();
+				CompletableFuture<Boolean> signed = isMetadataSignedBy(identifier, headVersion, head.author);
+				CompletableFuture<Boolean> newer = existsMetadata(identifier, headVersion + 1);
+				if (signed.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+					if (!newer.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+						versionCache.put(identifier, headVersion);
+						return headVersion;
+					}
+					// stale head, search from the next version on
+					startVersion = headVersion + 1;
+				} else {
+					logger.fine("Ignoring head of " + identifier + ", it is not signed by the author of the version");
+					untrustedHeads.put(identifier, true, UNTRUSTED_HEAD_LIFETIME);
+				}
+			}
+		} catch (TimeoutException e) {
+			throw new EnvelopeException("Version lookup time out");
+		} catch (InterruptedException | ExecutionException e) {
+			throw new EnvelopeException(e);
+		}
+		CompletableFuture<ArrayList<PastContentHandle>> lookup = new CompletableFuture<>();
+		LatestArtifactVersionFinder finder = new LatestArtifactVersionFinder(identifier, startVersion,
+				lookup::complete, artifactIdFactory, pastStorage, numOfReplicas + 1, threadpool);
+		threadpool.execute(finder);
+		ArrayList<PastContentHandle> handles;
+		try {
+			handles = lookup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new EnvelopeException("Version lookup time out");
+		} catch (InterruptedException | ExecutionException e) {
+			throw new EnvelopeException(e);
+		}
+		if (handles.isEmpty()) {
+			throw new EnvelopeNotFoundException("no version found for identifier '" + identifier + "'");
+		}
+		long latestVersion = finder.getLatestVersion();
+		versionCache.put(identifier, latestVersion);
+		return latestVersion;
+	}
+
+	private long getCachedVersion(String identifier) {
+		Long cachedVersion = versionCache.get(identifier);
+		if (cachedVersion == null) {
+			return EnvelopeVersion.START_VERSION;
+		}
+		return cachedVersion;
+	}
+
+	/**
+	 * metadata of an envelope version and the author who signed it
+	 */
+	private static class SignedMetadata {
+		private final MetadataEnvelope metadata;
+		private final PublicKey author;
+
+		private SignedMetadata(MetadataEnvelope metadata, PublicKey author) {
+			this.metadata = metadata;
+			this.author = author;
+		}
+	}
+
+	/**
+	 * fetches the metadata the head of an envelope points to
+	 *
+	 * @param identifier An identifier for the envelope
+	 * @return a future that completes with the metadata or {@code null} if there is no valid head
+	 */
+	private CompletableFuture<SignedMetadata> fetchHead(String identifier) {
+		CompletableFuture<SignedMetadata> result = new CompletableFuture<>();
+		StorageExceptionHandler noHead = new StorageExceptionHandler() {
+			@Override
+			public void onException(Exception e) {
+				logger.fine("Could not fetch head for " + identifier + ": " + e.toString());
+				result.complete(null);
+			}
+		};
+		lookupHandles(HeadArtifact.buildId(artifactIdFactory, identifier), new StorageLookupHandler() {
+			@Override
+			public void onLookup(ArrayList<PastContentHandle> handles) {
+				if (handles.isEmpty()) {
+					result.complete(null);
+					return;
+				}
+				fetchFromHandles(handles, new StorageArtifactHandler() {
+					@Override
+					public void onReceive(AbstractArtifact artifact) {
+						try {
+							if (!(artifact instanceof HeadArtifact)) {
+								throw new EnvelopeException("expected " + HeadArtifact.class.getCanonicalName()
+										+ " but got " + artifact.getClass().getCanonicalName() + " instead");
+							}
+							MetadataEnvelope head = ((HeadArtifact) artifact).getMetadata();
+							if (!identifier.equals(head.getEnvelopeIdentifier())) {
+								throw new EnvelopeException("head points to " + head.getEnvelopeIdentifier());
+							}
+							result.complete(new SignedMetadata(head, ((HeadArtifact) artifact).getAuthorPublicKey()));
+						} catch (EnvelopeException | VerificationFailedException | SerializationException e) {
+							noHead.onException(e);
+						}
+					}
+				}, noHead);
+			}
+		}, noHead);
+		return result;
+	}
+
+	/**
+	 * checks that the metadata of an envelope version is signed by the given author
+	 *
+	 * @param identifier An identifier for the envelope
+	 * @param version The version of the envelope
+	 * @param author The expected author
+	 * @return a future that completes with {@code false} if the version does not exist or has a different author
+	 */
+	private CompletableFuture<Boolean> isMetadataSignedBy(String identifier, long version, PublicKey author) {
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		StorageExceptionHandler exceptionHandler = new StorageExceptionHandler() {
+			@Override
+			public void onException(Exception e) {
+				result.completeExceptionally(e);
+			}
+		};
+		lookupHandles(MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, version),
+				new StorageLookupHandler() {
+					@Override
+					public void onLookup(ArrayList<PastContentHandle> handles) {
+						if (handles.isEmpty()) {
+							result.complete(false);
+							return;
+						}
+						fetchFromHandles(handles, new StorageArtifactHandler() {
+							@Override
+							public void onReceive(AbstractArtifact artifact) {
+								try {
+									result.complete(artifact instanceof NetworkArtifact
+											&& author.equals(((NetworkArtifact) artifact).getAuthorPublicKey()));
+								} catch (VerificationFailedException e) {
+									result.completeExceptionally(e);
+								}
+							}
+						}, exceptionHandler);
+					}
+				}, exceptionHandler);
+		return result;
+	}
+
+	private CompletableFuture<Boolean> existsMetadata(String identifier, long version) {
+		CompletableFuture<Boolean> result = new CompletableFuture<>();
+		lookupHandles(MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, version),
+				new StorageLookupHandler() {
+					@Override
+					public void onLookup(ArrayList<PastContentHandle> handles) {
+						result.complete(!handles.isEmpty());
+					}
+				}, new StorageExceptionHandler() {
+					@Override
+					public void onException(Exception e) {
+						result.completeExceptionally(e);
+					}
+				});
+		return result;
+	}
+
 	@Override
 	public void fetchEnvelopeAsync(String identifier, StorageEnvelopeHandler envelopeHandler,
 			StorageExceptionHandler exceptionHandler) {
@@ -435,34 +907,51 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 		// get handles for first part of the desired version
 		if (version == EnvelopeVersion.LATEST_VERSION) {
-			// retrieve the latest version from the network
-			Long startVersion = versionCache.get(identifier);
-			if (startVersion == null) {
-				startVersion = EnvelopeVersion.START_VERSION;
+			// retrieve the latest version from the network, the head usually points to it directly
+			long startVersion = getCachedVersion(identifier);
+			if (untrustedHeads.get(identifier) != null) {
+				findLatestVersion(identifier, startVersion, envelopeHandler, exceptionHandler);
+				return;
 			}
-			logger.fine("Starting latest version lookup for " + identifier + " at " + startVersion);
-			threadpool.execute(new LatestArtifactVersionFinder(identifier, startVersion, new StorageLookupHandler() {
-				@Override
-				public void onLookup(ArrayList<PastContentHandle> metadataHandles) {
-					if (metadataHandles.size() > 0) {
-						fetchWithMetadata(metadataHandles, new StorageEnvelopeHandler() {
-							@Override
-							public void onEnvelopeReceived(EnvelopeVersion result) {
-								// this handler-in-the-middle updates the version cache,
-								// before returning the result to the actual envelope handler
+			fetchHead(identifier).thenAccept(head -> {
+				if (head == null || head.metadata.getEnvelopeVersion() < startVersion) {
+					findLatestVersion(identifier, startVersion, envelopeHandler, exceptionHandler);
+					return;
+				}
+				long headVersion = head.metadata.getEnvelopeVersion();
+				// validate the head against its version and check for a newer version while the parts are fetched
+				CompletableFuture<Boolean> signed = isMetadataSignedBy(identifier, headVersion, head.author);
+				CompletableFuture<Boolean> newer = existsMetadata(identifier, headVersion + 1);
+				CompletableFuture<EnvelopeVersion> envelope = new CompletableFuture<>();
+				fetchWithMetadata(head, envelope::complete, envelope::completeExceptionally);
+				signed.whenComplete((isSigned, signedFailure) -> {
+					if (signedFailure != null || !isSigned) {
+						if (signedFailure == null) {
+							logger.fine("Ignoring head of " + identifier
+									+ ", it is not signed by the author of the version");
+							untrustedHeads.put(identifier, true, UNTRUSTED_HEAD_LIFETIME);
+						}
+						findLatestVersion(identifier, startVersion, envelopeHandler, exceptionHandler);
+						return;
+					}
+					newer.whenComplete((newerExists, lookupFailure) -> {
+						if (lookupFailure != null || newerExists) {
+							findLatestVersion(identifier, lookupFailure != null ? startVersion : headVersion + 1,
+									envelopeHandler, exceptionHandler);
+							return;
+						}
+						envelope.whenComplete((result, fetchFailure) -> {
+							if (fetchFailure != null) {
+								logger.fine("Could not fetch head version of " + identifier + ": " + fetchFailure);
+								findLatestVersion(identifier, startVersion, envelopeHandler, exceptionHandler);
+							} else {
 								versionCache.put(result.getIdentifier(), result.getVersion());
 								envelopeHandler.onEnvelopeReceived(result);
 							}
-						}, exceptionHandler);
-					} else {
-						// not found
-						if (exceptionHandler != null) {
-							exceptionHandler.onException(new EnvelopeNotFoundException(
-									"no version found for identifier '" + identifier + "'"));
-						}
-					}
-				}
-			}, artifactIdFactory, pastStorage, numOfReplicas + 1, threadpool));
+						});
+					});
+				});
+			});
 		} else {
 			Id checkId = MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, version);
 			lookupHandles(checkId, new StorageLookupHandler() {
@@ -485,6 +974,33 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 	}
 
+	private void findLatestVersion(String identifier, long startVersion, StorageEnvelopeHandler envelopeHandler,
+			StorageExceptionHandler exceptionHandler) {
+		logger.fine("Starting latest version lookup for " + identifier + " at " + startVersion);
+		threadpool.execute(new LatestArtifactVersionFinder(identifier, startVersion, new StorageLookupHandler() {
+			@Override
+			public void onLookup(ArrayList<PastContentHandle> metadataHandles) {
+				if (metadataHandles.size() > 0) {
+					fetchWithMetadata(metadataHandles, new StorageEnvelopeHandler() {
+						@Override
+						public void onEnvelopeReceived(EnvelopeVersion result) {
+							// this handler-in-the-middle updates the version cache,
+							// before returning the result to the actual envelope handler
+							versionCache.put(result.getIdentifier(), result.getVersion());
+							envelopeHandler.onEnvelopeReceived(result);
+						}
+					}, exceptionHandler);
+				} else {
+					// not found
+					if (exceptionHandler != null) {
+						exceptionHandler.onException(new EnvelopeNotFoundException(
+								"no version found for identifier '" + identifier + "'"));
+					}
+				}
+			}
+		}, artifactIdFactory, pastStorage, numOfReplicas + 1, threadpool));
+	}
+
 	private void fetchWithMetadata(ArrayList<PastContentHandle> metadataHandles, StorageEnvelopeHandler envelopeHandler,
 			StorageExceptionHandler exceptionHandler) {
 		fetchFromHandles(metadataHandles, new StorageArtifactHandler() {
@@ -492,28 +1008,10 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			public void onReceive(AbstractArtifact artifact) {
 				try {
 					Serializable received = SerializeTools.deserialize(artifact.getContent());
-					if (received instanceof MetadataEnvelope) {
-						MetadataEnvelope metadata = (MetadataEnvelope) received;
-						// metadata received query all actual data parts
-						int size = metadata.getEnvelopeNumOfParts();
-						MultiArtifactHandler artifactHandler = new MultiArtifactHandler(size,
-								new StoragePartsHandler() {
-									@Override
-									public void onPartsReceived(ArrayList<NetworkArtifact> parts) {
-										try {
-											EnvelopeVersion result = buildFromParts(artifactIdFactory, metadata, parts);
-											envelopeHandler.onEnvelopeReceived(result);
-										} catch (IllegalArgumentException | EnvelopeException e) {
-											if (exceptionHandler != null) {
-												exceptionHandler.onException(e);
-											}
-										}
-									}
-								}, exceptionHandler);
-						for (int partIndex = 0; partIndex < size; partIndex++) {
-							fetchPart(metadata.getEnvelopeIdentifier(), partIndex, metadata.getEnvelopeVersion(),
-									artifactHandler);
-						}
+					if (received instanceof MetadataEnvelope && artifact instanceof NetworkArtifact) {
+						PublicKey author = ((NetworkArtifact) artifact).getAuthorPublicKey();
+						fetchWithMetadata(new SignedMetadata((MetadataEnvelope) received, author), envelopeHandler,
+								exceptionHandler);
 					} else if (exceptionHandler != null) {
 						exceptionHandler.onException(
 								new EnvelopeException("expected " + MetadataEnvelope.class.getCanonicalName()
@@ -528,6 +1026,181 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}, exceptionHandler);
 	}
 
+	private void fetchWithMetadata(SignedMetadata signedMetadata, StorageEnvelopeHandler envelopeHandler,
+			StorageExceptionHandler exceptionHandler) {
+		MetadataEnvelope metadata = signedMetadata.metadata;
+		if (metadata instanceof ChunkedMetadataEnvelope) {
+			// chunking only controls how this node writes, chunked envelopes of other nodes are always read
+			fetchChunks(signedMetadata, envelopeHandler, exceptionHandler);
+			return;
+		}
+		// metadata received query all actual data parts
+		int size = metadata.getEnvelopeNumOfParts();
+		MultiArtifactHandler artifactHandler = new MultiArtifactHandler(size, new StoragePartsHandler() {
+			@Override
+			public void onPartsReceived(ArrayList<NetworkArtifact> parts) {
+				try {
+					EnvelopeVersion result = buildFromParts(artifactIdFactory, metadata, parts);
+					// the metadata may come from a head, which is signed separately
+					if (!signedMetadata.author.equals(result.getAuthorPublicKey())) {
+						throw new EnvelopeException("Metadata and envelope have different authors");
+					}
+					envelopeHandler.onEnvelopeReceived(result);
+				} catch (IllegalArgumentException | EnvelopeException e) {
+					if (exceptionHandler != null) {
+						exceptionHandler.onException(e);
+					}
+				}
+			}
+		}, exceptionHandler);
+		for (int partIndex = 0; partIndex < size; partIndex++) {
+			fetchPart(metadata.getEnvelopeIdentifier(), partIndex, metadata.getEnvelopeVersion(), artifactHandler);
+		}
+	}
+
+	private void fetchChunks(SignedMetadata signedMetadata, StorageEnvelopeHandler envelopeHandler,
+			StorageExceptionHandler exceptionHandler) {
+		ChunkFetch fetch = new ChunkFetch(signedMetadata, envelopeHandler, exceptionHandler);
+		fetch.checkOwner();
+		// each received chunk starts the next one, so only a limited number of chunks is fetched concurrently
+		for (int i = 0; i < Math.min(fetch.chunks.length, maxPartsInFlight); i++) {
+			fetch.fetchNextChunk();
+		}
+	}
+
+	/**
+	 * the chunks of an envelope being fetched
+	 */
+	private class ChunkFetch {
+
+		private final SignedMetadata signedMetadata;
+		private final ChunkedMetadataEnvelope metadata;
+		private final StorageEnvelopeHandler envelopeHandler;
+		private final StorageExceptionHandler exceptionHandler;
+		private final byte[][] chunks;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final AtomicInteger missing;
+		private final AtomicBoolean failed = new AtomicBoolean();
+
+		private ChunkFetch(SignedMetadata signedMetadata, StorageEnvelopeHandler envelopeHandler,
+				StorageExceptionHandler exceptionHandler) {
+			this.signedMetadata = signedMetadata;
+			this.metadata = (ChunkedMetadataEnvelope) signedMetadata.metadata;
+			this.envelopeHandler = envelopeHandler;
+			this.exceptionHandler = exceptionHandler;
+			int size = metadata.getEnvelopeNumOfParts();
+			this.chunks = new byte[size][];
+			// all chunks and the owner check
+			this.missing = new AtomicInteger(size + 1);
+		}
+
+		/**
+		 * Checks that the author of the metadata owns the identifier. The owner marker is an {@link EnvelopeArtifact},
+		 * which is only replaced by its first author.
+		 */
+		private void checkOwner() {
+			String identifier = metadata.getEnvelopeIdentifier();
+			Id markerId = EnvelopeArtifact.buildId(artifactIdFactory, identifier, 0);
+			lookupHandles(markerId, handles -> {
+				if (handles.isEmpty()) {
+					onException(new EnvelopeNotFoundException("Owner marker of '" + identifier + "' with id ("
+							+ markerId.toStringFull() + ") not found!"));
+					return;
+				}
+				fetchFromHandles(handles, new StorageArtifactHandler() {
+					@Override
+					public void onReceive(AbstractArtifact artifact) {
+						try {
+							if (!(artifact instanceof NetworkArtifact) || !signedMetadata.author
+									.equals(((NetworkArtifact) artifact).getAuthorPublicKey())) {
+								throw new EnvelopeException(
+										"Metadata " + metadata + " is not signed by the owner of the identifier");
+							}
+							partReceived();
+						} catch (VerificationFailedException | EnvelopeException e) {
+							onException(e);
+						}
+					}
+				}, this::onException);
+			}, this::onException);
+		}
+
+		private void fetchNextChunk() {
+			if (failed.get()) {
+				return;
+			}
+			int index = nextChunk.getAndIncrement();
+			if (index >= chunks.length) {
+				return;
+			}
+			byte[] hash = metadata.getChunkHash(index);
+			fetchHashedContentAsync(hash, new StorageArtifactHandler() {
+				@Override
+				public void onReceive(AbstractArtifact artifact) {
+					try {
+						byte[] chunk = artifact.getContent();
+						if (!MessageDigest.isEqual(hash, CryptoTools.getSecureHash(chunk))) {
+							throw new EnvelopeException("Chunk (" + index + ") of " + metadata + " was modified");
+						}
+						chunks[index] = chunk;
+						fetchNextChunk();
+						partReceived();
+					} catch (VerificationFailedException | CryptoException | EnvelopeException e) {
+						onException(e);
+					}
+				}
+			}, this::onException);
+		}
+
+		private void partReceived() throws EnvelopeException {
+			if (missing.decrementAndGet() == 0 && !failed.get()) {
+				envelopeHandler.onEnvelopeReceived(buildFromChunks(signedMetadata, chunks));
+			}
+		}
+
+		private void onException(Exception e) {
+			if (failed.compareAndSet(false, true) && exceptionHandler != null) {
+				exceptionHandler.onException(e);
+			}
+		}
+
+	}
+
+	private static EnvelopeVersion buildFromChunks(SignedMetadata signedMetadata, byte[][] chunks)
+			throws EnvelopeException {
+		MetadataEnvelope metadata = signedMetadata.metadata;
+		int size = 0;
+		for (byte[] chunk : chunks) {
+			size += chunk.length;
+		}
+		byte[] serialized = new byte[size];
+		int offset = 0;
+		for (byte[] chunk : chunks) {
+			System.arraycopy(chunk, 0, serialized, offset, chunk.length);
+			offset += chunk.length;
+		}
+		try {
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			Object obj = ois.readObject();
+			if (!(obj instanceof EnvelopeVersion)) {
+				throw new EnvelopeException("expected class " + EnvelopeVersion.class.getCanonicalName() + " but got "
+						+ obj.getClass().getCanonicalName() + " instead");
+			}
+			EnvelopeVersion result = (EnvelopeVersion) obj;
+			if (!metadata.getEnvelopeIdentifier().equals(result.getIdentifier())
+					|| metadata.getEnvelopeVersion() != result.getVersion()) {
+				throw new EnvelopeException("Chunks contain " + result + " instead of " + metadata);
+			}
+			// the chunks are not signed, but their hashes are
+			if (!signedMetadata.author.equals(result.getAuthorPublicKey())) {
+				throw new EnvelopeException("Metadata and envelope have different authors");
+			}
+			return result;
+		} catch (IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+			throw new EnvelopeException("Building envelope from chunks failed!", e);
+		}
+	}
+
 	private void fetchPart(String identifier, int part, long version, MultiArtifactHandler artifactHandler) {
 		Id checkId = EnvelopeArtifact.buildId(artifactIdFactory, identifier, part);
 		logger.fine("Fetching part (" + part + ") of envelope '" + identifier + "' with id " + checkId.toStringFull()
@@ -552,9 +1225,8 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			throw new IllegalArgumentException("No handles to fetch given");
 		}
 		// XXX pick the best fitting handle depending on nodeid (web-of-trust) or distance
-		PastContentHandle bestHandle = handles.get(new Random().nextInt(handles.size()));
-		// query fetch command
-		pastStorage.fetch(bestHandle, new PastFetchContinuation(threadpool, artifactHandler, exceptionHandler));
+		new HedgedArtifactFetcher(handles, artifactHandler, exceptionHandler, pastStorage, threadpool, replicaLatencies,
+				maxHedgedRequests).run();
 	}
 
 	private static EnvelopeVersion buildFromParts(PastryIdFactory artifactIdFactory, MetadataEnvelope metadata,
@@ -655,6 +1327,19 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 	}
 
+	@Override
+	public EnvelopeVersion storeStream(String identifier, InputStream content, AgentImpl author, Collection<?> readers,
+			long timeoutMs) throws EnvelopeException {
+		return ChunkedStreams.storeStream(this, chunkStore, identifier, content, author, readers, maxPartsInFlight,
+				timeoutMs);
+	}
+
+	@Override
+	public InputStream fetchStream(String identifier, AgentContext reader, long timeoutMs)
+			throws EnvelopeNotFoundException, EnvelopeException {
+		return ChunkedStreams.fetchStream(this, chunkStore, identifier, reader, maxPartsInFlight, timeoutMs);
+	}
+
 	@Override
 	public void removeEnvelope(String identifier) throws EnvelopeNotFoundException, EnvelopeException {
 		throw new EnvelopeException("Delete not implemented in Past!");
@@ -699,10 +1384,7 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 				@Override
 				public void onLookup(ArrayList<PastContentHandle> handles) {
 					if (handles.size() > 0) {
-						// XXX pick the best fitting handle depending on nodeid (web-of-trust) or distance
-						PastContentHandle bestHandle = handles.get(new Random().nextInt(handles.size()));
-						pastStorage.fetch(bestHandle,
-								new PastFetchContinuation(threadpool, artifactHandler, exceptionHandler));
+						fetchFromHandles(handles, artifactHandler, exceptionHandler);
 					} else {
 						// not found
 						if (exceptionHandler != null) {
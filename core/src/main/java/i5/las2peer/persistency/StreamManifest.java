@@ -0,0 +1,66 @@
+package i5.las2peer.persistency;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import javax.crypto.SecretKey;
+
+/**
+ * The content of an envelope that points to a stream stored in chunks. The stream key is only readable for the
+ * readers of the envelope.
+ */
+public class StreamManifest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String streamIdentifier;
+	private final SecretKey streamKey;
+	private final long size;
+	private final ArrayList<byte[]> chunkHashes;
+
+	public StreamManifest(String streamIdentifier, SecretKey streamKey, long size, ArrayList<byte[]> chunkHashes) {
+		this.streamIdentifier = streamIdentifier;
+		this.streamKey = streamKey;
+		this.size = size;
+		this.chunkHashes = chunkHashes;
+	}
+
+	/**
+	 * @return the identifier the chunks of this stream are stored with
+	 */
+	public String getStreamIdentifier() {
+		return streamIdentifier;
+	}
+
+	/**
+	 * @return the key the chunks are encrypted with
+	 */
+	public SecretKey getStreamKey() {
+		return streamKey;
+	}
+
+	/**
+	 * @return the size of the stream in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	public int getNumOfChunks() {
+		return chunkHashes.size();
+	}
+
+	/**
+	 * @param index The index of a chunk
+	 * @return the hash of the encrypted chunk
+	 */
+	public byte[] getChunkHash(int index) {
+		return chunkHashes.get(index);
+	}
+
+	@Override
+	public String toString() {
+		return streamIdentifier + " (" + size + " bytes in " + chunkHashes.size() + " chunks)";
+	}
+
+}
@@ -0,0 +1,92 @@
+package i5.las2peer.persistency.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class splits data into chunks at content defined boundaries. A boundary is set where a rolling (gear) hash over
+ * the last bytes falls below a threshold. An edit therefore only changes the chunks around it, while all other chunks
+ * stay the same and can be shared between versions.
+ *
+ * Boundaries are only searched after the minimum size, so the threshold is chosen such that the expected distance to
+ * the next boundary is the average size minus the minimum size.
+ */
+public class ContentDefinedChunker {
+
+	public static final int DEFAULT_MIN_SIZE = 16 * 1024;
+	public static final int DEFAULT_AVERAGE_SIZE = 64 * 1024;
+	public static final int DEFAULT_MAX_SIZE = 256 * 1024;
+
+	/**
+	 * random values per byte, the seed is fixed so all nodes find the same boundaries
+	 */
+	private static final long[] GEAR = new long[256];
+
+	static {
+		Random random = new Random(0x6c61733270656572L);
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private final int minSize;
+	private final int maxSize;
+	/**
+	 * unsigned threshold, a boundary is set with a probability of 1 / (average - min) per byte
+	 */
+	private final long threshold;
+
+	public ContentDefinedChunker() {
+		this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param minSize The minimum size of a chunk, except the last one
+	 * @param averageSize The expected average size of a chunk
+	 * @param maxSize The maximum size of a chunk
+	 */
+	public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+		if (minSize < 1 || averageSize < minSize || maxSize < averageSize) {
+			throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= average <= max");
+		}
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		// compares the whole hash, so the high bits decide, they depend on more of the recent bytes
+		this.threshold = averageSize == minSize ? -1L : Long.divideUnsigned(-1L, averageSize - minSize);
+	}
+
+	/**
+	 * splits the given data into chunks
+	 *
+	 * @param data The data to split
+	 * @return the chunks in order, empty if the data is empty
+	 */
+	public List<byte[]> split(byte[] data) {
+		List<byte[]> chunks = new ArrayList<>();
+		int start = 0;
+		while (start < data.length) {
+			int end = findBoundary(data, start);
+			chunks.add(Arrays.copyOfRange(data, start, end));
+			start = end;
+		}
+		return chunks;
+	}
+
+	private int findBoundary(byte[] data, int start) {
+		int limit = Math.min(data.length, start + maxSize);
+		if (limit - start <= minSize) {
+			return limit;
+		}
+		long hash = 0;
+		for (int i = start + minSize; i < limit; i++) {
+			hash = (hash << 1) + GEAR[data[i] & 0xff];
+			if (Long.compareUnsigned(hash, threshold) < 0) {
+				return i + 1;
+			}
+		}
+		return limit;
+	}
+
+}
@@ -0,0 +1,155 @@
+package i5.las2peer.persistency.helper;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.persistency.AbstractArtifact;
+import i5.las2peer.persistency.StorageArtifactHandler;
+import i5.las2peer.persistency.StorageExceptionHandler;
+import i5.las2peer.persistency.pastry.PastFetchContinuation;
+import rice.p2p.past.Past;
+import rice.p2p.past.PastContentHandle;
+
+/**
+ * This class is used to fetch an artifact from one of its replicas. The fastest known replica is asked first. If it
+ * does not answer within the hedge delay of the {@link ReplicaLatencyTracker}, the next replica is asked in addition.
+ * A failed request directly moves on to the next replica. The first result wins, later results are dropped.
+ */
+public class HedgedArtifactFetcher implements Runnable {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(HedgedArtifactFetcher.class);
+
+	private static final ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "las2peer-hedged-fetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The part of the storage needed to fetch an artifact from a single replica.
+	 */
+	interface ReplicaFetch {
+
+		/**
+		 * @param handle The handle of the replica
+		 * @param artifactHandler The handler that gets the fetched artifact
+		 * @param exceptionHandler The handler that is called if the fetch failed
+		 */
+		void fetch(PastContentHandle handle, StorageArtifactHandler artifactHandler,
+				StorageExceptionHandler exceptionHandler);
+	}
+
+	private final List<PastContentHandle> handles;
+	private final StorageArtifactHandler artifactHandler;
+	private final StorageExceptionHandler exceptionHandler;
+	private final ReplicaFetch replicaFetch;
+	private final ExecutorService threadpool;
+	private final ReplicaLatencyTracker latencyTracker;
+	private final int maxHedgedRequests;
+
+	private final AtomicBoolean done = new AtomicBoolean();
+	private final AtomicInteger nextHandle = new AtomicInteger();
+	private final AtomicInteger hedgedRequests = new AtomicInteger();
+	private final AtomicInteger failedRequests = new AtomicInteger();
+	private volatile ScheduledFuture<?> pendingHedge;
+
+	/**
+	 * constructor
+	 *
+	 * @param handles The handles of all replicas of the artifact, must not be empty.
+	 * @param artifactHandler The handler that gets the first fetched artifact.
+	 * @param exceptionHandler The handler that is called if all replicas failed.
+	 * @param pastStorage A past storage to fetch the artifact from.
+	 * @param threadpool A executor service to perform subtasks.
+	 * @param latencyTracker The latency tracker that orders the replicas and decides when to hedge.
+	 * @param maxHedgedRequests The maximum number of additional requests sent for slow replicas.
+	 */
+	public HedgedArtifactFetcher(List<PastContentHandle> handles, StorageArtifactHandler artifactHandler,
+			StorageExceptionHandler exceptionHandler, Past pastStorage, ExecutorService threadpool,
+			ReplicaLatencyTracker latencyTracker, int maxHedgedRequests) {
+		this(handles, artifactHandler, exceptionHandler,
+				(handle, onReceive, onException) -> pastStorage.fetch(handle,
+						new PastFetchContinuation(threadpool, onReceive, onException)),
+				threadpool, latencyTracker, maxHedgedRequests);
+	}
+
+	HedgedArtifactFetcher(List<PastContentHandle> handles, StorageArtifactHandler artifactHandler,
+			StorageExceptionHandler exceptionHandler, ReplicaFetch replicaFetch, ExecutorService threadpool,
+			ReplicaLatencyTracker latencyTracker, int maxHedgedRequests) {
+		this.handles = latencyTracker.order(handles);
+		this.artifactHandler = artifactHandler;
+		this.exceptionHandler = exceptionHandler;
+		this.replicaFetch = replicaFetch;
+		this.threadpool = threadpool;
+		this.latencyTracker = latencyTracker;
+		this.maxHedgedRequests = maxHedgedRequests;
+	}
+
+	@Override
+	public void run() {
+		requestNext();
+	}
+
+	private void requestNext() {
+		if (done.get()) {
+			return;
+		}
+		int index = nextHandle.getAndIncrement();
+		if (index >= handles.size()) {
+			return;
+		}
+		PastContentHandle handle = handles.get(index);
+		long start = System.currentTimeMillis();
+		replicaFetch.fetch(handle, new StorageArtifactHandler() {
+			@Override
+			public void onReceive(AbstractArtifact artifact) {
+				latencyTracker.recordSuccess(handle, System.currentTimeMillis() - start);
+				if (done.compareAndSet(false, true)) {
+					cancelHedge();
+					artifactHandler.onReceive(artifact);
+				}
+			}
+		}, new StorageExceptionHandler() {
+			@Override
+			public void onException(Exception e) {
+				latencyTracker.recordFailure(handle, System.currentTimeMillis() - start);
+				logger.fine("Fetch from replica " + (index + 1) + " of " + handles.size() + " failed: " + e.toString());
+				if (failedRequests.incrementAndGet() >= handles.size()) {
+					if (done.compareAndSet(false, true) && exceptionHandler != null) {
+						exceptionHandler.onException(e);
+					}
+				} else {
+					requestNext();
+				}
+			}
+		});
+		scheduleHedge();
+	}
+
+	private void scheduleHedge() {
+		if (done.get() || nextHandle.get() >= handles.size() || hedgedRequests.get() >= maxHedgedRequests) {
+			return;
+		}
+		cancelHedge();
+		pendingHedge = hedgeTimer.schedule(() -> {
+			if (!done.get() && hedgedRequests.incrementAndGet() <= maxHedgedRequests) {
+				threadpool.execute(this::requestNext);
+			}
+		}, latencyTracker.getHedgeDelay(), TimeUnit.MILLISECONDS);
+	}
+
+	private void cancelHedge() {
+		ScheduledFuture<?> hedge = pendingHedge;
+		if (hedge != null) {
+			hedge.cancel(false);
+		}
+	}
+
+}
@@ -105,6 +105,13 @@ public class LatestArtifactVersionFinder implements Runnable, StorageLookupHandl
 		requestLookup(startVersion);
 	}
 
+	/**
+	 * @return the latest version found so far or {@link EnvelopeVersion#NULL_VERSION} if none was found
+	 */
+	public long getLatestVersion() {
+		return latestVersion;
+	}
+
 	private void requestLookup(long version) {
 		currentVersion = version;
 		Id checkId = MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, currentVersion);
@@ -2,6 +2,7 @@ package i5.las2peer.persistency.helper;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.persistency.StorageExceptionHandler;
@@ -9,8 +10,8 @@ import i5.las2peer.persistency.StorageStoreResultHandler;
 
 /**
  * This class is used to handle the multiple store results generated from a parted artifact insert. It provides the
- * result handlers for the insert process itself and methods to wait for the result or an exception. Both can be
- * retrieved via methods, too.
+ * result handlers for the insert process itself and a future, that completes as soon as all parts are stored or one
+ * part failed. Result and exception can be retrieved via methods, too.
  */
 public class MultiStoreResult implements StorageStoreResultHandler, StorageExceptionHandler {
 
@@ -19,6 +20,7 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 	private int minSuccessfulOperations;
 	private boolean failed;
 	private Exception exception;
+	private final CompletableFuture<Integer> future = new CompletableFuture<>();
 
 	/**
 	 * Initiates the store result container for the given number of parts.
@@ -44,6 +46,7 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 				exception = new EnvelopeException("Artifact part insert failed!");
 			}
 		}
+		complete();
 	}
 
 	@Override
@@ -54,6 +57,27 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 				exception = e;
 			}
 		}
+		complete();
+	}
+
+	private void complete() {
+		synchronized (this) {
+			if (failed) {
+				future.completeExceptionally(exception);
+			} else if (results.size() >= parts) {
+				future.complete(minSuccessfulOperations);
+			}
+		}
+	}
+
+	/**
+	 * Gets a future for this store operation.
+	 *
+	 * @return Returns a future completed with the minimal number of replications or exceptionally with the exception
+	 *         of the first failed part.
+	 */
+	public CompletableFuture<Integer> getFuture() {
+		return future;
 	}
 
 	/**
@@ -0,0 +1,173 @@
+package i5.las2peer.persistency.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import rice.p2p.past.PastContentHandle;
+
+/**
+ * This class keeps track of the fetch latencies of the storage replicas. It orders handles so fast replicas are asked
+ * first and estimates the delay after which a fetch should be hedged with another replica.
+ *
+ * A failed fetch adds a penalty to the latency of the replica, which halves every {@link #PENALTY_HALF_LIFE}
+ * milliseconds. A failing replica is asked last and therefore rarely gets a chance to report a successful fetch, so
+ * only the decay gives it another chance once it recovered.
+ */
+public class ReplicaLatencyTracker {
+
+	/**
+	 * weight of a new sample in the smoothed latency of a replica
+	 */
+	private static final double SMOOTHING = 0.2;
+	/**
+	 * number of recent fetch latencies the percentile is computed from
+	 */
+	private static final int SAMPLE_SIZE = 256;
+	/**
+	 * number of samples required before the percentile is trusted
+	 */
+	private static final int MIN_SAMPLES = 10;
+	/**
+	 * time in milliseconds after which half of the penalty of a failed fetch is gone
+	 */
+	static final long PENALTY_HALF_LIFE = 30000;
+
+	/**
+	 * known latency of a replica
+	 */
+	private static class Replica {
+		/** smoothed latency of successful fetches, null until the first one */
+		private Double latency;
+		/** penalty of failed fetches at the time of the last failure */
+		private double penalty;
+		private long penaltyTime;
+
+		private synchronized void recordSuccess(long latencyMs) {
+			latency = latency == null ? latencyMs : latency + SMOOTHING * (latencyMs - latency);
+		}
+
+		private synchronized void recordFailure(double penalty, long now) {
+			this.penalty = getPenalty(now) + penalty;
+			penaltyTime = now;
+		}
+
+		private synchronized double getLatency(long now) {
+			return (latency == null ? 0 : latency) + getPenalty(now);
+		}
+
+		private double getPenalty(long now) {
+			if (penalty == 0) {
+				return 0;
+			}
+			return penalty * Math.pow(0.5, (double) Math.max(0, now - penaltyTime) / PENALTY_HALF_LIFE);
+		}
+	}
+
+	private final ConcurrentHashMap<String, Replica> replicas = new ConcurrentHashMap<>();
+	private final long[] samples = new long[SAMPLE_SIZE];
+	private int sampleCount;
+	private int nextSample;
+
+	private final int percentile;
+	private final long minDelay;
+	private final long initialDelay;
+
+	/**
+	 * @param percentile The latency percentile after which a fetch is hedged
+	 * @param minDelay The minimum hedge delay in milliseconds
+	 * @param initialDelay The hedge delay in milliseconds used until enough latencies are known
+	 */
+	public ReplicaLatencyTracker(int percentile, long minDelay, long initialDelay) {
+		this.percentile = Math.max(1, Math.min(100, percentile));
+		this.minDelay = minDelay;
+		this.initialDelay = initialDelay;
+	}
+
+	/**
+	 * records a successful fetch
+	 *
+	 * @param handle The handle of the replica that answered
+	 * @param latencyMs The time the fetch took
+	 */
+	public void recordSuccess(PastContentHandle handle, long latencyMs) {
+		getReplica(handle).recordSuccess(latencyMs);
+		synchronized (samples) {
+			samples[nextSample] = latencyMs;
+			nextSample = (nextSample + 1) % SAMPLE_SIZE;
+			sampleCount = Math.min(sampleCount + 1, SAMPLE_SIZE);
+		}
+	}
+
+	/**
+	 * records a failed fetch, the replica is treated as slow for a while
+	 *
+	 * @param handle The handle of the replica that failed
+	 * @param latencyMs The time until the failure was noticed
+	 */
+	public void recordFailure(PastContentHandle handle, long latencyMs) {
+		recordFailure(handle, latencyMs, System.currentTimeMillis());
+	}
+
+	void recordFailure(PastContentHandle handle, long latencyMs, long now) {
+		double penalty = Math.max(latencyMs, getHedgeDelay()) * 2.0;
+		getReplica(handle).recordFailure(penalty, now);
+	}
+
+	/**
+	 * @return the delay in milliseconds after which a pending fetch should be hedged
+	 */
+	public long getHedgeDelay() {
+		long[] copy;
+		synchronized (samples) {
+			if (sampleCount < MIN_SAMPLES) {
+				return initialDelay;
+			}
+			copy = Arrays.copyOf(samples, sampleCount);
+		}
+		Arrays.sort(copy);
+		int index = (int) Math.ceil(percentile / 100.0 * copy.length) - 1;
+		return Math.max(minDelay, copy[Math.max(0, index)]);
+	}
+
+	/**
+	 * orders the given handles by the known latency of their replicas, unknown replicas come first to learn about them
+	 *
+	 * @param handles The handles of an artifact
+	 * @return a new list with the fastest replica first
+	 */
+	public List<PastContentHandle> order(List<PastContentHandle> handles) {
+		return order(handles, System.currentTimeMillis());
+	}
+
+	List<PastContentHandle> order(List<PastContentHandle> handles, long now) {
+		List<PastContentHandle> result = new ArrayList<>(handles);
+		// spread the load between replicas with the same latency
+		Collections.shuffle(result);
+		// the penalties decay while sorting, so the latencies are taken once
+		Map<PastContentHandle, Double> latencies = new IdentityHashMap<>();
+		for (PastContentHandle handle : result) {
+			Replica replica = replicas.get(getReplicaId(handle));
+			latencies.put(handle, replica == null ? 0.0 : replica.getLatency(now));
+		}
+		result.sort(Comparator.comparingDouble(latencies::get));
+		return result;
+	}
+
+	private Replica getReplica(PastContentHandle handle) {
+		return replicas.computeIfAbsent(getReplicaId(handle), id -> new Replica());
+	}
+
+	private static String getReplicaId(PastContentHandle handle) {
+		if (handle.getNodeHandle() == null) {
+			return handle.toString();
+		}
+		return handle.getNodeHandle().getId().toStringFull();
+	}
+
+}
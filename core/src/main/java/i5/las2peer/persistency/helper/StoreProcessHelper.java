@@ -21,6 +21,7 @@ public class StoreProcessHelper implements StorageStoreResultHandler, StorageCol
 	public void onResult(Serializable serializable, int successfulOperations) {
 		synchronized (this) {
 			this.successfulOperations = successfulOperations;
+			notifyAll();
 		}
 	}
 
@@ -31,6 +32,7 @@ public class StoreProcessHelper implements StorageStoreResultHandler, StorageCol
 			exception = new EnvelopeAlreadyExistsException("Envelope '" + toStore.getIdentifier() + "' with version ("
 					+ toStore.getVersion()
 					+ ") already exists in network! Use a collision handler or fetch latest version before storing.");
+			notifyAll();
 			// stop merging process
 			throw new StopMergingException();
 		}
@@ -54,6 +56,7 @@ public class StoreProcessHelper implements StorageStoreResultHandler, StorageCol
 			if (exception == null) {
 				exception = e;
 			}
+			notifyAll();
 		}
 	}
 
@@ -66,4 +69,25 @@ public class StoreProcessHelper implements StorageStoreResultHandler, StorageCol
 		}
 	}
 
+	/**
+	 * waits until the store operation is done or the timeout is reached
+	 *
+	 * @param timeoutMs A timeout in milliseconds
+	 * @return the number of successful operations or -1, if the timeout was reached
+	 * @throws Exception If the store operation failed
+	 */
+	public int waitForResult(long timeoutMs) throws Exception {
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		synchronized (this) {
+			while (exception == null && successfulOperations < 0) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					break;
+				}
+				wait(remaining);
+			}
+			return getResult();
+		}
+	}
+
 }
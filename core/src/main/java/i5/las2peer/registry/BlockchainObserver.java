@@ -1,10 +1,13 @@
 package i5.las2peer.registry;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -12,21 +15,36 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
+import org.web3j.abi.EventEncoder;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.protocol.core.methods.response.Transaction;
 import org.web3j.utils.Convert;
 
-import i5.las2peer.api.p2p.ServiceNameVersion;
 import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.registry.contracts.CommunityTagIndex;
+import i5.las2peer.registry.contracts.ReputationRegistry;
+import i5.las2peer.registry.contracts.ServiceRegistry;
+import i5.las2peer.registry.contracts.UserRegistry;
 import i5.las2peer.registry.data.BlockchainTransactionData;
 import i5.las2peer.registry.data.GenericTransactionData;
+import i5.las2peer.registry.data.RegistryConfiguration;
 import i5.las2peer.registry.data.SenderReceiverDoubleKey;
 import i5.las2peer.registry.data.ServiceDeploymentData;
 import i5.las2peer.registry.data.ServiceReleaseData;
 import i5.las2peer.registry.exceptions.EthereumException;
+import io.reactivex.Flowable;
 import io.reactivex.schedulers.Schedulers;
 
 /**
@@ -35,16 +53,44 @@ import io.reactivex.schedulers.Schedulers;
  *
  * The JavaRx Flowables use extra threads so that look-ups etc. don't block
  * the main thread.
+ *
+ * If a snapshot directory is configured, the state up to the last confirmed
+ * block (latest minus the configured number of confirmations) is persisted
+ * periodically. On the next start the observer resumes from the snapshot and
+ * only replays the blocks after it, instead of the whole chain. Blocks that
+ * may still be reorganized are never part of a snapshot, so they are simply
+ * replayed from the chain again.
  */
 class BlockchainObserver {
-	
+
+	/** Seconds between two attempts to persist the confirmed state */
+	private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+
+	private static final String SNAPSHOT_FILE_PREFIX = "blockchain-observer-";
+	private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+	/** Types of the observed contract events used in their keys, by topic */
+	private static final Map<String, String> EVENT_TYPES = new HashMap<>();
+	static {
+		EVENT_TYPES.put(EventEncoder.encode(ReputationRegistry.TRANSACTIONADDED_EVENT), "userVoting");
+		EVENT_TYPES.put(EventEncoder.encode(ReputationRegistry.ERROREVENT_EVENT), "error");
+		EVENT_TYPES.put(EventEncoder.encode(UserRegistry.USERREGISTERED_EVENT), "userRegistration");
+		EVENT_TYPES.put(EventEncoder.encode(ReputationRegistry.USERPROFILECREATED_EVENT), "profileCreation");
+		EVENT_TYPES.put(EventEncoder.encode(ReputationRegistry.GENERICTRANSACTIONADDED_EVENT), "genericTransaction");
+		EVENT_TYPES.put(EventEncoder.encode(CommunityTagIndex.COMMUNITYTAGCREATED_EVENT), "tagCreation");
+		EVENT_TYPES.put(EventEncoder.encode(ServiceRegistry.SERVICECREATED_EVENT), "serviceRegistration");
+		EVENT_TYPES.put(EventEncoder.encode(ServiceRegistry.SERVICERELEASED_EVENT), "serviceRelease");
+		EVENT_TYPES.put(EventEncoder.encode(ServiceRegistry.SERVICEDEPLOYMENT_EVENT), "serviceDeployment");
+		EVENT_TYPES.put(EventEncoder.encode(ServiceRegistry.SERVICEDEPLOYMENTEND_EVENT), "serviceDeploymentEnd");
+	}
+
 	List<String> errors;
 	/** Profiles to their owners */
 	ConcurrentMap<String, String> profiles;
-	
+
 	/** User registrations and time stamps */
 	ConcurrentMap<String, String> users;
-	
+
 	/** Tags to their description */
 	ConcurrentMap<String, String> tags;
 
@@ -59,14 +105,14 @@ class BlockchainObserver {
 
 	ConcurrentMap<SenderReceiverDoubleKey, List<BlockchainTransactionData>> transactionLog;
 
-	/** 
+	/**
 	 * Sorted mapping of Blocks to announcements
 	 * because TreeMap is not thread-safe, we need to use a custom lock. https://riptutorial.com/java/example/30472/treemap-and-treeset-thread-safety
 	 * this is used for the faucet to see how many svc announcements we did since the last faucet payout
-	 * 
+	 *
 	 * e.g. Block 5 -> "com.example.service" -> List of NodeIDs hosting this service
 	 */
-	ReentrantReadWriteLock serviceAnnouncementsPerBlockTree__lock = new ReentrantReadWriteLock();
+	ReentrantReadWriteLock serviceAnnouncementsPerBlockTree__lock;
 	TreeMap<BigInteger, HashMap<String, List<String>>> serviceAnnouncementsPerBlockTree;
 
 	/**
@@ -98,27 +144,29 @@ class BlockchainObserver {
 
 	private Contracts contracts;
 
+	/** Observed state and its confirmed part */
+	private final BlockchainObserverSnapshots snapshots;
+
+	/** State including all observed events, backing the fields above */
+	private final BlockchainObserverState state;
+
+	/** First block to observe, the one after the snapshot if it has been restored */
+	private final DefaultBlockParameter startBlock;
+
+	private static final L2pLogger logger = L2pLogger.getInstance(BlockchainObserver.class);
+
 	/**
-	 * Hashes of transactions that have already been handled.
-	 *
-	 * The reason for this is that due to chain reorganizations, a transaction
-	 * can be mined in several different blocks which are (temporarily)
-	 * accepted as being part of the longest chain.
-	 *
-	 * Deduplicating them in this way is a simple, but ugly way out. It would
-	 * be better to have a threshold for confirmed blocks (e.g., latest minus
-	 * six), and even better to handle the reorganizations (as mentioned in
-	 * the issue, geth has a "removed" field for this exact purpose).
-	 *
-	 * As long as we don't have truly orphaned blocks / txs, i.e., as long as
-	 * all tx are mined in main chain blocks eventually, this approach should
-	 * be fine.
+	 * Returns a BlockchainObserver instance for the given contracts
+	 * configuration, without persisting its state.
 	 *
-	 * @see <a href="https://github.com/ethereum/web3.js/issues/398#issuecomment-189163101">web3.js issue describing the same problem</a>
+	 * @param contractsConfig registry contract addresses and Ethereum
+	 *                        client endpoint
+	 * @return BlockchainObserver reflecting the contracts' state
+	 * @see #getInstance(Contracts.ContractsConfig, String, int)
 	 */
-	private final Set<String> observedEventTxHashes = new HashSet<>();
-
-	private static final L2pLogger logger = L2pLogger.getInstance(BlockchainObserver.class);
+	public static BlockchainObserver getInstance(Contracts.ContractsConfig contractsConfig) {
+		return getInstance(contractsConfig, null, RegistryConfiguration.DEFAULT_OBSERVER_CONFIRMATIONS);
+	}
 
 	/**
 	 * Returns a BlockchainObserver instance for the given contracts
@@ -128,29 +176,78 @@ class BlockchainObserver {
 	 * already existing instance when possible.
 	 * @param contractsConfig registry contract addresses and Ethereum
 	 *                        client endpoint
+	 * @param snapshotDirectory directory to persist the state in, null or
+	 *                          empty to replay the whole chain on start
+	 * @param confirmations number of blocks behind the head which may
+	 *                      still be reorganized and thus are not persisted
 	 * @return BlockchainObserver reflecting the contracts' state
 	 */
-	public static BlockchainObserver getInstance(Contracts.ContractsConfig contractsConfig) {
+	public static synchronized BlockchainObserver getInstance(Contracts.ContractsConfig contractsConfig,
+			String snapshotDirectory, int confirmations) {
 		logger.fine("Blockchain observer instance requested, looking up ...");
-		instances.computeIfAbsent(contractsConfig, BlockchainObserver::new);
-		return instances.get(contractsConfig);
+		return instances.computeIfAbsent(contractsConfig,
+				config -> new BlockchainObserver(config, snapshotDirectory, confirmations));
 	}
 
-	private BlockchainObserver(Contracts.ContractsConfig contractsConfig) {
+	private BlockchainObserver(Contracts.ContractsConfig contractsConfig, String snapshotDirectory,
+			int confirmations) {
 		logger.fine("Creating new blockchain observer");
 		contracts = new Contracts.ContractsBuilder(contractsConfig).build();
 
-		errors = new ArrayList<String>();
-		profiles = new ConcurrentHashMap<>();
-		users = new ConcurrentHashMap<>();
-		tags = new ConcurrentHashMap<>();
-		serviceNameToAuthor = new ConcurrentHashMap<>();
-		releases = new ConcurrentHashMap<>();
-		releasesByVersion = new ConcurrentHashMap<>();
-		deployments = new ConcurrentHashMap<>();
-		genericTransactions = new ConcurrentHashMap<>();
-		transactionLog = new ConcurrentHashMap<>();
-		serviceAnnouncementsPerBlockTree = new TreeMap<>();
+		List<String> contractAddresses = Arrays.asList(contractsConfig.communityTagIndexAddress,
+				contractsConfig.userRegistryAddress, contractsConfig.serviceRegistryAddress,
+				contractsConfig.reputationRegistryAddress);
+		Path snapshotFile = null;
+		if (snapshotDirectory != null && !snapshotDirectory.isEmpty()) {
+			snapshotFile = Paths.get(snapshotDirectory,
+					SNAPSHOT_FILE_PREFIX + contractsConfig.serviceRegistryAddress + SNAPSHOT_FILE_SUFFIX);
+		}
+
+		snapshots = new BlockchainObserverSnapshots(new BlockchainObserverSnapshots.Chain() {
+			@Override
+			public BigInteger getBlockNumber() throws IOException {
+				return contracts.getWeb3jClient().ethBlockNumber().send().getBlockNumber();
+			}
+
+			@Override
+			public String getBlockHash(BigInteger blockNumber) throws IOException {
+				EthBlock.Block block = contracts.getWeb3jClient()
+						.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), false).send().getBlock();
+				return block != null ? block.getHash() : null;
+			}
+
+			@Override
+			public List<String> getEventKeys(BigInteger fromBlock, BigInteger toBlock) throws IOException {
+				EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(fromBlock),
+						DefaultBlockParameter.valueOf(toBlock), contractAddresses);
+				filter.addOptionalTopics(EVENT_TYPES.keySet().toArray(new String[0]));
+				List<String> eventKeys = new ArrayList<>();
+				for (EthLog.LogResult<?> result : contracts.getWeb3jClient().ethGetLogs(filter).send().getLogs()) {
+					Log log = (Log) result.get();
+					String eventType = log.getTopics().isEmpty() ? null : EVENT_TYPES.get(log.getTopics().get(0));
+					if (eventType != null && !log.isRemoved()) {
+						eventKeys.add(eventKey(eventType, log.getTransactionHash()));
+					}
+				}
+				return eventKeys;
+			}
+		}, snapshotFile, confirmations, contractAddresses);
+		state = snapshots.getState();
+		startBlock = snapshots.getStartBlock() != null ? DefaultBlockParameter.valueOf(snapshots.getStartBlock())
+				: DefaultBlockParameterName.EARLIEST;
+
+		errors = state.errors;
+		profiles = state.profiles;
+		users = state.users;
+		tags = state.tags;
+		serviceNameToAuthor = state.serviceNameToAuthor;
+		releases = state.releases;
+		releasesByVersion = state.releasesByVersion;
+		deployments = state.deployments;
+		genericTransactions = state.genericTransactions;
+		transactionLog = state.transactionLog;
+		serviceAnnouncementsPerBlockTree__lock = state.serviceAnnouncementsPerBlockTree__lock;
+		serviceAnnouncementsPerBlockTree = state.serviceAnnouncementsPerBlockTree;
 
 		observeETHTransactions();
 		observeUserVotingTransactions();
@@ -162,26 +259,97 @@ class BlockchainObserver {
 		observeServiceRegistrations();
 		observeServiceReleases();
 		observeServiceDeployments();
-	}
 
-	private boolean txHasAlreadyBeenHandled(String txHash) {
-		if (observedEventTxHashes.contains(txHash)) {
-			return true;
-		} else {
-			observedEventTxHashes.add(txHash);
-			return false;
+		if (snapshots.isEnabled()) {
+			ScheduledExecutorService checkpointTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "las2peer-blockchain-observer-snapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			checkpointTimer.scheduleWithFixedDelay(() -> {
+				if (!snapshots.checkpoint() && !snapshots.isEnabled()) {
+					checkpointTimer.shutdown();
+				}
+			}, SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
 		}
 	}
 
-	private void observeETHTransactions() 
+	/**
+	 * Subscribes to the events of a flowable, counting them for the
+	 * checkpoints.
+	 */
+	private <T> void observe(Flowable<T> flowable, io.reactivex.functions.Consumer<T> handler, String description) {
+		flowable.doOnNext(event -> snapshots.eventReceived())
+				.observeOn(Schedulers.io())
+				.subscribeOn(Schedulers.io())
+				.subscribe(event -> {
+					try {
+						handler.accept(event);
+					} catch (Exception e) {
+						// keep observing, a failing handler must not end the subscription
+						logger.log(Level.SEVERE, "Error handling " + description, e);
+					} finally {
+						snapshots.eventHandled();
+					}
+				}, e -> {
+					logger.severe("Error observing " + description + ": " + e.toString());
+					snapshots.observationFailed();
+				});
+	}
+
+	/**
+	 * Applies an update to the state and remembers it for the confirmed
+	 * state.
+	 *
+	 * @param eventKey key of the event causing the update
+	 * @param log log entry of the event
+	 * @param update update of the state
+	 */
+	private void apply(String eventKey, Log log, Consumer<BlockchainObserverState> update) {
+		snapshots.apply(eventKey, log.getBlockNumber(), log.getBlockHash(), update);
+	}
+
+	private static String eventKey(String eventType, String txHash) {
+		return BlockchainObserverSnapshots.eventKey(eventType, txHash);
+	}
+
+	/**
+	 * Checks whether an event has already been handled.
+	 *
+	 * The reason for this is that due to chain reorganizations, a transaction
+	 * can be mined in several different blocks which are (temporarily)
+	 * accepted as being part of the longest chain.
+	 *
+	 * Deduplicating them in this way is a simple, but ugly way out. The
+	 * persisted state at least only contains events of confirmed blocks
+	 * (latest minus the confirmations) which are still part of the chain,
+	 * but it would be even better to handle the
+	 * reorganizations (as mentioned in the issue, geth has a "removed" field
+	 * for this exact purpose).
+	 *
+	 * As long as we don't have truly orphaned blocks / txs, i.e., as long as
+	 * all tx are mined in main chain blocks eventually, this approach should
+	 * be fine.
+	 *
+	 * @param eventKey event type and transaction hash
+	 * @param log log entry of the event
+	 * @return true if the event has been handled before
+	 * @see <a href="https://github.com/ethereum/web3.js/issues/398#issuecomment-189163101">web3.js issue describing the same problem</a>
+	 */
+	private boolean txHasAlreadyBeenHandled(String eventKey, Log log) {
+		return !snapshots.markHandled(eventKey, log.getBlockNumber(), log.getBlockHash());
+	}
+
+	private void observeETHTransactions()
 	{
-		contracts.getWeb3jClient()
-			 .replayPastAndFutureTransactionsFlowable(DefaultBlockParameterName.EARLIEST)
-			 .observeOn(Schedulers.io())
-			 .subscribeOn(Schedulers.io())
-			 .subscribe(transaction -> {
-				if (txHasAlreadyBeenHandled(transaction.getHash())) {
-					return;
+		// replay whole blocks instead of transactions, so the progress and the block timestamps are known
+		observe(contracts.getWeb3jClient().replayPastAndFutureBlocksFlowable(startBlock, true), ethBlock -> {
+			EthBlock.Block block = ethBlock.getBlock();
+			for (EthBlock.TransactionResult<?> result : block.getTransactions()) {
+				Transaction transaction = (Transaction) result.get();
+				String eventKey = eventKey("transaction", transaction.getHash());
+				if (!snapshots.markHandled(eventKey, block.getNumber(), block.getHash())) {
+					continue;
 				}
 
 				SenderReceiverDoubleKey transactionKey = new SenderReceiverDoubleKey(
@@ -191,37 +359,30 @@ class BlockchainObserver {
 
 				// prepare l2p-local class to hold transaction info
 				BlockchainTransactionData btd = new BlockchainTransactionData( transaction );
-				if ( transaction.getBlockNumber() != null )
-				{	
-					// add block timestamp to transaction info
-					btd.setBlockTimeStamp( contracts.getBlockTimestamp(btd.getBlockNumber()) );
-				}
+				// add block timestamp to transaction info
+				btd.setBlockTimeStamp( block.getTimestamp() );
 
-				// https://stackoverflow.com/a/51062494
-				transactionLog.computeIfAbsent(transactionKey, k -> new ArrayList<>()).add(btd);
+				snapshots.apply(eventKey, block.getNumber(), block.getHash(),
+						s -> s.addTransaction(transactionKey, btd));
 
 				logger.info("[ChainObserver] observed: " + btd.toString());
-
-			}, e -> { 
-				e.printStackTrace();
-				logger.severe("Error observing transaction event: " + e.toString()); 
-			});
+			}
+			snapshots.blockObserved(block.getNumber());
+		}, "transaction event");
 	}
 
 	private void observeUserVotingTransactions() {
-		contracts.reputationRegistry
-				.transactionAddedEventFlowable(DefaultBlockParameterName.EARLIEST, DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(transaction -> {
+		observe(contracts.reputationRegistry.transactionAddedEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), transaction -> {
 					String txHash = transaction.log.getTransactionHash();
-					if (txHasAlreadyBeenHandled(txHash)) {
+					String eventKey = eventKey("userVoting", txHash);
+					if (txHasAlreadyBeenHandled(eventKey, transaction.log)) {
 						return;
 					}
 
 					String txSender = Util.getOrDefault(transaction.sender, "uknown sender");
 					String txRecipient = Util.getOrDefault(transaction.recipient, "uknown recipient");
-					
+
 					BigInteger grade = Util.getOrDefault(transaction.grade, BigInteger.ZERO);
 					BigInteger recipientNewScore = Util.getOrDefault(transaction.recipientNewScore, BigInteger.ZERO);
 
@@ -229,82 +390,69 @@ class BlockchainObserver {
 
 					SenderReceiverDoubleKey srdk = new SenderReceiverDoubleKey(txSender, txRecipient);
 					GenericTransactionData gtd = new GenericTransactionData(
-						txSender, 
-						txRecipient, 
+						txSender,
+						txRecipient,
 						BigInteger.ZERO, // amountInWei
-						timestamp, 
-						"Rating: "+grade, 
-						"L2P USER RATING", 
+						timestamp,
+						"Rating: "+grade,
+						"L2P USER RATING",
 						txHash
 					);
 
-					if ( !this.genericTransactions.containsKey(srdk) )
-					{
-						List<GenericTransactionData> lgtd = new ArrayList<GenericTransactionData>();
-						lgtd.add(gtd);
-						this.genericTransactions.put(srdk, lgtd);
-					} 
-					else
-					{
-						this.genericTransactions.get(srdk).add(gtd);
-					}
+					apply(eventKey, transaction.log, s -> s.addGenericTransaction(srdk, gtd));
 
-					logger.info("[ChainObserver] observed user voting: " + 
+					logger.info("[ChainObserver] observed user voting: " +
 								"[" + txSender + "]->[" + txRecipient + "]: " + grade + ", new grade: " + recipientNewScore);
-				}, e -> logger.severe("Error observing user voting event: " + e.toString()));
+				}, "user voting event");
 	}
 
 	private void observeErrorEvents() {
-		contracts.reputationRegistry
-				.errorEventEventFlowable(DefaultBlockParameterName.EARLIEST, DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io()).subscribeOn(Schedulers.io()).subscribe(error -> {
-					if (txHasAlreadyBeenHandled(error.log.getTransactionHash())) {
+		observe(contracts.reputationRegistry.errorEventEventFlowable(startBlock, DefaultBlockParameterName.LATEST),
+				error -> {
+					String eventKey = eventKey("error", error.log.getTransactionHash());
+					if (txHasAlreadyBeenHandled(eventKey, error.log)) {
 						return;
 					}
 
 					String errorMsg = Util.getOrDefault(error.message, "no error message provided");
 
-					this.errors.add(errorMsg);
+					apply(eventKey, error.log, s -> s.errors.add(errorMsg));
 					logger.severe("[ChainObserver] observed error event: " + errorMsg);
-				}, e -> logger.severe("Error observing error event: " + e.toString()));
+				}, "error event");
 	}
 
 	private void observeUserRegistrations() {
-		contracts.userRegistry.userRegisteredEventFlowable(DefaultBlockParameterName.EARLIEST,
-		DefaultBlockParameterName.LATEST)
-			.observeOn(Schedulers.io())
-			.subscribeOn(Schedulers.io())
-			.subscribe(user -> {
-				if (txHasAlreadyBeenHandled(user.log.getTransactionHash()))
-				{
-					return;
-				}
-				
-				String userName = Util.recoverString(user.name);
-				BigInteger timestamp = user.timestamp;
-				Instant i = Instant.ofEpochSecond(timestamp.longValue());
-				
-				this.users.put(userName, i.toString());
-				logger.info("[ChainObserver] observed user registration: " + "@[" + timestamp + "]: " + userName);
-			}, e -> logger.severe("Error observing user registration event: " + e.toString()));
+		observe(contracts.userRegistry.userRegisteredEventFlowable(startBlock, DefaultBlockParameterName.LATEST),
+				user -> {
+					String eventKey = eventKey("userRegistration", user.log.getTransactionHash());
+					if (txHasAlreadyBeenHandled(eventKey, user.log))
+					{
+						return;
+					}
+
+					String userName = Util.recoverString(user.name);
+					BigInteger timestamp = user.timestamp;
+					Instant i = Instant.ofEpochSecond(timestamp.longValue());
+
+					apply(eventKey, user.log, s -> s.users.put(userName, i.toString()));
+					logger.info("[ChainObserver] observed user registration: " + "@[" + timestamp + "]: " + userName);
+				}, "user registration event");
 	}
-	
+
 	private void observeUserProfileCreations() {
-		contracts.reputationRegistry.userProfileCreatedEventFlowable(DefaultBlockParameterName.EARLIEST,
-		DefaultBlockParameterName.LATEST)
-			.observeOn(Schedulers.io())
-			.subscribeOn(Schedulers.io())
-			.subscribe(profile -> {
-				if (txHasAlreadyBeenHandled(profile.log.getTransactionHash()))
-				{
-					return;
-				}
-				String profileOwner = Util.getOrDefault(profile.owner, "???");
-				String profileName = Util.recoverString(profile.name);
-				this.profiles.put(profileOwner, profileName);
-				logger.info("[ChainObserver] observed profile creation: [" + profileOwner + "]: " + profileName);
-				
-			}, e -> logger.severe("Error observing profile creation event: " + e.toString()));
+		observe(contracts.reputationRegistry.userProfileCreatedEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), profile -> {
+					String eventKey = eventKey("profileCreation", profile.log.getTransactionHash());
+					if (txHasAlreadyBeenHandled(eventKey, profile.log))
+					{
+						return;
+					}
+					String profileOwner = Util.getOrDefault(profile.owner, "???");
+					String profileName = Util.recoverString(profile.name);
+					apply(eventKey, profile.log, s -> s.profiles.put(profileOwner, profileName));
+					logger.info("[ChainObserver] observed profile creation: [" + profileOwner + "]: " + profileName);
+
+				}, "profile creation event");
 	}
 
 
@@ -353,15 +501,15 @@ class BlockchainObserver {
 	}
 
 	private void observeGenericTransactions() {
-		contracts.reputationRegistry
-				.genericTransactionAddedEventFlowable(DefaultBlockParameterName.EARLIEST, DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io()).subscribeOn(Schedulers.io()).subscribe(transaction -> {
-					if (txHasAlreadyBeenHandled(transaction.log.getTransactionHash())) {
+		observe(contracts.reputationRegistry.genericTransactionAddedEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), transaction -> {
+					String eventKey = eventKey("genericTransaction", transaction.log.getTransactionHash());
+					if (txHasAlreadyBeenHandled(eventKey, transaction.log)) {
 						return;
 					}
 					String txSender = Util.getOrDefault(transaction.sender, "uknown sender");
 					String txRecipient = Util.getOrDefault(transaction.recipient, "uknown recipient");
-					
+
 					String message = Util.getOrDefault(transaction.message, "no message");
 					BigInteger weiAmount = Util.getOrDefault(transaction.weiAmount, BigInteger.ZERO);
 					BigInteger timestamp = Util.getOrDefault(transaction.timestamp, BigInteger.ZERO);
@@ -371,31 +519,20 @@ class BlockchainObserver {
 					SenderReceiverDoubleKey srdk = new SenderReceiverDoubleKey(txSender, txRecipient);
 					GenericTransactionData gtd = new GenericTransactionData(txSender, txRecipient, weiAmount, timestamp, message, transactionType, txHash);
 
-					if ( !this.genericTransactions.containsKey(srdk) )
-					{
-						List<GenericTransactionData> lgtd = new ArrayList<GenericTransactionData>();
-						lgtd.add(gtd);
-						this.genericTransactions.put(srdk, lgtd);
-					} 
-					else
-					{
-						this.genericTransactions.get(srdk).add(gtd);
-					}
+					apply(eventKey, transaction.log, s -> s.addGenericTransaction(srdk, gtd));
 
 					String wei = Convert.fromWei(weiAmount.toString(), Convert.Unit.ETHER).toString();
 
 					logger.info("[ChainObserver] observed generic transaction: [" + txSender + "->" + txRecipient + "]@" +  wei + ": " + message);
 
-				}, e -> logger.severe("Error observing generic transaction: " + e.toString()));
+				}, "generic transaction");
 	}
 
 	private void observeTagCreations() {
-		contracts.communityTagIndex.communityTagCreatedEventFlowable(DefaultBlockParameterName.EARLIEST,
-		DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(tag -> {
-					if (!txHasAlreadyBeenHandled(tag.log.getTransactionHash())) {
+		observe(contracts.communityTagIndex.communityTagCreatedEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), tag -> {
+					String eventKey = eventKey("tagCreation", tag.log.getTransactionHash());
+					if (!txHasAlreadyBeenHandled(eventKey, tag.log)) {
 						String tagName = Util.recoverString(tag.name);
 
 							// same issue as lookUpServiceName; let's just retry
@@ -409,9 +546,10 @@ class BlockchainObserver {
 								logger.warning("Tag description returned empty, retrying");
 							}
 						logger.info("[ChainObserver] observed tag creation: " + tagName);
-						tags.put(tagName, tagDescription);
+						String description = tagDescription;
+						apply(eventKey, tag.log, s -> s.tags.put(tagName, description));
 					}
-				}, e -> logger.severe("Error observing tag event: " + e.toString()));
+				}, "tag event");
 	}
 
 	/**
@@ -461,80 +599,67 @@ class BlockchainObserver {
 	}
 
 	private void observeServiceRegistrations() {
-		contracts.serviceRegistry.serviceCreatedEventFlowable(DefaultBlockParameterName.EARLIEST,
-				DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(service -> {
-					if (!txHasAlreadyBeenHandled(service.log.getTransactionHash())) {
+		observe(contracts.serviceRegistry.serviceCreatedEventFlowable(startBlock, DefaultBlockParameterName.LATEST),
+				service -> {
+					String eventKey = eventKey("serviceRegistration", service.log.getTransactionHash());
+					if (!txHasAlreadyBeenHandled(eventKey, service.log)) {
 						String serviceName = lookupServiceName(service.nameHash);
-						serviceNameToAuthor.put(serviceName, Util.recoverString(service.author));
+						String author = Util.recoverString(service.author);
+						apply(eventKey, service.log,
+								s -> s.serviceNameToAuthor.put(serviceName, author));
 						logger.info("[ChainObserver] observed service registration :\n" +
-									" > "+serviceName+" by "+Util.recoverString(service.author)
+									" > "+serviceName+" by "+author
 							);
 					}
-				}, e -> logger.severe("Error observing service registration event: " + e.toString()));
+				}, "service registration event");
 	}
 
 	private void observeServiceReleases() {
-		contracts.serviceRegistry.serviceReleasedEventFlowable(DefaultBlockParameterName.EARLIEST,
-				DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(release -> {
-					if (!txHasAlreadyBeenHandled(release.log.getTransactionHash())) {
+		observe(contracts.serviceRegistry.serviceReleasedEventFlowable(startBlock, DefaultBlockParameterName.LATEST),
+				release -> {
+					String eventKey = eventKey("serviceRelease", release.log.getTransactionHash());
+					if (!txHasAlreadyBeenHandled(eventKey, release.log)) {
 						String serviceName = lookupServiceName(release.nameHash);
 						ServiceReleaseData releaseData = new ServiceReleaseData(serviceName,
 								release.versionMajor, release.versionMinor, release.versionPatch,
 								release.hash, release.timestamp);
 
-						releases.computeIfAbsent(releaseData.getServiceName(), k -> new ArrayList<>());
-						releases.get(releaseData.getServiceName()).add(releaseData);
-						storeReleaseByVersion(releaseData);
+						apply(eventKey, release.log, s -> s.addRelease(releaseData));
 					}
-				}, e -> logger.severe("Error observing service release event: " + e.toString()));
+				}, "service release event");
 	}
 
 	private void observeServiceDeployments() {
 		// service deployment announcements and re-announcements
-		contracts.serviceRegistry.serviceDeploymentEventFlowable(DefaultBlockParameterName.EARLIEST,
-				DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(deployment -> {
-					if (!txHasAlreadyBeenHandled(deployment.log.getTransactionHash())) {
+		observe(contracts.serviceRegistry.serviceDeploymentEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), deployment -> {
+					String eventKey = eventKey("serviceDeployment", deployment.log.getTransactionHash());
+					if (!txHasAlreadyBeenHandled(eventKey, deployment.log)) {
 						String serviceName = lookupServiceName(deployment.nameHash);
 						ServiceDeploymentData deploymentData = new ServiceDeploymentData(
 								serviceName, deployment.className,
 								deployment.versionMajor, deployment.versionMinor, deployment.versionPatch,
 								deployment.nodeId, deployment.timestamp
 							);
-						addOrUpdateDeployment(deploymentData);
+						BigInteger blockNumber = deployment.log.getBlockNumber();
 
 						// save announcement log:
 							// for each block number
 								// for each service (mobsos success model is currently not using service version anyway)
 									// save nodeID who is hosting / has deployed this service
 						// used for eth faucet calculations, where we count the number of announcements since block X
-						serviceAnnouncementsPerBlockTree__lock.writeLock().lock();
-						try
-						{
-							serviceAnnouncementsPerBlockTree
-								.computeIfAbsent(deployment.log.getBlockNumber(), k -> new HashMap<>())
-								.computeIfAbsent(serviceName+"."+deployment.className, k -> new ArrayList<>())
-								.add(deployment.nodeId);
-
-							logger.info("[ChainObserver] observed service announcement ("+serviceName+"."+deployment.className+"): \n" + 
-								"block #: " + deployment.log.getBlockNumber() + "\n" + 
-								"node  #:" + deployment.nodeId
-							);
-						}
-						finally
-						{
-							serviceAnnouncementsPerBlockTree__lock.writeLock().unlock();
-						}
+						apply(eventKey, deployment.log, s -> {
+							s.addOrUpdateDeployment(deploymentData);
+							s.addServiceAnnouncement(blockNumber, serviceName + "." + deployment.className,
+									deployment.nodeId);
+						});
+
+						logger.info("[ChainObserver] observed service announcement ("+serviceName+"."+deployment.className+"): \n" +
+							"block #: " + blockNumber + "\n" +
+							"node  #:" + deployment.nodeId
+						);
 					}
-				}, e -> logger.severe("Error observing service deployment event: " + e.toString()));
+				}, "service deployment event");
 
 		// *end* of service deployment announcements
 		// FIXME: this should work almost always, but it would be far safer to actually add a timestamp
@@ -542,21 +667,20 @@ class BlockchainObserver {
 		// don't accidentally kill a newer deployment
 		// (this would only last until the re-announcement anyway. still.)
 		// TODO: yeah, this is definitely needed
-		contracts.serviceRegistry.serviceDeploymentEndEventFlowable(DefaultBlockParameterName.EARLIEST,
-				DefaultBlockParameterName.LATEST)
-				.observeOn(Schedulers.io())
-				.subscribeOn(Schedulers.io())
-				.subscribe(stopped -> {
-					if (!txHasAlreadyBeenHandled(stopped.log.getTransactionHash())) {
+		observe(contracts.serviceRegistry.serviceDeploymentEndEventFlowable(startBlock,
+				DefaultBlockParameterName.LATEST), stopped -> {
+					String eventKey = eventKey("serviceDeploymentEnd", stopped.log.getTransactionHash());
+					if (!txHasAlreadyBeenHandled(eventKey, stopped.log)) {
 						String serviceName = lookupServiceName(stopped.nameHash);
 
 						// for comparison only; remember: this event signifies the END of a deployment, not actually a deployment
 						ServiceDeploymentData deploymentThatEnded = new ServiceDeploymentData(serviceName,
 								stopped.className, stopped.versionMajor, stopped.versionMinor, stopped.versionPatch,
 								stopped.nodeId, stopped.timestamp, true);
-						addOrUpdateDeployment(deploymentThatEnded);
+						apply(eventKey, stopped.log,
+								s -> s.addOrUpdateDeployment(deploymentThatEnded));
 					}
-				}, e -> logger.severe("Error observing service deployment end event: " + e.toString()));
+				}, "service deployment end event");
 	}
 
 	public HashMap<String, Integer> getNoOfServiceAnnouncementSinceBlockOrderedByHostingNode(BigInteger largerThanBlockNo, String searchingForService)
@@ -612,49 +736,11 @@ class BlockchainObserver {
 		return retVal;
 	}
 
-	/**
-	 * If an older entry (identical except for lower timestamp) exists,
-	 * update the timestamp. Otherwise just add the entry.
-	 * @param deployment deployment data to be added
-	 */
-	private void addOrUpdateDeployment(ServiceDeploymentData deployment) {
-		deployments.computeIfAbsent(deployment.getServicePackageName(), k -> new HashMap<>());
-
-		Map<ServiceDeploymentData, ServiceDeploymentData> existingDeployments =
-				deployments.get(deployment.getServicePackageName());
-
-		if (existingDeployments.containsKey(deployment)) {
-			// other entry -- older or newer (or identical) -- already exists
-			if (existingDeployments.get(deployment).getTimestamp().compareTo(deployment.getTimestamp()) < 0) {
-				// existing entry is older => update
-				existingDeployments.replace(deployment, deployment);
-			}
-		} else {
-			existingDeployments.put(deployment, deployment);
-		}
-	}
-
-	private void storeReleaseByVersion(ServiceReleaseData release) {
-		// store release under "name -> x -> y -> z -> release" (i.e. essentially a map of the name and the version triple)
-		releasesByVersion.computeIfAbsent(release.getServiceName(), k -> new HashMap<>());
-		releasesByVersion.get(release.getServiceName()).computeIfAbsent(release.getVersionMajor(), k -> new HashMap<>());
-		releasesByVersion.get(release.getServiceName()).get(release.getVersionMajor()).computeIfAbsent(release.getVersionMinor(), k -> new HashMap<>());
-		if (releasesByVersion.get(release.getServiceName()).get(release.getVersionMajor()).get(release.getVersionMinor()).containsKey(release.getVersionPatch())) {
-			logger.warning("Tried to store duplicate release. Ignoring. FIXME: someone is misbehaving.");
-		} else {
-			releasesByVersion.get(release.getServiceName()).get(release.getVersionMajor()).get(release.getVersionMinor()).put(release.getVersionPatch(), release);
-		}
-	}
-
 	/**
 	 * Safely accesses the nested map, returning null if the entry
 	 * does not exist.
 	 */
 	ServiceReleaseData getReleaseByVersion(String serviceName, int versionMajor, int versionMinor, int versionPatch) {
-		try {
-			return releasesByVersion.get(serviceName).get(versionMajor).get(versionMinor).get(versionPatch);
-		} catch (NullPointerException e) {
-			return null;
-		}
+		return state.getReleaseByVersion(serviceName, versionMajor, versionMinor, versionPatch);
 	}
 }
@@ -0,0 +1,470 @@
+package i5.las2peer.registry;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import i5.las2peer.logging.L2pLogger;
+
+/**
+ * Keeps the state of the {@link BlockchainObserver} together with the
+ * updates of blocks which are not confirmed yet and persists the confirmed
+ * part of it.
+ *
+ * The chain is only accessed through {@link Chain}, so the checkpoints can
+ * be driven without an Ethereum client.
+ *
+ * @see BlockchainObserverState
+ */
+class BlockchainObserverSnapshots {
+
+	/**
+	 * Number of checkpoints in a row without any progress of the observer,
+	 * after which the pending updates are dropped and no further snapshots
+	 * are written until the next start
+	 */
+	static final int MAX_STALLED_CHECKPOINTS = 10;
+
+	private static final L2pLogger logger = L2pLogger.getInstance(BlockchainObserverSnapshots.class);
+
+	/**
+	 * The part of the chain needed for the checkpoints.
+	 */
+	interface Chain {
+
+		/**
+		 * @return number of the latest block
+		 * @throws IOException If the chain could not be queried
+		 */
+		BigInteger getBlockNumber() throws IOException;
+
+		/**
+		 * @param blockNumber number of a block
+		 * @return hash of the block or null, if there is no such block
+		 * @throws IOException If the chain could not be queried
+		 */
+		String getBlockHash(BigInteger blockNumber) throws IOException;
+
+		/**
+		 * @param fromBlock first block to look at
+		 * @param toBlock last block to look at
+		 * @return keys of the events of the observed contracts in these blocks,
+		 *         without the transactions delivered by the block replay
+		 * @throws IOException If the chain could not be queried
+		 * @see #eventKey(String, String)
+		 */
+		List<String> getEventKeys(BigInteger fromBlock, BigInteger toBlock) throws IOException;
+	}
+
+	/**
+	 * A block an event has been observed in.
+	 */
+	private static class BlockRef {
+		private final BigInteger number;
+		private final String hash;
+
+		private BlockRef(BigInteger number, String hash) {
+			this.number = number;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * An update of the state, kept until its block is confirmed.
+	 */
+	private static class PendingUpdate {
+		private final String eventKey;
+		private final Consumer<BlockchainObserverState> update;
+		/** Blocks containing the event, more than one if it was mined again after a reorganization */
+		private final List<BlockRef> blocks = new CopyOnWriteArrayList<>();
+
+		private PendingUpdate(String eventKey, Consumer<BlockchainObserverState> update) {
+			this.eventKey = eventKey;
+			this.update = update;
+		}
+	}
+
+	private final Chain chain;
+	private final Path snapshotFile;
+	private final BigInteger confirmations;
+
+	/** State including all observed events */
+	private final BlockchainObserverState state;
+
+	/** State including only the events of confirmed blocks, null if snapshots are disabled */
+	private volatile BlockchainObserverState confirmedState;
+
+	/** Updates of the state which are not yet applied to the confirmed state, by event key in order of arrival */
+	private final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+
+	/**
+	 * Updates whose blocks have been reorganized out of the chain, by event key. They are pending again if their
+	 * event is observed in another block. Guarded by {@link #pendingUpdates}.
+	 */
+	private final Map<String, Consumer<BlockchainObserverState>> orphanedUpdates = new HashMap<>();
+
+	/** Block after the restored snapshot, null if the chain has to be replayed from the start */
+	private final BigInteger startBlock;
+
+	private final AtomicLong receivedEvents = new AtomicLong();
+	private final AtomicLong handledEvents = new AtomicLong();
+
+	/** Number of the last block delivered by the block replay */
+	private volatile BigInteger observedBlock = BigInteger.valueOf(-1);
+
+	/** Set once an observed flowable failed, its events are missing from then on */
+	private volatile boolean observationFailed;
+
+	/** Progress of the observer at the previous skipped checkpoint */
+	private long previousHandledEvents = -1;
+	private BigInteger previousObservedBlock;
+	private int stalledCheckpoints;
+
+	/**
+	 * Creates the state, restoring it from the snapshot file if it still
+	 * matches the chain.
+	 *
+	 * @param chain the observed chain
+	 * @param snapshotFile file to persist the confirmed state in, null to
+	 *                     disable snapshots
+	 * @param confirmations number of blocks behind the head which may still
+	 *                      be reorganized and thus are not persisted
+	 * @param contractAddresses addresses of the observed contracts
+	 */
+	BlockchainObserverSnapshots(Chain chain, Path snapshotFile, int confirmations, List<String> contractAddresses) {
+		this.chain = chain;
+		this.snapshotFile = snapshotFile;
+		this.confirmations = BigInteger.valueOf(confirmations);
+
+		BlockchainObserverState restored = loadSnapshot(contractAddresses);
+		if (restored == null) {
+			state = new BlockchainObserverState(contractAddresses);
+			confirmedState = snapshotFile != null ? new BlockchainObserverState(contractAddresses) : null;
+			startBlock = null;
+		} else {
+			state = restored;
+			confirmedState = restored.copy();
+			startBlock = restored.getLastBlock().add(BigInteger.ONE);
+			observedBlock = restored.getLastBlock();
+		}
+	}
+
+	/**
+	 * Reads the snapshot and checks that it still matches the chain.
+	 *
+	 * @param contractAddresses addresses of the observed contracts
+	 * @return the restored state or null, if there is no valid snapshot
+	 */
+	private BlockchainObserverState loadSnapshot(List<String> contractAddresses) {
+		if (snapshotFile == null || !Files.isRegularFile(snapshotFile)) {
+			return null;
+		}
+		try {
+			BlockchainObserverState snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+			if (!snapshot.getContractAddresses().equals(contractAddresses) || snapshot.getLastBlock() == null) {
+				logger.warning("Blockchain observer snapshot " + snapshotFile + " does not match, ignoring it");
+				return null;
+			}
+			// the chain may have been reset or reorganized beyond the confirmations while we were offline
+			String hash = chain.getBlockHash(snapshot.getLastBlock());
+			if (hash == null || !hash.equals(snapshot.getLastBlockHash())) {
+				logger.warning("Block #" + snapshot.getLastBlock()
+						+ " of the blockchain observer snapshot is no longer part of the chain, ignoring it");
+				return null;
+			}
+			logger.info("Resuming blockchain observer from snapshot at block #" + snapshot.getLastBlock());
+			return snapshot;
+		} catch (IOException e) {
+			logger.warning("Could not read blockchain observer snapshot " + snapshotFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return the state including all observed events
+	 */
+	BlockchainObserverState getState() {
+		return state;
+	}
+
+	/**
+	 * @return the first block to observe, null if the whole chain has to be
+	 *         replayed
+	 */
+	BigInteger getStartBlock() {
+		return startBlock;
+	}
+
+	/**
+	 * @return true if the confirmed state is persisted
+	 */
+	boolean isEnabled() {
+		return confirmedState != null;
+	}
+
+	/**
+	 * Marks an event as handled.
+	 *
+	 * If the event has been handled before, it has been mined again after a
+	 * reorganization. Its update is then confirmed by either block.
+	 *
+	 * @param eventKey event type and transaction hash
+	 * @param blockNumber block containing the event
+	 * @param blockHash hash of the block containing the event
+	 * @return true if the event has not been handled before
+	 * @see #eventKey(String, String)
+	 */
+	boolean markHandled(String eventKey, BigInteger blockNumber, String blockHash) {
+		if (state.markHandled(eventKey)) {
+			return true;
+		}
+		if (confirmedState != null) {
+			synchronized (pendingUpdates) {
+				PendingUpdate pending = pendingUpdates.get(eventKey);
+				if (pending == null) {
+					Consumer<BlockchainObserverState> orphaned = orphanedUpdates.remove(eventKey);
+					if (orphaned == null) {
+						return false;
+					}
+					pending = new PendingUpdate(eventKey, orphaned);
+					pendingUpdates.put(eventKey, pending);
+				}
+				pending.blocks.add(new BlockRef(blockNumber, blockHash));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Events are deduplicated per type, since a transaction can cause
+	 * several events of different types.
+	 *
+	 * @param eventType type of the event
+	 * @param txHash hash of the transaction causing the event
+	 * @return the key of the event
+	 */
+	static String eventKey(String eventType, String txHash) {
+		return eventType + ":" + txHash;
+	}
+
+	/**
+	 * Applies an update to the state and remembers it for the confirmed
+	 * state.
+	 *
+	 * @param eventKey key of the event causing the update
+	 * @param blockNumber block containing the event
+	 * @param blockHash hash of the block containing the event
+	 * @param update update of the state
+	 */
+	void apply(String eventKey, BigInteger blockNumber, String blockHash, Consumer<BlockchainObserverState> update) {
+		update.accept(state);
+		if (confirmedState != null) {
+			PendingUpdate pending = new PendingUpdate(eventKey, update);
+			pending.blocks.add(new BlockRef(blockNumber, blockHash));
+			synchronized (pendingUpdates) {
+				pendingUpdates.put(eventKey, pending);
+			}
+		}
+	}
+
+	/**
+	 * Has to be called when a flowable emits an event, before it is handled.
+	 */
+	void eventReceived() {
+		receivedEvents.incrementAndGet();
+	}
+
+	/**
+	 * Has to be called when an event has been handled, including failed
+	 * attempts.
+	 */
+	void eventHandled() {
+		handledEvents.incrementAndGet();
+	}
+
+	/**
+	 * Has to be called when a flowable failed. From then on its events are
+	 * missing, so no further snapshots are written.
+	 */
+	void observationFailed() {
+		observationFailed = true;
+	}
+
+	/**
+	 * Has to be called when the block replay delivered a block.
+	 *
+	 * @param blockNumber number of the block
+	 */
+	void blockObserved(BigInteger blockNumber) {
+		observedBlock = blockNumber;
+	}
+
+	/**
+	 * @return number of updates waiting for their block to be confirmed
+	 */
+	int getPendingUpdateCount() {
+		synchronized (pendingUpdates) {
+			return pendingUpdates.size();
+		}
+	}
+
+	/**
+	 * Applies the updates of confirmed blocks to the confirmed state and
+	 * persists it.
+	 *
+	 * The state is complete up to the confirmed block, if the block replay
+	 * has reported it, every event of the observed contracts in the blocks
+	 * since the last snapshot has been received (as the chain is asked for
+	 * them, this does not depend on how often the log filters poll) and all
+	 * received events have been handled.
+	 *
+	 * Updates are only confirmed by a block that is still part of the chain.
+	 * Updates of blocks reorganized out of the chain are dropped, unless their
+	 * event is observed again in another block.
+	 *
+	 * If the observer makes no progress for {@link #MAX_STALLED_CHECKPOINTS}
+	 * calls while the state is incomplete, the pending updates are dropped
+	 * and snapshots are disabled until the next start, so they don't pile up.
+	 *
+	 * @return true if a snapshot has been written
+	 */
+	boolean checkpoint() {
+		BlockchainObserverState confirmed = confirmedState;
+		if (confirmed == null) {
+			return false;
+		}
+		try {
+			if (observationFailed) {
+				logger.warning("Observing the blockchain failed, no further snapshots are written");
+				disable();
+				return false;
+			}
+			BigInteger confirmedBlock = chain.getBlockNumber().subtract(confirmations);
+			BigInteger lastBlock = confirmed.getLastBlock();
+			if (confirmedBlock.signum() < 0 || (lastBlock != null && confirmedBlock.compareTo(lastBlock) <= 0)) {
+				return false;
+			}
+			BigInteger fromBlock = lastBlock != null ? lastBlock.add(BigInteger.ONE) : BigInteger.ZERO;
+			int missingEvents = 0;
+			for (String eventKey : chain.getEventKeys(fromBlock, confirmedBlock)) {
+				if (!state.isHandled(eventKey)) {
+					missingEvents++;
+				}
+			}
+			// read after the events, so a handled event has also been applied
+			long handled = handledEvents.get();
+			long received = receivedEvents.get();
+			if (observedBlock.compareTo(confirmedBlock) < 0 || missingEvents > 0 || received != handled) {
+				logger.fine("Skipping blockchain observer snapshot, observed block #" + observedBlock + " of #"
+						+ confirmedBlock + ", " + missingEvents + " events missing, handled " + handled + " of "
+						+ received + " events");
+				skipped(handled);
+				return false;
+			}
+			stalledCheckpoints = 0;
+
+			String hash = chain.getBlockHash(confirmedBlock);
+			if (hash == null) {
+				return false;
+			}
+			Map<BigInteger, String> chainHashes = new HashMap<>();
+			chainHashes.put(confirmedBlock, hash);
+			List<PendingUpdate> candidates;
+			synchronized (pendingUpdates) {
+				candidates = new ArrayList<>(pendingUpdates.values());
+			}
+			List<PendingUpdate> confirmedUpdates = new ArrayList<>();
+			// orphaned updates with the number of blocks they have been checked against
+			Map<PendingUpdate, Integer> orphaned = new HashMap<>();
+			for (PendingUpdate pending : candidates) {
+				List<BlockRef> blocks = new ArrayList<>(pending.blocks);
+				boolean unconfirmed = false;
+				boolean onChain = false;
+				for (BlockRef block : blocks) {
+					if (block.number.compareTo(confirmedBlock) > 0) {
+						unconfirmed = true;
+						continue;
+					}
+					String chainHash = chainHashes.get(block.number);
+					if (chainHash == null) {
+						chainHash = chain.getBlockHash(block.number);
+						chainHashes.put(block.number, chainHash);
+					}
+					if (block.hash != null && block.hash.equals(chainHash)) {
+						onChain = true;
+						break;
+					}
+				}
+				if (onChain) {
+					confirmedUpdates.add(pending);
+				} else if (!unconfirmed) {
+					orphaned.put(pending, blocks.size());
+				}
+			}
+			synchronized (pendingUpdates) {
+				for (PendingUpdate pending : confirmedUpdates) {
+					pendingUpdates.remove(pending.eventKey);
+				}
+				for (Map.Entry<PendingUpdate, Integer> entry : orphaned.entrySet()) {
+					PendingUpdate pending = entry.getKey();
+					// otherwise it has been observed in another block meanwhile
+					if (pending.blocks.size() == entry.getValue()) {
+						logger.fine("Dropping update of " + pending.eventKey
+								+ ", its block is no longer part of the chain");
+						pendingUpdates.remove(pending.eventKey);
+						orphanedUpdates.put(pending.eventKey, pending.update);
+					}
+				}
+			}
+			for (PendingUpdate pending : confirmedUpdates) {
+				if (confirmed.markHandled(pending.eventKey)) {
+					pending.update.accept(confirmed);
+				}
+			}
+			confirmed.setLastBlock(confirmedBlock, hash);
+			confirmed.save(snapshotFile);
+			logger.fine("Saved blockchain observer snapshot at block #" + confirmedBlock);
+			return true;
+		} catch (IOException e) {
+			logger.warning("Could not save blockchain observer snapshot: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Counts a skipped checkpoint as stalled if the observer made no progress
+	 * since the previous one.
+	 */
+	private void skipped(long handled) {
+		if (handled == previousHandledEvents && observedBlock.equals(previousObservedBlock)) {
+			stalledCheckpoints++;
+		} else {
+			stalledCheckpoints = 0;
+		}
+		previousHandledEvents = handled;
+		previousObservedBlock = observedBlock;
+		if (stalledCheckpoints >= MAX_STALLED_CHECKPOINTS) {
+			logger.warning("Blockchain observer made no progress for " + stalledCheckpoints
+					+ " checkpoints, dropping " + getPendingUpdateCount() + " pending updates and disabling snapshots");
+			disable();
+		}
+	}
+
+	private void disable() {
+		confirmedState = null;
+		synchronized (pendingUpdates) {
+			pendingUpdates.clear();
+			orphanedUpdates.clear();
+		}
+	}
+
+}
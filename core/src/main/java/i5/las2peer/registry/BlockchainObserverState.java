@@ -0,0 +1,271 @@
+package i5.las2peer.registry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.registry.data.BlockchainTransactionData;
+import i5.las2peer.registry.data.GenericTransactionData;
+import i5.las2peer.registry.data.SenderReceiverDoubleKey;
+import i5.las2peer.registry.data.ServiceDeploymentData;
+import i5.las2peer.registry.data.ServiceReleaseData;
+
+/**
+ * The registry state built by the {@link BlockchainObserver} from the blockchain events.
+ *
+ * The state can be written to and read from a snapshot file together with the number and hash of the last block it
+ * contains, so an observer can resume from that block instead of replaying the whole chain.
+ *
+ * @see BlockchainObserver
+ */
+class BlockchainObserverState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final L2pLogger logger = L2pLogger.getInstance(BlockchainObserverState.class);
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+	final ConcurrentMap<String, String> profiles = new ConcurrentHashMap<>();
+
+	final ConcurrentMap<String, String> users = new ConcurrentHashMap<>();
+
+	final ConcurrentMap<String, String> tags = new ConcurrentHashMap<>();
+
+	final ConcurrentMap<String, String> serviceNameToAuthor = new ConcurrentHashMap<>();
+
+	final ConcurrentMap<String, List<ServiceReleaseData>> releases = new ConcurrentHashMap<>();
+
+	final ConcurrentMap<SenderReceiverDoubleKey, List<GenericTransactionData>> genericTransactions
+			= new ConcurrentHashMap<>();
+
+	final ConcurrentMap<SenderReceiverDoubleKey, List<BlockchainTransactionData>> transactionLog
+			= new ConcurrentHashMap<>();
+
+	final ReentrantReadWriteLock serviceAnnouncementsPerBlockTree__lock = new ReentrantReadWriteLock();
+	final TreeMap<BigInteger, HashMap<String, List<String>>> serviceAnnouncementsPerBlockTree = new TreeMap<>();
+
+	final ConcurrentMap<String, Map<Integer, Map<Integer, Map<Integer, ServiceReleaseData>>>> releasesByVersion
+			= new ConcurrentHashMap<>();
+
+	final ConcurrentMap<String, Map<ServiceDeploymentData, ServiceDeploymentData>> deployments
+			= new ConcurrentHashMap<>();
+
+	/**
+	 * Keys of the events that have already been handled.
+	 *
+	 * @see BlockchainObserver#txHasAlreadyBeenHandled
+	 */
+	private final Set<String> observedEventKeys = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Registry contract addresses the state was built from
+	 */
+	private final List<String> contractAddresses;
+
+	/** Number of the last block contained in this state, null if none */
+	private BigInteger lastBlock;
+
+	/** Hash of the last block, to detect a reorganization or reset of the chain while we were offline */
+	private String lastBlockHash;
+
+	BlockchainObserverState(List<String> contractAddresses) {
+		this.contractAddresses = new ArrayList<>(contractAddresses);
+	}
+
+	/**
+	 * Marks an event as handled.
+	 *
+	 * @param eventKey key of the event
+	 * @return true if the event has not been handled before
+	 */
+	boolean markHandled(String eventKey) {
+		return observedEventKeys.add(eventKey);
+	}
+
+	/**
+	 * @param eventKey key of the event
+	 * @return true if the event has been handled
+	 */
+	boolean isHandled(String eventKey) {
+		return observedEventKeys.contains(eventKey);
+	}
+
+	void addTransaction(SenderReceiverDoubleKey key, BlockchainTransactionData transaction) {
+		// https://stackoverflow.com/a/51062494
+		transactionLog.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>())).add(transaction);
+	}
+
+	void addGenericTransaction(SenderReceiverDoubleKey key, GenericTransactionData transaction) {
+		genericTransactions.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+				.add(transaction);
+	}
+
+	void addRelease(ServiceReleaseData release) {
+		releases.computeIfAbsent(release.getServiceName(), k -> Collections.synchronizedList(new ArrayList<>()))
+				.add(release);
+		storeReleaseByVersion(release);
+	}
+
+	void addServiceAnnouncement(BigInteger blockNumber, String service, String nodeId) {
+		serviceAnnouncementsPerBlockTree__lock.writeLock().lock();
+		try {
+			serviceAnnouncementsPerBlockTree.computeIfAbsent(blockNumber, k -> new HashMap<>())
+					.computeIfAbsent(service, k -> new ArrayList<>()).add(nodeId);
+		} finally {
+			serviceAnnouncementsPerBlockTree__lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * If an older entry (identical except for lower timestamp) exists,
+	 * update the timestamp. Otherwise just add the entry.
+	 * @param deployment deployment data to be added
+	 */
+	void addOrUpdateDeployment(ServiceDeploymentData deployment) {
+		Map<ServiceDeploymentData, ServiceDeploymentData> existingDeployments = deployments
+				.computeIfAbsent(deployment.getServicePackageName(), k -> new ConcurrentHashMap<>());
+
+		// other entry -- older or newer (or identical) -- may already exist, keep the newer one
+		existingDeployments.merge(deployment, deployment,
+				(existing, added) -> existing.getTimestamp().compareTo(added.getTimestamp()) < 0 ? added : existing);
+	}
+
+	private void storeReleaseByVersion(ServiceReleaseData release) {
+		// store release under "name -> x -> y -> z -> release", i.e. essentially a map of the name and version triple
+		Map<Integer, ServiceReleaseData> patches = releasesByVersion
+				.computeIfAbsent(release.getServiceName(), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(release.getVersionMajor(), k -> new ConcurrentHashMap<>())
+				.computeIfAbsent(release.getVersionMinor(), k -> new ConcurrentHashMap<>());
+		if (patches.putIfAbsent(release.getVersionPatch(), release) != null) {
+			logger.warning("Tried to store duplicate release. Ignoring. FIXME: someone is misbehaving.");
+		}
+	}
+
+	/**
+	 * Safely accesses the nested map, returning null if the entry
+	 * does not exist.
+	 */
+	ServiceReleaseData getReleaseByVersion(String serviceName, int versionMajor, int versionMinor, int versionPatch) {
+		try {
+			return releasesByVersion.get(serviceName).get(versionMajor).get(versionMinor).get(versionPatch);
+		} catch (NullPointerException e) {
+			return null;
+		}
+	}
+
+	List<String> getContractAddresses() {
+		return contractAddresses;
+	}
+
+	BigInteger getLastBlock() {
+		return lastBlock;
+	}
+
+	String getLastBlockHash() {
+		return lastBlockHash;
+	}
+
+	void setLastBlock(BigInteger lastBlock, String lastBlockHash) {
+		this.lastBlock = lastBlock;
+		this.lastBlockHash = lastBlockHash;
+	}
+
+	/**
+	 * Serializes this state.
+	 *
+	 * Must not be called while the state is modified.
+	 *
+	 * @return the serialized state
+	 * @throws IOException If the state could not be serialized
+	 */
+	byte[] toBytes() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			serviceAnnouncementsPerBlockTree__lock.readLock().lock();
+			try {
+				out.writeObject(this);
+			} finally {
+				serviceAnnouncementsPerBlockTree__lock.readLock().unlock();
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserializes a state.
+	 *
+	 * @param bytes A serialized state
+	 * @return the state
+	 * @throws IOException If the bytes do not contain a valid state
+	 */
+	static BlockchainObserverState fromBytes(byte[] bytes) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (BlockchainObserverState) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Invalid blockchain observer snapshot", e);
+		}
+	}
+
+	/**
+	 * Creates a deep copy of this state.
+	 *
+	 * Must not be called while the state is modified.
+	 *
+	 * @return the copy
+	 */
+	BlockchainObserverState copy() {
+		try {
+			return fromBytes(toBytes());
+		} catch (IOException e) {
+			// in memory, so this only fails for contents that are not serializable
+			throw new IllegalStateException("Could not copy blockchain observer state", e);
+		}
+	}
+
+	/**
+	 * Writes this state to the given file, replacing it atomically.
+	 *
+	 * @param file The snapshot file
+	 * @throws IOException If the file could not be written
+	 */
+	void save(Path file) throws IOException {
+		byte[] bytes = toBytes();
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		// write to a temporary file first, so a crash never leaves a partial snapshot behind
+		Path temp = Files.createTempFile(directory, "snapshot", TEMP_SUFFIX);
+		try {
+			Files.write(temp, bytes);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+}
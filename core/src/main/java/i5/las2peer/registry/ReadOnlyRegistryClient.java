@@ -93,7 +93,8 @@ public class ReadOnlyRegistryClient {
 				registryConfiguration.getUserRegistryAddress(), registryConfiguration.getServiceRegistryAddress(),
 				registryConfiguration.getReputationRegistryAddress(), registryConfiguration.getEndpoint());
 
-		observer = BlockchainObserver.getInstance(contractsConfig);
+		observer = BlockchainObserver.getInstance(contractsConfig,
+				registryConfiguration.getObserverSnapshotDirectory(), registryConfiguration.getObserverConfirmations());
 
 		long _gasPrice = registryConfiguration.getGasPrice();
 		this.gasPrice = BigInteger.valueOf(_gasPrice);
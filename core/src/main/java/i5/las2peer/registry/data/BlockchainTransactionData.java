@@ -1,5 +1,6 @@
 package i5.las2peer.registry.data;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 
 import org.web3j.protocol.core.methods.response.Transaction;
@@ -9,7 +10,10 @@ import i5.las2peer.registry.Util;
 /**
  * Represents the raw ethereum blockchain transaction
  */
-public class BlockchainTransactionData {
+public class BlockchainTransactionData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private BigInteger blockNumber;
 	private BigInteger gas;
 	private BigInteger gasPrice;
@@ -1,5 +1,6 @@
 package i5.las2peer.registry.data;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.Instant;
@@ -14,7 +15,10 @@ import org.web3j.utils.Convert;
  * Represents the transaction with its message in the reputation smart contract
  * @see ReputationRegistry.addGenericTransaction
  */
-public class GenericTransactionData {
+public class GenericTransactionData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private String sender;
     private String receiver;
 
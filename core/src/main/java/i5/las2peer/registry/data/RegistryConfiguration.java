@@ -3,6 +3,10 @@ package i5.las2peer.registry.data;
 import i5.las2peer.api.Configurable;
 
 public class RegistryConfiguration extends Configurable {
+	// snapshots are disabled unless a directory is configured, a relative one would depend on the working directory
+	public static final String DEFAULT_OBSERVER_SNAPSHOT_DIRECTORY = "";
+	public static final int DEFAULT_OBSERVER_CONFIRMATIONS = 12;
+
 	private String endpoint;
 	private long gasPrice;
 	private long gasLimit;
@@ -33,7 +37,12 @@ public class RegistryConfiguration extends Configurable {
 	private String userRegistryAddress;
 	private String serviceRegistryAddress;
 	private String reputationRegistryAddress;
-	
+
+	// directory to persist the blockchain observer state in, empty to replay the chain on each start
+	private String observerSnapshotDirectory = DEFAULT_OBSERVER_SNAPSHOT_DIRECTORY;
+	// blocks behind the head which are considered final and may be persisted
+	private int observerConfirmations = DEFAULT_OBSERVER_CONFIRMATIONS;
+
 	public RegistryConfiguration() {
 		setFieldValues();
 		if (endpoint == null || communityTagIndexAddress == null || userRegistryAddress == null
@@ -69,4 +78,12 @@ public class RegistryConfiguration extends Configurable {
 	public String getReputationRegistryAddress() {
 		return reputationRegistryAddress;
 	}
+
+	public String getObserverSnapshotDirectory() {
+		return observerSnapshotDirectory;
+	}
+
+	public int getObserverConfirmations() {
+		return observerConfirmations;
+	}
 }
@@ -1,6 +1,11 @@
 package i5.las2peer.registry.data;
 
-public class SenderReceiverDoubleKey {
+import java.io.Serializable;
+
+public class SenderReceiverDoubleKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     private String sender;
     private String receiver;
 
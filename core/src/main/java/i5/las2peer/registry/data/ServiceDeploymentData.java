@@ -2,11 +2,15 @@ package i5.las2peer.registry.data;
 
 import i5.las2peer.registry.Util;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Objects;
 
-public class ServiceDeploymentData {
+public class ServiceDeploymentData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private String serviceName;
 	private String serviceClass;
 	private BigInteger versionMajor;
@@ -2,12 +2,16 @@ package i5.las2peer.registry.data;
 
 import i5.las2peer.registry.Util;
 
+import java.io.Serializable;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Objects;
 
-public class ServiceReleaseData {
+public class ServiceReleaseData implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	private String serviceName;
 	private BigInteger versionMajor;
 	private BigInteger versionMinor;
@@ -1,7 +1,9 @@
 package i5.las2peer.security;
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Set;
 
 import i5.las2peer.api.security.Agent;
 import i5.las2peer.api.security.AgentAccessDeniedException;
@@ -74,9 +76,17 @@ public class AgentContext implements AgentStorage {
 	 */
 	public GroupAgentImpl requestGroupAgent(String groupId)
 			throws AgentAccessDeniedException, AgentNotFoundException, AgentOperationFailedException {
+		return requestGroupAgent(groupId, new HashSet<>());
+	}
+
+	private GroupAgentImpl requestGroupAgent(String groupId, Set<String> requested)
+			throws AgentAccessDeniedException, AgentNotFoundException, AgentOperationFailedException {
 		if (groupAgents.containsKey(groupId)) {
 			return groupAgents.get(groupId);
 		}
+		if (!requested.add(groupId)) {
+			throw new AgentAccessDeniedException("Group " + groupId + " is already being opened");
+		}
 
 		AgentImpl agent;
 		try {
@@ -100,11 +110,16 @@ public class AgentContext implements AgentStorage {
 				throw new IllegalStateException("Cannot unlock group!", e);
 			}
 		} else {
+			GroupMembershipIndex index = localNode.getGroupMembershipIndex();
 			for (String memberId : group.getMemberList()) {
 				try {
-					GroupAgentImpl member = requestGroupAgent(memberId);
-					group.unlock(member);
-					break;
+					// only groups already opened or containing the main agent can be used
+					if (groupAgents.containsKey(memberId)
+							|| index.isMember(memberId, getMainAgent().getIdentifier())) {
+						GroupAgentImpl member = requestGroupAgent(memberId, requested);
+						group.unlock(member);
+						break;
+					}
 				} catch (Exception e) {
 					// do nothing
 				}
@@ -169,7 +184,8 @@ public class AgentContext implements AgentStorage {
 	}
 
 	/**
-	 * Checks if the given agent is transitive member of the given group.
+	 * Checks if the given agent is transitive member of the given group. Nested groups are looked up in the
+	 * {@link GroupMembershipIndex} of the local node.
 	 * 
 	 * @param groupAgent The group
 	 * @param agentId the agent to check if its member of the group
@@ -179,14 +195,11 @@ public class AgentContext implements AgentStorage {
 		if (groupAgent.hasMember(agentId)) {
 			return true;
 		}
+		GroupMembershipIndex index = localNode.getGroupMembershipIndex();
 		for (String memberId : groupAgent.getMemberList()) {
 			try {
-				AgentImpl agent = getAgent(memberId);
-				if (agent instanceof GroupAgentImpl) {
-					GroupAgentImpl group = (GroupAgentImpl) agent;
-					if (isMemberRecursive(group, agentId)) {
-						return true;
-					}
+				if (index.isMember(memberId, agentId)) {
+					return true;
 				}
 			} catch (AgentException e) {
 			}
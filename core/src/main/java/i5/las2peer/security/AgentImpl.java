@@ -261,6 +261,20 @@ public abstract class AgentImpl implements Agent, XmlAble, Cloneable, MessageRec
 		return result;
 	}
 
+	/**
+	 * Gets an unlocked copy of this agent. Locking the copy does not lock this agent and vice versa.
+	 *
+	 * @return an unlocked clone of this agent
+	 * @throws AgentLockedException If this agent is locked
+	 * @throws CloneNotSupportedException
+	 */
+	public final AgentImpl cloneUnlocked() throws AgentLockedException, CloneNotSupportedException {
+		if (isLocked()) {
+			throw new AgentLockedException();
+		}
+		return (AgentImpl) clone();
+	}
+
 	/**
 	 * 
 	 * Notifies this agent of unregistering from a node.
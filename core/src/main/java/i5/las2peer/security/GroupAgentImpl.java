@@ -209,6 +209,17 @@ public class GroupAgentImpl extends AgentImpl implements GroupAgent {
 		openedBy = null;
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	protected Object clone() throws CloneNotSupportedException {
+		GroupAgentImpl result = (GroupAgentImpl) super.clone();
+		// copies must not share their member tables, otherwise changes to one copy would show up in all others
+		result.htEncryptedKeyVersions = (HashMap<String, byte[]>) htEncryptedKeyVersions.clone();
+		result.membersToAdd = new HashMap<>(membersToAdd);
+		result.membersToRemove = new HashMap<>(membersToRemove);
+		return result;
+	}
+
 	@Override
 	public String toXmlString() {
 		try {
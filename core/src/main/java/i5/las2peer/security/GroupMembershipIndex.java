@@ -0,0 +1,234 @@
+package i5.las2peer.security;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import i5.las2peer.api.security.AgentException;
+import i5.las2peer.api.security.AgentNotFoundException;
+import i5.las2peer.p2p.Node;
+import i5.las2peer.tools.ExpiringCache;
+
+/**
+ * Index of the transitive members of group agents, shared by all {@link AgentContext}s of a node.
+ *
+ * The direct members of each group are fetched only once. Transitive member sets are built from them, reusing the sets
+ * already computed for nested groups. Groups containing each other are handled. Entries expire after a short lifetime
+ * and are invalidated as soon as the node stores or fetches a new version of a group agent.
+ *
+ */
+public class GroupMembershipIndex {
+
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+	public static final int DEFAULT_LIFETIME = 10;
+
+	/**
+	 * cached direct members of agents that are no groups
+	 */
+	private static final Set<String> NOT_A_GROUP = Collections.unmodifiableSet(new HashSet<>());
+
+	private final Node node;
+	private final int cacheSize;
+	private final long lifetimeMs;
+
+	private final ExpiringCache<String, Set<String>> directMembers;
+	private final ExpiringCache<String, Closure> closures;
+	/**
+	 * maps each group to the groups whose transitive member set depends on it
+	 */
+	private final HashMap<String, Set<String>> dependents = new HashMap<>();
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * the transitive members of a group together with all groups they were collected from
+	 */
+	private static class Closure {
+		private final Set<String> members;
+		private final Set<String> groups;
+
+		private Closure(Set<String> members, Set<String> groups) {
+			this.members = Collections.unmodifiableSet(members);
+			this.groups = Collections.unmodifiableSet(groups);
+		}
+	}
+
+	public GroupMembershipIndex(Node node) {
+		this(node, DEFAULT_CACHE_SIZE, DEFAULT_LIFETIME);
+	}
+
+	/**
+	 * @param node the node to fetch group agents with
+	 * @param cacheSize maximum number of indexed groups
+	 * @param lifetime time in seconds indexed groups are used without fetching them again
+	 */
+	public GroupMembershipIndex(Node node, int cacheSize, int lifetime) {
+		this.node = node;
+		this.cacheSize = cacheSize;
+		this.lifetimeMs = lifetime * 1000L;
+		this.directMembers = new ExpiringCache<>(cacheSize);
+		this.closures = new ExpiringCache<>(cacheSize);
+	}
+
+	/**
+	 * checks if an agent is a transitive member of a group
+	 *
+	 * @param groupId A group agent id
+	 * @param agentId An agent id
+	 * @return true, if the agent is a member of the group or of one of its nested groups
+	 * @throws AgentNotFoundException If the group agent does not exist
+	 * @throws AgentException If the group agent could not be fetched
+	 */
+	public boolean isMember(String groupId, String agentId) throws AgentNotFoundException, AgentException {
+		return getTransitiveMembers(groupId).contains(agentId);
+	}
+
+	/**
+	 * gets the transitive members of a group
+	 *
+	 * @param groupId A group agent id
+	 * @return the ids of all members of the group and its nested groups, including the nested groups themselves, or an
+	 *         empty set if the given agent is no group
+	 * @throws AgentNotFoundException If the group agent does not exist
+	 * @throws AgentException If the group agent could not be fetched
+	 */
+	public Set<String> getTransitiveMembers(String groupId) throws AgentNotFoundException, AgentException {
+		Closure cached = closures.get(groupId);
+		if (cached != null) {
+			return cached.members;
+		}
+		long startGeneration = generation.get();
+		Set<String> members = new HashSet<>();
+		Set<String> groups = new HashSet<>();
+		Set<String> visited = new HashSet<>();
+		Deque<String> pending = new ArrayDeque<>();
+		boolean complete = true;
+		visited.add(groupId);
+		pending.add(groupId);
+		while (!pending.isEmpty()) {
+			String current = pending.poll();
+			if (!current.equals(groupId)) {
+				Closure nested = closures.get(current);
+				if (nested != null) {
+					members.addAll(nested.members);
+					groups.addAll(nested.groups);
+					visited.addAll(nested.members);
+					continue;
+				}
+			}
+			Set<String> direct;
+			try {
+				direct = getDirectMembers(current, startGeneration);
+			} catch (AgentNotFoundException e) {
+				if (current.equals(groupId)) {
+					throw e;
+				}
+				// a vanished member has no members itself
+				continue;
+			} catch (AgentException e) {
+				if (current.equals(groupId)) {
+					throw e;
+				}
+				complete = false;
+				continue;
+			}
+			if (direct == NOT_A_GROUP) {
+				continue;
+			}
+			groups.add(current);
+			for (String memberId : direct) {
+				members.add(memberId);
+				if (visited.add(memberId)) {
+					pending.add(memberId);
+				}
+			}
+		}
+		Closure result = new Closure(members, groups);
+		if (complete) {
+			synchronized (dependents) {
+				// skip caching, if a group changed meanwhile, because the result might be outdated already
+				if (startGeneration == generation.get()) {
+					if (dependents.size() > cacheSize) {
+						dependents.clear();
+						closures.clear();
+					}
+					closures.put(groupId, result, lifetimeMs);
+					for (String group : groups) {
+						dependents.computeIfAbsent(group, k -> new HashSet<>()).add(groupId);
+					}
+				}
+			}
+		}
+		return result.members;
+	}
+
+	private Set<String> getDirectMembers(String agentId, long startGeneration)
+			throws AgentNotFoundException, AgentException {
+		Set<String> cached = directMembers.get(agentId);
+		if (cached != null) {
+			return cached;
+		}
+		AgentImpl agent = node.getAgent(agentId);
+		Set<String> result = NOT_A_GROUP;
+		if (agent instanceof GroupAgentImpl) {
+			result = Collections
+					.unmodifiableSet(new HashSet<>(Arrays.asList(((GroupAgentImpl) agent).getMemberList())));
+		}
+		synchronized (dependents) {
+			if (startGeneration == generation.get()) {
+				directMembers.put(agentId, result, lifetimeMs);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops an agent from the index. Has to be called if a new version of a group agent is known.
+	 *
+	 * @param agentId An agent id
+	 */
+	public void invalidate(String agentId) {
+		synchronized (dependents) {
+			generation.incrementAndGet();
+			directMembers.remove(agentId);
+			closures.remove(agentId);
+			Set<String> affected = dependents.remove(agentId);
+			if (affected != null) {
+				for (String groupId : affected) {
+					closures.remove(groupId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * removes all entries from the index
+	 */
+	public void clear() {
+		synchronized (dependents) {
+			generation.incrementAndGet();
+			directMembers.clear();
+			closures.clear();
+			dependents.clear();
+		}
+	}
+
+	/**
+	 * @return number of transitive member lookups answered from the index
+	 */
+	public long getHitCount() {
+		return closures.getHitCount();
+	}
+
+	/**
+	 * @return number of transitive member lookups not answered from the index
+	 */
+	public long getMissCount() {
+		return closures.getMissCount();
+	}
+
+}
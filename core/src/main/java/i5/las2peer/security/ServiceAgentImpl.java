@@ -8,7 +8,7 @@ import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.Base64;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.w3c.dom.Element;
 
@@ -18,6 +18,7 @@ import i5.las2peer.api.execution.InternalServiceException;
 import i5.las2peer.api.execution.ServiceInvocationException;
 import i5.las2peer.api.execution.ServiceInvocationFailedException;
 import i5.las2peer.api.execution.ServiceMethodNotFoundException;
+import i5.las2peer.api.execution.ServiceNotAvailableException;
 import i5.las2peer.api.logging.MonitoringEvent;
 import i5.las2peer.api.p2p.ServiceNameVersion;
 import i5.las2peer.api.security.AgentAccessDeniedException;
@@ -27,6 +28,7 @@ import i5.las2peer.api.security.AgentOperationFailedException;
 import i5.las2peer.api.security.ServiceAgent;
 import i5.las2peer.classLoaders.ClassLoaderException;
 import i5.las2peer.classLoaders.LibraryNotFoundException;
+import i5.las2peer.classLoaders.ServiceClassLoader;
 import i5.las2peer.communication.ListMethodsContent;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.MessageException;
@@ -35,6 +37,7 @@ import i5.las2peer.communication.RMIResultContent;
 import i5.las2peer.communication.ServiceDiscoveryContent;
 import i5.las2peer.execution.ExecutionContext;
 import i5.las2peer.execution.RMITask;
+import i5.las2peer.execution.ServiceExecutor;
 import i5.las2peer.execution.ServiceHelper;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.p2p.AliasConflictException;
@@ -65,6 +68,11 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 	 */
 	private Service serviceInstance = null;
 
+	/**
+	 * pooled threads executing the calls to this service (if started at a node)
+	 */
+	private ServiceExecutor serviceExecutor = null;
+
 	/**
 	 * create a new service agent
 	 * 
@@ -222,6 +230,12 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 			System.out.println("Service " + this.getServiceNameVersion() + " has been stopped!");
 			serviceInstance = null;
 		}
+		synchronized (this) {
+			if (serviceExecutor != null) {
+				serviceExecutor.shutdown();
+				serviceExecutor = null;
+			}
+		}
 		if (runningAt != null) {
 			runningAt.observerNotice(MonitoringEvent.SERVICE_SHUTDOWN, runningAt.getNodeId(), this,
 					getServiceNameVersion().toString());
@@ -356,8 +370,12 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 	public void notifyRegistrationTo(Node node) throws AgentException {
 		try {
 			Class<?> clServ = node.getBaseClassLoader().getServiceClass(nameVersion);
+			if (node.isServiceClassPreloading() && clServ.getClassLoader() instanceof ServiceClassLoader) {
+				((ServiceClassLoader) clServ.getClassLoader()).preloadClasses();
+			}
 			Constructor<?> cons = clServ.getConstructor(new Class<?>[0]);
 			serviceInstance = (Service) cons.newInstance();
+			ServiceHelper.prepareMethods(serviceInstance.getClass());
 
 			// set up monitoring
 			if (serviceInstance.isMonitor()) {
@@ -469,13 +487,12 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 					+ getServiceNameVersion() + "/" + task.getServiceNameVersion());
 		}
 
-		// init context and executor
+		// init context
 		ExecutionContext context = new ExecutionContext(this, agentContext, agentContext.getLocalNode());
-		ExecutorService executor = context.getExecutor();
 
 		// execute
 		try {
-			return executor.submit(() -> {
+			return getServiceExecutor().execute(context, () -> {
 				Object res = invoke(task.getMethodName(), task.getParameters());
 
 				if (res == null) {
@@ -488,7 +505,9 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 				}
 
 				return (Serializable) res;
-			}).get();
+			});
+		} catch (RejectedExecutionException e) {
+			throw new ServiceNotAvailableException("Service is overloaded or not running", e);
 		} catch (ExecutionException e) {
 			if (e.getCause() instanceof InvocationTargetException) {
 				if (e.getCause().getCause() instanceof ServiceInvocationException) {
@@ -504,8 +523,26 @@ public class ServiceAgentImpl extends PassphraseAgentImpl implements ServiceAgen
 		} catch (Exception e) {
 			throw new ServiceInvocationFailedException("Service invocation failed", e);
 		} finally {
-			executor.shutdownNow();
+			context.shutdownExecutor();
+		}
+	}
+
+	/**
+	 * get the execution engine handling all calls to this service at this node
+	 * 
+	 * @return the execution engine of this service
+	 */
+	public synchronized ServiceExecutor getServiceExecutor() {
+		if (serviceExecutor == null || serviceExecutor.isShutdown()) {
+			Node node = getRunningAtNode();
+			if (node != null) {
+				serviceExecutor = new ServiceExecutor(getServiceNameVersion().toString(),
+						node.getServiceExecutorMaxThreads(), node.getServiceExecutorQueueSize());
+			} else {
+				serviceExecutor = new ServiceExecutor(getServiceNameVersion().toString());
+			}
 		}
+		return serviceExecutor;
 	}
 
 	/**
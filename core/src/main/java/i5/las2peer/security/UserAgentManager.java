@@ -16,10 +16,14 @@ import i5.las2peer.p2p.Node;
 import i5.las2peer.persistency.EnvelopeVersion;
 import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.tools.CryptoException;
+import i5.las2peer.tools.ExpiringCache;
 
 /**
  * Maps usernames and emails to {@link UserAgentImpl}s.
  *
+ * Since these mappings never change once stored, resolved ids are cached. Unknown identifiers are cached for a short
+ * time only, so registrations at other nodes become visible soon.
+ *
  */
 public class UserAgentManager {
 
@@ -28,10 +32,36 @@ public class UserAgentManager {
 	private static final String PREFIX_USER_MAIL = "USER_MAIL-";
 	private static final String PREFIX_OIDC_SUB = "OIDC_SUB-";
 
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+	public static final int DEFAULT_CACHE_LIFETIME = 600;
+	public static final int DEFAULT_NEGATIVE_CACHE_LIFETIME = 10;
+
+	/**
+	 * cached value for identifiers not known in the network
+	 */
+	private static final String NOT_FOUND = "";
+
 	private Node node;
 
+	private final ExpiringCache<String, String> cache;
+	private final long cacheLifetimeMs;
+	private final long negativeCacheLifetimeMs;
+
 	public UserAgentManager(Node node) {
+		this(node, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_LIFETIME, DEFAULT_NEGATIVE_CACHE_LIFETIME);
+	}
+
+	/**
+	 * @param node the node to store and fetch the mappings with
+	 * @param cacheSize maximum number of cached mappings
+	 * @param cacheLifetime time in seconds resolved agent ids are cached
+	 * @param negativeCacheLifetime time in seconds unknown identifiers are cached
+	 */
+	public UserAgentManager(Node node, int cacheSize, int cacheLifetime, int negativeCacheLifetime) {
 		this.node = node;
+		this.cache = new ExpiringCache<>(cacheSize);
+		this.cacheLifetimeMs = cacheLifetime * 1000L;
+		this.negativeCacheLifetimeMs = negativeCacheLifetime * 1000L;
 	}
 
 	/**
@@ -68,6 +98,7 @@ public class UserAgentManager {
 					}
 
 				}
+				cache.put(identifier, agentId, cacheLifetimeMs);
 
 			} catch (EnvelopeAlreadyExistsException e) {
 				throw new LoginNameAlreadyTakenException();
@@ -96,6 +127,7 @@ public class UserAgentManager {
 					}
 
 				}
+				cache.put(identifier, agentId, cacheLifetimeMs);
 			} catch (EnvelopeAlreadyExistsException e) {
 				throw new EmailAlreadyTakenException();
 			} catch (SerializationException | CryptoException | EnvelopeException e) {
@@ -133,6 +165,7 @@ public class UserAgentManager {
 					EnvelopeVersion envName = node.createUnencryptedEnvelope(identifier, agent.getPublicKey(), agentId);
 					node.storeEnvelope(envName, agent);
 				}
+				cache.put(identifier, agentId, cacheLifetimeMs);
 
 			} catch (EnvelopeAlreadyExistsException e) {
 				throw new OIDCSubAlreadyTakenException();
@@ -177,14 +210,8 @@ public class UserAgentManager {
 		if (name.equalsIgnoreCase(AnonymousAgent.LOGIN_NAME)) {
 			return AnonymousAgentImpl.getInstance().getIdentifier();
 		}
-		try {
-			EnvelopeVersion env = node.fetchEnvelope(PREFIX_USER_NAME + name.toLowerCase());
-			return (String) env.getContent();
-		} catch (EnvelopeNotFoundException e) {
-			throw new AgentNotFoundException("Username not found!", e);
-		} catch (EnvelopeException | SerializationException | CryptoException e) {
-			throw new AgentOperationFailedException("Could not read agent id from storage");
-		}
+		return lookup(PREFIX_USER_NAME + name.toLowerCase(), "Username not found!",
+				"Could not read agent id from storage");
 	}
 
 	/**
@@ -196,14 +223,7 @@ public class UserAgentManager {
 	 * @throws AgentOperationFailedException If any other issue with the agent occurs, e. g. XML not readable
 	 */
 	public String getAgentIdByEmail(String email) throws AgentNotFoundException, AgentOperationFailedException {
-		try {
-			EnvelopeVersion env = node.fetchEnvelope(PREFIX_USER_MAIL + email.toLowerCase());
-			return (String) env.getContent();
-		} catch (EnvelopeNotFoundException e) {
-			throw new AgentNotFoundException("Email not found!", e);
-		} catch (EnvelopeException | SerializationException | CryptoException e) {
-			throw new AgentOperationFailedException("Could not read email from storage");
-		}
+		return lookup(PREFIX_USER_MAIL + email.toLowerCase(), "Email not found!", "Could not read email from storage");
 	}
 
 	/**
@@ -215,14 +235,36 @@ public class UserAgentManager {
 	 * @throws AgentOperationFailedException If any other issue with the agent occurs, e. g. XML not readable
 	 */
 	public String getAgentIdByOIDCSub(String sub) throws AgentNotFoundException, AgentOperationFailedException {
+		return lookup(PREFIX_OIDC_SUB + sub.toLowerCase(), "OIDC sub not found!",
+				"Could not read OIDC sub from storage");
+	}
+
+	private String lookup(String identifier, String notFoundMessage, String failedMessage)
+			throws AgentNotFoundException, AgentOperationFailedException {
+		String cached = cache.get(identifier);
+		if (NOT_FOUND.equals(cached)) {
+			throw new AgentNotFoundException(notFoundMessage);
+		} else if (cached != null) {
+			return cached;
+		}
 		try {
-			EnvelopeVersion env = node.fetchEnvelope(PREFIX_OIDC_SUB + sub.toLowerCase());
-			return (String) env.getContent();
+			EnvelopeVersion env = node.fetchEnvelope(identifier);
+			String agentId = (String) env.getContent();
+			cache.put(identifier, agentId, cacheLifetimeMs);
+			return agentId;
 		} catch (EnvelopeNotFoundException e) {
-			throw new AgentNotFoundException("OIDC sub not found!", e);
+			cache.put(identifier, NOT_FOUND, negativeCacheLifetimeMs);
+			throw new AgentNotFoundException(notFoundMessage, e);
 		} catch (EnvelopeException | SerializationException | CryptoException e) {
-			throw new AgentOperationFailedException("Could not read OIDC sub from storage");
+			throw new AgentOperationFailedException(failedMessage);
 		}
 	}
 
+	/**
+	 * @return the cache of resolved agent ids, e.g. to read its metrics
+	 */
+	public ExpiringCache<String, String> getCache() {
+		return cache;
+	}
+
 }
@@ -5,6 +5,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
@@ -21,6 +23,7 @@ import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -29,7 +32,9 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
 import javax.crypto.interfaces.PBEKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -64,6 +69,33 @@ public class CryptoTools {
 	private static final String DEFAULT_KEY_FACTORY_NAME = "PBKDF2WithHmacSHA1";
 	private static String keyFactoryName = DEFAULT_KEY_FACTORY_NAME;
 
+	private static final String AUTHENTICATED_SYMMETRIC_ALGORITHM = "AES/GCM/NoPadding";
+	private static final int AUTHENTICATED_IV_LENGTH = 12;
+	private static final int AUTHENTICATED_TAG_LENGTH = 128;
+
+	private static final SecureRandom ivRandom = new SecureRandom();
+
+	private static final int PUBLIC_KEY_CACHE_SIZE = 1000;
+	private static final long PUBLIC_KEY_CACHE_LIFETIME = 60 * 60 * 1000; // 1 hour
+
+	/**
+	 * decoded public keys by their X.509 encoded form
+	 */
+	private static final ExpiringCache<ByteBuffer, PublicKey> publicKeyCache = new ExpiringCache<>(
+			PUBLIC_KEY_CACHE_SIZE);
+
+	/**
+	 * The lookup of a provider for a cipher, signature or key factory is expensive compared to its initialization. So
+	 * each thread keeps its instances by algorithm and initializes them again for each operation.
+	 */
+	private static final ThreadLocal<HashMap<String, Cipher>> threadCiphers = ThreadLocal.withInitial(HashMap::new);
+	private static final ThreadLocal<HashMap<String, Signature>> threadSignatures = ThreadLocal
+			.withInitial(HashMap::new);
+	private static final ThreadLocal<HashMap<String, KeyFactory>> threadKeyFactories = ThreadLocal
+			.withInitial(HashMap::new);
+	private static final ThreadLocal<HashMap<String, MessageDigest>> threadDigests = ThreadLocal
+			.withInitial(HashMap::new);
+
 	/**
 	 * used hash method
 	 * 
@@ -91,6 +123,15 @@ public class CryptoTools {
 		return symmetricAlgorithm;
 	}
 
+	/**
+	 * get the symmetric algorithm used for authenticated encryption
+	 * 
+	 * @return authenticated symmetric algorithm
+	 */
+	public static String getAuthenticatedSymmetricAlgorithm() {
+		return AUTHENTICATED_SYMMETRIC_ALGORITHM;
+	}
+
 	/**
 	 * get the signature method in use
 	 * 
@@ -175,7 +216,7 @@ public class CryptoTools {
 		try {
 			SecretKey encKey = generateKeyForPassphrase(passphrase, salt);
 
-			Cipher c = Cipher.getInstance(symmetricAlgorithm);
+			Cipher c = getCipher(symmetricAlgorithm);
 			c.init(Cipher.ENCRYPT_MODE, encKey);
 
 			return c.doFinal(SerializeTools.serialize(object));
@@ -207,7 +248,7 @@ public class CryptoTools {
 		try {
 			SecretKey encKey = generateKeyForPassphrase(passphrase, salt);
 
-			Cipher c = Cipher.getInstance(symmetricAlgorithm);
+			Cipher c = getCipher(symmetricAlgorithm);
 			c.init(Cipher.DECRYPT_MODE, encKey);
 
 			return SerializeTools.deserialize(c.doFinal(content));
@@ -255,7 +296,7 @@ public class CryptoTools {
 	public static Serializable decryptAsymmetric(byte[] data, PrivateKey key)
 			throws SerializationException, CryptoException {
 		try {
-			Cipher c = Cipher.getInstance(asymmetricAlgorithm);
+			Cipher c = getCipher(asymmetricAlgorithm);
 			c.init(Cipher.DECRYPT_MODE, key);
 
 			byte[] decoded = c.doFinal(data);
@@ -284,7 +325,7 @@ public class CryptoTools {
 	 */
 	public static byte[] decryptSymmetric(byte[] baCipherData, SecretKey key) throws CryptoException {
 		try {
-			Cipher c = Cipher.getInstance(symmetricAlgorithm);
+			Cipher c = getCipher(symmetricAlgorithm);
 			c.init(Cipher.DECRYPT_MODE, key);
 			return c.doFinal(baCipherData);
 		} catch (InvalidKeyException e) {
@@ -324,7 +365,7 @@ public class CryptoTools {
 	 */
 	public static byte[] encryptAsymmetric(byte[] content, PublicKey key) throws CryptoException {
 		try {
-			Cipher c = Cipher.getInstance(asymmetricAlgorithm);
+			Cipher c = getCipher(asymmetricAlgorithm);
 			c.init(Cipher.ENCRYPT_MODE, key);
 
 			return c.doFinal(content);
@@ -351,7 +392,7 @@ public class CryptoTools {
 	 */
 	public static byte[] signContent(byte[] content, PrivateKey key) throws CryptoException {
 		try {
-			Signature sig = Signature.getInstance(getSignatureMethod());
+			Signature sig = getSignature(getSignatureMethod());
 
 			sig.initSign(key);
 			sig.update(content);
@@ -378,7 +419,7 @@ public class CryptoTools {
 	public static boolean verifySignature(byte[] signature, byte[] content, PublicKey key)
 			throws VerificationFailedException {
 		try {
-			Signature sig = Signature.getInstance(getSignatureMethod());
+			Signature sig = getSignature(getSignatureMethod());
 			sig.initVerify(key);
 			sig.update(content);
 			return sig.verify(signature);
@@ -426,7 +467,7 @@ public class CryptoTools {
 	 */
 	public static byte[] encryptSymmetric(byte[] baPlainData, SecretKey symmetricKey) throws CryptoException {
 		try {
-			Cipher c = Cipher.getInstance(getSymmetricAlgorithm());
+			Cipher c = getCipher(getSymmetricAlgorithm());
 			c.init(Cipher.ENCRYPT_MODE, symmetricKey);
 
 			return c.doFinal(baPlainData);
@@ -457,11 +498,83 @@ public class CryptoTools {
 		return encryptSymmetric(SerializeTools.serialize(plainData), key);
 	}
 
+	/**
+	 * encrypt the given data symmetrically with the given key using AES-GCM
+	 * 
+	 * In contrast to {@link #encryptSymmetric(byte[], SecretKey)} a random IV is used for each call, so the same key may
+	 * be used for many messages. The IV is prepended to the result.
+	 * 
+	 * @param baPlainData The data that is encrypted.
+	 * @param symmetricKey The key that is used to encrypt the given data.
+	 * @return IV and encrypted content as byte array
+	 * @throws CryptoException If an issue occurs with encryption.
+	 */
+	public static byte[] encryptSymmetricAuthenticated(byte[] baPlainData, SecretKey symmetricKey)
+			throws CryptoException {
+		try {
+			byte[] iv = new byte[AUTHENTICATED_IV_LENGTH];
+			ivRandom.nextBytes(iv);
+			Cipher c = getCipher(AUTHENTICATED_SYMMETRIC_ALGORITHM);
+			c.init(Cipher.ENCRYPT_MODE, symmetricKey, new GCMParameterSpec(AUTHENTICATED_TAG_LENGTH, iv));
+			byte[] result = new byte[AUTHENTICATED_IV_LENGTH + c.getOutputSize(baPlainData.length)];
+			System.arraycopy(iv, 0, result, 0, AUTHENTICATED_IV_LENGTH);
+			int length = c.doFinal(baPlainData, 0, baPlainData.length, result, AUTHENTICATED_IV_LENGTH);
+			if (AUTHENTICATED_IV_LENGTH + length != result.length) {
+				return Arrays.copyOf(result, AUTHENTICATED_IV_LENGTH + length);
+			}
+			return result;
+		} catch (InvalidKeyException e) {
+			throw new CryptoException("key problems", e);
+		} catch (InvalidAlgorithmParameterException e) {
+			throw new CryptoException("iv problems", e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new CryptoException("algorithm problems", e);
+		} catch (NoSuchPaddingException e) {
+			throw new CryptoException("padding problems", e);
+		} catch (IllegalBlockSizeException | ShortBufferException e) {
+			throw new CryptoException("blocksize problems", e);
+		} catch (BadPaddingException e) {
+			throw new CryptoException("padding problems", e);
+		}
+	}
+
+	/**
+	 * decrypt and authenticate data encrypted by {@link #encryptSymmetricAuthenticated(byte[], SecretKey)}
+	 * 
+	 * @param baCipherData The IV and the encrypted data.
+	 * @param key The key that is used to decrypt the given data.
+	 * @return decrypted content as byte array
+	 * @throws CryptoException If the data was modified or an issue occurs with decryption.
+	 */
+	public static byte[] decryptSymmetricAuthenticated(byte[] baCipherData, SecretKey key) throws CryptoException {
+		if (baCipherData.length < AUTHENTICATED_IV_LENGTH) {
+			throw new CryptoException("cipher data too short!");
+		}
+		try {
+			Cipher c = getCipher(AUTHENTICATED_SYMMETRIC_ALGORITHM);
+			c.init(Cipher.DECRYPT_MODE, key,
+					new GCMParameterSpec(AUTHENTICATED_TAG_LENGTH, baCipherData, 0, AUTHENTICATED_IV_LENGTH));
+			return c.doFinal(baCipherData, AUTHENTICATED_IV_LENGTH, baCipherData.length - AUTHENTICATED_IV_LENGTH);
+		} catch (InvalidKeyException e) {
+			throw new CryptoException("Key problems!", e);
+		} catch (InvalidAlgorithmParameterException e) {
+			throw new CryptoException("iv problems!", e);
+		} catch (NoSuchAlgorithmException e) {
+			throw new CryptoException("algorithm problems!", e);
+		} catch (NoSuchPaddingException e) {
+			throw new CryptoException("padding problems!", e);
+		} catch (IllegalBlockSizeException e) {
+			throw new CryptoException("block size problems!", e);
+		} catch (BadPaddingException e) {
+			throw new CryptoException("authentication failed!", e);
+		}
+	}
+
 	public static PrivateKey stringToPrivateKey(String base64) throws CryptoException {
 		byte[] clear = Base64.getDecoder().decode(base64);
 		PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(clear);
 		try {
-			KeyFactory fact = KeyFactory.getInstance(asymmetricAlgorithm);
+			KeyFactory fact = getKeyFactory(asymmetricAlgorithm);
 			PrivateKey priv = fact.generatePrivate(keySpec);
 			Arrays.fill(clear, (byte) 0);
 			return priv;
@@ -471,19 +584,42 @@ public class CryptoTools {
 	}
 
 	public static PublicKey stringToPublicKey(String base64) throws CryptoException {
-		byte[] data = Base64.getDecoder().decode(base64);
-		X509EncodedKeySpec spec = new X509EncodedKeySpec(data);
+		byte[] data;
 		try {
-			KeyFactory fact = KeyFactory.getInstance(asymmetricAlgorithm);
-			return fact.generatePublic(spec);
-		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+			data = Base64.getDecoder().decode(base64);
+		} catch (IllegalArgumentException e) {
 			throw new CryptoException("Could not read public key from given base64 string", e);
 		}
+		return decodePublicKey(data);
+	}
+
+	/**
+	 * decode a public key from its X.509 encoded form, e.g. the result of {@link PublicKey#getEncoded()}
+	 * 
+	 * @param encoded An encoded public key
+	 * @return the public key
+	 * @throws CryptoException If the given data is no valid public key.
+	 */
+	public static PublicKey decodePublicKey(byte[] encoded) throws CryptoException {
+		PublicKey cached = publicKeyCache.get(ByteBuffer.wrap(encoded));
+		if (cached != null) {
+			return cached;
+		}
+		X509EncodedKeySpec spec = new X509EncodedKeySpec(encoded);
+		try {
+			KeyFactory fact = getKeyFactory(asymmetricAlgorithm);
+			PublicKey result = fact.generatePublic(spec);
+			// copy the key of the cache entry, the caller may reuse the given array
+			publicKeyCache.put(ByteBuffer.wrap(encoded.clone()), result, PUBLIC_KEY_CACHE_LIFETIME);
+			return result;
+		} catch (NoSuchAlgorithmException | InvalidKeySpecException | IllegalArgumentException e) {
+			throw new CryptoException("Could not read public key from given encoded data", e);
+		}
 	}
 
 	public static String privateKeyToBase64String(PrivateKey priv) throws CryptoException {
 		try {
-			KeyFactory fact = KeyFactory.getInstance(asymmetricAlgorithm);
+			KeyFactory fact = getKeyFactory(asymmetricAlgorithm);
 			PKCS8EncodedKeySpec spec = fact.getKeySpec(priv, PKCS8EncodedKeySpec.class);
 			byte[] packed = spec.getEncoded();
 			String key64 = Base64.getEncoder().encodeToString(packed);
@@ -496,7 +632,7 @@ public class CryptoTools {
 
 	public static String publicKeyToBase64String(PublicKey publ) throws CryptoException {
 		try {
-			KeyFactory fact = KeyFactory.getInstance(asymmetricAlgorithm);
+			KeyFactory fact = getKeyFactory(asymmetricAlgorithm);
 			X509EncodedKeySpec spec = fact.getKeySpec(publ, X509EncodedKeySpec.class);
 			return Base64.getEncoder().encodeToString(spec.getEncoded());
 		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
@@ -507,7 +643,7 @@ public class CryptoTools {
 	public static String publicKeyToSHA512(PublicKey publicKey) {
 		try {
 			// this must be cryptographically safe, SHA1 is not enough!
-			MessageDigest md = MessageDigest.getInstance("SHA-512");
+			MessageDigest md = getMessageDigest("SHA-512");
 			md.update(publicKey.getEncoded());
 			byte[] hash = md.digest();
 			return SimpleTools.byteToHexString(hash);
@@ -518,7 +654,7 @@ public class CryptoTools {
 
 	public static byte[] getSecureHash(byte[] data) throws CryptoException {
 		try {
-			MessageDigest digest = MessageDigest.getInstance(getHashMethod());
+			MessageDigest digest = getMessageDigest(getHashMethod());
 			digest.update(data);
 			return digest.digest();
 		} catch (Exception e) {
@@ -541,6 +677,48 @@ public class CryptoTools {
 	}
 
 	/*** statics **** */
+	private static Cipher getCipher(String algorithm) throws NoSuchAlgorithmException, NoSuchPaddingException {
+		HashMap<String, Cipher> ciphers = threadCiphers.get();
+		Cipher result = ciphers.get(algorithm);
+		if (result == null) {
+			result = Cipher.getInstance(algorithm);
+			ciphers.put(algorithm, result);
+		}
+		return result;
+	}
+
+	private static Signature getSignature(String algorithm) throws NoSuchAlgorithmException {
+		HashMap<String, Signature> signatures = threadSignatures.get();
+		Signature result = signatures.get(algorithm);
+		if (result == null) {
+			result = Signature.getInstance(algorithm);
+			signatures.put(algorithm, result);
+		}
+		return result;
+	}
+
+	private static KeyFactory getKeyFactory(String algorithm) throws NoSuchAlgorithmException {
+		HashMap<String, KeyFactory> factories = threadKeyFactories.get();
+		KeyFactory result = factories.get(algorithm);
+		if (result == null) {
+			result = KeyFactory.getInstance(algorithm);
+			factories.put(algorithm, result);
+		}
+		return result;
+	}
+
+	private static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+		HashMap<String, MessageDigest> digests = threadDigests.get();
+		MessageDigest result = digests.get(algorithm);
+		if (result == null) {
+			result = MessageDigest.getInstance(algorithm);
+			digests.put(algorithm, result);
+		} else {
+			result.reset();
+		}
+		return result;
+	}
+
 	private static KeyGenerator keyGeneratorSymmetric = null;
 	private static KeyPairGenerator keyGeneratorAsymmetric = null;
 
@@ -0,0 +1,241 @@
+package i5.las2peer.tools;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A size bounded cache, whose entries expire after a time to live given per entry.
+ *
+ * If the cache is full, the least recently used entry is evicted. Optionally the cache is also bounded by the total
+ * weight of its values, e.g. their size in bytes. All methods are thread safe.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the cached values
+ */
+public class ExpiringCache<K, V> {
+
+	private final int maxSize;
+	private final long maxWeight;
+	private final ToLongFunction<? super V> weigher;
+	private final LinkedHashMap<K, Entry<V>> entries;
+	private long totalWeight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expiresAt;
+		private final long weight;
+
+		private Entry(V value, long expiresAt, long weight) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * create a new cache
+	 *
+	 * @param maxSize maximum number of entries
+	 */
+	public ExpiringCache(int maxSize) {
+		this(maxSize, Long.MAX_VALUE, value -> 0);
+	}
+
+	/**
+	 * create a new cache bounded by the number of entries and their total weight
+	 *
+	 * @param maxSize maximum number of entries
+	 * @param maxWeight maximum total weight of all entries
+	 * @param weigher computes the weight of a value, e.g. its size in bytes
+	 */
+	public ExpiringCache(int maxSize, long maxWeight, ToLongFunction<? super V> weigher) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Cache size has to be positive");
+		}
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("Cache weight must not be negative");
+		}
+		this.maxSize = maxSize;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > ExpiringCache.this.maxSize) {
+					evictions.incrementAndGet();
+					totalWeight -= eldest.getValue().weight;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * get a cached value
+	 *
+	 * @param key A key
+	 * @return the value cached for the given key or null, if there is none or it has expired
+	 */
+	public V get(K key) {
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+				removeEntry(key);
+				entry = null;
+			}
+			if (entry == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+			hits.incrementAndGet();
+			return entry.value;
+		}
+	}
+
+	/**
+	 * cache a value
+	 *
+	 * @param key A key
+	 * @param value A value, not null
+	 * @param timeToLiveMs time in milliseconds before the value expires, nothing is cached if not positive
+	 */
+	public void put(K key, V value, long timeToLiveMs) {
+		if (value == null) {
+			throw new IllegalArgumentException("null values can not be cached");
+		}
+		if (timeToLiveMs <= 0) {
+			return;
+		}
+		long weight = weigher.applyAsLong(value);
+		if (weight > maxWeight) {
+			// would evict everything else
+			remove(key);
+			return;
+		}
+		synchronized (entries) {
+			removeEntry(key);
+			entries.put(key, new Entry<>(value, System.currentTimeMillis() + timeToLiveMs, weight));
+			totalWeight += weight;
+			Iterator<Entry<V>> it = entries.values().iterator();
+			while (totalWeight > maxWeight && it.hasNext()) {
+				totalWeight -= it.next().weight;
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private void removeEntry(K key) {
+		Entry<V> removed = entries.remove(key);
+		if (removed != null) {
+			totalWeight -= removed.weight;
+		}
+	}
+
+	/**
+	 * remove a value from the cache
+	 *
+	 * @param key A key
+	 */
+	public void remove(K key) {
+		synchronized (entries) {
+			removeEntry(key);
+		}
+	}
+
+	/**
+	 * removes all entries matching the given filter
+	 *
+	 * @param filter A filter called with key and value of each entry
+	 */
+	public void removeIf(BiPredicate<? super K, ? super V> filter) {
+		synchronized (entries) {
+			Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<K, Entry<V>> entry = it.next();
+				if (filter.test(entry.getKey(), entry.getValue().value)) {
+					totalWeight -= entry.getValue().weight;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * removes all entries
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			totalWeight = 0;
+		}
+	}
+
+	/**
+	 * removes all expired entries
+	 */
+	public void removeExpired() {
+		long now = System.currentTimeMillis();
+		synchronized (entries) {
+			Iterator<Entry<V>> it = entries.values().iterator();
+			while (it.hasNext()) {
+				Entry<V> entry = it.next();
+				if (entry.expiresAt < now) {
+					totalWeight -= entry.weight;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached entries, including expired ones not yet removed
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return total weight of all cached entries, including expired ones not yet removed
+	 */
+	public long getWeight() {
+		synchronized (entries) {
+			return totalWeight;
+		}
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups not answered from the cache
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of entries evicted because the cache was full
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+}
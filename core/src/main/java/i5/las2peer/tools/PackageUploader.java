@@ -183,7 +183,8 @@ public class PackageUploader {
 			registerService((EthereumNode) node, serviceName, serviceVersion, devAgent, supplement);
 		}
 		storeServiceFiles(node, jarFiles);
-		LibraryIdentifier libId = storeServiceMetadata(node, serviceName, serviceVersion, depHashes, devAgent);
+		LibraryIdentifier libId = storeServiceMetadata(node, serviceName, serviceVersion, depHashes, jarFiles,
+				devAgent);
 		EnvelopeVersion versionEnv = fetchOrCreateVersionsEnvelope(node, serviceName, devAgent, libId);
 		node.storeEnvelope(versionEnv, devAgent);
 	}
@@ -208,11 +209,16 @@ public class PackageUploader {
 	}
 
 	private static LibraryIdentifier storeServiceMetadata(PastryNodeImpl node, String serviceName,
-			String serviceVersion, Map<String, byte[]> depHashes, AgentImpl devAgent)
+			String serviceVersion, Map<String, byte[]> depHashes, Map<String, byte[]> jarFiles, AgentImpl devAgent)
 			throws SerializationException, CryptoException, EnvelopeException, ServicePackageException {
 		LibraryIdentifier libId = new LibraryIdentifier(serviceName, serviceVersion);
+		// sizes let nodes answer size queries without fetching the files
+		Map<String, Long> depSizes = new HashMap<>();
+		for (Entry<String, byte[]> entry : jarFiles.entrySet()) {
+			depSizes.put(entry.getKey(), (long) entry.getValue().length);
+		}
 		// store metadata envelope for service
-		LoadedNetworkLibrary netLib = new LoadedNetworkLibrary(node, libId, depHashes);
+		LoadedNetworkLibrary netLib = new LoadedNetworkLibrary(node, libId, depHashes, depSizes);
 		// upload network library as XML representation
 		String libEnvId = SharedStorageRepository.getLibraryEnvelopeIdentifier(netLib.getIdentifier());
 		logger.info("publishing library '" + netLib.getIdentifier().toString() + "' to '" + libEnvId + "'");
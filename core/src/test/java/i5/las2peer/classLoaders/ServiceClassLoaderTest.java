@@ -5,6 +5,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import i5.las2peer.classLoaders.libraries.LoadedJarLibrary;
 import i5.las2peer.classLoaders.libraries.LoadedLibrary;
@@ -16,6 +17,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -95,6 +100,45 @@ public class ServiceClassLoaderTest {
 		assertSame(testee1, test2.getClassLoader());
 	}
 
+	@Test
+	public void testParallelLoading() throws Exception {
+		LoadedLibrary lib = LoadedJarLibrary
+				.createFromJar("export/jars/i5.las2peer.classLoaders.testPackage1-1.0.jar");
+		ServiceClassLoader testee = new ServiceClassLoader(lib, null, new DefaultPolicy());
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Callable<Class<?>> load = () -> testee.loadClass("i5.las2peer.classLoaders.testPackage1.CounterClass");
+			Future<?>[] results = new Future<?>[16];
+			for (int i = 0; i < results.length; i++) {
+				results[i] = executor.submit(load);
+			}
+			for (Future<?> result : results) {
+				assertSame(results[0].get(), result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// not in the library's index
+		try {
+			testee.loadClass("i5.las2peer.classLoaders.testPackage1.NotExistingClass");
+			fail("ClassNotFoundException should have been thrown");
+		} catch (ClassNotFoundException e) {
+		}
+	}
+
+	@Test
+	public void testPreloading() throws IllegalArgumentException, IOException, ClassNotFoundException {
+		LoadedLibrary lib = LoadedJarLibrary
+				.createFromJar("export/jars/i5.las2peer.classLoaders.testPackage1-1.0.jar");
+		ServiceClassLoader testee = new ServiceClassLoader(lib, null, new DefaultPolicy());
+
+		assertTrue(testee.preloadClasses() > 0);
+		Class<?> cl = testee.loadClass("i5.las2peer.classLoaders.testPackage1.CounterClass", false);
+		assertSame(testee, cl.getClassLoader());
+	}
+
 	@Test
 	public void testPackages() throws IllegalArgumentException, IOException, ClassNotFoundException {
 		LoadedLibrary lib = LoadedJarLibrary
@@ -5,7 +5,13 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collection;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import org.junit.Test;
 
@@ -145,4 +151,49 @@ public class FileSystemRepositoryTest {
 		assertTrue(date2 == date3);
 	}
 
+	private static File createJar(File directory, String name, String version) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().putValue(LibraryIdentifier.MANIFEST_LIBRARY_NAME_ATTRIBUTE, name);
+		manifest.getMainAttributes().putValue(LibraryIdentifier.MANIFEST_LIBRARY_VERSION_ATTRIBUTE, version);
+		File jar = new File(directory, name + "-" + version + ".jar");
+		new JarOutputStream(new FileOutputStream(jar), manifest).close();
+		return jar;
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		File directory = Files.createTempDirectory("fsrepository").toFile();
+		try {
+			File first = createJar(directory, "some.lib", "1.0");
+			FileSystemRepository testee = new FileSystemRepository(directory.getPath());
+			LoadedLibrary lib = testee.findLibrary(new LibraryIdentifier("some.lib", "1.0"));
+			assertEquals("1.0", lib.getIdentifier().getVersion().toString());
+
+			// found right after it was added
+			createJar(directory, "some.lib", "1.1");
+			lib = testee.findLibrary(new LibraryIdentifier("some.lib", "1.1"));
+			assertEquals("1.1", lib.getIdentifier().getVersion().toString());
+
+			// removed from the index, once the change is reported
+			assertTrue(first.delete());
+			long deadline = System.currentTimeMillis() + 10000;
+			while (testee.getAvailableVersionSet("some.lib").size() > 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(100);
+				testee.findLibrary(new LibraryIdentifier("some.lib", "1.1"));
+			}
+			assertEquals(1, testee.getAvailableVersionSet("some.lib").size());
+			try {
+				testee.findLibrary(new LibraryIdentifier("some.lib", "1.0"));
+				fail(LibraryNotFoundException.class.getName() + " should have been thrown!");
+			} catch (LibraryNotFoundException e) {
+			}
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
 }
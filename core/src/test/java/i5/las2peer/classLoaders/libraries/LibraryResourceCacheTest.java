@@ -0,0 +1,98 @@
+package i5.las2peer.classLoaders.libraries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.tools.CryptoTools;
+
+public class LibraryResourceCacheTest {
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws Exception {
+		directory = Files.createTempDirectory("library-cache");
+	}
+
+	@After
+	public void deleteDirectory() {
+		File[] files = directory.toFile().listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.toFile().delete();
+	}
+
+	private static byte[] content(int size, int value) {
+		byte[] content = new byte[size];
+		content[0] = (byte) value;
+		return content;
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		LibraryResourceCache cache = new LibraryResourceCache(directory, 1000);
+		byte[] content = content(100, 1);
+		byte[] hash = CryptoTools.getSecureHash(content);
+		assertNull(cache.get(hash));
+		assertEquals(-1, cache.getSize(hash));
+		cache.put(hash, content);
+		assertArrayEquals(content, cache.get(hash));
+		assertEquals(100, cache.getSize(hash));
+
+		// available again after a restart
+		LibraryResourceCache reopened = new LibraryResourceCache(directory, 1000);
+		assertEquals(100, reopened.getTotalBytes());
+		assertArrayEquals(content, reopened.get(hash));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		LibraryResourceCache cache = new LibraryResourceCache(directory, 250);
+		byte[][] hashes = new byte[3][];
+		for (int i = 0; i < hashes.length; i++) {
+			byte[] content = content(100, i);
+			hashes[i] = CryptoTools.getSecureHash(content);
+			cache.put(hashes[i], content);
+			if (i == 1) {
+				// makes the first resource the most recently used one
+				cache.get(hashes[0]);
+			}
+		}
+		assertEquals(2, cache.size());
+		assertEquals(200, cache.getTotalBytes());
+		assertEquals(100, cache.getSize(hashes[0]));
+		assertEquals(-1, cache.getSize(hashes[1]));
+		assertEquals(100, cache.getSize(hashes[2]));
+		assertEquals(2, directory.toFile().listFiles().length);
+
+		// too large for the cache at all
+		byte[] large = content(300, 3);
+		cache.put(CryptoTools.getSecureHash(large), large);
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testCorruptedFile() throws Exception {
+		LibraryResourceCache cache = new LibraryResourceCache(directory, 1000);
+		byte[] content = content(100, 1);
+		byte[] hash = CryptoTools.getSecureHash(content);
+		cache.put(hash, content);
+		Files.write(directory.resolve(Base64.getUrlEncoder().withoutPadding().encodeToString(hash)), content(100, 2));
+		assertNull(cache.get(hash));
+		assertEquals(0, cache.size());
+	}
+
+}
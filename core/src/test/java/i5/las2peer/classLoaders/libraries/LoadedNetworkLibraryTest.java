@@ -1,5 +1,7 @@
 package i5.las2peer.classLoaders.libraries;
 
+import java.util.HashMap;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -13,6 +15,17 @@ public class LoadedNetworkLibraryTest {
 			String xml = noDeps.toXmlString();
 			LoadedNetworkLibrary backNoDeps = LoadedNetworkLibrary.createFromXml(null, xml);
 			Assert.assertEquals(noDeps.getIdentifier().toString(), backNoDeps.getIdentifier().toString());
+
+			HashMap<String, byte[]> deps = new HashMap<>();
+			deps.put("a.class", new byte[] { 1 });
+			deps.put("b.class", new byte[] { 2 });
+			HashMap<String, Long> sizes = new HashMap<>();
+			sizes.put("a.class", 42L);
+			LoadedNetworkLibrary withDeps = new LoadedNetworkLibrary(null, libId, deps, sizes);
+			LoadedNetworkLibrary backWithDeps = LoadedNetworkLibrary.createFromXml(null, withDeps.toXmlString());
+			// sizes are known without fetching the resource
+			Assert.assertEquals(42, backWithDeps.getSizeOfResource("a.class"));
+			Assert.assertEquals(withDeps.toXmlString(), backWithDeps.toXmlString());
 		} catch (Exception e) {
 			e.printStackTrace();
 			Assert.fail(e.toString());
@@ -0,0 +1,72 @@
+package i5.las2peer.communication;
+
+import java.nio.charset.StandardCharsets;
+
+import i5.las2peer.security.BasicAgentStorage;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
+
+/**
+ * Compares the binary wire format of {@link Message} with the XML format. Reports the bytes on the wire and the encode
+ * and decode throughput of an answer message.
+ *
+ * Not a unit test, run it with {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.communication.MessageBenchmark}.
+ */
+public class MessageBenchmark {
+
+	private static final int ROUNDS = 2000;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		UserAgentImpl eve = MockAgentFactory.getEve();
+		UserAgentImpl adam = MockAgentFactory.getAdam();
+		BasicAgentStorage storage = new BasicAgentStorage();
+		storage.registerAgents(eve, adam);
+		eve.unlock("evespass");
+		adam.unlock("adamspass");
+
+		Message request = new Message(eve, adam, "A content String");
+		request.open(adam, storage);
+		Message m = new Message(request, "some answer");
+		m.setSendingNodeId(new Long(100));
+
+		String xml = m.toXmlString();
+		byte[] binary = m.toBinary();
+		System.out.println("Bytes on the wire: XML " + xml.getBytes(StandardCharsets.UTF_8).length + ", binary "
+				+ binary.length);
+
+		// the first run only warms up the JIT
+		for (int run = 0; run <= RUNS; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				m.toXmlString().getBytes(StandardCharsets.UTF_8);
+			}
+			long xmlEncode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				Message.createFromXml(xml);
+			}
+			long xmlDecode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				m.toBinary();
+			}
+			long binaryEncode = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++) {
+				Message.createFromBinary(binary);
+			}
+			long binaryDecode = System.nanoTime() - start;
+			if (run > 0) {
+				System.out.println("Run " + run + ": XML encode " + perSecond(xmlEncode) + " msg/s, decode "
+						+ perSecond(xmlDecode) + " msg/s; binary encode " + perSecond(binaryEncode) + " msg/s, decode "
+						+ perSecond(binaryDecode) + " msg/s");
+			}
+		}
+	}
+
+	private static long perSecond(long nanos) {
+		return ROUNDS * 1000000000L / Math.max(1, nanos);
+	}
+
+}
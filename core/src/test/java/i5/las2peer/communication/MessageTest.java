@@ -9,7 +9,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -20,6 +25,7 @@ import i5.las2peer.security.BasicAgentStorage;
 import i5.las2peer.security.InternalSecurityException;
 import i5.las2peer.security.ServiceAgentImpl;
 import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.serialization.SerializationException;
 import i5.las2peer.testing.MockAgentFactory;
 
 public class MessageTest {
@@ -400,4 +406,171 @@ public class MessageTest {
 		}
 	}
 
+	@Test
+	public void testBinaryMessage() {
+		try {
+			UserAgentImpl eve = MockAgentFactory.getEve();
+			UserAgentImpl adam = MockAgentFactory.getAdam();
+			BasicAgentStorage storage = new BasicAgentStorage();
+			storage.registerAgents(eve, adam);
+
+			eve.unlock("evespass");
+			adam.unlock("adamspass");
+
+			Message request = new Message(eve, adam, "A content String");
+			request.open(adam, storage);
+			Message m = new Message(request, "some answer");
+			m.setSendingNodeId(new Long(100));
+
+			byte[] binary = m.toBinary();
+			Message andBack = Message.createFromBinary(binary);
+
+			assertEquals(m.getId(), andBack.getId());
+			assertEquals(m.getSenderId(), andBack.getSenderId());
+			assertEquals(m.getRecipientId(), andBack.getRecipientId());
+			assertEquals(request.getId(), andBack.getResponseToId().longValue());
+			assertEquals(m.getTimestamp(), andBack.getTimestamp());
+			assertEquals(m.getValidMs(), andBack.getValidMs());
+			assertEquals(new Long(100), andBack.getSendingNodeId());
+
+			andBack.open(eve, storage);
+			andBack.verifySignature();
+			assertEquals("some answer", andBack.getContent());
+
+			// same message as XML
+			Message fromXml = Message.createFromXml(Message.createFromBinary(binary).toXmlString());
+			fromXml.open(eve, storage);
+			assertEquals("some answer", fromXml.getContent());
+
+			// compare with the XML wire format
+			int xmlLength = m.toXmlString().getBytes(StandardCharsets.UTF_8).length;
+			assertTrue(binary.length < xmlLength);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testBinaryTopicMessage() {
+		try {
+			UserAgentImpl a = UserAgentImpl.createUserAgent("passa");
+			UserAgentImpl b = UserAgentImpl.createUserAgent("passb");
+			BasicAgentStorage storage = new BasicAgentStorage();
+			storage.registerAgents(a, b);
+
+			a.unlock("passa");
+			b.unlock("passb");
+
+			Message m = new Message(a, 123L, "some content");
+			Message andBack = Message.createFromBinary(m.toBinary());
+
+			assertTrue(andBack.isTopic());
+			assertEquals(new Long(123), andBack.getTopicId());
+			assertNull(andBack.getRecipientId());
+			assertNull(andBack.getResponseToId());
+			assertNull(andBack.getSendingNodeId());
+
+			andBack.open(b, storage);
+			assertEquals("some content", andBack.getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testNestedFlag() {
+		try {
+			UserAgentImpl a = UserAgentImpl.createUserAgent("passa");
+			UserAgentImpl b = UserAgentImpl.createUserAgent("passb");
+			a.unlock("passa");
+
+			Message m = new Message(a, b, "some content");
+			assertFalse(m.isNested());
+			assertFalse(Message.createFromBinary(m.toBinary()).isNested());
+			assertFalse(Message.createFromXml(m.toXmlString()).isNested());
+
+			m.setNested(true);
+			assertTrue(Message.createFromBinary(m.toBinary()).isNested());
+			assertTrue(Message.createFromXml(m.toXmlString()).isNested());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testSessionKeyMessage() {
+		try {
+			UserAgentImpl eve = MockAgentFactory.getEve();
+			UserAgentImpl adam = MockAgentFactory.getAdam();
+			BasicAgentStorage storage = new BasicAgentStorage();
+			storage.registerAgents(eve, adam);
+
+			eve.unlock("evespass");
+			adam.unlock("adamspass");
+
+			MessageSessionKeys sessionKeys = new MessageSessionKeys(10, 60, 2);
+			Message m1 = new Message(eve, adam, "first", Message.DEFAULT_TIMEOUT, sessionKeys);
+			Message m2 = new Message(eve, adam, "second", Message.DEFAULT_TIMEOUT, sessionKeys);
+			assertTrue(m1.isSessionKeyEncrypted());
+			assertEquals(1, sessionKeys.getHandshakeCount());
+			// rotated after two messages
+			new Message(eve, adam, "third", Message.DEFAULT_TIMEOUT, sessionKeys);
+			assertEquals(2, sessionKeys.getHandshakeCount());
+
+			Message fromBinary = Message.createFromBinary(m1.toBinary());
+			assertTrue(fromBinary.isSessionKeyEncrypted());
+			fromBinary.open(adam, storage);
+			fromBinary.verifySignature();
+			assertEquals("first", fromBinary.getContent());
+
+			Message fromXml = Message.createFromXml(m2.toXmlString());
+			assertTrue(fromXml.isSessionKeyEncrypted());
+			fromXml.open(adam, storage);
+			assertEquals("second", fromXml.getContent());
+
+			// the content is authenticated by its encryption instead of a signature
+			String xml = m1.toXmlString();
+			assertFalse(xml.contains("<signature"));
+			Matcher content = Pattern.compile("<content[^>]*>([^<]*)</content>").matcher(xml);
+			assertTrue(content.find());
+			byte[] encrypted = Base64.getDecoder().decode(content.group(1));
+			encrypted[encrypted.length - 1]++;
+			String modified = xml.substring(0, content.start(1)) + Base64.getEncoder().encodeToString(encrypted)
+					+ xml.substring(content.end(1));
+			try {
+				Message.createFromXml(modified).open(adam, storage);
+				fail("InternalSecurityException expected");
+			} catch (InternalSecurityException e) {
+				// intended
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testMalformedBinaryMessage() throws Exception {
+		UserAgentImpl eve = MockAgentFactory.getEve();
+		UserAgentImpl adam = MockAgentFactory.getAdam();
+		eve.unlock("evespass");
+		byte[] binary = new Message(eve, adam, "A content String").toBinary();
+
+		try {
+			Message.createFromBinary(Arrays.copyOf(binary, binary.length - 10));
+			fail("SerializationException expected");
+		} catch (SerializationException e) {
+			// intended
+		}
+		try {
+			Message.createFromBinary("<las2peer:message />".getBytes(StandardCharsets.UTF_8));
+			fail("SerializationException expected");
+		} catch (SerializationException e) {
+			// intended
+		}
+	}
+
 }
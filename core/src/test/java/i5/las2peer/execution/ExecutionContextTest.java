@@ -487,6 +487,8 @@ public class ExecutionContextTest {
 		});
 
 		context.monitorEvent(this, MonitoringEvent.SERVICE_CUSTOM_ERROR_1, "testMessage", true);
+		// observers are notified asynchronously
+		assertTrue(node.getObserverEventBus().flush(5000));
 
 		assertTrue(messages.get(messages.size() - 1).contains(this.getClass().getSimpleName()));
 		assertTrue(messages.get(messages.size() - 1).contains(MonitoringEvent.SERVICE_CUSTOM_ERROR_1.toString()));
@@ -0,0 +1,96 @@
+package i5.las2peer.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServiceExecutorTest {
+
+	private ServiceExecutor executor;
+
+	@Before
+	public void setup() {
+		executor = new ServiceExecutor("test", 1, 1);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testContextBinding() throws Exception {
+		ExecutionContext context1 = new ExecutionContext(null, null, null);
+		ExecutionContext context2 = new ExecutionContext(null, null, null);
+
+		assertSame(context1, executor.execute(context1, () -> ExecutionContext.getCurrent()));
+		// same pooled thread, different call
+		assertSame(context2, executor.execute(context2, () -> ExecutionContext.getCurrent()));
+
+		// nested call restores the outer context
+		ExecutionContext[] inner = new ExecutionContext[1];
+		ExecutionContext outer = executor.execute(context1, () -> {
+			inner[0] = executor.execute(context2, () -> ExecutionContext.getCurrent());
+			return ExecutionContext.getCurrent();
+		});
+		assertSame(context1, outer);
+		assertSame(context2, inner[0]);
+		assertEquals(1, executor.getPoolSize());
+		assertEquals(4, executor.getExecutedCount());
+	}
+
+	@Test
+	public void testException() throws InterruptedException {
+		try {
+			executor.execute(new ExecutionContext(null, null, null), () -> {
+				throw new IllegalArgumentException("test");
+			});
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void testOverload() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutionContext context = new ExecutionContext(null, null, null);
+		Runnable blocking = () -> {
+			try {
+				executor.execute(context, () -> {
+					started.countDown();
+					release.await();
+					return null;
+				});
+			} catch (Exception e) {
+			}
+		};
+		new Thread(blocking).start();
+		started.await();
+		// second call waits in the queue
+		new Thread(blocking).start();
+		while (executor.getQueueSize() == 0) {
+			Thread.sleep(10);
+		}
+
+		try {
+			executor.execute(context, () -> null);
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(1, executor.getRejectedCount());
+		release.countDown();
+	}
+
+}
@@ -0,0 +1,42 @@
+package i5.las2peer.execution;
+
+import java.lang.reflect.Method;
+
+import i5.las2peer.api.TestService;
+
+/**
+ * Compares service method calls served from the dispatch table of {@link ServiceHelper} with searching and reflectively
+ * invoking the method on every call.
+ *
+ * Not a unit test, run it with {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.execution.ServiceHelperBenchmark}.
+ */
+public class ServiceHelperBenchmark {
+
+	private static final int CALLS = 200000;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		TestService testee = new TestService();
+		Method[] candidates = TestService.class.getMethods();
+		SecurityException param = new SecurityException("test");
+		// the first run only warms up the JIT
+		for (int run = 0; run <= RUNS; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < CALLS; i++) {
+				Method m = ServiceHelper.findMethod(TestService.class, candidates, "subclass", new Object[] { param });
+				m.invoke(testee, param);
+			}
+			long reflective = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < CALLS; i++) {
+				ServiceHelper.execute(testee, "subclass", param);
+			}
+			long dispatched = System.nanoTime() - start;
+			if (run > 0) {
+				System.out.println("Run " + run + ": search and reflective invocation " + reflective / CALLS
+						+ " ns/call, dispatch table " + dispatched / CALLS + " ns/call");
+			}
+		}
+	}
+
+}
@@ -1,9 +1,11 @@
 package i5.las2peer.execution;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 import org.junit.Test;
 
@@ -57,4 +59,55 @@ public class ServiceHelperTest {
 		}
 	}
 
+	@Test
+	public void testDispatchExceptions() throws SecurityException, IllegalAccessException, InternalSecurityException,
+			ServiceMethodNotFoundException {
+		TestService testee = new TestService();
+
+		try {
+			ServiceHelper.execute(testee, "exception");
+			fail("InvocationTargetException expected");
+		} catch (InvocationTargetException e) {
+			assertEquals(Exception.class, e.getCause().getClass());
+		}
+
+		try {
+			ServiceHelper.execute(testee, "getEcho", 1);
+			fail("ServiceMethodNotFoundException expected");
+		} catch (ServiceMethodNotFoundException e) {
+		} catch (InvocationTargetException e) {
+			fail("ServiceMethodNotFoundException expected");
+		}
+
+		// null matches any object parameter
+		try {
+			assertEquals(null, ServiceHelper.execute(testee, "getEcho", new Object[] { null }));
+		} catch (InvocationTargetException e) {
+			fail("null parameter must be passed");
+		}
+	}
+
+	@Test
+	public void testSearchMethod() throws ServiceMethodNotFoundException {
+		Method inc = ServiceHelper.searchMethod(TestService.class, "inc", new Object[] { 1 });
+		assertEquals(Integer.class, inc.getParameterTypes()[0]);
+		// same result from the dispatch table
+		assertSame(inc, ServiceHelper.searchMethod(TestService.class, "inc", new Object[] { 2 }));
+		Method subclass = ServiceHelper.searchMethod(TestService.class, "subclass",
+				new Object[] { new SecurityException() });
+		assertEquals(Exception.class, subclass.getParameterTypes()[0]);
+	}
+
+	@Test
+	public void testDispatchTable() throws Exception {
+		TestService testee = new TestService();
+		Method[] candidates = TestService.class.getMethods();
+		// the first call fills the table, the following ones are served from it
+		for (int i = 0; i < 3; i++) {
+			SecurityException param = new SecurityException("call " + i);
+			Method m = ServiceHelper.findMethod(TestService.class, candidates, "subclass", new Object[] { param });
+			assertEquals(m.invoke(testee, param), ServiceHelper.execute(testee, "subclass", param));
+		}
+	}
+
 }
@@ -0,0 +1,141 @@
+package i5.las2peer.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import i5.las2peer.api.logging.MonitoringEvent;
+
+public class ObserverEventBusTest {
+
+	private static class RecordingObserver implements NodeObserver {
+		private final List<String> remarks = new ArrayList<>();
+		private final List<String> sourceNodes = new ArrayList<>();
+
+		@Override
+		public void log(Long timestamp, MonitoringEvent event, String sourceNode, String sourceAgentId,
+				String destinationNode, String destinationAgentId, String remarks) {
+			this.remarks.add(remarks);
+			this.sourceNodes.add(sourceNode);
+		}
+	}
+
+	@Test
+	public void testDelivery() throws InterruptedException {
+		AtomicInteger representations = new AtomicInteger();
+		ObserverEventBus bus = new ObserverEventBus(64, node -> {
+			representations.incrementAndGet();
+			return "node " + node;
+		});
+		// no observers, nothing to represent
+		assertTrue(bus.publish(0, MonitoringEvent.NODE_STATUS_CHANGE, 1, null, null, null, "ignored"));
+		assertEquals(0, bus.getPublishedEvents());
+
+		RecordingObserver all = new RecordingObserver();
+		RecordingObserver service = new RecordingObserver();
+		bus.addObserver(all, null);
+		bus.addObserver(service, event -> event == MonitoringEvent.SERVICE_CUSTOM_MESSAGE_1);
+
+		int producers = 4;
+		int events = 1000;
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			threads[p] = new Thread(() -> {
+				for (int i = 0; i < events; i++) {
+					while (!bus.publish(i, MonitoringEvent.NODE_STATUS_CHANGE, producer, null, null, null,
+							producer + ":" + i)) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[p].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		bus.publish(0, MonitoringEvent.SERVICE_CUSTOM_MESSAGE_1, null, null, null, null, "service");
+		assertTrue(bus.flush(5000));
+
+		assertEquals(producers * events + 1, all.remarks.size());
+		assertEquals(producers * events, representations.get());
+		// events of each producer arrive in order
+		int[] expected = new int[producers];
+		for (String remark : all.remarks.subList(0, producers * events)) {
+			String[] split = remark.split(":");
+			int producer = Integer.parseInt(split[0]);
+			assertEquals(expected[producer]++, Integer.parseInt(split[1]));
+		}
+		assertEquals("node 0", all.sourceNodes.get(all.remarks.indexOf("0:0")));
+		assertEquals(1, service.remarks.size());
+		assertEquals("service", service.remarks.get(0));
+	}
+
+	@Test
+	public void testDroppedEvents() throws InterruptedException {
+		ObserverEventBus bus = new ObserverEventBus(16, String::valueOf);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger delivered = new AtomicInteger();
+		bus.addObserver((timestamp, event, sourceNode, sourceAgentId, destinationNode, destinationAgentId,
+				remarks) -> {
+			blocked.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			delivered.incrementAndGet();
+		}, null);
+		bus.publish(0, MonitoringEvent.NODE_STATUS_CHANGE, null, null, null, null, null);
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		// a stuck observer never blocks the publishing thread
+		for (int i = 0; i < 100; i++) {
+			bus.publish(0, MonitoringEvent.NODE_STATUS_CHANGE, null, null, null, null, null);
+		}
+		assertEquals(100 - 15, bus.getDroppedEvents());
+		assertFalse(bus.flush(10));
+		release.countDown();
+		assertTrue(bus.flush(5000));
+		assertEquals(16, delivered.get());
+	}
+
+	private static class ClosedObserver implements NodeObserver {
+		@Override
+		public void log(Long timestamp, MonitoringEvent event, String sourceNode, String sourceAgentId,
+				String destinationNode, String destinationAgentId, String remarks) {
+		}
+	}
+
+	@Test
+	public void testClose() {
+		ObserverEventBus bus = new ObserverEventBus(16, String::valueOf);
+		bus.addObserver(new ClosedObserver(), null);
+		bus.addObserver(new ClosedObserver(), null);
+		assertTrue(bus.publish(0, MonitoringEvent.NODE_STATUS_CHANGE, null, null, null, null, null));
+		assertTrue(bus.flush(5000));
+		assertEquals(2, countDeliveryThreads());
+
+		bus.close(5000);
+		assertEquals(0, countDeliveryThreads());
+		// without observers events are ignored
+		assertTrue(bus.publish(0, MonitoringEvent.NODE_STATUS_CHANGE, null, null, null, null, null));
+		assertEquals(1, bus.getPublishedEvents());
+	}
+
+	private static long countDeliveryThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("las2peer-observer-" + ClosedObserver.class.getSimpleName())
+						&& thread.isAlive())
+				.count();
+	}
+
+}
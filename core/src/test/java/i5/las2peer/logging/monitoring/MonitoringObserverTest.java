@@ -15,6 +15,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.security.KeyPair;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -86,6 +87,8 @@ public class MonitoringObserverTest {
         fillMessageCache(observer);
         // then
         verify(node, never()).sendMessage(any(Message.class), any(MessageResultListener.class));
+        // dropped messages are counted
+        assertEquals(MIN_MESSAGE_CACHE_SIZE, observer.getDroppedEvents());
     }
 
     @Test
@@ -0,0 +1,112 @@
+package i5.las2peer.p2p;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+/**
+ * Registers and answers 10000 in-flight {@link MessageResultListener}s through the {@link AnswerListenerRegistry} and
+ * through a stand-in of the former thread per listener approach of {@link Node}. Reports the time to register and
+ * answer all listeners, the time until all of them expired and the peak number of live threads.
+ *
+ * Not a unit test, run it with
+ * {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.p2p.AnswerListenerRegistryBenchmark}.
+ */
+public class AnswerListenerRegistryBenchmark {
+
+	private static final int LISTENERS = 10000;
+	private static final long ANSWER_TIMEOUT_MS = 60000;
+	private static final long EXPIRE_TIMEOUT_MS = 500;
+	private static final int RUNS = 3;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		for (int run = 1; run <= RUNS; run++) {
+			System.out.println("Run " + run + " with " + LISTENERS + " listeners");
+			registryAnswered();
+			registryExpired();
+			threadPerListenerAnswered();
+		}
+	}
+
+	private static void registryAnswered() {
+		AnswerListenerRegistry registry = new AnswerListenerRegistry();
+		THREADS.resetPeakThreadCount();
+		long start = System.nanoTime();
+		for (int i = 0; i < LISTENERS; i++) {
+			registry.register(i, new MessageResultListener(ANSWER_TIMEOUT_MS));
+		}
+		long registered = System.nanoTime() - start;
+		int peak = THREADS.getPeakThreadCount();
+		start = System.nanoTime();
+		for (int i = 0; i < LISTENERS; i++) {
+			registry.remove(i);
+		}
+		long answered = System.nanoTime() - start;
+		registry.shutdown();
+		report("timer wheel", registered, answered, peak);
+	}
+
+	private static void registryExpired() throws InterruptedException {
+		AnswerListenerRegistry registry = new AnswerListenerRegistry();
+		long start = System.nanoTime();
+		for (int i = 0; i < LISTENERS; i++) {
+			registry.register(i, new MessageResultListener(EXPIRE_TIMEOUT_MS));
+		}
+		while (registry.getExpiredCount() < LISTENERS) {
+			Thread.sleep(10);
+		}
+		long expired = System.nanoTime() - start;
+		registry.shutdown();
+		System.out.println("  timer wheel: all expired after " + expired / 1000000 + " ms (timeout " + EXPIRE_TIMEOUT_MS
+				+ " ms)");
+	}
+
+	/**
+	 * the approach replaced by the registry, one sleeping thread per listener removing it from a shared table
+	 */
+	private static void threadPerListenerAnswered() throws InterruptedException {
+		Hashtable<Long, MessageResultListener> listeners = new Hashtable<>();
+		ArrayList<Thread> threads = new ArrayList<>(LISTENERS);
+		THREADS.resetPeakThreadCount();
+		long start = System.nanoTime();
+		for (int i = 0; i < LISTENERS; i++) {
+			long messageId = i;
+			MessageResultListener listener = new MessageResultListener(ANSWER_TIMEOUT_MS);
+			listeners.put(messageId, listener);
+			Thread thread = new Thread(() -> {
+				try {
+					Thread.sleep(listener.getTimeoutTime());
+					listeners.remove(messageId);
+				} catch (InterruptedException e) {
+					// answered, the listener was removed already
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		long registered = System.nanoTime() - start;
+		int peak = THREADS.getPeakThreadCount();
+		start = System.nanoTime();
+		for (int i = 0; i < LISTENERS; i++) {
+			listeners.remove((long) i);
+		}
+		long answered = System.nanoTime() - start;
+		// the former threads kept sleeping until the timeout, stop them to not distort the next run
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		report("thread per listener", registered, answered, peak);
+	}
+
+	private static void report(String name, long registered, long answered, int peakThreads) {
+		System.out.println("  " + name + ": register " + registered / LISTENERS + " ns/listener, answer "
+				+ answered / LISTENERS + " ns/listener, peak threads " + peakThreads);
+	}
+
+}
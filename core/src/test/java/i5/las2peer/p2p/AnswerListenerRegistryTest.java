@@ -0,0 +1,91 @@
+package i5.las2peer.p2p;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnswerListenerRegistryTest {
+
+	private AnswerListenerRegistry registry;
+
+	@Before
+	public void setup() {
+		registry = new AnswerListenerRegistry(10, 8);
+	}
+
+	@After
+	public void tearDown() {
+		registry.shutdown();
+	}
+
+	/**
+	 * Waits for the timer thread instead of assuming how fast it runs.
+	 */
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testRegisterAndRemove() {
+		MessageResultListener listener = new MessageResultListener(10000);
+		registry.register(1, listener);
+
+		assertSame(listener, registry.get(1));
+		assertEquals(1, registry.getPendingCount());
+
+		assertSame(listener, registry.remove(1));
+		assertNull(registry.get(1));
+		assertNull(registry.remove(1));
+		assertEquals(0, registry.getPendingCount());
+		assertEquals(1, registry.getRegisteredCount());
+		assertEquals(1, registry.getAnsweredCount());
+		assertEquals(0, registry.getExpiredCount());
+	}
+
+	@Test
+	public void testExpiration() throws InterruptedException {
+		final boolean[] timedOut = new boolean[1];
+		MessageResultListener listener = new MessageResultListener(50) {
+			@Override
+			public void notifyTimeout() {
+				timedOut[0] = true;
+			}
+		};
+		registry.register(1, listener);
+		// a timeout longer than one round of the wheel
+		MessageResultListener longListener = new MessageResultListener(10000);
+		registry.register(2, longListener);
+
+		waitFor(() -> registry.getExpiredCount() > 0);
+
+		assertNull(registry.get(1));
+		assertTrue(timedOut[0]);
+		assertTrue(listener.isTimedOut());
+		assertSame(longListener, registry.get(2));
+		assertEquals(1, registry.getExpiredCount());
+		assertEquals(1, registry.getPendingCount());
+	}
+
+	@Test
+	public void testManyListeners() throws InterruptedException {
+		for (int i = 0; i < 10000; i++) {
+			registry.register(i, new MessageResultListener(i % 2 == 0 ? 20 : 60000));
+		}
+
+		waitFor(() -> registry.getExpiredCount() >= 5000);
+
+		assertEquals(5000, registry.getPendingCount());
+		assertEquals(5000, registry.getExpiredCount());
+	}
+
+}
@@ -78,6 +78,43 @@ public class LocalNodeInvocationTest {
 		}
 	}
 
+	@Test
+	public void testGlobalInvocationSessionKeys() {
+		try {
+			manager.setMinMessageWait(0);
+			manager.setMaxMessageWait(0);
+			LocalNode serviceNode = manager.newNode();
+			UserAgentImpl eve = MockAgentFactory.getEve();
+
+			eve.unlock("evespass");
+			serviceNode.storeAgent(eve);
+			serviceNode.launch();
+
+			ServiceAgentImpl testServiceAgent = serviceNode
+					.startService(ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0"), "a pass");
+			LocalNode callerNode = manager.launchNode();
+
+			final int rounds = 200;
+			for (boolean useSessionKeys : new boolean[] { false, true }) {
+				callerNode.setMessageSessionKeys(useSessionKeys);
+				for (int i = 0; i < rounds; i++) {
+					Object result = callerNode.invokeGlobally(eve, testServiceAgent.getIdentifier(),
+							serviceNode.getNodeId(), "inc", new Serializable[] { i });
+					assertEquals(i + 2, result);
+				}
+			}
+
+			// one handshake per direction
+			assertEquals(1, callerNode.getMessageSessionKeys().getHandshakeCount());
+			assertEquals(1, serviceNode.getMessageSessionKeys().getHandshakeCount());
+			assertTrue(serviceNode.getMessageSessionKeys().getReceivingHitCount() >= rounds - 1);
+			assertTrue(callerNode.getMessageSessionKeys().getReceivingHitCount() >= rounds - 1);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 	@Test
 	public void testSubinvocation() {
 		try {
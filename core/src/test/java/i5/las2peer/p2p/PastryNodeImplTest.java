@@ -1,11 +1,18 @@
 package i5.las2peer.p2p;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import i5.las2peer.p2p.pastry.NodeApplication;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
 import i5.las2peer.testing.TestSuite;
+import rice.p2p.commonapi.NodeHandle;
 
 public class PastryNodeImplTest {
 
@@ -66,4 +73,39 @@ public class PastryNodeImplTest {
 
 	}
 
+	@Test
+	public void testFindRegisteredAgent() {
+		ArrayList<PastryNodeImpl> nodes = null;
+		try {
+			nodes = TestSuite.launchNetwork(2);
+			UserAgentImpl adam = MockAgentFactory.getAdam();
+			adam.unlock("adamspass");
+			nodes.get(0).registerReceiver(adam);
+
+			NodeApplication application = nodes.get(1).getApplication();
+			// completes with the first answer, well before the search timeout
+			Collection<NodeHandle> handles = application.searchAgentAsync(adam.getIdentifier(), 1)
+					.get(NodeApplication.SEARCH_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+			Assert.assertEquals(1, handles.size());
+			Assert.assertEquals(nodes.get(0).getPastryNode().getLocalNodeHandle(), handles.iterator().next());
+
+			// second search is answered from the cache
+			Assert.assertTrue(application.searchAgentAsync(adam.getIdentifier(), 1).isDone());
+
+			// an unknown agent is not found, but the search can be cancelled
+			CompletableFuture<Collection<NodeHandle>> search = application.searchAgentAsync("unknown", 1);
+			Assert.assertTrue(search.cancel(true));
+			Assert.assertTrue(search.isCancelled());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		} finally {
+			if (nodes != null) {
+				for (PastryNodeImpl node : nodes) {
+					node.shutDown();
+				}
+			}
+		}
+	}
+
 }
@@ -1,6 +1,7 @@
 package i5.las2peer.p2p;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -147,6 +148,73 @@ public class ServiceAliasManagerTest {
 				.getNumMatchedParts());
 	}
 
+	@Test
+	public void testCache() throws CryptoException, InternalSecurityException, AliasConflictException,
+			AliasNotFoundException, AgentAccessDeniedException, AgentOperationFailedException {
+		LocalNode node = new LocalNodeManager().launchNode();
+		ServiceAliasManager manager = node.getServiceAliasManager();
+		ServiceAgentImpl agentA = ServiceAgentImpl.createServiceAgent(ServiceNameVersion.fromString("serviceA@1.0"),
+				"asdf");
+		agentA.unlock("asdf");
+
+		manager.registerServiceAlias(agentA, "prefix/aliasA");
+
+		// first resolution fetches both levels, second one is served from the cache
+		assertEquals("serviceA", manager.resolvePathToServiceName("prefix/aliasA/asdf").getServiceName());
+		long misses = manager.getCacheMissCount();
+		long hits = manager.getCacheHitCount();
+		assertEquals("serviceA", manager.resolvePathToServiceName("prefix/aliasA/qwer").getServiceName());
+		assertEquals(misses, manager.getCacheMissCount());
+		assertEquals(hits + 2, manager.getCacheHitCount());
+
+		// unknown paths are cached, too
+		try {
+			manager.resolvePathToServiceName("aliasB");
+			fail("AliasNotFoundException expected");
+		} catch (AliasNotFoundException e) {
+		}
+		misses = manager.getCacheMissCount();
+		try {
+			manager.resolvePathToServiceName("aliasB");
+			fail("AliasNotFoundException expected");
+		} catch (AliasNotFoundException e) {
+		}
+		assertEquals(misses, manager.getCacheMissCount());
+
+		// registering an alias invalidates the cached entry
+		ServiceAgentImpl agentB = ServiceAgentImpl.createServiceAgent(ServiceNameVersion.fromString("serviceB@1.0"),
+				"asdf");
+		agentB.unlock("asdf");
+		manager.registerServiceAlias(agentB, "aliasB");
+		assertEquals("serviceB", manager.resolvePathToServiceName("aliasB").getServiceName());
+	}
+
+	@Test
+	public void testCacheFlooding() throws CryptoException, InternalSecurityException, AliasConflictException,
+			AliasNotFoundException, AgentAccessDeniedException, AgentOperationFailedException {
+		LocalNode node = new LocalNodeManager().launchNode();
+		ServiceAliasManager manager = node.getServiceAliasManager();
+		ServiceAgentImpl agentA = ServiceAgentImpl.createServiceAgent(ServiceNameVersion.fromString("serviceA@1.0"),
+				"asdf");
+		agentA.unlock("asdf");
+
+		manager.registerServiceAlias(agentA, "prefix/aliasA");
+		assertEquals("serviceA", manager.resolvePathToServiceName("prefix/aliasA").getServiceName());
+
+		// lookups of random paths do not push out the found entries
+		for (int i = 0; i < 20000; i++) {
+			try {
+				manager.resolvePathToServiceName("random" + i);
+				fail("AliasNotFoundException expected");
+			} catch (AliasNotFoundException e) {
+			}
+		}
+		assertTrue(manager.getCacheSize() <= 10002);
+		long misses = manager.getCacheMissCount();
+		assertEquals("serviceA", manager.resolvePathToServiceName("prefix/aliasA").getServiceName());
+		assertEquals(misses, manager.getCacheMissCount());
+	}
+
 	@Test
 	public void testIntegration() throws CryptoException, InternalSecurityException, AgentAlreadyRegisteredException,
 			AgentException, AliasNotFoundException, AgentAccessDeniedException {
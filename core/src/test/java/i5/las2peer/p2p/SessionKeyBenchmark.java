@@ -0,0 +1,59 @@
+package i5.las2peer.p2p;
+
+import java.io.Serializable;
+
+import i5.las2peer.api.p2p.ServiceNameVersion;
+import i5.las2peer.security.ServiceAgentImpl;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
+
+/**
+ * Measures RMI round trips per second between two local nodes with and without message session keys.
+ *
+ * Not a unit test, run it with {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.p2p.SessionKeyBenchmark}.
+ */
+public class SessionKeyBenchmark {
+
+	private static final int ROUNDS = 500;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws Exception {
+		LocalNodeManager manager = new LocalNodeManager();
+		// measure the message handling, not the simulated network delay
+		manager.setMinMessageWait(0);
+		manager.setMaxMessageWait(0);
+		LocalNode serviceNode = manager.newNode();
+		UserAgentImpl eve = MockAgentFactory.getEve();
+		eve.unlock("evespass");
+		serviceNode.storeAgent(eve);
+		serviceNode.launch();
+		ServiceAgentImpl testServiceAgent = serviceNode
+				.startService(ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0"), "a pass");
+		LocalNode callerNode = manager.launchNode();
+		try {
+			// the first run only warms up
+			for (int run = 0; run <= RUNS; run++) {
+				StringBuilder result = new StringBuilder("Run " + run + ":");
+				for (boolean useSessionKeys : new boolean[] { false, true }) {
+					callerNode.setMessageSessionKeys(useSessionKeys);
+					long start = System.nanoTime();
+					for (int i = 0; i < ROUNDS; i++) {
+						callerNode.invokeGlobally(eve, testServiceAgent.getIdentifier(), serviceNode.getNodeId(), "inc",
+								new Serializable[] { i });
+					}
+					long nanos = System.nanoTime() - start;
+					result.append(" " + (useSessionKeys ? "with" : "without") + " session keys "
+							+ (ROUNDS * 1000000000L / nanos) + " round trips/s");
+				}
+				if (run > 0) {
+					System.out.println(result);
+				}
+			}
+		} finally {
+			callerNode.shutDown();
+			serviceNode.shutDown();
+			manager.stopCleaner();
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+package i5.las2peer.p2p.pastry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.communication.Message;
+import i5.las2peer.p2p.pastry.MessageDispatcher.LaneType;
+import i5.las2peer.p2p.pastry.MessageDispatcher.OverloadPolicy;
+
+public class MessageDispatcherTest {
+
+	/**
+	 * a message with just the properties the dispatcher looks at
+	 */
+	private static class TestMessage extends Message {
+		private static final long serialVersionUID = 1L;
+
+		private final long id;
+		private final LaneType type;
+		private volatile boolean expired;
+
+		private TestMessage(long id, LaneType type) {
+			this.id = id;
+			this.type = type;
+		}
+
+		@Override
+		public long getId() {
+			return id;
+		}
+
+		@Override
+		public boolean isResponse() {
+			return type == LaneType.RESPONSE;
+		}
+
+		@Override
+		public boolean isTopic() {
+			return type == LaneType.TOPIC;
+		}
+
+		@Override
+		public boolean isNested() {
+			return type == LaneType.NESTED_REQUEST;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return expired;
+		}
+	}
+
+	/**
+	 * records everything the dispatcher hands over, deliveries block until released
+	 */
+	private class TestReceiver implements MessageDispatcher.Receiver {
+		@Override
+		public void receiveMessage(Message message) {
+			delivered.add(message);
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void messageRejected(Message message, String reason) {
+			rejected.add(message);
+		}
+
+		@Override
+		public void answerRejected(Message request, String reason) {
+			answered.add(request);
+		}
+	}
+
+	private BlockingQueue<Message> delivered;
+	private BlockingQueue<Message> rejected;
+	private BlockingQueue<Message> answered;
+	private CountDownLatch release;
+	private MessageDispatcher dispatcher;
+	private long nextId;
+
+	@Before
+	public void setup() {
+		delivered = new LinkedBlockingQueue<>();
+		rejected = new LinkedBlockingQueue<>();
+		answered = new LinkedBlockingQueue<>();
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+		}
+	}
+
+	private static final int MAX_NESTED_THREADS = 8;
+
+	private void createDispatcher(OverloadPolicy policy) {
+		// one worker and one queued message per lane
+		dispatcher = new MessageDispatcher(new TestReceiver(), 1, 1, MAX_NESTED_THREADS, policy);
+	}
+
+	private TestMessage dispatch(LaneType type) {
+		TestMessage message = new TestMessage(nextId++, type);
+		dispatcher.dispatch(message);
+		return message;
+	}
+
+	private Message nextDelivered() throws InterruptedException {
+		Message message = delivered.poll(10, TimeUnit.SECONDS);
+		assertNotNull(message);
+		return message;
+	}
+
+	private Message nextAnswered() throws InterruptedException {
+		Message message = answered.poll(10, TimeUnit.SECONDS);
+		assertNotNull(message);
+		return message;
+	}
+
+	@Test
+	public void testLanes() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		for (LaneType type : LaneType.values()) {
+			TestMessage message = dispatch(type);
+			assertSame(message, nextDelivered());
+			assertEquals(1, dispatcher.getLane(type).getDispatchedCount());
+			assertEquals(1, dispatcher.getLane(type).getDeliveredCount());
+		}
+		// all workers are blocked, but each lane still accepted its own message
+		assertTrue(rejected.isEmpty());
+	}
+
+	@Test
+	public void testExpiredDropped() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		TestMessage message = new TestMessage(nextId++, LaneType.REQUEST);
+		message.expired = true;
+		dispatcher.dispatch(message);
+		assertEquals(1, dispatcher.getLane(LaneType.REQUEST).getExpiredCount());
+		assertEquals(0, dispatcher.getLane(LaneType.REQUEST).getDispatchedCount());
+		assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+		assertTrue(answered.isEmpty());
+	}
+
+	@Test
+	public void testRejectRequest() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		TestMessage running = dispatch(LaneType.REQUEST);
+		assertSame(running, nextDelivered());
+		TestMessage queued = dispatch(LaneType.REQUEST);
+		TestMessage overflow = dispatch(LaneType.REQUEST);
+
+		// the request is rejected and answered
+		MessageDispatcher.Lane lane = dispatcher.getLane(LaneType.REQUEST);
+		assertEquals(1, lane.getRejectedCount());
+		assertEquals(1, lane.getQueueDepth());
+		assertSame(overflow, rejected.poll());
+		assertSame(overflow, nextAnswered());
+
+		release.countDown();
+		assertSame(queued, nextDelivered());
+		assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+		assertTrue(answered.isEmpty());
+	}
+
+	@Test
+	public void testRejectTopic() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		dispatch(LaneType.TOPIC);
+		nextDelivered();
+		dispatch(LaneType.TOPIC);
+		TestMessage overflow = dispatch(LaneType.TOPIC);
+
+		// only requests are answered, other messages are just dropped
+		assertEquals(1, dispatcher.getLane(LaneType.TOPIC).getRejectedCount());
+		assertSame(overflow, rejected.poll());
+		assertNull(answered.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testDropExpired() throws InterruptedException {
+		createDispatcher(OverloadPolicy.DROP_EXPIRED);
+		dispatch(LaneType.REQUEST);
+		nextDelivered();
+		TestMessage stale = dispatch(LaneType.REQUEST);
+		stale.expired = true;
+
+		// the expired request makes room and is answered
+		TestMessage fresh = dispatch(LaneType.REQUEST);
+		MessageDispatcher.Lane lane = dispatcher.getLane(LaneType.REQUEST);
+		assertEquals(0, lane.getRejectedCount());
+		assertEquals(1, lane.getExpiredCount());
+		assertSame(stale, nextAnswered());
+		assertTrue(rejected.isEmpty());
+
+		// nothing to purge, so the next one is rejected and answered
+		TestMessage overflow = dispatch(LaneType.REQUEST);
+		assertEquals(1, lane.getRejectedCount());
+		assertSame(overflow, rejected.poll());
+		assertSame(overflow, nextAnswered());
+
+		release.countDown();
+		assertSame(fresh, nextDelivered());
+		assertTrue(answered.isEmpty());
+	}
+
+	@Test
+	public void testExpiredInQueue() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		dispatch(LaneType.REQUEST);
+		nextDelivered();
+		TestMessage stale = dispatch(LaneType.REQUEST);
+		stale.expired = true;
+
+		// the request expired while waiting for a worker, it is answered instead of delivered
+		release.countDown();
+		assertSame(stale, nextAnswered());
+		MessageDispatcher.Lane lane = dispatcher.getLane(LaneType.REQUEST);
+		assertEquals(1, lane.getExpiredCount());
+		assertEquals(0, lane.getRejectedCount());
+		assertNull(delivered.poll(100, TimeUnit.MILLISECONDS));
+		assertTrue(rejected.isEmpty());
+	}
+
+	@Test
+	public void testNestedRequestsGrow() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		// a chain of nested requests, each blocking its worker until the next one is answered
+		int depth = 5;
+		for (int i = 0; i < depth; i++) {
+			dispatch(LaneType.NESTED_REQUEST);
+		}
+		for (int i = 0; i < depth; i++) {
+			nextDelivered();
+		}
+		MessageDispatcher.Lane lane = dispatcher.getLane(LaneType.NESTED_REQUEST);
+		assertEquals(depth, lane.getActiveCount());
+		assertEquals(0, lane.getRejectedCount());
+		assertTrue(rejected.isEmpty());
+		assertTrue(answered.isEmpty());
+	}
+
+	@Test
+	public void testNestedRequestsCapped() throws InterruptedException {
+		createDispatcher(OverloadPolicy.REJECT);
+		// any sender can flag its requests as nested, so the lane does not grow beyond its maximum
+		for (int i = 0; i < MAX_NESTED_THREADS; i++) {
+			dispatch(LaneType.NESTED_REQUEST);
+			nextDelivered();
+		}
+		TestMessage overflow = dispatch(LaneType.NESTED_REQUEST);
+		MessageDispatcher.Lane lane = dispatcher.getLane(LaneType.NESTED_REQUEST);
+		assertEquals(MAX_NESTED_THREADS, lane.getActiveCount());
+		assertEquals(1, lane.getRejectedCount());
+		assertSame(overflow, rejected.poll());
+		assertSame(overflow, nextAnswered());
+	}
+
+}
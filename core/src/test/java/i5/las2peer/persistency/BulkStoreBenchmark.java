@@ -0,0 +1,83 @@
+package i5.las2peer.persistency;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import i5.las2peer.p2p.PastryNodeImpl;
+import i5.las2peer.persistency.SharedStorage.STORAGE_MODE;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
+import i5.las2peer.testing.TestSuite;
+
+/**
+ * Measures bulk stores into the shared storage of a local three node network: a large envelope split into many parts
+ * and many small envelopes stored concurrently.
+ *
+ * Not a unit test, run it with {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.persistency.BulkStoreBenchmark}.
+ */
+public class BulkStoreBenchmark {
+
+	private static final int LARGE_PARTS = 20;
+	private static final int SMALL_ENVELOPES = 100;
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) throws Exception {
+		ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(3, STORAGE_MODE.FILESYSTEM, true);
+		try {
+			PastryNodeImpl node = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			// the first run only warms up
+			for (int run = 0; run <= RUNS; run++) {
+				long large = storeLarge(node, smith, "bulk-large-" + run);
+				long small = storeSmall(node, smith, "bulk-" + run + "-");
+				if (run > 0) {
+					System.out.println("Run " + run + ": " + LARGE_PARTS * NetworkArtifact.MAX_SIZE
+							+ " bytes envelope in " + large + " ms, " + SMALL_ENVELOPES + " concurrent envelopes in "
+							+ small + " ms");
+				}
+			}
+		} finally {
+			for (PastryNodeImpl node : nodes) {
+				node.shutDown();
+			}
+		}
+	}
+
+	private static long storeLarge(PastryNodeImpl node, UserAgentImpl owner, String identifier) throws Exception {
+		byte[] content = new byte[LARGE_PARTS * NetworkArtifact.MAX_SIZE];
+		new Random().nextBytes(content);
+		EnvelopeVersion envelope = node.createUnencryptedEnvelope(identifier, owner.getPublicKey(), content);
+		long start = System.currentTimeMillis();
+		node.storeEnvelope(envelope, owner);
+		return System.currentTimeMillis() - start;
+	}
+
+	private static long storeSmall(PastryNodeImpl node, UserAgentImpl owner, String prefix) throws Exception {
+		ArrayList<EnvelopeVersion> envelopes = new ArrayList<>(SMALL_ENVELOPES);
+		for (int i = 0; i < SMALL_ENVELOPES; i++) {
+			envelopes.add(node.createUnencryptedEnvelope(prefix + i, owner.getPublicKey(), "content " + i));
+		}
+		CountDownLatch done = new CountDownLatch(SMALL_ENVELOPES);
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		long start = System.currentTimeMillis();
+		for (EnvelopeVersion envelope : envelopes) {
+			node.storeEnvelopeAsync(envelope, owner, (serializable, successfulOperations) -> done.countDown(), null,
+					e -> {
+						failure.compareAndSet(null, e);
+						done.countDown();
+					});
+		}
+		if (!done.await(5, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("envelopes not stored in time");
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+}
@@ -0,0 +1,95 @@
+package i5.las2peer.persistency;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.api.persistency.EnvelopeException;
+import i5.las2peer.p2p.LocalNode;
+import i5.las2peer.p2p.LocalNodeManager;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
+
+public class ChunkedStreamsTest {
+
+	private LocalNode node;
+	private UserAgentImpl adam;
+	private UserAgentImpl eve;
+
+	@Before
+	public void setup() throws Exception {
+		node = new LocalNodeManager().launchNode();
+		adam = MockAgentFactory.getAdam();
+		adam.unlock("adamspass");
+		node.storeAgent(adam);
+		eve = MockAgentFactory.getEve();
+		eve.unlock("evespass");
+		node.storeAgent(eve);
+	}
+
+	@Test
+	public void testStoreAndFetch() throws Exception {
+		byte[] data = new byte[5 * ChunkedStreams.DEFAULT_CHUNK_SIZE + 123];
+		new Random().nextBytes(data);
+		EnvelopeVersion stored = node.storeStream("stream", new ByteArrayInputStream(data), adam,
+				Collections.<AgentImpl> singletonList(adam), 10000);
+		StreamManifest manifest = (StreamManifest) stored.getContent(node.getAgentContext(adam));
+		assertEquals(6, manifest.getNumOfChunks());
+		assertEquals(data.length, manifest.getSize());
+		try (InputStream in = node.fetchStream("stream", node.getAgentContext(adam), 10000)) {
+			assertArrayEquals(data, readAll(in));
+		}
+
+		// a new version replaces the stream
+		EnvelopeVersion updated = node.storeStream("stream", new ByteArrayInputStream(new byte[0]), adam,
+				Collections.<AgentImpl> singletonList(adam), 10000);
+		assertEquals(stored.getVersion() + 1, updated.getVersion());
+		try (InputStream in = node.fetchStream("stream", node.getAgentContext(adam), 10000)) {
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void testPublicStream() throws Exception {
+		byte[] data = "public content".getBytes();
+		node.storeStream("public-stream", new ByteArrayInputStream(data), adam, new ArrayList<>(), 10000);
+		try (InputStream in = node.fetchStream("public-stream", node.getAgentContext(eve), 10000)) {
+			assertArrayEquals(data, readAll(in));
+		}
+	}
+
+	@Test
+	public void testReaderOnly() throws Exception {
+		node.storeStream("private-stream", new ByteArrayInputStream(new byte[] { 1, 2, 3 }), adam,
+				Collections.<AgentImpl> singletonList(adam), 10000);
+		try {
+			node.fetchStream("private-stream", node.getAgentContext(eve), 10000);
+			fail("EnvelopeException expected");
+		} catch (EnvelopeException e) {
+			// intended
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+}
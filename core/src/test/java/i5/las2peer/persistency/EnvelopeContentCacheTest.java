@@ -0,0 +1,80 @@
+package i5.las2peer.persistency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.p2p.LocalNode;
+import i5.las2peer.p2p.LocalNodeManager;
+import i5.las2peer.security.AgentContext;
+import i5.las2peer.security.AgentImpl;
+import i5.las2peer.security.UserAgentImpl;
+import i5.las2peer.testing.MockAgentFactory;
+import i5.las2peer.tools.CryptoException;
+
+public class EnvelopeContentCacheTest {
+
+	private LocalNode node;
+	private UserAgentImpl adam;
+	private UserAgentImpl eve;
+
+	@Before
+	public void setup() throws Exception {
+		node = new LocalNodeManager().launchNode();
+		adam = MockAgentFactory.getAdam();
+		adam.unlock("adamspass");
+		node.storeAgent(adam);
+		eve = MockAgentFactory.getEve();
+		eve.unlock("evespass");
+		node.storeAgent(eve);
+	}
+
+	@Test
+	public void testCopyOnRead() throws Exception {
+		AgentContext context = node.getAgentContext(adam);
+		EnvelopeContentCache cache = node.getEnvelopeContentCache();
+		ArrayList<String> content = new ArrayList<>(Arrays.asList("a", "b"));
+		EnvelopeVersion envelope = new EnvelopeVersion("cache-test", adam.getPublicKey(), content,
+				Collections.<AgentImpl> singletonList(adam));
+
+		@SuppressWarnings("unchecked")
+		ArrayList<String> first = (ArrayList<String>) envelope.getContent(context);
+		assertEquals(content, first);
+		long hits = cache.getHitCount();
+		first.add("c");
+		@SuppressWarnings("unchecked")
+		ArrayList<String> second = (ArrayList<String>) envelope.getContent(context);
+		assertEquals(hits + 1, cache.getHitCount());
+		assertEquals(content, second);
+		assertNotSame(first, second);
+
+		// a different envelope with the same identifier and version is not mixed up
+		EnvelopeVersion other = new EnvelopeVersion("cache-test", adam.getPublicKey(), "other",
+				Collections.<AgentImpl> singletonList(adam));
+		assertEquals("other", other.getContent(context));
+		// immutable contents are shared
+		assertSame(other.getContent(context), other.getContent(context));
+	}
+
+	@Test
+	public void testReaderScope() throws Exception {
+		EnvelopeVersion envelope = new EnvelopeVersion("cache-test", adam.getPublicKey(), "secret",
+				Collections.<AgentImpl> singletonList(adam));
+		assertEquals("secret", envelope.getContent(node.getAgentContext(adam)));
+		try {
+			envelope.getContent(node.getAgentContext(eve));
+			fail("CryptoException expected");
+		} catch (CryptoException e) {
+			// intended
+		}
+	}
+
+}
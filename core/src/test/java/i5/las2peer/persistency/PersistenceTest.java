@@ -1,6 +1,14 @@
 package i5.las2peer.persistency;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -8,8 +16,10 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import i5.las2peer.api.persistency.EnvelopeException;
 import i5.las2peer.p2p.PastryNodeImpl;
 import i5.las2peer.persistency.SharedStorage.STORAGE_MODE;
+import i5.las2peer.security.AgentImpl;
 import i5.las2peer.security.UserAgentImpl;
 import i5.las2peer.testing.MockAgentFactory;
 import i5.las2peer.testing.TestSuite;
@@ -64,6 +74,178 @@ public class PersistenceTest {
 		}
 	}
 
+	@Test
+	public void testBulkStore() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			// a large envelope is split into more parts than are inserted concurrently
+			byte[] large = new byte[20 * NetworkArtifact.MAX_SIZE];
+			new Random().nextBytes(large);
+			EnvelopeVersion largeEnv = node1.createUnencryptedEnvelope("bulk-large", smith.getPublicKey(), large);
+			node1.storeEnvelope(largeEnv, smith);
+			Assert.assertArrayEquals(large, (byte[]) nodes.get(1).fetchEnvelope("bulk-large").getContent());
+			// many small envelopes stored concurrently
+			final int count = 100;
+			CountDownLatch done = new CountDownLatch(count);
+			AtomicReference<Exception> failure = new AtomicReference<>();
+			for (int i = 0; i < count; i++) {
+				EnvelopeVersion env = node1.createUnencryptedEnvelope("bulk-" + i, smith.getPublicKey(), "content " + i);
+				node1.storeEnvelopeAsync(env, smith, (serializable, successfulOperations) -> done.countDown(), null,
+						e -> {
+							failure.compareAndSet(null, e);
+							done.countDown();
+						});
+			}
+			Assert.assertTrue(done.await(5, TimeUnit.MINUTES));
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+			Assert.assertEquals("content 42", nodes.get(2).fetchEnvelope("bulk-42").getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testLatestVersion() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			EnvelopeVersion env = node1.createUnencryptedEnvelope("latest", smith.getPublicKey(), "version 1");
+			node1.storeEnvelope(env, smith);
+			for (int i = 2; i <= 10; i++) {
+				env = node1.createUnencryptedEnvelope(env, "version " + i);
+				node1.storeEnvelope(env, smith);
+				// every update is visible on other nodes right away
+				EnvelopeVersion fetched = nodes.get(i % 2 + 1).fetchEnvelope("latest");
+				Assert.assertEquals(env.getVersion(), fetched.getVersion());
+				Assert.assertEquals("version " + i, fetched.getContent());
+			}
+			Assert.assertEquals("version 10", nodes.get(2).fetchEnvelope("latest").getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testStream() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			byte[] large = new byte[10 * NetworkArtifact.MAX_SIZE];
+			new Random().nextBytes(large);
+			node1.storeStream("stream", new ByteArrayInputStream(large), smith,
+					Collections.<AgentImpl> singletonList(smith), 60000);
+			PastryNodeImpl node2 = nodes.get(1);
+			try (InputStream in = node2.fetchStream("stream", node2.getAgentContext(smith), 60000)) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					out.write(buffer, 0, read);
+				}
+				Assert.assertArrayEquals(large, out.toByteArray());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testContentDefinedChunking() {
+		try {
+			// chunking only controls how a node writes, every node reads chunked envelopes
+			for (PastryNodeImpl node : nodes) {
+				node.setContentDefinedChunking(true);
+			}
+			PastryNodeImpl node1 = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			byte[] content = new byte[2 * NetworkArtifact.MAX_SIZE];
+			new Random().nextBytes(content);
+			EnvelopeVersion env = node1.createUnencryptedEnvelope("chunked", smith.getPublicKey(), content);
+			node1.storeEnvelope(env, smith);
+			long inserted = node1.getInsertedChunkCount();
+			Assert.assertTrue(inserted > 1);
+			Assert.assertArrayEquals(content, (byte[]) nodes.get(1).fetchEnvelope("chunked").getContent());
+			// a small change in the next version only inserts the chunks around it
+			content[content.length / 2]++;
+			env = node1.createUnencryptedEnvelope(env, content);
+			node1.storeEnvelope(env, smith);
+			long reinserted = node1.getInsertedChunkCount() - inserted;
+			Assert.assertTrue(reinserted > 0);
+			Assert.assertTrue(reinserted < inserted / 2);
+			EnvelopeVersion fetched = nodes.get(2).fetchEnvelope("chunked");
+			Assert.assertEquals(env.getVersion(), fetched.getVersion());
+			Assert.assertArrayEquals(content, (byte[]) fetched.getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testChunkedContentWithoutChunking() {
+		try {
+			// only the writer stores in chunks, the reader keeps the default
+			PastryNodeImpl writer = nodes.get(0);
+			writer.setContentDefinedChunking(true);
+			PastryNodeImpl reader = nodes.get(1);
+			Assert.assertFalse(reader.isContentDefinedChunking());
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			byte[] content = new byte[2 * NetworkArtifact.MAX_SIZE];
+			new Random().nextBytes(content);
+			EnvelopeVersion env = writer.createUnencryptedEnvelope("chunked-read", smith.getPublicKey(), content);
+			writer.storeEnvelope(env, smith);
+			Assert.assertTrue(writer.getInsertedChunkCount() > 1);
+			Assert.assertArrayEquals(content, (byte[]) reader.fetchEnvelope("chunked-read").getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testChunkedContentLocking() {
+		try {
+			for (PastryNodeImpl node : nodes) {
+				node.setContentDefinedChunking(true);
+			}
+			PastryNodeImpl node1 = nodes.get(0);
+			UserAgentImpl smith = MockAgentFactory.getAdam();
+			smith.unlock("adamspass");
+			final String testContent = "chunked envelope of smith";
+			EnvelopeVersion original = node1.createUnencryptedEnvelope("chunked-lock", smith.getPublicKey(),
+					testContent);
+			node1.storeEnvelope(original, smith);
+			// the chunks are not owned by anyone, but the identifier is
+			UserAgentImpl neo = MockAgentFactory.getEve();
+			neo.unlock("evespass");
+			EnvelopeVersion overwritten = new EnvelopeVersion("chunked-lock", original.getVersion() + 1,
+					neo.getPublicKey(), "chunked envelope of neo", new ArrayList<AgentImpl>(),
+					Collections.<String> emptySet());
+			try {
+				node1.storeEnvelope(overwritten, neo);
+				Assert.fail(EnvelopeException.class.getName() + " expected");
+			} catch (EnvelopeException e) {
+				// expected store failed exception, identifier owned by smith
+			}
+			EnvelopeVersion stored = nodes.get(1).fetchEnvelope("chunked-lock");
+			Assert.assertEquals(testContent, stored.getContent());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 	@Ignore
 	@Test
 	public void testVersionSafety() {
@@ -0,0 +1,78 @@
+package i5.las2peer.persistency.helper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ContentDefinedChunkerTest {
+
+	private static byte[] join(List<byte[]> chunks) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] chunk : chunks) {
+			out.write(chunk, 0, chunk.length);
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testSplit() {
+		ContentDefinedChunker chunker = new ContentDefinedChunker();
+		assertTrue(chunker.split(new byte[0]).isEmpty());
+		byte[] data = new byte[2 * 1024 * 1024];
+		new Random(1).nextBytes(data);
+		List<byte[]> chunks = chunker.split(data);
+		assertArrayEquals(data, join(chunks));
+		for (int i = 0; i < chunks.size(); i++) {
+			assertTrue(chunks.get(i).length <= ContentDefinedChunker.DEFAULT_MAX_SIZE);
+			if (i < chunks.size() - 1) {
+				assertTrue(chunks.get(i).length >= ContentDefinedChunker.DEFAULT_MIN_SIZE);
+			}
+		}
+		// same input gives same chunks
+		assertEquals(chunks.size(), chunker.split(data).size());
+	}
+
+	@Test
+	public void testAverageSize() {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(1024, 4096, 64 * 1024);
+		byte[] data = new byte[4 * 1024 * 1024];
+		new Random(3).nextBytes(data);
+		int average = data.length / chunker.split(data).size();
+		assertTrue(Math.abs(average - 4096) < 400);
+	}
+
+	@Test
+	public void testSharedChunks() {
+		ContentDefinedChunker chunker = new ContentDefinedChunker();
+		byte[] data = new byte[4 * 1024 * 1024];
+		new Random(2).nextBytes(data);
+		// insert a few bytes in the middle, this shifts all following bytes
+		byte[] edited = new byte[data.length + 10];
+		int position = data.length / 2;
+		System.arraycopy(data, 0, edited, 0, position);
+		System.arraycopy(data, position, edited, position + 10, data.length - position);
+		Set<String> original = new HashSet<>();
+		for (byte[] chunk : chunker.split(data)) {
+			original.add(new String(chunk, StandardCharsets.ISO_8859_1));
+		}
+		List<byte[]> editedChunks = chunker.split(edited);
+		int shared = 0;
+		for (byte[] chunk : editedChunks) {
+			if (original.contains(new String(chunk, StandardCharsets.ISO_8859_1))) {
+				shared++;
+			}
+		}
+		// only the chunks around the edit differ
+		assertTrue(shared >= editedChunks.size() - 3);
+	}
+
+}
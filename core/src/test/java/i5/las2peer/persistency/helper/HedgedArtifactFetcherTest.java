@@ -0,0 +1,175 @@
+package i5.las2peer.persistency.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.persistency.AbstractArtifact;
+import i5.las2peer.persistency.StorageArtifactHandler;
+import i5.las2peer.persistency.StorageExceptionHandler;
+import rice.p2p.commonapi.Id;
+import rice.p2p.commonapi.NodeHandle;
+import rice.p2p.past.PastContentHandle;
+
+public class HedgedArtifactFetcherTest {
+
+	private static class TestHandle implements PastContentHandle {
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private TestHandle(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Id getId() {
+			return null;
+		}
+
+		@Override
+		public NodeHandle getNodeHandle() {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class TestArtifact extends AbstractArtifact {
+		private static final long serialVersionUID = 1L;
+
+		private TestArtifact() {
+			super(null, new byte[0]);
+		}
+	}
+
+	/**
+	 * A fetch sent to a stub replica, answered by the test.
+	 */
+	private static class Request {
+		private final PastContentHandle handle;
+		private final StorageArtifactHandler artifactHandler;
+		private final StorageExceptionHandler exceptionHandler;
+
+		private Request(PastContentHandle handle, StorageArtifactHandler artifactHandler,
+				StorageExceptionHandler exceptionHandler) {
+			this.handle = handle;
+			this.artifactHandler = artifactHandler;
+			this.exceptionHandler = exceptionHandler;
+		}
+	}
+
+	private final List<PastContentHandle> handles = Arrays.asList(new TestHandle("a"), new TestHandle("b"),
+			new TestHandle("c"));
+
+	private ExecutorService threadpool;
+	private BlockingQueue<Request> requests;
+	private BlockingQueue<AbstractArtifact> results;
+	private BlockingQueue<Exception> exceptions;
+
+	@Before
+	public void setup() {
+		threadpool = Executors.newCachedThreadPool();
+		requests = new LinkedBlockingQueue<>();
+		results = new LinkedBlockingQueue<>();
+		exceptions = new LinkedBlockingQueue<>();
+	}
+
+	@After
+	public void tearDown() {
+		threadpool.shutdownNow();
+	}
+
+	private HedgedArtifactFetcher createFetcher(ReplicaLatencyTracker tracker, int maxHedgedRequests) {
+		return new HedgedArtifactFetcher(handles, results::add, exceptions::add,
+				(handle, artifactHandler, exceptionHandler) -> requests
+						.add(new Request(handle, artifactHandler, exceptionHandler)),
+				threadpool, tracker, maxHedgedRequests);
+	}
+
+	private Request nextRequest() throws InterruptedException {
+		Request request = requests.poll(10, TimeUnit.SECONDS);
+		assertNotNull(request);
+		return request;
+	}
+
+	@Test
+	public void testHedgedRequest() throws InterruptedException {
+		createFetcher(new ReplicaLatencyTracker(95, 10, 100), 1).run();
+		Request first = nextRequest();
+		// the second replica is only asked after the hedge delay
+		assertTrue(requests.isEmpty());
+		Request second = nextRequest();
+		assertNotSame(first.handle, second.handle);
+
+		// the first answer wins, the late one is dropped
+		TestArtifact artifact = new TestArtifact();
+		second.artifactHandler.onReceive(artifact);
+		first.artifactHandler.onReceive(new TestArtifact());
+		assertSame(artifact, results.poll());
+		assertTrue(results.isEmpty());
+		assertTrue(exceptions.isEmpty());
+		// no more than the allowed number of hedged requests
+		assertNull(requests.poll(300, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testAnswerCancelsHedge() throws InterruptedException {
+		createFetcher(new ReplicaLatencyTracker(95, 10, 200), 2).run();
+		Request first = nextRequest();
+		TestArtifact artifact = new TestArtifact();
+		first.artifactHandler.onReceive(artifact);
+		assertSame(artifact, results.poll());
+		// the scheduled hedge is not sent anymore
+		assertNull(requests.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testFailureFallback() throws InterruptedException {
+		// no hedging, only failures move on to the next replica
+		ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(95, 10, 60000);
+		createFetcher(tracker, 2).run();
+		Request first = nextRequest();
+		first.exceptionHandler.onException(new Exception("first"));
+		Request second = nextRequest();
+		assertNotSame(first.handle, second.handle);
+		TestArtifact artifact = new TestArtifact();
+		second.artifactHandler.onReceive(artifact);
+		assertSame(artifact, results.poll());
+		assertTrue(exceptions.isEmpty());
+		// the failed replica is asked last next time
+		assertSame(first.handle, tracker.order(handles).get(handles.size() - 1));
+	}
+
+	@Test
+	public void testAllReplicasFail() throws InterruptedException {
+		createFetcher(new ReplicaLatencyTracker(95, 10, 60000), 2).run();
+		for (int i = 0; i < handles.size(); i++) {
+			nextRequest().exceptionHandler.onException(new Exception("replica " + i));
+		}
+		// only the last failure is reported
+		assertEquals(1, exceptions.size());
+		assertEquals("replica " + (handles.size() - 1), exceptions.poll().getMessage());
+		assertTrue(results.isEmpty());
+		assertTrue(requests.isEmpty());
+	}
+
+}
@@ -0,0 +1,94 @@
+package i5.las2peer.persistency.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import rice.p2p.commonapi.Id;
+import rice.p2p.commonapi.NodeHandle;
+import rice.p2p.past.PastContentHandle;
+
+public class ReplicaLatencyTrackerTest {
+
+	private static class TestHandle implements PastContentHandle {
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private TestHandle(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Id getId() {
+			return null;
+		}
+
+		@Override
+		public NodeHandle getNodeHandle() {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	@Test
+	public void testOrder() {
+		ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(95, 20, 500);
+		TestHandle fast = new TestHandle("fast");
+		TestHandle slow = new TestHandle("slow");
+		TestHandle failing = new TestHandle("failing");
+		TestHandle unknown = new TestHandle("unknown");
+		tracker.recordSuccess(fast, 10);
+		tracker.recordSuccess(slow, 300);
+		tracker.recordFailure(failing, 100);
+		List<PastContentHandle> ordered = tracker.order(Arrays.asList(failing, slow, fast, unknown));
+		assertEquals(Arrays.asList(unknown, fast, slow, failing), ordered);
+		// a slow answer of the fast replica moves it back
+		for (int i = 0; i < 20; i++) {
+			tracker.recordSuccess(fast, 1000);
+		}
+		assertSame(slow, tracker.order(Arrays.asList(fast, slow)).get(0));
+	}
+
+	@Test
+	public void testFailurePenaltyDecays() {
+		ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(95, 20, 500);
+		TestHandle slow = new TestHandle("slow");
+		TestHandle failing = new TestHandle("failing");
+		tracker.recordSuccess(slow, 300);
+		tracker.recordFailure(failing, 100, 0);
+		assertSame(slow, tracker.order(Arrays.asList(failing, slow), 0).get(0));
+		// the penalty of 1000 ms is below the latency of the slow replica after two half lives
+		long later = 2 * ReplicaLatencyTracker.PENALTY_HALF_LIFE + 1;
+		assertSame(failing, tracker.order(Arrays.asList(failing, slow), later).get(0));
+		// repeated failures add up instead of keeping the largest one
+		tracker.recordFailure(failing, 100, later);
+		tracker.recordFailure(failing, 100, later);
+		assertSame(slow, tracker.order(Arrays.asList(failing, slow), later + ReplicaLatencyTracker.PENALTY_HALF_LIFE)
+				.get(0));
+	}
+
+	@Test
+	public void testHedgeDelay() {
+		ReplicaLatencyTracker tracker = new ReplicaLatencyTracker(90, 20, 500);
+		TestHandle handle = new TestHandle("replica");
+		assertEquals(500, tracker.getHedgeDelay());
+		for (int i = 1; i <= 100; i++) {
+			tracker.recordSuccess(handle, i);
+		}
+		assertEquals(90, tracker.getHedgeDelay());
+		for (int i = 0; i < 256; i++) {
+			tracker.recordSuccess(handle, 1);
+		}
+		assertEquals(20, tracker.getHedgeDelay());
+	}
+
+}
@@ -0,0 +1,331 @@
+package i5.las2peer.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockchainObserverSnapshotsTest {
+
+	private static final List<String> CONTRACTS = Arrays.asList("0x1", "0x2", "0x3", "0x4");
+
+	private static final int CONFIRMATIONS = 12;
+
+	private Path directory;
+	private Path snapshotFile;
+	private FakeChain chain;
+
+	/**
+	 * Chain with the given head, the hash of each block is derived from a fork id. Each block contains a user
+	 * registration of its own transaction.
+	 */
+	private static class FakeChain implements BlockchainObserverSnapshots.Chain {
+		private final TreeMap<BigInteger, String> hashes = new TreeMap<>();
+		private final TreeMap<BigInteger, List<String>> events = new TreeMap<>();
+		private BigInteger head = BigInteger.valueOf(-1);
+
+		void mine(int head, String fork) {
+			for (int block = this.head.intValue() + 1; block <= head; block++) {
+				hashes.put(BigInteger.valueOf(block), fork + block);
+				List<String> blockEvents = new ArrayList<>(Collections.singletonList(registration(fork + block)));
+				events.put(BigInteger.valueOf(block), blockEvents);
+			}
+			this.head = BigInteger.valueOf(head);
+		}
+
+		/**
+		 * Replaces the blocks from the given one on by the blocks of another fork.
+		 */
+		void reorganize(int fromBlock, int head, String fork) {
+			hashes.tailMap(BigInteger.valueOf(fromBlock)).clear();
+			events.tailMap(BigInteger.valueOf(fromBlock)).clear();
+			this.head = BigInteger.valueOf(fromBlock - 1);
+			mine(head, fork);
+		}
+
+		List<String> getEvents(int block) {
+			return events.get(BigInteger.valueOf(block));
+		}
+
+		@Override
+		public BigInteger getBlockNumber() {
+			return head;
+		}
+
+		@Override
+		public String getBlockHash(BigInteger blockNumber) {
+			return hashes.get(blockNumber);
+		}
+
+		@Override
+		public List<String> getEventKeys(BigInteger fromBlock, BigInteger toBlock) {
+			List<String> eventKeys = new ArrayList<>();
+			for (List<String> blockEvents : events.subMap(fromBlock, true, toBlock, true).values()) {
+				eventKeys.addAll(blockEvents);
+			}
+			return eventKeys;
+		}
+	}
+
+	private static String registration(String tx) {
+		return BlockchainObserverSnapshots.eventKey("userRegistration", "0x" + tx);
+	}
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("observer-snapshot");
+		snapshotFile = directory.resolve("blockchain-observer.snapshot");
+		chain = new FakeChain();
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	private BlockchainObserverSnapshots createSnapshots() {
+		return new BlockchainObserverSnapshots(chain, snapshotFile, CONFIRMATIONS, CONTRACTS);
+	}
+
+	/**
+	 * Observes the user registrations of the given blocks of the chain like the observer does.
+	 */
+	private void observe(BlockchainObserverSnapshots snapshots, int from, int to) {
+		for (int block = from; block <= to; block++) {
+			for (String eventKey : chain.getEvents(block)) {
+				deliver(snapshots, block, eventKey);
+			}
+			snapshots.blockObserved(BigInteger.valueOf(block));
+		}
+	}
+
+	/**
+	 * Delivers a user registration of the given block, the user is named after the transaction.
+	 */
+	private void deliver(BlockchainObserverSnapshots snapshots, int block, String eventKey) {
+		BigInteger blockNumber = BigInteger.valueOf(block);
+		String blockHash = chain.getBlockHash(blockNumber);
+		snapshots.eventReceived();
+		if (snapshots.markHandled(eventKey, blockNumber, blockHash)) {
+			String user = "user" + eventKey.substring(eventKey.indexOf(":0x") + 3);
+			snapshots.apply(eventKey, blockNumber, blockHash, s -> s.users.put(user, "time"));
+		}
+		snapshots.eventHandled();
+	}
+
+	@Test
+	public void testConfirmationCutOff() throws IOException {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		assertTrue(snapshots.isEnabled());
+		assertNull(snapshots.getStartBlock());
+		observe(snapshots, 0, 20);
+		assertTrue(snapshots.checkpoint());
+
+		BlockchainObserverState snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+		assertEquals(BigInteger.valueOf(20 - CONFIRMATIONS), snapshot.getLastBlock());
+		assertEquals("a" + (20 - CONFIRMATIONS), snapshot.getLastBlockHash());
+		assertEquals(20 - CONFIRMATIONS + 1, snapshot.users.size());
+		assertFalse(snapshot.users.containsKey("usera" + (20 - CONFIRMATIONS + 1)));
+		// the unconfirmed blocks are still pending, but part of the observed state
+		assertEquals(CONFIRMATIONS, snapshots.getPendingUpdateCount());
+		assertEquals(21, snapshots.getState().users.size());
+		// nothing new is confirmed
+		assertFalse(snapshots.checkpoint());
+	}
+
+	@Test
+	public void testPendingPromotion() throws IOException {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		assertTrue(snapshots.checkpoint());
+
+		chain.mine(30, "a");
+		observe(snapshots, 21, 30);
+		assertTrue(snapshots.checkpoint());
+		BlockchainObserverState snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+		assertEquals(BigInteger.valueOf(30 - CONFIRMATIONS), snapshot.getLastBlock());
+		assertEquals(30 - CONFIRMATIONS + 1, snapshot.users.size());
+		assertEquals(CONFIRMATIONS, snapshots.getPendingUpdateCount());
+	}
+
+	@Test
+	public void testIncompleteStateIsNotPersisted() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+
+		// an event is still being handled
+		snapshots.eventReceived();
+		assertFalse(snapshots.checkpoint());
+		assertFalse(Files.exists(snapshotFile));
+		snapshots.eventHandled();
+		assertTrue(snapshots.checkpoint());
+	}
+
+	@Test
+	public void testMissingEventIsNotPersisted() throws IOException {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		// a log filter has not delivered an event of a confirmed block yet
+		String late = registration("late5");
+		chain.getEvents(5).add(late);
+		assertFalse(snapshots.checkpoint());
+		assertFalse(Files.exists(snapshotFile));
+
+		deliver(snapshots, 5, late);
+		assertTrue(snapshots.checkpoint());
+		BlockchainObserverState snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+		assertTrue(snapshot.users.containsKey("userlate5"));
+	}
+
+	@Test
+	public void testReorganizedEventsAreNotPersisted() throws IOException {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		assertTrue(snapshots.checkpoint());
+
+		// the blocks from 15 on are replaced, the transaction of block 16 is mined again in block 18
+		chain.reorganize(15, 40, "b");
+		chain.getEvents(18).add(registration("a16"));
+		observe(snapshots, 15, 40);
+		assertTrue(snapshots.checkpoint());
+		BlockchainObserverState snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+		assertEquals(BigInteger.valueOf(40 - CONFIRMATIONS), snapshot.getLastBlock());
+		assertTrue(snapshot.users.containsKey("usera14"));
+		assertFalse(snapshot.users.containsKey("usera15"));
+		assertTrue(snapshot.users.containsKey("usera16"));
+		assertFalse(snapshot.users.containsKey("usera17"));
+		assertTrue(snapshot.users.containsKey("userb15"));
+		assertEquals(15 + 1 + (40 - CONFIRMATIONS - 15 + 1), snapshot.users.size());
+		assertEquals(CONFIRMATIONS, snapshots.getPendingUpdateCount());
+
+		// an orphaned transaction mined again later is persisted once its new block is confirmed
+		chain.mine(45, "b");
+		chain.getEvents(45).add(registration("a17"));
+		chain.mine(45 + CONFIRMATIONS, "b");
+		observe(snapshots, 41, 45 + CONFIRMATIONS);
+		assertTrue(snapshots.checkpoint());
+		snapshot = BlockchainObserverState.fromBytes(Files.readAllBytes(snapshotFile));
+		assertTrue(snapshot.users.containsKey("usera17"));
+	}
+
+	@Test
+	public void testStalledObserver() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 10);
+		snapshots.eventReceived();
+
+		// the first checkpoint records the progress
+		for (int i = 0; i < BlockchainObserverSnapshots.MAX_STALLED_CHECKPOINTS + 1; i++) {
+			assertTrue(snapshots.isEnabled());
+			assertFalse(snapshots.checkpoint());
+		}
+		// the pending updates are dropped instead of piling up
+		assertFalse(snapshots.isEnabled());
+		assertEquals(0, snapshots.getPendingUpdateCount());
+		assertFalse(Files.exists(snapshotFile));
+	}
+
+	@Test
+	public void testFailedObservation() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		snapshots.observationFailed();
+
+		assertFalse(snapshots.checkpoint());
+		assertFalse(snapshots.isEnabled());
+		assertFalse(Files.exists(snapshotFile));
+	}
+
+	@Test
+	public void testLoadSnapshot() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		assertTrue(snapshots.checkpoint());
+
+		BlockchainObserverSnapshots resumed = createSnapshots();
+		assertEquals(BigInteger.valueOf(20 - CONFIRMATIONS + 1), resumed.getStartBlock());
+		assertEquals(20 - CONFIRMATIONS + 1, resumed.getState().users.size());
+		// events of the snapshot are not applied again when they are delivered once more
+		observe(resumed, 0, 20);
+		assertEquals(21, resumed.getState().users.size());
+		assertEquals(CONFIRMATIONS, resumed.getPendingUpdateCount());
+
+		// different contracts
+		assertNull(new BlockchainObserverSnapshots(chain, snapshotFile, CONFIRMATIONS,
+				Arrays.asList("0x5", "0x6", "0x7", "0x8")).getStartBlock());
+	}
+
+	@Test
+	public void testLoadSnapshotOfOtherChain() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		observe(snapshots, 0, 20);
+		assertTrue(snapshots.checkpoint());
+
+		// the chain has been reset while the node was offline
+		chain = new FakeChain();
+		chain.mine(20, "b");
+		BlockchainObserverSnapshots resumed = createSnapshots();
+		assertNull(resumed.getStartBlock());
+		assertTrue(resumed.getState().users.isEmpty());
+
+		// the chain is shorter than the snapshot
+		chain = new FakeChain();
+		chain.mine(5, "a");
+		assertNull(createSnapshots().getStartBlock());
+	}
+
+	@Test
+	public void testDeduplicationPerEventType() {
+		BlockchainObserverSnapshots snapshots = createSnapshots();
+		String registration = BlockchainObserverSnapshots.eventKey("userRegistration", "0xabc");
+		String transaction = BlockchainObserverSnapshots.eventKey("transaction", "0xabc");
+
+		// the same transaction causes events of different types
+		assertTrue(snapshots.markHandled(registration, BigInteger.ONE, "a1"));
+		assertTrue(snapshots.markHandled(transaction, BigInteger.ONE, "a1"));
+		assertFalse(snapshots.markHandled(registration, BigInteger.ONE, "a1"));
+		assertFalse(snapshots.markHandled(transaction, BigInteger.ONE, "a1"));
+	}
+
+	@Test
+	public void testDisabled() {
+		chain.mine(20, "a");
+		BlockchainObserverSnapshots snapshots = new BlockchainObserverSnapshots(chain, null, CONFIRMATIONS,
+				CONTRACTS);
+		assertFalse(snapshots.isEnabled());
+		observe(snapshots, 0, 20);
+		assertEquals(0, snapshots.getPendingUpdateCount());
+		assertFalse(snapshots.checkpoint());
+		assertFalse(snapshots.checkpoint());
+	}
+
+}
@@ -0,0 +1,68 @@
+package i5.las2peer.registry;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the startup of the blockchain observer replaying the whole chain with resuming from a snapshot and only
+ * replaying the unconfirmed blocks. The chain is the stand-in of {@link BlockchainObserverStateTest}, every block
+ * request costs the round trip to a local Ethereum client.
+ *
+ * Not a unit test, run it with
+ * {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.registry.BlockchainObserverStartupBenchmark}.
+ */
+public class BlockchainObserverStartupBenchmark {
+
+	private static final List<String> CONTRACTS = Arrays.asList("0x1", "0x2", "0x3", "0x4");
+
+	private static final int HEAD = 10000;
+	private static final int CONFIRMATIONS = 12;
+	private static final int RUNS = 3;
+
+	/** round trip of a block request to a local Ethereum client */
+	private static final long BLOCK_REQUEST_NANOS = 100_000;
+
+	public static void main(String[] args) throws Exception {
+		Path file = Files.createTempFile("observer-snapshot", ".snapshot");
+		try {
+			// the snapshot as written by the checkpoints of a previous run
+			BlockchainObserverState confirmed = new BlockchainObserverState(CONTRACTS);
+			for (int block = 0; block <= HEAD - CONFIRMATIONS; block++) {
+				BlockchainObserverStateTest.applyBlock(confirmed, block);
+			}
+			confirmed.setLastBlock(BigInteger.valueOf(HEAD - CONFIRMATIONS), "0xhash");
+			confirmed.save(file);
+
+			for (int run = 1; run <= RUNS; run++) {
+				long start = System.nanoTime();
+				replay(new BlockchainObserverState(CONTRACTS), 0, HEAD);
+				long replayNanos = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				BlockchainObserverState resumed = BlockchainObserverState.fromBytes(Files.readAllBytes(file));
+				replay(resumed, resumed.getLastBlock().intValue() + 1, HEAD);
+				long resumeNanos = System.nanoTime() - start;
+
+				System.out.println("Run " + run + ": observer startup for " + HEAD + " blocks, full replay "
+						+ replayNanos / 1000000 + " ms, resume from snapshot " + resumeNanos / 1000000 + " ms");
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Replays the given blocks of the stand-in chain, requesting them one by one like the observer does.
+	 */
+	private static void replay(BlockchainObserverState state, int from, int to) {
+		for (int block = from; block <= to; block++) {
+			LockSupport.parkNanos(BLOCK_REQUEST_NANOS);
+			BlockchainObserverStateTest.applyBlock(state, block);
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package i5.las2peer.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.registry.data.BlockchainTransactionData;
+import i5.las2peer.registry.data.SenderReceiverDoubleKey;
+import i5.las2peer.registry.data.ServiceDeploymentData;
+import i5.las2peer.registry.data.ServiceReleaseData;
+
+public class BlockchainObserverStateTest {
+
+	private static final List<String> CONTRACTS = Arrays.asList("0x1", "0x2", "0x3", "0x4");
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("observer-snapshot");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Stand-in for the events of a local chain, applied like the observer does. Also used by
+	 * {@link BlockchainObserverStartupBenchmark}.
+	 */
+	static void applyBlock(BlockchainObserverState state, int block) {
+		BigInteger blockNumber = BigInteger.valueOf(block);
+		if (state.markHandled("userRegistration:" + block)) {
+			state.users.put("user" + block, "time" + block);
+		}
+		if (state.markHandled("transaction:" + block)) {
+			state.addTransaction(new SenderReceiverDoubleKey("0xa", "0xb" + block % 10),
+					new BlockchainTransactionData(blockNumber, BigInteger.ONE, BigInteger.ONE, blockNumber,
+							BigInteger.ZERO, "0xa", "", "0xb" + block % 10));
+		}
+		if (block % 10 == 0 && state.markHandled("serviceDeployment:" + block)) {
+			state.addOrUpdateDeployment(new ServiceDeploymentData("com.example.service", "Service",
+					BigInteger.ONE, BigInteger.ZERO, BigInteger.ZERO, "node" + block % 3, blockNumber));
+			state.addServiceAnnouncement(blockNumber, "com.example.service.Service", "node" + block % 3);
+		}
+		if (block % 1000 == 0 && state.markHandled("serviceRelease:" + block)) {
+			state.addRelease(new ServiceReleaseData("com.example.service", BigInteger.ONE,
+					BigInteger.valueOf(block / 1000), BigInteger.ZERO, new byte[] { 1 }, blockNumber));
+		}
+	}
+
+	/**
+	 * Replays the given blocks of the stand-in chain.
+	 */
+	private static int replay(BlockchainObserverState state, int from, int to) {
+		for (int block = from; block <= to; block++) {
+			applyBlock(state, block);
+		}
+		return Math.max(0, to - from + 1);
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		BlockchainObserverState state = new BlockchainObserverState(CONTRACTS);
+		for (int block = 0; block <= 100; block++) {
+			applyBlock(state, block);
+		}
+		state.errors.add("error");
+		state.setLastBlock(BigInteger.valueOf(100), "0xhash");
+		Path file = directory.resolve("blockchain-observer.snapshot");
+		state.save(file);
+
+		BlockchainObserverState restored = BlockchainObserverState.fromBytes(Files.readAllBytes(file));
+		assertEquals(CONTRACTS, restored.getContractAddresses());
+		assertEquals(BigInteger.valueOf(100), restored.getLastBlock());
+		assertEquals("0xhash", restored.getLastBlockHash());
+		assertEquals(state.users, restored.users);
+		assertEquals(state.errors, restored.errors);
+		assertEquals(101, restored.transactionLog.values().stream().mapToInt(List::size).sum());
+		assertEquals(state.deployments.get("com.example.service").keySet(),
+				restored.deployments.get("com.example.service").keySet());
+		assertEquals(state.serviceAnnouncementsPerBlockTree, restored.serviceAnnouncementsPerBlockTree);
+		assertEquals(1, restored.getReleaseByVersion("com.example.service", 1, 0, 0).getVersionMajor().intValue());
+		assertNull(restored.getReleaseByVersion("com.example.service", 1, 1, 0));
+		// handled events are not applied again after resuming
+		assertFalse(restored.markHandled("userRegistration:100"));
+		assertTrue(restored.markHandled("userRegistration:101"));
+		// the lock is usable after restoring
+		restored.addServiceAnnouncement(BigInteger.valueOf(101), "com.example.service.Service", "node0");
+		assertEquals(12, restored.serviceAnnouncementsPerBlockTree.size());
+
+		// the snapshot is replaced atomically, no temporary files are left behind
+		restored.save(file);
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		final int head = 10000;
+		final int confirmations = 12;
+		Path file = directory.resolve("blockchain-observer.snapshot");
+
+		// first start, replay the whole chain and persist the confirmed blocks
+		BlockchainObserverState replayed = new BlockchainObserverState(CONTRACTS);
+		replay(replayed, 0, head);
+		BlockchainObserverState confirmed = new BlockchainObserverState(CONTRACTS);
+		for (int block = 0; block <= head - confirmations; block++) {
+			applyBlock(confirmed, block);
+		}
+		confirmed.setLastBlock(BigInteger.valueOf(head - confirmations), "0xhash");
+		confirmed.save(file);
+
+		// restart, restore the snapshot and only replay the unconfirmed blocks
+		BlockchainObserverState resumed = BlockchainObserverState.fromBytes(Files.readAllBytes(file));
+		int replayedBlocks = replay(resumed, resumed.getLastBlock().intValue() + 1, head);
+
+		assertEquals(confirmations, replayedBlocks);
+		assertEquals(replayed.users, resumed.users);
+		assertEquals(replayed.serviceAnnouncementsPerBlockTree, resumed.serviceAnnouncementsPerBlockTree);
+		assertEquals(replayed.releases.get("com.example.service").size(),
+				resumed.releases.get("com.example.service").size());
+		assertEquals(head + 1, resumed.transactionLog.values().stream().mapToInt(List::size).sum());
+	}
+
+}
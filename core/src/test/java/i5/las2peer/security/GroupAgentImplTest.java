@@ -138,6 +138,29 @@ public class GroupAgentImplTest {
 		testee.unlock(abel);
 	}
 
+	@Test
+	public void testCloneLocked() throws InternalSecurityException, CryptoException, SerializationException,
+			AgentAccessDeniedException, AgentOperationFailedException, AgentLockedException,
+			CloneNotSupportedException {
+		GroupAgentImpl testee = GroupAgentImpl.createGroupAgent(new AgentImpl[] { adam, eve });
+		GroupAgentImpl copy = (GroupAgentImpl) testee.cloneLocked();
+		eve.unlock(EVESSPASS);
+		copy.unlock(eve);
+
+		copy.addMember(abel);
+		copy.revokeMember(adam);
+		assertTrue(copy.hasMember(abel));
+		assertFalse(copy.hasMember(adam));
+		assertFalse(testee.hasMember(abel));
+		assertTrue(testee.hasMember(adam));
+
+		copy.apply();
+		assertEquals(2, copy.getSize());
+		assertEquals(2, testee.getSize());
+		assertFalse(testee.hasMember(abel));
+		assertTrue(testee.hasMember(adam));
+	}
+
 	@Test
 	public void testSubGrouping() throws SerializationException, CryptoException, InternalSecurityException,
 			AgentAccessDeniedException, AgentOperationFailedException, AgentLockedException {
@@ -0,0 +1,98 @@
+package i5.las2peer.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import i5.las2peer.api.security.AgentNotFoundException;
+import i5.las2peer.p2p.LocalNode;
+import i5.las2peer.p2p.LocalNodeManager;
+
+public class GroupMembershipIndexTest {
+
+	@Test
+	public void testNestedGroups() {
+		try {
+			LocalNode node = new LocalNodeManager().launchNode();
+			UserAgentImpl adam = UserAgentImpl.createUserAgent("adamspass");
+			adam.unlock("adamspass");
+			UserAgentImpl eve = UserAgentImpl.createUserAgent("evespass");
+			eve.unlock("evespass");
+			node.storeAgent(adam);
+			node.storeAgent(eve);
+			GroupAgentImpl group1 = GroupAgentImpl.createGroupAgent(new AgentImpl[] { adam });
+			group1.unlock(adam);
+			node.storeAgent(group1);
+			GroupAgentImpl group2 = GroupAgentImpl.createGroupAgent(new AgentImpl[] { group1, eve });
+			group2.unlock(eve);
+			node.storeAgent(group2);
+			GroupAgentImpl group3 = GroupAgentImpl.createGroupAgent(new AgentImpl[] { group2 });
+			group3.unlock(group2);
+			node.storeAgent(group3);
+
+			GroupMembershipIndex index = node.getGroupMembershipIndex();
+			assertTrue(index.isMember(group3.getIdentifier(), adam.getIdentifier()));
+			assertTrue(index.isMember(group3.getIdentifier(), eve.getIdentifier()));
+			assertTrue(index.isMember(group3.getIdentifier(), group1.getIdentifier()));
+			assertFalse(index.isMember(group1.getIdentifier(), eve.getIdentifier()));
+			assertTrue(index.getTransitiveMembers(adam.getIdentifier()).isEmpty());
+			assertEquals(4, index.getTransitiveMembers(group3.getIdentifier()).size());
+
+			long hits = index.getHitCount();
+			assertTrue(index.isMember(group3.getIdentifier(), adam.getIdentifier()));
+			assertEquals(hits + 1, index.getHitCount());
+
+			try {
+				index.isMember("notexisting", adam.getIdentifier());
+				fail("AgentNotFoundException expected");
+			} catch (AgentNotFoundException e) {
+				// expected
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testCyclicGroups() {
+		try {
+			LocalNode node = new LocalNodeManager().launchNode();
+			UserAgentImpl adam = UserAgentImpl.createUserAgent("adamspass");
+			adam.unlock("adamspass");
+			UserAgentImpl eve = UserAgentImpl.createUserAgent("evespass");
+			eve.unlock("evespass");
+			node.storeAgent(adam);
+			node.storeAgent(eve);
+			GroupAgentImpl group1 = GroupAgentImpl.createGroupAgent(new AgentImpl[] { adam });
+			group1.unlock(adam);
+			node.storeAgent(group1);
+			GroupAgentImpl group2 = GroupAgentImpl.createGroupAgent(new AgentImpl[] { group1, eve });
+			group2.unlock(eve);
+			node.storeAgent(group2);
+
+			GroupMembershipIndex index = node.getGroupMembershipIndex();
+			assertFalse(index.isMember(group1.getIdentifier(), eve.getIdentifier()));
+
+			// storing a new version has to invalidate the index
+			group1.addMember(group2);
+			group1.apply();
+			node.storeAgent(group1);
+			assertTrue(index.isMember(group1.getIdentifier(), eve.getIdentifier()));
+			assertTrue(index.isMember(group1.getIdentifier(), group1.getIdentifier()));
+			assertTrue(index.isMember(group2.getIdentifier(), group2.getIdentifier()));
+
+			AgentContext context = new AgentContext(node, eve);
+			assertTrue(context.hasAccess(group1.getIdentifier()));
+			GroupAgentImpl opened = context.requestGroupAgent(group1.getIdentifier());
+			assertFalse(opened.isLocked());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.toString());
+		}
+	}
+
+}
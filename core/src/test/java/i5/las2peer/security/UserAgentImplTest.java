@@ -1,6 +1,7 @@
 package i5.las2peer.security;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -86,6 +87,27 @@ public class UserAgentImplTest {
 		a.unlock(sndPass);
 	}
 
+	@Test
+	public void testCloneUnlocked() throws CryptoException, AgentAccessDeniedException, AgentLockedException,
+			AgentOperationFailedException, CloneNotSupportedException {
+		String passphrase = "a passphrase";
+		UserAgentImpl a = UserAgentImpl.createUserAgent(passphrase);
+		try {
+			a.cloneUnlocked();
+			fail("AgentLockedException expected");
+		} catch (AgentLockedException e) {
+		}
+		a.unlock(passphrase);
+
+		AgentImpl copy = a.cloneUnlocked();
+		assertFalse(copy.isLocked());
+		assertEquals(a.getIdentifier(), copy.getIdentifier());
+		// locking the copy does not lock the original
+		copy.lockPrivateKey();
+		assertTrue(copy.isLocked());
+		assertFalse(a.isLocked());
+	}
+
 	@Test
 	public void testXml() throws NoSuchAlgorithmException, MalformedXMLException, CryptoException,
 			AgentAccessDeniedException, AgentLockedException, InternalSecurityException, AgentOperationFailedException {
@@ -116,6 +116,43 @@ public class UserAgentManagerTest {
 		}
 	}
 
+	@Test
+	public void testCache() {
+		try {
+			Node node = new LocalNodeManager().launchNode();
+			UserAgentManager l = node.getUserManager();
+
+			UserAgentImpl a = UserAgentImpl.createUserAgent("pass");
+			a.unlock("pass");
+			a.setLoginName("cached");
+
+			// unknown login is cached as missing
+			try {
+				l.getAgentIdByLogin("cached");
+				fail("AgentNotFoundException expected");
+			} catch (AgentNotFoundException e) {
+				// intended
+			}
+			long misses = l.getCache().getMissCount();
+			try {
+				l.getAgentIdByLogin("cached");
+				fail("AgentNotFoundException expected");
+			} catch (AgentNotFoundException e) {
+				// intended
+			}
+			assertEquals(misses, l.getCache().getMissCount());
+
+			// registration warms the cache
+			node.storeAgent(a);
+			long hits = l.getCache().getHitCount();
+			assertEquals(a.getIdentifier(), l.getAgentIdByLogin("Cached"));
+			assertEquals(hits + 1, l.getCache().getHitCount());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.toString());
+		}
+	}
+
 	@Test
 	public void testAnonymous() {
 		try {
@@ -0,0 +1,133 @@
+package i5.las2peer.tools;
+
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import i5.las2peer.serialization.SerializeTools;
+
+/**
+ * Compares the crypto operations of {@link CryptoTools}, which reuse their primitives per thread and cache decoded
+ * public keys, with creating the primitives freshly for each operation like before. The operations are the ones used
+ * by Message (signatures, RSA key and AES content encryption, AES-GCM with session keys), EnvelopeVersion
+ * (public keys from strings) and NetworkArtifact (encoded public keys).
+ *
+ * Not a unit test, run it with {@code gradle :core:benchmark -Pbenchmark=i5.las2peer.tools.CryptoToolsBenchmark}.
+ */
+public class CryptoToolsBenchmark {
+
+	private static final int RUNS = 3;
+	private static final int FAST_ROUNDS = 20000;
+	private static final int SLOW_ROUNDS = 500;
+
+	private static final int GCM_IV_LENGTH = 12;
+	private static final int GCM_TAG_LENGTH = 128;
+
+	@FunctionalInterface
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		KeyPair keyPair = CryptoTools.generateKeyPair();
+		SecretKey key = CryptoTools.generateSymmetricKey();
+		byte[] data = new byte[4096];
+		new SecureRandom().nextBytes(data);
+		byte[] keyData = key.getEncoded();
+		byte[] encodedPublicKey = keyPair.getPublic().getEncoded();
+		byte[] signature = CryptoTools.signContent(data, keyPair.getPrivate());
+		// messages encrypt their serialized content key
+		byte[] rsaEncrypted = CryptoTools.encryptAsymmetric(key, keyPair.getPublic());
+		byte[] aesEncrypted = CryptoTools.encryptSymmetric(data, key);
+		byte[] gcmEncrypted = CryptoTools.encryptSymmetricAuthenticated(data, key);
+		SecureRandom ivRandom = new SecureRandom();
+
+		// the first run only warms up the JIT
+		for (int run = 0; run <= RUNS; run++) {
+			boolean print = run > 0;
+			if (print) {
+				System.out.println("Run " + run + ", reused primitives against fresh ones per operation:");
+			}
+			compare(print, "RSA sign", SLOW_ROUNDS, () -> CryptoTools.signContent(data, keyPair.getPrivate()), () -> {
+				Signature sig = Signature.getInstance(CryptoTools.getSignatureMethod());
+				sig.initSign(keyPair.getPrivate());
+				sig.update(data);
+				sig.sign();
+			});
+			compare(print, "RSA verify", SLOW_ROUNDS,
+					() -> CryptoTools.verifySignature(signature, data, keyPair.getPublic()), () -> {
+						Signature sig = Signature.getInstance(CryptoTools.getSignatureMethod());
+						sig.initVerify(keyPair.getPublic());
+						sig.update(data);
+						sig.verify(signature);
+					});
+			compare(print, "RSA encrypt key", SLOW_ROUNDS,
+					() -> CryptoTools.encryptAsymmetric(keyData, keyPair.getPublic()), () -> {
+						Cipher c = Cipher.getInstance(CryptoTools.getAsymmetricAlgorithm());
+						c.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+						c.doFinal(keyData);
+					});
+			compare(print, "RSA decrypt key", SLOW_ROUNDS,
+					() -> CryptoTools.decryptAsymmetric(rsaEncrypted, keyPair.getPrivate()), () -> {
+						Cipher c = Cipher.getInstance(CryptoTools.getAsymmetricAlgorithm());
+						c.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+						SerializeTools.deserialize(c.doFinal(rsaEncrypted));
+					});
+			compare(print, "AES encrypt 4 KiB", FAST_ROUNDS, () -> CryptoTools.encryptSymmetric(data, key), () -> {
+				Cipher c = Cipher.getInstance(CryptoTools.getSymmetricAlgorithm());
+				c.init(Cipher.ENCRYPT_MODE, key);
+				c.doFinal(data);
+			});
+			compare(print, "AES decrypt 4 KiB", FAST_ROUNDS, () -> CryptoTools.decryptSymmetric(aesEncrypted, key),
+					() -> {
+						Cipher c = Cipher.getInstance(CryptoTools.getSymmetricAlgorithm());
+						c.init(Cipher.DECRYPT_MODE, key);
+						c.doFinal(aesEncrypted);
+					});
+			compare(print, "AES-GCM encrypt 4 KiB", FAST_ROUNDS,
+					() -> CryptoTools.encryptSymmetricAuthenticated(data, key), () -> {
+						byte[] iv = new byte[GCM_IV_LENGTH];
+						ivRandom.nextBytes(iv);
+						Cipher c = Cipher.getInstance(CryptoTools.getAuthenticatedSymmetricAlgorithm());
+						c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+						c.doFinal(data);
+					});
+			compare(print, "AES-GCM decrypt 4 KiB", FAST_ROUNDS,
+					() -> CryptoTools.decryptSymmetricAuthenticated(gcmEncrypted, key), () -> {
+						Cipher c = Cipher.getInstance(CryptoTools.getAuthenticatedSymmetricAlgorithm());
+						c.init(Cipher.DECRYPT_MODE, key,
+								new GCMParameterSpec(GCM_TAG_LENGTH, gcmEncrypted, 0, GCM_IV_LENGTH));
+						c.doFinal(gcmEncrypted, GCM_IV_LENGTH, gcmEncrypted.length - GCM_IV_LENGTH);
+					});
+			compare(print, "decodePublicKey", FAST_ROUNDS, () -> CryptoTools.decodePublicKey(encodedPublicKey), () -> {
+				KeyFactory factory = KeyFactory.getInstance(CryptoTools.getAsymmetricAlgorithm());
+				factory.generatePublic(new X509EncodedKeySpec(encodedPublicKey));
+			});
+		}
+	}
+
+	private static void compare(boolean print, String name, int rounds, Operation reused, Operation fresh)
+			throws Exception {
+		long reusedNanos = measure(rounds, reused);
+		long freshNanos = measure(rounds, fresh);
+		if (print) {
+			System.out.println("  " + name + ": " + reusedNanos / rounds + " ns reused, " + freshNanos / rounds
+					+ " ns fresh");
+		}
+	}
+
+	private static long measure(int rounds, Operation operation) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			operation.run();
+		}
+		return System.nanoTime() - start;
+	}
+
+}
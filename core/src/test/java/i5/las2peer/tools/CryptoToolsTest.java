@@ -0,0 +1,97 @@
+package i5.las2peer.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+public class CryptoToolsTest {
+
+	@Test
+	public void testConcurrentOperations() throws Exception {
+		final KeyPair keyPair = CryptoTools.generateKeyPair();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 50; i++) {
+						byte[] data = ("thread " + thread + " round " + i).getBytes(StandardCharsets.UTF_8);
+						SecretKey key = CryptoTools.generateSymmetricKey();
+						assertArrayEquals(data,
+								CryptoTools.decryptSymmetric(CryptoTools.encryptSymmetric(data, key), key));
+						assertArrayEquals(data, CryptoTools.decryptSymmetricAuthenticated(
+								CryptoTools.encryptSymmetricAuthenticated(data, key), key));
+						byte[] signature = CryptoTools.signContent(data, keyPair.getPrivate());
+						assertTrue(CryptoTools.verifySignature(signature, data, keyPair.getPublic()));
+						assertFalse(CryptoTools.verifySignature(signature, new byte[] { 1 }, keyPair.getPublic()));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedOperationDoesNotBreakThread() throws Exception {
+		SecretKey key = CryptoTools.generateSymmetricKey();
+		byte[] data = "some data".getBytes(StandardCharsets.UTF_8);
+		byte[] encrypted = CryptoTools.encryptSymmetricAuthenticated(data, key);
+		encrypted[encrypted.length - 1]++;
+		try {
+			CryptoTools.decryptSymmetricAuthenticated(encrypted, key);
+			fail("CryptoException expected");
+		} catch (CryptoException e) {
+			// intended
+		}
+		encrypted[encrypted.length - 1]--;
+		assertArrayEquals(data, CryptoTools.decryptSymmetricAuthenticated(encrypted, key));
+	}
+
+	@Test
+	public void testPublicKeyCache() throws Exception {
+		PublicKey publicKey = CryptoTools.generateKeyPair().getPublic();
+		String base64 = CryptoTools.publicKeyToBase64String(publicKey);
+
+		PublicKey decoded = CryptoTools.stringToPublicKey(base64);
+		assertEquals(publicKey, decoded);
+		assertSame(decoded, CryptoTools.stringToPublicKey(base64));
+		assertSame(decoded, CryptoTools.decodePublicKey(publicKey.getEncoded()));
+
+		try {
+			CryptoTools.stringToPublicKey("no key");
+			fail("CryptoException expected");
+		} catch (CryptoException e) {
+			// intended
+		}
+		try {
+			CryptoTools.decodePublicKey(Arrays.copyOf(publicKey.getEncoded(), 16));
+			fail("CryptoException expected");
+		} catch (CryptoException e) {
+			// intended
+		}
+	}
+
+}
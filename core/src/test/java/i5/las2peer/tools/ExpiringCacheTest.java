@@ -0,0 +1,88 @@
+package i5.las2peer.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+	@Test
+	public void testExpiration() throws InterruptedException {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+		cache.put("a", "1", 50);
+		cache.put("b", "2", 10000);
+		cache.put("c", "3", 0);
+
+		assertEquals("1", cache.get("a"));
+		assertEquals("2", cache.get("b"));
+		assertNull(cache.get("c"));
+
+		Thread.sleep(100);
+
+		assertNull(cache.get("a"));
+		assertEquals("2", cache.get("b"));
+		assertEquals(3, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(2);
+		cache.put(1, "1", 10000);
+		cache.put(2, "2", 10000);
+		// least recently used is now 2
+		cache.get(1);
+		cache.put(3, "3", 10000);
+
+		assertEquals(2, cache.size());
+		assertEquals("1", cache.get(1));
+		assertNull(cache.get(2));
+		assertEquals("3", cache.get(3));
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.remove(1);
+		assertNull(cache.get(1));
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemoveIf() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10);
+		cache.put(1, "a", 10000);
+		cache.put(2, "b", 10000);
+		cache.put(3, "a", 10000);
+
+		cache.removeIf((key, value) -> value.equals("a"));
+		assertEquals(1, cache.size());
+		assertEquals("b", cache.get(2));
+	}
+
+	@Test
+	public void testWeightBound() {
+		ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, 10, String::length);
+		cache.put(1, "aaaa", 10000);
+		cache.put(2, "bbbb", 10000);
+		assertEquals(8, cache.getWeight());
+		// replacing an entry only counts the new value
+		cache.put(2, "bb", 10000);
+		assertEquals(6, cache.getWeight());
+		// evicts the least recently used entry to fit
+		cache.put(3, "cccccc", 10000);
+		assertNull(cache.get(1));
+		assertEquals("bb", cache.get(2));
+		assertEquals(8, cache.getWeight());
+		assertEquals(1, cache.getEvictionCount());
+		// values heavier than the whole cache are not cached
+		cache.put(4, "ddddddddddd", 10000);
+		assertNull(cache.get(4));
+		assertEquals(8, cache.getWeight());
+
+		cache.removeIf((key, value) -> key == 3);
+		assertEquals(2, cache.getWeight());
+		cache.clear();
+		assertEquals(0, cache.getWeight());
+	}
+
+}
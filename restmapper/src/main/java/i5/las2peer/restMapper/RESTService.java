@@ -43,6 +43,8 @@ public abstract class RESTService extends Service {
 
 	private volatile ApplicationHandler appHandler;
 
+	private volatile String swagger;
+
 	/**
 	 * Creates a new REST service using a Jersey ResourceConfig as application.
 	 * 
@@ -215,14 +217,20 @@ public abstract class RESTService extends Service {
 	/**
 	 * Gets the Swagger documentation for this service.
 	 * 
-	 * Intended for RMI calls only.
+	 * Intended for RMI calls only. The documentation is generated on the first call, resources cannot change
+	 * afterwards.
 	 * 
 	 * @return A JSON serialized Swagger object
 	 * @throws JsonProcessingException thrown by Swagger
 	 */
 	public final String getSwagger() throws JsonProcessingException {
-		Swagger swagger = new Reader(new Swagger()).read(this.application.getClasses());
-		return Json.mapper().writeValueAsString(swagger);
+		String result = this.swagger;
+		if (result == null) {
+			Swagger swagger = new Reader(new Swagger()).read(this.application.getClasses());
+			result = Json.mapper().writeValueAsString(swagger);
+			this.swagger = result;
+		}
+		return result;
 	}
 
 	/**
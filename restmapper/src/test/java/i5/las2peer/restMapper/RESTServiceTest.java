@@ -1,6 +1,7 @@
 package i5.las2peer.restMapper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import i5.las2peer.restMapper.services.TestCustomApplicationService;
 import i5.las2peer.restMapper.services.TestResourceService;
@@ -53,6 +54,8 @@ public class RESTServiceTest {
 	public void testSwagger() throws JsonProcessingException {
 		String response = testee.getSwagger();
 		assertTrue(response.contains("getHello"));
+		// generated only once
+		assertSame(response, testee.getSwagger());
 	}
 
 	@Test
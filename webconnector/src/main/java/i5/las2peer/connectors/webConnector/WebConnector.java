@@ -129,6 +129,21 @@ public class WebConnector extends Connector {
 	public static final int DEFAULT_MAX_REQUEST_BODY_SIZE = 10 * 1000 * 1000; // = 10 MB
 	protected int maxRequestBodySize = DEFAULT_MAX_REQUEST_BODY_SIZE;
 
+	public static final int DEFAULT_CREDENTIAL_CACHE_SIZE = 1000;
+	protected int credentialCacheSize = DEFAULT_CREDENTIAL_CACHE_SIZE;
+
+	public static final int DEFAULT_CREDENTIAL_CACHE_IDLE_TIMEOUT = 120; // seconds
+	protected int credentialCacheIdleTimeout = DEFAULT_CREDENTIAL_CACHE_IDLE_TIMEOUT;
+
+	public static final int DEFAULT_CREDENTIAL_CACHE_LIFETIME = 600; // seconds
+	protected int credentialCacheLifetime = DEFAULT_CREDENTIAL_CACHE_LIFETIME;
+
+	public static final int DEFAULT_SWAGGER_CACHE_SIZE = 100;
+	protected int swaggerCacheSize = DEFAULT_SWAGGER_CACHE_SIZE;
+
+	public static final int DEFAULT_SWAGGER_CACHE_LIFETIME = 600; // seconds
+	protected int swaggerCacheLifetime = DEFAULT_SWAGGER_CACHE_LIFETIME;
+
 	// other context names, see
 	// https://docs.oracle.com/javase/8/docs/technotes/guides/security/StandardNames.html#SSLContext
 	public static final String SSL_INSTANCE_NAME = "TLSv1.2";
@@ -555,6 +570,30 @@ public class WebConnector extends Connector {
 		return lockOidc;
 	}
 
+	public AuthenticationManager getAuthenticationManager() {
+		return authenticationManager;
+	}
+
+	public int getCredentialCacheSize() {
+		return credentialCacheSize;
+	}
+
+	public int getCredentialCacheIdleTimeout() {
+		return credentialCacheIdleTimeout;
+	}
+
+	public int getCredentialCacheLifetime() {
+		return credentialCacheLifetime;
+	}
+
+	public int getSwaggerCacheSize() {
+		return swaggerCacheSize;
+	}
+
+	public int getSwaggerCacheLifetime() {
+		return swaggerCacheLifetime;
+	}
+
 	/**
 	 * Fetches Open ID Connect provider configuration, according to the OpenID Connect discovery specification (cf.
 	 * http://openid.net/specs/openid-connect-discovery-1_0.html#ProviderConfig)
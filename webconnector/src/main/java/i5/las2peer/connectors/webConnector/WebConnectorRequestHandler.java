@@ -8,8 +8,12 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +32,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -49,12 +54,14 @@ import i5.las2peer.connectors.webConnector.handler.WebappHandler;
 import i5.las2peer.connectors.webConnector.util.AuthenticationManager;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.p2p.AgentAlreadyRegisteredException;
+import i5.las2peer.p2p.AgentNotRegisteredException;
 import i5.las2peer.p2p.AliasNotFoundException;
 import i5.las2peer.p2p.Node;
 import i5.las2peer.p2p.ServiceAliasManager.AliasResolveResponse;
 import i5.las2peer.restMapper.RESTResponse;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.security.Mediator;
+import i5.las2peer.tools.ExpiringCache;
 import i5.las2peer.tools.SimpleTools;
 import io.swagger.models.Operation;
 import io.swagger.models.Swagger;
@@ -79,12 +86,53 @@ public class WebConnectorRequestHandler {
 
 	private WebConnector connector;
 	private Node l2pNode;
+	private final ExpiringCache<String, CachedSwagger> swaggerCache;
+	private final long swaggerCacheLifetimeMs;
 
 	private final L2pLogger logger = L2pLogger.getInstance(WebConnectorRequestHandler.class.getName());
 
 	public WebConnectorRequestHandler(WebConnector connector) {
 		this.connector = connector;
 		l2pNode = connector.getL2pNode();
+		swaggerCache = new ExpiringCache<>(connector.getSwaggerCacheSize());
+		swaggerCacheLifetimeMs = connector.getSwaggerCacheLifetime() * 1000L;
+	}
+
+	/**
+	 * a rendered Swagger document and its entity tag
+	 */
+	private static class CachedSwagger {
+		private final String json;
+		private final EntityTag etag;
+
+		private CachedSwagger(String json) {
+			this.json = json;
+			try {
+				MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				byte[] hash = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+				this.etag = new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(hash));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-256 not available", e);
+			}
+		}
+
+		private boolean matches(List<String> ifNoneMatch) {
+			if (ifNoneMatch == null) {
+				return false;
+			}
+			for (String header : ifNoneMatch) {
+				for (String tag : header.split(",")) {
+					tag = tag.trim();
+					if (tag.startsWith("W/")) {
+						tag = tag.substring(2);
+					}
+					if (tag.equals("*") || tag.equals("\"" + etag.getValue() + "\"")) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
 	}
 
 	@GET
@@ -218,16 +266,39 @@ public class WebConnectorRequestHandler {
 		}
 		// invoke
 		if (requestMethod.equalsIgnoreCase("get") && requestPath.equals(basePath + "swagger.json")) {
-			return invokeSwagger(mediator, requiredService, basePath);
+			return invokeSwagger(mediator, requiredService, basePath, requestHeaders);
 		} else {
 			return invokeRestService(mediator, requiredService, basePath, requestMethod, uriInfo, requestBody,
 					requestHeaders);
 		}
 	}
 
-	private Response invokeSwagger(Mediator mediator, ServiceNameVersion requiredService, String basePath) {
+	private Response invokeSwagger(Mediator mediator, ServiceNameVersion requiredService, String basePath,
+			MultivaluedMap<String, String> requestHeaders) {
+		// the rendered document only depends on the service version that answers
+		ServiceNameVersion service;
+		try {
+			service = l2pNode.getNodeServiceCache().getServiceAgentInstance(requiredService, false,
+					connector.onlyLocalServices(), mediator.getAgent()).getService();
+		} catch (AgentNotRegisteredException e) {
+			connector.logError("No service found matching " + requiredService + ".", e);
+			throw new NotFoundException("No service found matching " + requiredService + ".");
+		}
+		String cacheKey = service.toString() + "#" + basePath + "#" + connector.defaultOIDCProvider;
+		CachedSwagger swagger = swaggerCache.get(cacheKey);
+		if (swagger == null) {
+			swagger = new CachedSwagger(renderSwagger(mediator, service, basePath));
+			swaggerCache.put(cacheKey, swagger, swaggerCacheLifetimeMs);
+		}
+		if (swagger.matches(requestHeaders.get(HttpHeaders.IF_NONE_MATCH))) {
+			return Response.notModified(swagger.etag).build();
+		}
+		return Response.ok(swagger.json, MediaType.APPLICATION_JSON).tag(swagger.etag).build();
+	}
+
+	private String renderSwagger(Mediator mediator, ServiceNameVersion service, String basePath) {
 		// get definitions
-		Serializable result = callServiceMethod(mediator, requiredService, "getSwagger", new Serializable[] {});
+		Serializable result = callServiceMethod(mediator, service, "getSwagger", new Serializable[] {});
 		if (!(result instanceof String)) {
 			throw new InternalServerErrorException("Swagger API declaration not available!");
 		}
@@ -273,7 +344,7 @@ public class WebConnectorRequestHandler {
 		} catch (JsonProcessingException e) {
 			throw new InternalServerErrorException("Swagger documentation could not be serialized to JSON", e);
 		}
-		return Response.ok(json, MediaType.APPLICATION_JSON).build();
+		return json;
 	}
 
 	private Response invokeRestService(Mediator mediator, ServiceNameVersion requiredService, String basePath,
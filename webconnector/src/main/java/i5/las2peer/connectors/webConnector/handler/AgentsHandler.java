@@ -263,6 +263,7 @@ public class AgentsHandler {
 					.entity("Invalid agent type '" + agent.getClass().getSimpleName() + "'").build();
 		}
 		node.storeAgent(agent);
+		connector.getAuthenticationManager().evictCredentials(agent.getIdentifier());
 		JSONObject json = new JSONObject();
 		json.put("code", Status.OK.getStatusCode());
 		json.put("text", Status.OK.getStatusCode() + " - Agent uploaded");
@@ -307,6 +308,7 @@ public class AgentsHandler {
 		}
 		passAgent.changePassphrase(passphraseNew);
 		node.storeAgent(passAgent);
+		connector.getAuthenticationManager().evictCredentials(passAgent.getIdentifier());
 		JSONObject json = new JSONObject();
 		json.put("code", Status.OK.getStatusCode());
 		json.put("text", Status.OK.getStatusCode() + " - Passphrase changed");
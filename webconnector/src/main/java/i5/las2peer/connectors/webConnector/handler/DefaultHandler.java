@@ -35,6 +35,8 @@ import i5.las2peer.p2p.Node;
 import i5.las2peer.p2p.NodeInformation;
 import i5.las2peer.p2p.NodeNotFoundException;
 import i5.las2peer.p2p.PastryNodeImpl;
+import i5.las2peer.p2p.pastry.MessageDispatcher;
+import i5.las2peer.p2p.pastry.MessageDispatcher.LaneType;
 import i5.las2peer.restMapper.RESTService;
 import i5.las2peer.security.AgentImpl;
 import i5.las2peer.security.ServiceAgentImpl;
@@ -160,6 +162,22 @@ public class DefaultHandler {
 		response.put("maxStorageSize", maxLocalStorageSize);
 		response.put("maxStorageSizeStr", humanReadableByteCount(maxLocalStorageSize, true));
 		response.put("uptime", getUptime(node));
+		response.put("pendingAnswerListeners", node.getAnswerListenerRegistry().getPendingCount());
+		response.put("expiredAnswerListeners", node.getAnswerListenerRegistry().getExpiredCount());
+		response.put("aliasCacheHits", node.getServiceAliasManager().getCacheHitCount());
+		response.put("aliasCacheMisses", node.getServiceAliasManager().getCacheMissCount());
+		response.put("userCacheHits", node.getUserManager().getCache().getHitCount());
+		response.put("userCacheMisses", node.getUserManager().getCache().getMissCount());
+		response.put("membershipIndexHits", node.getGroupMembershipIndex().getHitCount());
+		response.put("membershipIndexMisses", node.getGroupMembershipIndex().getMissCount());
+		response.put("credentialCacheHits", connector.getAuthenticationManager().getCredentialCache().getHitCount());
+		response.put("credentialCacheMisses",
+				connector.getAuthenticationManager().getCredentialCache().getMissCount());
+		if (node instanceof PastryNodeImpl) {
+			response.put("messageLanes", getMessageLanes((PastryNodeImpl) node));
+			response.put("agentCacheHits", ((PastryNodeImpl) node).getAgentCache().getHitCount());
+			response.put("agentCacheMisses", ((PastryNodeImpl) node).getAgentCache().getMissCount());
+		}
 		response.put("localServices", getLocalServices(node, uriInfo.getRequestUri()));
 		response.put("otherNodes", getOtherNodes(node));
 		return response.toJSONString();
@@ -236,6 +254,27 @@ public class DefaultHandler {
 		return result;
 	}
 
+	private JSONObject getMessageLanes(PastryNodeImpl node) {
+		JSONObject result = new JSONObject();
+		if (node.getApplication() == null) {
+			return result;
+		}
+		MessageDispatcher dispatcher = node.getApplication().getMessageDispatcher();
+		for (LaneType type : LaneType.values()) {
+			MessageDispatcher.Lane lane = dispatcher.getLane(type);
+			JSONObject laneJSON = new JSONObject();
+			laneJSON.put("queueDepth", lane.getQueueDepth());
+			laneJSON.put("active", lane.getActiveCount());
+			laneJSON.put("delivered", lane.getDeliveredCount());
+			laneJSON.put("expired", lane.getExpiredCount());
+			laneJSON.put("rejected", lane.getRejectedCount());
+			laneJSON.put("averageWaitMs", lane.getAverageWaitMs());
+			laneJSON.put("maxWaitMs", lane.getMaxWaitMs());
+			result.put(type.name().toLowerCase(), laneJSON);
+		}
+		return result;
+	}
+
 	private JSONArray getOtherNodes(Node node) {
 		JSONArray result = new JSONArray();
 		for (Object other : node.getOtherKnownNodes()) {
@@ -4,6 +4,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.logging.Level;
 
@@ -30,6 +33,7 @@ import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.p2p.EthereumNode;
 import i5.las2peer.security.*;
 import i5.las2peer.tools.CryptoTools;
+import i5.las2peer.tools.ExpiringCache;
 import net.minidev.json.JSONObject;
 
 public class AuthenticationManager {
@@ -41,8 +45,38 @@ public class AuthenticationManager {
 
 	private final WebConnector connector;
 
+	/**
+	 * verified basic auth logins, keyed by a salted hash of identifier and password, so repeated requests skip the
+	 * expensive key derivation
+	 *
+	 * The cache is local to this connector. Evicting a login only affects this node, other nodes keep accepting the
+	 * cached credentials of an agent until their own entries expire.
+	 */
+	private final ExpiringCache<String, CachedLogin> credentialCache;
+	private final byte[] credentialSalt;
+	private final long credentialCacheIdleTimeoutMs;
+	private final long credentialCacheLifetimeMs;
+
+	private static class CachedLogin {
+		private final String agentId;
+		/** unlocked agent, never handed out to a request, each request gets its own clone */
+		private final AgentImpl unlockedAgent;
+		private volatile long lastAccess;
+
+		private CachedLogin(AgentImpl unlockedAgent) {
+			this.agentId = unlockedAgent.getIdentifier();
+			this.unlockedAgent = unlockedAgent;
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+
 	public AuthenticationManager(WebConnector connector) {
 		this.connector = connector;
+		this.credentialCache = new ExpiringCache<>(connector.getCredentialCacheSize());
+		this.credentialSalt = new byte[32];
+		new SecureRandom().nextBytes(credentialSalt);
+		this.credentialCacheIdleTimeoutMs = connector.getCredentialCacheIdleTimeout() * 1000L;
+		this.credentialCacheLifetimeMs = connector.getCredentialCacheLifetime() * 1000L;
 	}
 
 	// FIXME: "bearer" authorization is broken, because for the OIDC auto-registration we require both a token and a
@@ -105,6 +139,23 @@ public class AuthenticationManager {
 	 */
 	private AgentImpl authenticateCredentials(Credentials credentials) throws AgentException {
 		String prefixedIdentifier = credentials.identifier;
+		String cacheKey = getCredentialCacheKey(credentials);
+		CachedLogin cached = credentialCache.get(cacheKey);
+		if (cached != null) {
+			long now = System.currentTimeMillis();
+			if (now - cached.lastAccess <= credentialCacheIdleTimeoutMs) {
+				try {
+					// a clone per request, so locking the agent in one request does not affect the others
+					AgentImpl agent = cached.unlockedAgent.cloneUnlocked();
+					cached.lastAccess = now;
+					logger.fine("credentials accepted from cache");
+					return agent;
+				} catch (CloneNotSupportedException e) {
+					logger.log(Level.WARNING, "Could not clone cached agent", e);
+				}
+			}
+			credentialCache.remove(cacheKey);
+		}
 		String agentId;
 		logger.info("attempting login with id: " + prefixedIdentifier);
 		try {
@@ -124,10 +175,46 @@ public class AuthenticationManager {
 		if (agent instanceof PassphraseAgentImpl) {
 			((PassphraseAgentImpl) agent).unlock(credentials.password);
 			logger.fine("passphrase accepted. Agent unlocked");
+			try {
+				credentialCache.put(cacheKey, new CachedLogin(agent.cloneUnlocked()), credentialCacheLifetimeMs);
+			} catch (CloneNotSupportedException e) {
+				logger.log(Level.WARNING, "Could not cache unlocked agent", e);
+			}
 		}
 		return agent;
 	}
 
+	/**
+	 * Removes all cached logins of an agent. Has to be called if the passphrase of the agent changed.
+	 *
+	 * Only the cache of this connector is affected, other nodes are not notified.
+	 *
+	 * @param agentId An agent id
+	 */
+	public void evictCredentials(String agentId) {
+		credentialCache.removeIf((key, login) -> login.agentId.equals(agentId));
+	}
+
+	/**
+	 * @return the cache of agents unlocked with basic auth credentials
+	 */
+	public ExpiringCache<String, ?> getCredentialCache() {
+		return credentialCache;
+	}
+
+	private String getCredentialCacheKey(Credentials credentials) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(credentialSalt);
+			digest.update(credentials.identifier.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(credentials.password.getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
 	/**
 	 * Attempts to find an existing agent and unlock it, otherwise registers a new one.
 	 *
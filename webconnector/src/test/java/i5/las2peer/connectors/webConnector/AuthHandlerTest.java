@@ -93,6 +93,40 @@ public class AuthHandlerTest extends AbstractTestHandler {
 		}
 	}
 
+	@Test
+	public void testCachedLogin() {
+		try {
+			UserAgentImpl adam = MockAgentFactory.getAdam();
+			adam.unlock("adamspass");
+			PastryNodeImpl activeNode = nodes.get(0);
+			activeNode.storeAgent(adam);
+			WebTarget targetLogin = webClient
+					.target(connector.getHttpEndpoint() + AuthHandler.RESOURCE_PATH + "/login");
+			String validAuth = "basic " + Base64.getEncoder()
+					.encodeToString((adam.getLoginName() + ":" + "adamspass").getBytes(StandardCharsets.UTF_8));
+			String invalidAuth = "basic " + Base64.getEncoder()
+					.encodeToString((adam.getLoginName() + ":" + "wrongpass").getBytes(StandardCharsets.UTF_8));
+			Response responseLogin = targetLogin.request().header(HttpHeaders.AUTHORIZATION, validAuth).get();
+			Assert.assertEquals(Status.OK.getStatusCode(), responseLogin.getStatus());
+			long hits = connector.getAuthenticationManager().getCredentialCache().getHitCount();
+			// the second login is answered from the credential cache
+			responseLogin = targetLogin.request().header(HttpHeaders.AUTHORIZATION, validAuth).get();
+			Assert.assertEquals(Status.OK.getStatusCode(), responseLogin.getStatus());
+			Assert.assertEquals(hits + 1, connector.getAuthenticationManager().getCredentialCache().getHitCount());
+			// a wrong password must still be rejected
+			responseLogin = targetLogin.request().header(HttpHeaders.AUTHORIZATION, invalidAuth).get();
+			Assert.assertEquals(Status.UNAUTHORIZED.getStatusCode(), responseLogin.getStatus());
+			// after eviction the passphrase is checked again
+			connector.getAuthenticationManager().evictCredentials(adam.getIdentifier());
+			Assert.assertEquals(0, connector.getAuthenticationManager().getCredentialCache().size());
+			responseLogin = targetLogin.request().header(HttpHeaders.AUTHORIZATION, validAuth).get();
+			Assert.assertEquals(Status.OK.getStatusCode(), responseLogin.getStatus());
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 	@Test
 	public void testGetLogout() {
 		try {
@@ -258,6 +258,14 @@ public class WebConnectorTest {
 
 			Assert.assertTrue(result.getResponse().trim().contains("createSomething"));
 			Assert.assertTrue(result.getResponse().trim().contains("subresource/content"));
+
+			// cached document is revalidated with its entity tag
+			String etag = result.getHeader(HttpHeaders.ETAG);
+			Assert.assertNotNull(etag);
+			HashMap<String, String> headers = new HashMap<>();
+			headers.put(HttpHeaders.IF_NONE_MATCH, etag);
+			result = c.sendRequest("GET", "swaggertest/swagger.json", "", headers);
+			Assert.assertEquals(Status.NOT_MODIFIED.getStatusCode(), result.getHttpCode());
 		} catch (Exception e) {
 			e.printStackTrace();
 			Assert.fail("Exception: " + e);